@@ -1,85 +1,85 @@
-package Demos;
-
-// This is a simple demo program which demonstrates how the Graphical Thread Manager can monitor
-// threads and their messages, as well as objects and their fields.
-//
-// In this program we the setNames() method of class GTMCorruptWrite is synchronized, and the
-// second thread will have to wait for the first to exit the method, resulting in correct values.
-//
-
-import telhai.java.gthreads.*;
-/**
- * 
- * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
- *
- */
-public class SyncGTMCorruptWrite extends Object {
-	private String fname;
-	private String lname;
-
-	public synchronized void setNames(String firstName, String lastName) {
-		print("entering setNames()");
-		fname = firstName;
-
-		// A thread might be swapped out here, and may stay 
-		// out for a varying amount of time. The different 
-		// sleep times exaggerate this.
-		if ( fname.length() < 5 ) {
-			try { ThreadPlus.sleep(5000); } 
-			catch ( InterruptedException x ) { }
-		} else {
-			try { ThreadPlus.sleep(10000); } 
-			catch ( InterruptedException x ) { }
-		}
-
-		lname = lastName;
-
-		print("leaving setNames() - " + lname + ", " + fname);
-	}
-
-	public static void print(String msg) {					// Print to the ThreadPlus pipe
-		String threadName = ThreadPlus.currentThread().getName();
-		System.out.println(threadName + ": " + msg);
-		((ThreadPlus)(ThreadPlus.currentThread())).println(threadName + ": " + msg);
-	}
-
-	public static void main(String[] args) {
-		final SyncGTMCorruptWrite cw = new SyncGTMCorruptWrite();
-
-		GraphicalThreadManager manager = new GraphicalThreadManager();
-
-		Runnable runA = new Runnable() {
-				public void run() {
-					cw.setNames("George", "Washington");
-				}
-			};
-
-		Runnable runB = new Runnable() {
-				public void run() {
-					cw.setNames("Abe", "Lincoln");
-				}
-			};
-
-		ThreadPlus threadA = new ThreadPlus(runA, "threadA");
-		ThreadPlus threadB = new ThreadPlus(runB, "threadB");
-
-		// Add both threads and the object to manager and start it.
-		// In the manager we will see how the second thread waits for the first to finish,
-		// before entering setNames() and going to sleep. When the second thread finishes,
-		// the fields of the cw will have the correct values.
-		// manager.setPixelsPerTick(2);	// If want to speed-up the timeline
-		manager.setAutoReset(false);
-		manager.addThread(threadA);
-		manager.addThread(threadB);
-		manager.addObject(cw);
-		manager.start();
-
-		threadA.start();
-
-		try { Thread.sleep(2000); } 
-		catch ( InterruptedException x ) { }
-
-		threadB.start();
-		
-	}
-}
+package Demos;
+
+// This is a simple demo program which demonstrates how the Graphical Thread Manager can monitor
+// threads and their messages, as well as objects and their fields.
+//
+// In this program we the setNames() method of class GTMCorruptWrite is synchronized, and the
+// second thread will have to wait for the first to exit the method, resulting in correct values.
+//
+
+import telhai.java.gthreads.*;
+/**
+ * 
+ * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+ *
+ */
+public class SyncGTMCorruptWrite extends Object {
+	private String fname;
+	private String lname;
+
+	public synchronized void setNames(String firstName, String lastName) {
+		print("entering setNames()");
+		fname = firstName;
+
+		// A thread might be swapped out here, and may stay 
+		// out for a varying amount of time. The different 
+		// sleep times exaggerate this.
+		if ( fname.length() < 5 ) {
+			try { ThreadPlus.sleep(5000); } 
+			catch ( InterruptedException x ) { }
+		} else {
+			try { ThreadPlus.sleep(10000); } 
+			catch ( InterruptedException x ) { }
+		}
+
+		lname = lastName;
+
+		print("leaving setNames() - " + lname + ", " + fname);
+	}
+
+	public static void print(String msg) {					// Print to the console (and to the thread's channel)
+		String threadName = ThreadPlus.currentThread().getName();
+		System.out.println(threadName + ": " + msg);
+	}
+
+	public static void main(String[] args) {
+		final SyncGTMCorruptWrite cw = new SyncGTMCorruptWrite();
+
+		ThreadAwarePrintStream.install(true);	// Send what each thread prints to its channel too
+		GraphicalThreadManager manager = new GraphicalThreadManager();
+
+		Runnable runA = new Runnable() {
+				public void run() {
+					cw.setNames("George", "Washington");
+				}
+			};
+
+		Runnable runB = new Runnable() {
+				public void run() {
+					cw.setNames("Abe", "Lincoln");
+				}
+			};
+
+		ThreadPlus threadA = new ThreadPlus(runA, "threadA");
+		ThreadPlus threadB = new ThreadPlus(runB, "threadB");
+
+		// Add both threads and the object to manager and start it.
+		// In the manager we will see how the second thread waits for the first to finish,
+		// before entering setNames() and going to sleep. When the second thread finishes,
+		// the fields of the cw will have the correct values.
+		// manager.setPixelsPerTick(2);	// If want to speed-up the timeline
+		manager.setAutoReset(false);
+		manager.addThread(threadA);
+		manager.addThread(threadB);
+		manager.addObject(cw);
+		manager.start();
+
+		threadA.start();
+
+		try { Thread.sleep(2000); } 
+		catch ( InterruptedException x ) { }
+
+		threadB.start();
+		
+	}
+}
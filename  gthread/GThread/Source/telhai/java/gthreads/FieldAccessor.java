@@ -0,0 +1,326 @@
+package telhai.java.gthreads;
+
+import java.lang.invoke.*;		// For variable handles
+import java.lang.reflect.*;		// For the fields
+
+/** This class reads a single field of the objects of a class, for an ObjectViewTable. The accessors of a class are
+  * built once, when the first object of the class is monitored, and are shared by all the tables which monitor objects
+  * of that class, through a ClassValue cache - so the class hierarchy is walked and the fields are opened only once.
+  *
+  * A field is read through a VarHandle instead of through reflection. The handle is held in an instance field of the
+  * accessor, so it is not a constant to the JIT, and each read goes through the dispatch of the handle rather than
+  * being compiled into a plain memory read. A primitive field can be read as raw bits with getBits(), without boxing
+  * its value, so a table only needs to box a value once it has changed. getBits() and get() read the field with
+  * getOpaque(), which is never hoisted out of a loop nor cached, so a value written by another thread is eventually
+  * seen, without the ordering guarantees of a volatile read. A field which cannot be opened for a VarHandle (for
+  * example, a field of a class in a module which is not open) is read through reflection instead, if it can be made
+  * accessible; a field which cannot be read at all is shown as INACCESSIBLE.
+  *
+  * @see ObjectViewTable
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public final class FieldAccessor
+{
+	/** The value shown for a field which cannot be read */
+	public static final String INACCESSIBLE = "<inaccessible>";
+
+	/** The accessors of the declared fields of each class */
+	private static final ClassValue DECLARED = new ClassValue()
+		{
+			protected Object computeValue (Class type)
+			{
+				return build(type,false);
+			}
+		};
+
+	/** The accessors of the declared and inherited fields of each class */
+	private static final ClassValue ALL = new ClassValue()
+		{
+			protected Object computeValue (Class type)
+			{
+				return build(type,true);
+			}
+		};
+
+	/** The field */
+	private final Field field;
+	/** The name of the field */
+	private final String name;
+	/** The name of the type of the field */
+	private final String typeName;
+	/** The type of the field: 'Z','B','C','S','I','J','F' or 'D' for the primitive types, 'L' for references */
+	private final char kind;
+	/** Indicates whether the field is static */
+	private final boolean isStatic;
+	/** The handle of the field, or null if it is read through reflection */
+	private final VarHandle handle;
+	/** Indicates whether the field can be read at all */
+	private final boolean readable;
+
+	/** Constructs an accessor of a field, opening the field for reading.
+	  * @param f the field.
+	  */
+	private FieldAccessor (Field f)
+	{
+		field = f;
+		name = f.getName();
+		typeName = f.getType().getName();
+		isStatic = Modifier.isStatic(f.getModifiers());
+
+		Class t = f.getType();
+		if (!t.isPrimitive())
+			kind = 'L';
+		else if (t==Boolean.TYPE)
+			kind = 'Z';
+		else if (t==Long.TYPE)
+			kind = 'J';
+		else
+			kind = Character.toUpperCase(t.getName().charAt(0));	// byte, char, short, int, float, double
+
+		VarHandle h = null;
+		boolean ok = true;
+		try
+		{
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(f.getDeclaringClass(),MethodHandles.lookup());
+			h = lookup.unreflectVarHandle(f);
+		}
+		catch (IllegalAccessException e) {}			// Not open to us - try reflection
+		catch (RuntimeException e) {}
+
+		if (h==null)
+		{
+			try
+			{
+				f.setAccessible(true);
+			}
+			catch (RuntimeException e) {ok = false;}	// Not even through reflection
+		}
+		handle = h;
+		readable = ok;
+	}
+
+	/** Returns the accessors of the fields of a class, in the order in which the class declares them. The accessors are
+	  * built on the first call for a class, and shared from then on.
+	  * @param type the class.
+	  * @param ancestors indicates whether the inherited fields should be included, after the declared ones.
+	  * @return the accessors. The array is shared, and must not be changed.
+	  */
+	public static FieldAccessor[] forClass (Class type, boolean ancestors)
+	{
+		return (FieldAccessor[])(ancestors ? ALL : DECLARED).get(type);
+	}
+
+	/** Builds the accessors of the fields of a class.
+	  * @param type the class.
+	  * @param ancestors indicates whether the inherited fields should be included.
+	  */
+	private static FieldAccessor[] build (Class type, boolean ancestors)
+	{
+		if (ancestors && type.getSuperclass()!=null)		// The declared fields, then those of the ancestors
+		{
+			FieldAccessor[] own = forClass(type,false);
+			FieldAccessor[] inherited = forClass(type.getSuperclass(),true);
+			FieldAccessor[] all = new FieldAccessor[own.length+inherited.length];
+			System.arraycopy(own,0,all,0,own.length);
+			System.arraycopy(inherited,0,all,own.length,inherited.length);
+			return all;
+		}
+
+		Field[] declared;
+		try
+		{
+			declared = type.getDeclaredFields();
+		}
+		catch (SecurityException e) {declared = new Field[0];}
+
+		FieldAccessor[] acc = new FieldAccessor[declared.length];
+		for (int i=0;i<declared.length;++i)
+			acc[i] = new FieldAccessor(declared[i]);
+		return acc;
+	}
+
+	/** Returns the field. */
+	public Field getField()
+	{
+		return field;
+	}
+
+	/** Returns the name of the field. */
+	public String getName()
+	{
+		return name;
+	}
+
+	/** Returns the name of the type of the field. */
+	public String getTypeName()
+	{
+		return typeName;
+	}
+
+	/** Returns the type of the field: 'Z','B','C','S','I','J','F' or 'D' for the primitive types, 'L' for references. */
+	public char getKind()
+	{
+		return kind;
+	}
+
+	/** Returns true if the field is static. */
+	public boolean isStatic()
+	{
+		return isStatic;
+	}
+
+	/** Returns true if the field has a primitive type, and can be read with getBits(). */
+	public boolean isPrimitive()
+	{
+		return kind!='L' && readable;
+	}
+
+	/** Returns true if the field has a numeric type (integral or floating-point, but not boolean or char), and can be
+	  * read.
+	  */
+	public boolean isNumeric()
+	{
+		return readable && (kind=='B' || kind=='S' || kind=='I' || kind=='J' || kind=='F' || kind=='D');
+	}
+
+	/** Returns true if the field has a floating-point type. */
+	public boolean isFloating()
+	{
+		return kind=='F' || kind=='D';
+	}
+
+	/** Converts the raw bits of a value of a primitive field, as returned by getBits(), to a double, without boxing it.
+	  * @param bits the bits of the value.
+	  */
+	public double toDouble (long bits)
+	{
+		switch (kind)
+		{
+			case 'F': return Float.intBitsToFloat((int)bits);
+			case 'D': return Double.longBitsToDouble(bits);
+		}
+		return bits;		// Integral values are kept as they are (a boolean as 0 or 1)
+	}
+
+	/** Converts a double to the raw bits of a value of a numeric field, as getBits() would return them. An integral value
+	  * is rounded towards zero.
+	  * @param value the value.
+	  */
+	public long fromDouble (double value)
+	{
+		switch (kind)
+		{
+			case 'F': return Float.floatToRawIntBits((float)value);
+			case 'D': return Double.doubleToRawLongBits(value);
+		}
+		return (long)value;
+	}
+
+	/** Reads the value of the field in an object. A primitive value is boxed.
+	  * @param obj the object (ignored for a static field).
+	  * @return the value, or INACCESSIBLE if the field cannot be read.
+	  */
+	public Object get (Object obj)
+	{
+		if (kind!='L' && readable)
+			return box(getBits(obj));
+		if (!readable)
+			return INACCESSIBLE;
+
+		if (handle==null)
+		{
+			try
+			{
+				return field.get(obj);
+			}
+			catch (IllegalAccessException e) {return INACCESSIBLE;}
+		}
+		return isStatic ? (Object)handle.getOpaque() : (Object)handle.getOpaque(obj);
+	}
+
+	/** Reads the value of a primitive field in an object as raw bits, without boxing it. Two reads return the same bits
+	  * if, and only if, the value has not changed (floating-point values are compared by their bits).
+	  * @param obj the object (ignored for a static field).
+	  * @return the bits of the value, or 0 if the field cannot be read.
+	  */
+	public long getBits (Object obj)
+	{
+		if (handle==null)
+			return getBitsReflected(obj);
+
+		if (isStatic)
+		{
+			switch (kind)
+			{
+				case 'Z': return ((boolean)handle.getOpaque()) ? 1 : 0;
+				case 'B': return (byte)handle.getOpaque();
+				case 'C': return (char)handle.getOpaque();
+				case 'S': return (short)handle.getOpaque();
+				case 'I': return (int)handle.getOpaque();
+				case 'J': return (long)handle.getOpaque();
+				case 'F': return Float.floatToRawIntBits((float)handle.getOpaque());
+				case 'D': return Double.doubleToRawLongBits((double)handle.getOpaque());
+			}
+			return 0;
+		}
+
+		switch (kind)
+		{
+			case 'Z': return ((boolean)handle.getOpaque(obj)) ? 1 : 0;
+			case 'B': return (byte)handle.getOpaque(obj);
+			case 'C': return (char)handle.getOpaque(obj);
+			case 'S': return (short)handle.getOpaque(obj);
+			case 'I': return (int)handle.getOpaque(obj);
+			case 'J': return (long)handle.getOpaque(obj);
+			case 'F': return Float.floatToRawIntBits((float)handle.getOpaque(obj));
+			case 'D': return Double.doubleToRawLongBits((double)handle.getOpaque(obj));
+		}
+		return 0;
+	}
+
+	/** Reads the value of a primitive field through reflection, as raw bits.
+	  * @param obj the object (ignored for a static field).
+	  */
+	private long getBitsReflected (Object obj)
+	{
+		if (!readable)
+			return 0;
+
+		try
+		{
+			switch (kind)
+			{
+				case 'Z': return field.getBoolean(obj) ? 1 : 0;
+				case 'B': return field.getByte(obj);
+				case 'C': return field.getChar(obj);
+				case 'S': return field.getShort(obj);
+				case 'I': return field.getInt(obj);
+				case 'J': return field.getLong(obj);
+				case 'F': return Float.floatToRawIntBits(field.getFloat(obj));
+				case 'D': return Double.doubleToRawLongBits(field.getDouble(obj));
+			}
+		}
+		catch (IllegalAccessException e) {}
+		return 0;
+	}
+
+	/** Converts the raw bits of a value of a primitive field, as returned by getBits(), to a boxed value.
+	  * @param bits the bits of the value.
+	  */
+	public Object box (long bits)
+	{
+		switch (kind)
+		{
+			case 'Z': return Boolean.valueOf(bits!=0);
+			case 'B': return Byte.valueOf((byte)bits);
+			case 'C': return Character.valueOf((char)bits);
+			case 'S': return Short.valueOf((short)bits);
+			case 'I': return Integer.valueOf((int)bits);
+			case 'J': return Long.valueOf(bits);
+			case 'F': return Float.valueOf(Float.intBitsToFloat((int)bits));
+			case 'D': return Double.valueOf(Double.longBitsToDouble(bits));
+		}
+		return null;
+	}
+}
@@ -0,0 +1,244 @@
+package telhai.java.gthreads;
+
+/** This class keeps the history of the values of a single numeric field of a monitored object: the value of the field
+  * after each change, with the recording time when the change was noticed. The values are kept in primitive arrays
+  * (long[] for integral fields, double[] for floating-point fields), in a ring of fixed capacity, so recording a value
+  * never boxes it and the memory used by a history doesn't grow over long recordings. Once the ring is full, each new
+  * value replaces the oldest one.
+  *
+  * Since only the changes are kept, the value of the field at any time is the last value recorded at that time or
+  * before it, and the history can answer what the value was at any point of the recording. Statistics over a window
+  * of time are weighted by the time during which each value was held.
+  *
+  * The history is written by the recorder's sampler thread and read by viewers; its methods are synchronized, and each
+  * of them holds the lock only for a short loop over primitive arrays.
+  *
+  * @see ObjectTrack#getHistory(int)
+  * @see ObjectViewTable
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class FieldHistory
+{
+	/** Default capacity of a history */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** Indicates whether the field has a floating-point type */
+	private final boolean floating;
+
+	/** The recording times of the values */
+	private long[] times;
+	/** The values of an integral field, or null */
+	private long[] longs;
+	/** The values of a floating-point field, or null */
+	private double[] doubles;
+
+	/** The index in the arrays of the oldest value */
+	private int head;
+
+	/** The number of values in the history */
+	private int size;
+
+	/** Constructs a history with the given capacity.
+	  * @param floating indicates whether the field has a floating-point type.
+	  * @param capacity the maximum number of values in the history (values less than 2 will be set to 2).
+	  */
+	public FieldHistory (boolean floating, int capacity)
+	{
+		int n = (capacity<2) ? 2 : capacity;
+
+		this.floating = floating;
+		times = new long[n];
+		if (floating)
+			doubles = new double[n];
+		else
+			longs = new long[n];
+	}
+
+	/** Records a value of an integral field. If the history is full, the oldest value is replaced.
+	  * @param time the recording time, not earlier than the time of the last value.
+	  * @param value the value.
+	  */
+	public synchronized void add (long time, long value)
+	{
+		int i = next(time);
+		if (floating)
+			doubles[i] = value;
+		else
+			longs[i] = value;
+	}
+
+	/** Records a value of a floating-point field. If the history is full, the oldest value is replaced.
+	  * @param time the recording time, not earlier than the time of the last value.
+	  * @param value the value.
+	  */
+	public synchronized void add (long time, double value)
+	{
+		int i = next(time);
+		if (floating)
+			doubles[i] = value;
+		else
+			longs[i] = (long)value;
+	}
+
+	/** Claims the index of the next value, and sets its time.
+	  * @param time the recording time of the value.
+	  * @return the index in the arrays.
+	  */
+	private int next (long time)
+	{
+		int i;
+		if (size<times.length)				// There is room
+			i = (head+size++)%times.length;
+		else								// Replace the oldest value
+		{
+			i = head;
+			head = (head+1)%times.length;
+		}
+		times[i] = time;
+		return i;
+	}
+
+	/** Removes all the values from the history. */
+	public synchronized void clear()
+	{
+		head = 0;
+		size = 0;
+	}
+
+	/** Returns true if the field has a floating-point type. */
+	public boolean isFloating()
+	{
+		return floating;
+	}
+
+	/** Returns the number of values in the history. */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/** Returns the recording time of a value.
+	  * @param i the index of the value, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public synchronized long getTime (int i)
+	{
+		return times[(head+i)%times.length];
+	}
+
+	/** Returns a value, as a double.
+	  * @param i the index of the value, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public synchronized double getValue (int i)
+	{
+		return value((head+i)%times.length);
+	}
+
+	/** Returns a value of an integral field, without rounding.
+	  * @param i the index of the value, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public synchronized long getLong (int i)
+	{
+		int j = (head+i)%times.length;
+		return floating ? (long)doubles[j] : longs[j];
+	}
+
+	/** Returns the value at an index of the arrays, as a double.
+	  * @param j the index in the arrays.
+	  */
+	private double value (int j)
+	{
+		return floating ? doubles[j] : (double)longs[j];
+	}
+
+	/** Finds the last value which was recorded at the given time or before it (by binary search).
+	  * @param time the recording time.
+	  * @return the index of the value, from 0 (the oldest) to size()-1, or -1 if all the values were recorded after
+	  *		the given time.
+	  */
+	public synchronized int indexAt (long time)
+	{
+		int lo = 0, hi = size;
+
+		while (lo<hi)
+		{
+			int mid = (lo+hi) >>> 1;
+			if (times[(head+mid)%times.length]<=time)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo-1;
+	}
+
+	/** Returns the value which the field had at the given time.
+	  * @param time the recording time.
+	  * @return the value, or NaN if the time is before the oldest value in the history.
+	  */
+	public synchronized double valueAt (long time)
+	{
+		int i = indexAt(time);
+		return (i<0) ? Double.NaN : value((head+i)%times.length);
+	}
+
+	/** Calculates the minimum, the maximum and the mean of the values which the field had during a window of time. The
+	  * mean is weighted by the time during which each value was held. A window which begins before the oldest value in
+	  * the history is taken from the oldest value on.
+	  * @param from the beginning of the window, in recording time.
+	  * @param to the end of the window, in recording time.
+	  * @param result receives the minimum, the maximum and the mean, in this order (NaN if there are no values).
+	  * @return the number of values which were held during the window.
+	  */
+	public synchronized int summarize (long from, long to, double[] result)
+	{
+		int i = indexAt(from);
+		if (i<0)
+			i = 0;
+
+		double min = Double.NaN, max = Double.NaN, sum = 0;
+		long held = 0;
+		int n = 0;
+
+		for (;i<size;++i)
+		{
+			int j = (head+i)%times.length;
+			long t = Math.max(times[j],from);
+			if (t>to)
+				break;
+
+			long end = (i+1<size) ? Math.min(times[(j+1)%times.length],to) : to;
+			double v = value(j);
+			if (n==0 || v<min)
+				min = v;
+			if (n==0 || v>max)
+				max = v;
+			sum += v*(end-t);
+			held += end-t;
+			++n;
+		}
+
+		result[0] = min;
+		result[1] = max;
+		result[2] = (n==0) ? Double.NaN : (held>0 ? sum/held : max);	// A window of a single instant has one value
+		return n;
+	}
+
+	/** Samples the values which the field had at evenly spaced times of a window, for drawing.
+	  * @param from the beginning of the window, in recording time.
+	  * @param to the end of the window, in recording time.
+	  * @param points receives the values (NaN for times before the oldest value), one per point.
+	  */
+	public synchronized void sample (long from, long to, double[] points)
+	{
+		int n = points.length;
+		int i = indexAt(from);
+
+		for (int k=0;k<n;++k)				// The times only grow, so the index is only advanced
+		{
+			long t = (n>1) ? from+(to-from)*k/(n-1) : to;
+			while (i+1<size && times[(head+i+1)%times.length]<=t)
+				++i;
+			points[k] = (i<0) ? Double.NaN : value((head+i)%times.length);
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package telhai.java.gthreads;
+
+import java.lang.ref.*;			// For holding the written values weakly
+
+/** This class keeps the latest field writes which a single thread has made to the monitored objects, as reported by
+  * the FieldAgent: the recording time of each write, the track of the written object, the field and its new value. The
+  * writes are kept in parallel arrays, in a ring of fixed capacity, like the messages of a MessageLog; the storage is
+  * allocated gradually, so the log of a thread which writes no monitored field stays small. The values of reference
+  * fields are held weakly, so the log never keeps a value alive once no field refers to it any more.
+  *
+  * The log is written by the recorder's sampler thread and read by viewers; its methods are synchronized, and each of
+  * them holds the lock only briefly.
+  *
+  * @see ThreadTrack#getWrites()
+  * @see WriteRing
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class FieldWriteLog
+{
+	/** Default capacity of a log */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/** The maximum number of writes in the log */
+	private int capacity;
+
+	/** The recording times of the writes */
+	private long[] times;
+	/** The tracks of the written objects */
+	private ObjectTrack[] tracks;
+	/** The indices of the written fields in their tracks */
+	private int[] fields;
+	/** The new values of primitive fields, as raw bits */
+	private long[] bits;
+	/** Weak references to the new values of reference fields (null for primitive fields and null values) */
+	private WeakReference[] values;
+
+	/** The index in the arrays of the oldest write */
+	private int head;
+
+	/** The number of writes in the log */
+	private int size;
+
+	/** Constructs a log with the default capacity. */
+	public FieldWriteLog()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Constructs a log with the given capacity.
+	  * @param capacity the maximum number of writes in the log (values less than 1 will be set to 1).
+	  */
+	public FieldWriteLog (int capacity)
+	{
+		this.capacity = (capacity<1) ? 1 : capacity;
+		allocate(Math.min(16,this.capacity));
+	}
+
+	/** Allocates the arrays with the given length, keeping the writes which are in the log, from index 0 on.
+	  * @param n the length of the arrays.
+	  */
+	private void allocate (int n)
+	{
+		long[] newTimes = new long[n];
+		ObjectTrack[] newTracks = new ObjectTrack[n];
+		int[] newFields = new int[n];
+		long[] newBits = new long[n];
+		WeakReference[] newValues = new WeakReference[n];
+
+		for (int i=0;i<size;++i)
+		{
+			int j = (head+i)%times.length;
+			newTimes[i] = times[j];
+			newTracks[i] = tracks[j];
+			newFields[i] = fields[j];
+			newBits[i] = bits[j];
+			newValues[i] = values[j];
+		}
+
+		times = newTimes;
+		tracks = newTracks;
+		fields = newFields;
+		bits = newBits;
+		values = newValues;
+		head = 0;
+	}
+
+	/** Records a write. If the log is full, the oldest write is replaced.
+	  * @param time the recording time of the write, not earlier than the time of the last write.
+	  * @param track the track of the written object.
+	  * @param field the index of the field in the track.
+	  * @param b the new value of a primitive field, as raw bits, or 0.
+	  * @param value the new value of a reference field, or null.
+	  */
+	public synchronized void add (long time, ObjectTrack track, int field, long b, Object value)
+	{
+		if (size==times.length && size<capacity)		// Grow the storage
+			allocate(Math.min(size*2,capacity));
+
+		int i;
+		if (size<times.length)				// There is room
+			i = (head+size++)%times.length;
+		else								// Replace the oldest write
+		{
+			i = head;
+			head = (head+1)%times.length;
+		}
+
+		times[i] = time;
+		tracks[i] = track;
+		fields[i] = field;
+		bits[i] = b;
+		values[i] = (value==null) ? null : new WeakReference(value);
+	}
+
+	/** Removes all the writes from the log. */
+	public synchronized void clear()
+	{
+		for (int i=0;i<times.length;++i)	// Don't keep the objects alive
+		{
+			tracks[i] = null;
+			values[i] = null;
+		}
+		head = 0;
+		size = 0;
+	}
+
+	/** Returns the number of writes in the log. */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/** Returns the recording time of a write.
+	  * @param i the index of the write, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public synchronized long getTime (int i)
+	{
+		return times[(head+i)%times.length];
+	}
+
+	/** Returns the track of the object of a write.
+	  * @param i the index of the write, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public synchronized ObjectTrack getTrack (int i)
+	{
+		return tracks[(head+i)%times.length];
+	}
+
+	/** Returns the index in its track of the field of a write.
+	  * @param i the index of the write, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public synchronized int getField (int i)
+	{
+		return fields[(head+i)%times.length];
+	}
+
+	/** Returns the new value of a primitive field, as raw bits (see FieldAccessor.getBits()).
+	  * @param i the index of the write, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public synchronized long getBits (int i)
+	{
+		return bits[(head+i)%times.length];
+	}
+
+	/** Returns the new value of a reference field, or null if it has been garbage-collected since.
+	  * @param i the index of the write, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public synchronized Object getValue (int i)
+	{
+		WeakReference r = values[(head+i)%times.length];
+		return (r==null) ? null : r.get();
+	}
+
+	/** Finds the first write which was made at the given time or after it (by binary search).
+	  * @param time the recording time.
+	  * @return the index of the write, or size() if all the writes were made before the given time.
+	  */
+	public synchronized int indexAt (long time)
+	{
+		int lo = 0, hi = size;
+
+		while (lo<hi)
+		{
+			int mid = (lo+hi) >>> 1;
+			if (times[(head+mid)%times.length]<time)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+}
@@ -1,1126 +1,2540 @@
-package telhai.java.gthreads;
-
-import java.util.*;				// For vectors and exceptions
-import java.awt.*;				// For graphical functions
-import java.awt.event.*;		// For event handler
-import javax.swing.*;			// For Swing GUI
-import javax.swing.border.*;	// For Swing border functions
-import java.io.*;				// For I/O functions
-
-/** This class provides a dynamic interface for monitoring threads and objects. Once started, the GraphicalThreadManager
-  * (GTM) utilizes a Swing timer to create timed events. In theory, the events should come at regular intervals of 50ms.
-  * In practice, this doesn't always work out that way, and delays can be longer, depending on the system load.
-  *
-  * The GTM contains a single subcomponent of class TimeLine, which shows the time as a horizontal advancing line. On each
-  * timer event (tick) the timeline advances by one unit (between 1 and 10 pixels).
-  *
-  * For each thread which is added to the GTM, a ThreadLine object is created, which shows the thread lifeline versus the
-  * time. Like the time line, the thread line also advances on each tick, but only if the thread is alive. Different
-  * colors are used to distinguish whether the thread is awake or sleeping. To allow this, the GTM does not work with
-  * general Thread objects, but only with ThreadPlus objects.
-  *
-  * Each ThreadLine object also contains a text area which shows messages sent by the thread. Since each thread is a
-  * ThreadPlus object, it contains a designated pipe output. The ThreadLine connects a pipe input to the output of the
-  * thread and reads messages from it. Note that any output generated by the thread which was not sent to the designated
-  * pipe will not be displayed in the text area.
-  *
-  * For each object added to the GTM, an ObjectViewTable is created. This table monitors all the fields of this object.
-  * On each tick, the table is updated, showing any changes to the object's fields.
-  *
-  * It is possible to add and remove thread and objects at run-time. However, there is a limit to the number of threads
-  * and objects which can be monitored at once. This is done for two reasons: to allow all threads and objects to be
-  * displayed in one window, and to limit the system load, since the object requires a complete repaint on each timer
-  * tick.
-  *
-  * @see GraphicalThreadManager.TimeLine
-  * @see GraphicalThreadManager.ThreadLine
-  * @see ObjectViewTable
-  * @see ThreadPlus
-  * 
-  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
-  */
-public class GraphicalThreadManager extends JFrame implements ActionListener
-{
-	/** Maximum number of threads which can be monitored at the same time */
-	public static final int MAX_THREADS = 5;
-
-	/** Maximum number of objects which can be monitored at the same time */
-	public static final int MAX_OBJECTS = 5;
-
-	/** Minimum number of pixels per Timer event (the speed at which the timeline advances) */
-	public static final int MIN_PPTICK = 1;
-
-	/** Maximum number of pixels per Timer event (the speed at which the timeline advances) */
-	public static final int MAX_PPTICK = 10;
-
-	/** The base color for the text and timeline axis */
-	public static final Color BASE_COLOR = Color.BLACK;
-
-	/** The color for the components' borders */
-	public static final Color BORDER_COLOR = Color.BLACK;
-
-	/** Default color for the timeline */
-	public static final Color DEFAULT_TIMELINE_COLOR = Color.RED;
-
-	/** Default color for the active thread line */
-	public static final Color DEFAULT_THREADLINE_COLOR = Color.GREEN.darker();
-
-	/** Default color for the sleeping thread line */
-	public static final Color DEFAULT_THREADSLEEP_COLOR = Color.MAGENTA.darker();
-
-	/** Default width of the GTM window */
-	private static final int DEFAULT_X_SIZE = 1000;
-
-	/** Default height of the GTM window */
-	private static final int DEFAULT_Y_SIZE = 750;
-	
-	/** The left border of everything which is drawn in the window */
-	private static final int X_ORIGIN = 10;
-
-	/** The top border of everything which is drawn in the window */
-	private static final int Y_ORIGIN = 10;
-
-	/** The space between two ThreadLine components */
-	private static final int Y_SPACE = 20;
-
-	/** The top border of the legend window */
-	private static final int Y_LEGEND = 600;
-
-	/** The X coordinate of the timeline starting point */
-	private static final int X_BEGIN = 10;
-
-	/** The X coordinate of the timeline ending point */
-	private static final int X_END = 510;
-	
-	/** The X coordinate of the ObjectViewTable left border */
-	private static final int X_OBJBEGIN = X_END+40;
-
-	/** The X coordinate of the ObjectViewTable right border */
-	private static final int X_OBJEND = DEFAULT_X_SIZE-10;
-
-	/** The height of the ObjectViewTable */
-	private static final int Y_OBJHEIGHT = (DEFAULT_Y_SIZE-50)/5;
-	
-	/** Current timeline color. By default set to DEFAULT_TIMELINE_COLOR, but can be changed.
-	  * @see #setColors(Color,Color,Color)
-	  * @see #getTimelineColor()
-	  */
-	private Color timelineColor;
-
-	/** Current active thread color. By default set to DEFAULT_THREADLINE_COLOR, but can be changed.
-	  * @see #setColors(Color,Color,Color)
-	  * @see #getThreadlineColor()
-	  */
-	private Color threadlineColor;
-
-	/** Current timeline color. By default set to DEFAULT_THREADSLEEP_COLOR, but can be changed.
-	  * @see #setColors(Color,Color,Color)
-	  * @see #getThreadsleepColor()
-	  */
-	private Color threadsleepColor;
-
-	/** Internal position of the timer - determines the end point of the timeline and threadline painting.
-	  * The timer position is incremented by a value between 1 and 10 on each timer event, up to a certain maximum,
-	  * which is X_END-X_BEGIN. If automatic reset is enabled, the timer position will be reset to 0 and events will
-	  * keep on coming. If it is disabled, the timer will stop.
-	  * @see #setPixelsPerTick(int)
-	  * @see #setAutoReset(boolean)
-	  */
-	private int timerPos;
-
-	/** The value which is added to the internal timer position upon each event of the Swing Timer.
-	  * Must be between 1 and 10. Literally, it means the number of pixels which will be added to the timelines on each
-	  * Timer event.
-	  * @see #setPixelsPerTick(int)
-	  */
-	private int pixelsPerTick;
-
-	/** A flag which determines whether the internal timer should reset itself when it reaches the maximum.
-	  * @see #setAutoReset(boolean)
-	  */
-	private boolean autoReset;
-
-	/** Counts the number of milliseconds since the GTM was started or since resetInitTime() was last called.
-	  * @see #resetInitTime()
-	  */
-	private long initTimeMillis;
-
-	/** The Timer object which creates events for the GTM. Whenever a timer event is dispatched, the GTM checks the
-	  * status of all its threads and objects, and repaints itself.
-	  */
-	private javax.swing.Timer mainTimer;
-	
-	/** The component which draws the main timeline of the GTM.
-	  * @see GraphicalThreadManager.TimeLine
-	  */
-	private TimeLine generalTimeLine;
-	
-	/** An array of ThreadLine components.
-	  * @see GraphicalThreadManager.ThreadLine
-	  */
-	private ThreadLine[] myThreads;
-	
-	/** An array of components which monitors objects and their fields.
-	  * @see ObjectViewTable
-	  */
-	private ObjectViewTable[] myObjects;
-	
-	/** The legend of the GTM. Displays the colors and their meanings and also the current value of initTimeMillis.
-	  * @see #initTimeMillis
-	  * @see LegendPanel
-	  */
-	private LegendPanel legend;
-	
-	/**
-	  * The number of threads currently monitored by the GTM.
-	  * @see #addThread(ThreadPlus)
-	  * @see #removeThread(int)
-	  */
-	private int numThreads;
-	
-	/**
-	  * The number of objects currently monitored by the GTM.
-	  * @see #addObject(Object)
-	  * @see #removeObject(int)
-	  */
-	private int numObjects;
-
-	/** This inner class represents the timeline of the GraphicalThreadManager. Each instance of the GTM has one
-	  * TimeLine object which draws itself according to the internal timer (timerPos field). All active ThreadLine objects
-	  * of the GTM synchronize to this TimeLine object and draw their time lines accordingly.
-	  * @see GraphicalThreadManager#timerPos
-	  * @see GraphicalThreadManager.ThreadLine
-	  */
-	private class TimeLine extends JPanel		// Inner class to implement a timeline
-	{
-		/** The Y coordinate of the time axis */
-		private static final int Y_AXIS = 30;
-
-		/** The Y coordinate for the advancing timeline */
-		private static final int Y_TIMELINE = 45;
-
-		/** The Y coordinate for the timeline text */
-		private static final int Y_TEXT = 15;
-		
-		/** Constructs a time line component, sets it preferred size and border. */
-		public TimeLine()
-		{
-			super();
-			setPreferredSize(new Dimension(X_END+10,Y_TIMELINE+5));
-			setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
-		}
-
-		/** Paints the timeline. The painting involves several steps: first the component area is cleared. Then the axis
-		  * is painted, using the base color. Then the timeline is painted, from the beginning to the current position of
-		  * the internal timer.
-		  */
-		public void paintComponent(Graphics g)
-		{
-			int x,i;
-
-			super.paintComponent(g);
-			
-			g.clearRect(0,0,getWidth(),getHeight());			// Clear component area
-	
-			g.setColor(BASE_COLOR);
-			g.fillRect(X_BEGIN,Y_AXIS-1,X_END-X_BEGIN,3);		// Draw horizontal axis
-			g.drawLine(X_BEGIN,Y_AXIS-10,X_BEGIN,Y_AXIS+10);	// Draw vertical start line
-			g.drawLine(X_END,Y_AXIS-10,X_END,Y_AXIS+10);		// Draw vertical end line
-
-			for (x=(X_BEGIN+(X_END-X_BEGIN)/10);x<X_END;x+=(X_END-X_BEGIN)/10)
-				g.drawLine(x,Y_AXIS-5,x,Y_AXIS+5);		// Draw vertical lines along the axis
-
-			g.drawString(("One unit: " + ((X_END-X_BEGIN)/(10*pixelsPerTick)) + " timer events"),X_BEGIN,Y_TEXT);
-
-			g.setColor(timelineColor);
-			g.fillRect(X_BEGIN,Y_TIMELINE,timerPos,2);			// Draw timeline
-		}
-	}
-
-	/** This inner class represents a component which tracks a single ThreadPlus object. The ThreadLine is a rather
-	  * complex component. It contains custom painting code to draw the lifeline of the thread and a JTextArea component
-	  * to print the messages read from the thread's output pipe.
-	  *
-	  * Like the timeline, the thread's lifeline draws itself from the beginning to the current position of the GTM
-	  * internal timer. However, there are a few differences: periods when the thread is active are painted using one
-	  * color, and periods when it is asleep are painted using another color. Periods before the thread was started and
-	  * after it had died are not painted at all.
-	  *
-	  * The JTextArea component is placed inside a JScrollPane to allow automatic scrolling. Each message read from the
-	  * piped input corresponding to the thread's piped output will be written to the text area with the time when it
-	  * arrived. The time is calculated as the difference between the current system time and the initTimeMillis field.
-	  *
-	  * @see ThreadPlus
-	  * @see GraphicalThreadManager.TimeLine
-	  * @see GraphicalThreadManager#initTimeMillis
-	  * @see GraphicalThreadManager#threadlineColor
-	  * @see GraphicalThreadManager#threadsleepColor
-	  */
-	private class ThreadLine extends JPanel		// Draws the lifeline of a single thread
-	{
-		/** The Y coordinate of the thread's name */
-		private static final int Y_THREADNAME = 15;
-
-		/** The Y coordinate of the thread's lifeline */
-		private static final int Y_THREADLINE = 25;
-
-		/** The Y coordinate of the JTextArea component */
-		private static final int Y_TEXTBOX = 35;
-
-		/** The height of the text area */
-		private static final int Y_TEXTHEIGHT = 40;
-		
-		/** The thread which is monitored by this ThreadLine object */
-		private ThreadPlus myThread;
-
-		/** The reader to read from the thread's pipe */
-		private Reader threadInput;
-
-		/** The text area to print the thread's output */
-		private JTextArea threadMessages;
-
-		/** The scrollpane to contain the text area */
-		private JScrollPane textBox;
-				
-		/** Holds the times where the thread changed from active to sleeping or vice-versa */
-		private Vector stateChangeTimes;
-
-		/** The time when the thread has ended (died) */
-		private int endTime;
-
-		/** Whether the thread was awake when this ThreadLine object received it */
-		private boolean initialAwake;
-
-		/** Whether the thread was awake on the last timer event */
-		private boolean lastAwake;
-
-		/** Whether the thread has already started */
-		private boolean hasStarted;
-
-		/** Whether the thread has already died */
-		private boolean hasEnded;
-
-		/** Constructs a ThreadLine component with no thread. This constructor is for compatibility only, and serves no
-		  * real purpose, because there is no use for a ThreadLine component which doesn't monitor a thread.
-		  */
-		public ThreadLine()
-		{
-			super();
-			setPreferredSize(new Dimension(X_END+10,Y_TEXTBOX+Y_TEXTHEIGHT+5));
-			setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
-
-			myThread = null;
-		}
-
-		/** Constructs a ThreadLine component and sets it to monitor the given thread. A piped input stream is
-		  * constructed and connected to the piped output stream of the thread. Also, the text area and the scrollpane
-		  * are initialized.
-		  * @param thr the thread to monitor.
-		  */
-		public ThreadLine (ThreadPlus thr)
-		{
-			super();
-			setPreferredSize(new Dimension(X_END+10,Y_TEXTBOX+Y_TEXTHEIGHT+5));
-			setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
-
-			myThread = thr;
-
-			hasStarted = false;
-			hasEnded = false;
-			endTime = -1;						// Thread has not ended - has no endTime
-			stateChangeTimes = new Vector();	// Vector to hold the thread's state change times.
-
-			try		// Create an input readed and connect it to the thread's pipe
-			{
-				threadInput = new InputStreamReader(new PipedInputStream(myThread.getOutputStream()));
-			}
-			catch (IOException e) {e.printStackTrace();threadInput=null;}	// If failed, set the input stream to null
-
-			threadMessages = new JTextArea();		// New text area
-			threadMessages.setEditable(false);		// Text area is for output only, not for input
-
-			textBox = new JScrollPane(threadMessages);
-			textBox.setPreferredSize(new Dimension(X_END-X_BEGIN,Y_TEXTHEIGHT));
-			add(textBox);						// Add the scrollpane as a child of this component
-		}
-
-		/** Notifies the ThreadLine object that a single timer event has occured. This method will check the state of
-		  * the thread and compare it with the state of the thread during the last call to tick(). If a thread has changed
-		  * from active to sleeping or vice-versa, the time of this event will be added to the vector of state changes.
-		  */
-		public void tick()
-		{
-			if (myThread==null)		// If no thread - do nothing
-				return;
-
-			if (!hasStarted)		// If thread hasn't started during the last call
-			{
-				if (myThread.isAlive())		// Check if it's alive
-				{
-					hasStarted = true;
-					stateChangeTimes.add(new Integer(timerPos));	// Add thread start event to the state changes
-					initialAwake = lastAwake = myThread.isAwake();	// See if the thread is currently awake
-				}
-			}
-			else if (!hasEnded)				// If thread has started but hasn't ended during the last call
-			{
-				if (!myThread.isAlive())	// If the thread has died (ended)
-				{
-					hasEnded = true;
-					endTime = timerPos;		// Set the end time to the current timing position
-				}
-				else						// If the thread is alive
-				{
-					boolean nowAwake = myThread.isAwake();	// See if it's awake
-
-					if (nowAwake!=lastAwake)				// If state was changed between the last call and now
-					{
-						stateChangeTimes.add(new Integer(timerPos));	// Add to the state changes vector
-						lastAwake = nowAwake;							// Update awake status
-					}
-				}
-			}
-		}
-
-		/** Reset this ThreadLine object. The reset method clears the vector of state change times and initializes the
-		  * hasStarted and hasEnded fields to false.
-		  */
-		public void reset()
-		{
-			stateChangeTimes.clear();
-			hasStarted = hasEnded = false;
-		}
-
-		/** Internal method to change the drawing color for the thread's lifeline. If the old color was threadlineColor,
-		  * threadsleepColor is returned. Otherwise, threadlineColor is returned.
-		  * @param c the old color
-		  * @return the new color
-		  * @see GraphicalThreadManager#threadlineColor
-		  * @see GraphicalThreadManager#threadsleepColor
-		  */
-		private Color changeColor (Color c)
-		{
-			if (c==threadlineColor)
-				return threadsleepColor;
-			return threadlineColor;
-		}
-
-		/** Internal method to retrieve the integer value of a given element at the state change times vector.
-		  * @param i the index of the element (if index is out of bounds, -1 is returned)
-		  * @return the integer value of the element at index i in the vector
-		  */
-		private int stateTime (int i)
-		{
-			if (i>=stateChangeTimes.size())
-				return -1;
-			return ((Integer)stateChangeTimes.elementAt(i)).intValue();
-		}
-
-		/** Paints the ThreadLine component. The painting involves several steps: first the component area is cleared.
-		  * Then the thread's name is painted using the base color. Next, the thread's lifeline is painted. The lifeline
-		  * starts at the timer position corresponding to the first event in the state changes vector (indicating the
-		  * start of this thread). The initial color of the line depends on the value of the initialAwake flag, and it
-		  * changes color at each position in the state changes vector. The line is painted until endTime if the thread
-		  * has ended, or until the internal timer position of the GTM, if the thread has not yet ended. Finally, the
-		  * method attempts to read from the thread's pipe. If there is input, it will be printed into the text area,
-		  * with the current time stamp.
-		  * @see #initialAwake
-		  * @see #endTime
-		  * @see #stateChangeTimes
-		  */
-		public void paintComponent(Graphics g)
-		{
-			int i,xLast;
-			
-			super.paintComponent(g);
-
-			g.clearRect(0,0,getWidth(),getHeight());	// Clear component area
-
-			if (myThread==null)			// If no thread - do nothing
-				return;
-
-			g.setColor(BASE_COLOR);
-			g.drawString(myThread.getName(),X_BEGIN,Y_THREADNAME);	// Draw the thread's name
-
-			if (!hasStarted)		// If thread hasn't started - nothing to draw
-				return;
-	
-			if (hasEnded)			// If thread has ended
-				xLast = endTime;	// set the ending point to it's end time
-			else					// else
-				xLast = timerPos;	// set the ending point to the current timer position
-
-			if (initialAwake)					// Set the initial color of the thread's lifeline
-				g.setColor(threadlineColor);
-			else
-				g.setColor(threadsleepColor);
-
-			for (i=0;i<stateChangeTimes.size()-1;++i)	// Draw all parts of the thread's lifeline
-			{
-				g.fillRect(X_BEGIN+stateTime(i),Y_THREADLINE,stateTime(i+1)-stateTime(i),2);
-				g.setColor(changeColor(g.getColor()));	// Change color whenever the thread has changed states
-			}
-
-			g.fillRect(X_BEGIN+stateTime(i),Y_THREADLINE,xLast-stateTime(i),2);	// Draw the last part of the lifeline
-
-			if (threadInput==null)		// If the input stream has not been initalized, stop here
-				return;
-
-			try
-			{
-				StringBuffer s = new StringBuffer();
-
-				while (threadInput.ready())
-					s.append((char)(threadInput.read()));	// Read from the pipe, as long as there is something to read
-				
-				if (s.length()>0)		// If something was read, print it
-					threadMessages.append((System.currentTimeMillis()-initTimeMillis) + " ms: " + s);
-			}
-			catch (IOException e) {e.printStackTrace();}
-		}
-
-		/** Clears the text box containing the output sent by the ThreadPlus object of this ThreadLine.
-		  * This method is called whenever the GraphicalThreadManager undergoes a "hard reset".
-		  * @see GraphicalThreadManager#resetHard()
-		  */
-		public void clearText()
-		{
-			threadMessages.setText("");
-		}
-
-		/** Validates this ThreadLine component, by ensuring that the textbox is properly position and sized.
-		  */
-		public void validate()
-		{
-			super.validate();
-			textBox.setBounds(X_BEGIN,Y_TEXTBOX,textBox.getPreferredSize().width,textBox.getPreferredSize().height);
-		}
-	}
-
-	/** This inner class represents the legend panel of the GraphicalThreadManager. The legend panel shows which colors
-	  * are used for the timeline, the active thread line and the sleeping thread line at any given moment, and also
-	  * counts the time elapsed since the GTM was started or since resetInitTime() was last invoked.
-	  * @see #setColors(Color,Color,Color)
-	  * @see #resetInitTime()
-	  */
-	private class LegendPanel extends JPanel
-	{
-		/** The width of this component */
-		private static final int X_LEGENDWIDTH = 200;
-
-		/** The height of this component */
-		private static final int Y_LEGENDHEIGHT = 100;
-		
-		/** The X coordinate of the text starting point */
-		private static final int X_TEXTOFFSET = 10;
-
-		/** The X coordinate of the line starting point */
-		private static final int X_LINEOFFSET = 150;
-
-		/** The length of the line */
-		private static final int X_LINELENGTH = 30;
-
-		/** The Y coordinate of the timeline */
-		private static final int Y_TLINE = 20;
-
-		/** The Y coordinate of the active thread line */
-		private static final int Y_TACTIVE = 40;
-
-		/** The Y coordinate of the sleeping thread line */
-		private static final int Y_TSLEEP = 60;
-
-		/** The Y coordinate of the "time elapsed" line */
-		private static final int Y_TTIME = 85;
-
-		/** Constructs a legend panel, sets its preferred size and border. */
-		public LegendPanel()
-		{
-			super();
-			setPreferredSize(new Dimension(X_LEGENDWIDTH,Y_LEGENDHEIGHT));
-			setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
-		}
-
-		/** Paints the legend panel component. The legend panel includes explanations of the different colors used in
-		  * the GTM and their meanings. There are 3 colors which the user can change: the color of the timeline, the
-		  * color of the active thread and the color of the sleeping thread. The legend panel also shows the elapsed time
-		  * (the difference between the current system time and the initTimeMillis field of the GraphicalThreadManager.
-		  */
-		public void paintComponent (Graphics g)
-		{
-			super.paintComponent(g);
-			
-			g.clearRect(0,0,getWidth(),getHeight());
-
-			Color oldC = g.getColor();					// Save current color of the graphical context
-
-			long thisTime = (initTimeMillis==0) ? 0 : (System.currentTimeMillis()-initTimeMillis);
-
-			g.setColor(BASE_COLOR);
-			g.drawString("General Timeline:",X_TEXTOFFSET,Y_TLINE);
-			g.drawString("Active Thread:",X_TEXTOFFSET,Y_TACTIVE);
-			g.drawString("Sleeping Thread:",X_TEXTOFFSET,Y_TSLEEP);
-			g.setColor(timelineColor);
-			g.fillRect(X_LINEOFFSET,Y_TLINE-5,X_LINELENGTH,2);			// Draw timeline example
-			g.setColor(threadlineColor);
-			g.fillRect(X_LINEOFFSET,Y_TACTIVE-5,X_LINELENGTH,2);		// Draw active thread example
-			g.setColor(threadsleepColor);
-			g.fillRect(X_LINEOFFSET,Y_TSLEEP-5,X_LINELENGTH,2);			// Draw sleeping thread example
-			g.setColor(BASE_COLOR);
-			g.drawString(("Elapsed time:        " + thisTime + " ms")
-						,X_TEXTOFFSET,Y_TTIME);							// Draw time elapsed
-			
-			g.setColor(oldC);							// Restore previous color of the graphical context
-		}
-	}
-
-	/** Creates a GTM with default drawing colors and default pixelsPerTick value (1). */
-	public GraphicalThreadManager ()
-	{
-		super();
-		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
-		setColors(DEFAULT_TIMELINE_COLOR,DEFAULT_THREADLINE_COLOR,DEFAULT_THREADSLEEP_COLOR);
-		setPixelsPerTick(1);
-
-		initialize();
-	}
-
-	/** Creates a GTM with default drawing colors and a given pixelsPerTickValue.
-	  * @param pixels 1-10 the number of pixels to add to the timelines on each timer event.
-	  */
-	public GraphicalThreadManager (int pixels)
-	{
-		super();
-		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
-		setColors(DEFAULT_TIMELINE_COLOR,DEFAULT_THREADLINE_COLOR,DEFAULT_THREADSLEEP_COLOR);
-		setPixelsPerTick(pixels);
-
-		initialize();
-	}
-	
-	/** Creates a GTM with given drawing colors and default pixelsPerTick value (1).
-	  * @param timeCol the color of the time line.
-	  * @param threadCol the color of the active thread line.
-	  * @param sleepCol the color of the sleeping thread line.
-	  */
-	public GraphicalThreadManager (Color timeCol, Color threadCol, Color sleepCol)
-	{
-		super();
-		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
-		setColors(timeCol,threadCol,sleepCol);
-		setPixelsPerTick(1);
-
-		initialize();
-	}
-
-	/** Creates a GTM with given drawing colors and given pixelsPerTick value.
-	  * @param timeCol the color of the time line.
-	  * @param threadCol the color of the active thread line.
-	  * @param sleepCol the color of the sleeping thread line.
-	  * @param pixels 1-10 the number of pixels to add to the timelines on each timer event.
-	  */
-	public GraphicalThreadManager (Color timeCol, Color threadCol, Color sleepCol, int pixels)
-	{
-		super();
-		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
-		setColors(timeCol,threadCol,sleepCol);
-		setPixelsPerTick(pixels);
-
-		initialize();
-	}
-
-	/** Creates a GTM with default colors and default pixelsPerTick value (1) and adds a thread to it.
-	  * @param initThread the thread which will be automatically added.
-	  */
-	public GraphicalThreadManager (ThreadPlus initThread)
-	{
-		super();
-		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
-		setColors(DEFAULT_TIMELINE_COLOR,DEFAULT_THREADLINE_COLOR,DEFAULT_THREADSLEEP_COLOR);
-		setPixelsPerTick(1);
-
-		initialize();
-		addThread(initThread);
-	}
-
-	/** Creates a GTM with given drawing colors and default pixelsPerTick value (1) and adds a thread to it.
-	  * @param timeCol the color of the time line.
-	  * @param threadCol the color of the active thread line.
-	  * @param sleepCol the color of the sleeping thread line.
-	  * @param initThread the thread which will be automatically added.	  
-	  */
-	public GraphicalThreadManager (Color timeCol, Color threadCol, Color sleepCol, ThreadPlus initThread)
-	{
-		super();
-		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
-		setColors(timeCol,threadCol,sleepCol);
-		setPixelsPerTick(1);
-
-		initialize();
-		addThread(initThread);
-	}
-
-	/** Creates a GTM with given drawing colors and given pixelsPerTick value and adds a thread to it.
-	  * @param timeCol the color of the time line.
-	  * @param threadCol the color of the active thread line.
-	  * @param sleepCol the color of the sleeping thread line.
-	  * @param pixels 1-10 the number of pixels to add to the timelines on each timer event.
-	  * @param initThread the thread which will be automatically added.
-	  */
-	public GraphicalThreadManager (Color timeCol, Color threadCol, Color sleepCol, int pixels, ThreadPlus initThread)
-	{
-		super();
-		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
-		setColors(timeCol,threadCol,sleepCol);
-		setPixelsPerTick(pixels);
-
-		initialize();
-		addThread(initThread);
-	}
-
-	/** Set the value of the pixelsPerTick field. This value must be between 1 and 10 and determines how many pixels
-	  * will be added to the time lines on each Timer event.
-	  * @param pixels 1-10 the number of pixels to add to the timelines on each timer event. Values greater than 10 will
-	  * be set to 10, while values less than 1 will be set to 1.
-	  * @see #getPixelsPerTick()
-	  */
-	public void setPixelsPerTick (int pixels)
-	{
-		if (pixels<=MIN_PPTICK)
-			pixelsPerTick=MIN_PPTICK;
-		else if (pixels>=MAX_PPTICK)
-			pixelsPerTick=MAX_PPTICK;
-		else
-			pixelsPerTick=pixels;
-	}
-
-	/** Return the current value of the pixelsPerTick field.
-	  * @see #setPixelsPerTick(int)
-	  */
-	public int getPixelsPerTick()
-	{
-		return pixelsPerTick;
-	}
-
-	/** Set the automatic reset flag. If automatic reset is on, the internal timer position (timerPos field) will be
-	  * reset when it reaches the maximum, causing the time lines to be drawn from scratch. If automatic reset is off,
-	  * the timer events will stop when the internal timer reaches the maximum.
-	  * @see #getAutoReset()
-	  */
-	public void setAutoReset (boolean auto)
-	{
-		autoReset = auto;
-	}
-
-	/** Return the current value of the autoReset field.
-	  * @see #setAutoReset(boolean)
-	  */
-	public boolean getAutoReset()
-	{
-		return autoReset;
-	}
-
-	/** Set the drawing colors for the time line, the active thread line and the sleeping thread line.
-	  * @param timeCol the color of the time line.
-	  * @param threadCol the color of the active thread line.
-	  * @param sleepCol the color of the sleeping thread line.
-	  * @see #getTimelineColor()
-	  * @see #getThreadlineColor()
-	  * @see #getThreadsleepColor()
-	  */
-	public void setColors (Color timeCol, Color threadCol, Color sleepCol)
-	{
-		timelineColor = timeCol;
-		threadlineColor = threadCol;
-		threadsleepColor = sleepCol;
-	}
-
-	/** Return the current time line color.
-	  * @see #setColors(Color,Color,Color)
-	  */
-	public Color getTimelineColor()
-	{
-		return timelineColor;
-	}
-
-	/** Return the current active thread line color.
-	  * @see #setColors(Color,Color,Color)
-	  */
-	public Color getThreadlineColor()
-	{
-		return threadlineColor;
-	}
-
-	/** Return the current sleeping thread line color.
-	  * @see #setColors(Color,Color,Color)
-	  */
-	public Color getThreadsleepColor()
-	{
-		return threadsleepColor;
-	}
-
-	/** Return the number of threads currently monitored by this GTM instance.
-	  */
-	public int getNumOfThreads()
-	{
-		return numThreads;
-	}
-
-	/** Return the number of objects currently monitored by this GTM instance.
-	  */
-	public int getNumOfObjects()
-	{
-		return numObjects;
-	}
-		
-	/** Adds a thread (instance of ThreadPlus) to the threads monitored by this GTM instance.
-	  * Each new thread will receive its own instance of ThreadLine which will track its lifeline and display any messages
-	  * sent to the thread's dedicated pipe output.
-	  * @param newThread the thread to add.
-	  * @throws AddLimitReachedException when the GTM already monitors the maximum possible number of threads.
-	  */
-	public void addThread (ThreadPlus newThread) throws AddLimitReachedException
-	{
-		if (numThreads==MAX_THREADS)
-			throw new AddLimitReachedException("Cannot add thread " + newThread.getName());
-
-		myThreads[numThreads] = new ThreadLine(newThread);	// Add a ThreadLine component for this thread
-		getContentPane().add(myThreads[numThreads]);		// Add the ThreadLine to the frame
-		++numThreads;
-
-		validate();					// Revalidate window
-	}
-
-	/** Removes a thread from the GTM, given its index.
-	  * @param index the index of the thread to remove.
-	  * @throws IndexOutOfBoundsException when the index indicates a thread that doesn't exist.
-	  */
-	public void removeThread (int index) throws IndexOutOfBoundsException
-	{
-		if (index>=numThreads)
-			throw new IndexOutOfBoundsException("Cannot remove - index " + index + " out of bounds");
-
-		--numThreads;
-		
-		getContentPane().remove(myThreads[index]);	// Remove the ThreadLine from the frame
-
-		try
-		{
-			myThreads[index].threadInput.close();	// Close the input stream associated with this thread's output
-		}
-		catch (IOException e) {e.printStackTrace();}
-
-		int i;
-		for (i=index;i<numThreads;++i)				// Move the other threads in the array
-			myThreads[i] = myThreads[i+1];
-		myThreads[i] = null;
-		
-		repaint();							// Repaint the window
-		validate();
-	}
-
-	/** Removes a thread from the GTM, given a reference to it.
-	  * @param thr the thread to remove.
-	  * @throws NoSuchElementException when the thread referenced by the parameter thr is not found in the GTM.
-	  */
-	public void removeThread (ThreadPlus thr) throws NoSuchElementException
-	{
-		int i;
-
-		for (i=0;i<numThreads;++i)
-			if (myThreads[i].myThread==thr)		// If thread found in the GTM
-			{
-				removeThread(i);				// Remove it by index
-				return;
-			}
-
-		throw new NoSuchElementException("Cannot remove - no such thread in manager: " + thr.toString());
-	}
-
-	/** Removes all threads from the GTM.
-	  */
-	public void removeAllThreads()
-	{
-		while (numThreads>0)
-			removeThread(0);
-	}
-
-	/** Adds an object (instance of Object) to the objects monitored by this GTM instance.
-	  * Each new object will receive its own instance of ObjectViewTable which will display its fields and their values
-	  * at any given time. This method actually calls to addObject(newObj,false).
-	  * @param newObj the object to add.
-	  */
-	public void addObject (Object newObj)
-	{
-		addObject(newObj,false);
-	}
-
-	/** Adds an object (instance of Object) to the objects monitored by this GTM instance.
-	  * Each new object will receive its own instance of ObjectViewTable which will display its fields and their values
-	  * at any given time.
-	  * @param newObj the object to add.
-	  * @param ancestors indicates whether the inherited fields of this object should also be displayed.
-	  * @throws AddLimitReachedException when the GTM already monitors the maximum possible number of objects.
-	  */
-	public void addObject (Object newObj, boolean ancestors) throws AddLimitReachedException
-	{
-		if (numObjects==MAX_OBJECTS)
-			throw new AddLimitReachedException("Cannot add object " + newObj.toString());
-
-		myObjects[numObjects] = new ObjectViewTable(newObj,new Dimension(X_OBJEND-X_OBJBEGIN,Y_OBJHEIGHT),ancestors);
-		getContentPane().add(myObjects[numObjects]);		// Create new ObjectViewTable and add it to the frame
-		++numObjects;
-
-		validate();					// Revalidate frame
-	}
-
-	/** Removes an object from the GTM, given its index.
-	  * @param index the index of the object to remove.
-	  * @throws IndexOutOfBoundsException when the index indicates an object that doesn't exist.
-	  */
-	public void removeObject (int index) throws IndexOutOfBoundsException
-	{
-		if (index>=numObjects)
-			throw new IndexOutOfBoundsException("Cannot remove - index " + index + " out of bounds");
-
-		--numObjects;
-		
-		getContentPane().remove(myObjects[index]);		// Remove the ObjectViewTable from the frame
-
-		int i;
-		for (i=index;i<numObjects;++i)
-			myObjects[i] = myObjects[i+1];		// Move the other objects
-		myObjects[i] = null;
-		
-		repaint();					// Repaint the window
-		validate();
-	}
-
-	/** Removes an object from the GTM, given a reference to it.
-	  * @param obj the object to remove.
-	  * @throws NoSuchElementException when the object referenced by the parameter obj is not found in the GTM.
-	  */
-	public void removeObject (Object obj) throws NoSuchElementException
-	{
-		int i;
-
-		for (i=0;i<numObjects;++i)
-			if (myObjects[i].myObject==obj)			// If object found in the GTM
-			{
-				removeObject(i);					// Remove it
-				return;
-			}
-
-		throw new NoSuchElementException("Cannot remove - no such object in manager: " + obj.toString());
-	}
-
-	/** Removes all objects from the GTM.
-	  */
-	public void removeAllObjects()
-	{
-		while (numObjects>0)
-			removeObject(0);
-	}
-
-	/** Starts this GraphicalThreadManager. This function invokes mainTimer.start() to cause the Swing Timer to start
-	  * generating events. If the initTimeMillis field has not been initialized yet, it is initialized with the current
-	  * system time.
-	  */
-	public void start()
-	{
-		if (initTimeMillis==0)
-			initTimeMillis = System.currentTimeMillis();	// Initialize initTime if needed
-		mainTimer.start();									// Start timer
-	}
-
-	/** Stops this GraphicalThreadManager. This function invokes mainTimer.stop() to cause the Swing Timer to stop
-	  * generating events.
-	  */
-	public void stop()
-	{
-		mainTimer.stop();
-	}
-
-	/** Resets this GraphicalThreadManager. First stop() is called to stop the timer. Then the internal timer position
-	  * is reset to 0. Finally, all the ThreadLine components are reset, causing all timelines to be reset.
-	  * @see #stop()
-	  * @see #resetHard()
-	  */
-	public void reset()
-	{
-		stop();						// Stop timer
-		timerPos = 0;				// Reset internal timeline position
-
-		for (int i=0;i<numThreads;++i)
-			myThreads[i].reset();		// Reset thread lines
-
-		repaint();
-	}
-
-	/** Performs a hard reset of this GraphicalThreadManager. Hard reset includes, resetting the timelines and also
-	  * resetting the message boxes of all the ThreadLine objects and the init time. The function sets the initTimeMillis
-	  * field to 0, so that it will be re-initialized on the next call to start(). Then it calls reset(), then
-	  * ThreadLine.clearText() for all ThreadLine objects.
-	  * @see #reset()
-	  * @see GraphicalThreadManager.ThreadLine#clearText()
-	  * @see #initTimeMillis
-	  */
-	public void resetHard()
-	{
-		initTimeMillis = 0;
-		reset();
-
-		for (int i=0;i<numThreads;++i)
-			myThreads[i].clearText();		// Clear text of threads
-	}
-
-	/** Restarts this GraphicalThreadManager. This function basically invokes reset(), then start().
-	  * @see #reset()
-	  * @see #start()
-	  */
-	public void restart()
-	{
-		reset();
-		start();
-	}
-
-	/** Performs a hard restart of this GraphicalThreadManager. The function basically invokes resetHard(), then start().
-	  * @see #resetHard()
-	  * @see #start()
-	  */
-	public void restartHard()
-	{
-		resetHard();
-		start();
-	}
-
-	/** Resets the initialization time of this GraphicalThreadManager. This function sets initTimeMillis to the current
-	  * system time.
-	  */
-	public void resetInitTime()
-	{
-		initTimeMillis = System.currentTimeMillis();
-	}
-
-	/** Invoked whenever an action event is sent to the GTM. Normally only the Swing Timer sends those events, and any
-	  * events which are not from the timer will be ignored. Whenever an event from the timer is received, the GTM
-	  * updates all of its components - the main timeline and all the thread lines advance by one or more pixels, and the
-	  * tables displaying the objects fields are updated. All the components are repainted and the window title is
-	  * updated as well.
-	  */
-	public void actionPerformed(ActionEvent e)
-	{
-		if (e.getSource()==mainTimer)						// Make sure that it's a timer event
-		{
-			if ((timerPos+=pixelsPerTick)>(X_END-X_BEGIN))	// Advance internal timer position by pixelsPerTick
-			{
-				if (autoReset)	// If the maximum is reached and auto-reset it on, restart the timer
-					restart();
-				else			// Else stop the timer
-					stop();
-			}
-			generalTimeLine.repaint();			// Repaint timeline
-			
-			for (int i=0;i<numThreads;++i)
-			{
-				myThreads[i].tick();			// Advance all thread lines
-				myThreads[i].repaint();			// Repaint thread lines
-			}
-
-			for (int i=0;i<numObjects;++i)
-			{
-				myObjects[i].repaint();			// Repaint object tables
-			}
-
-			legend.repaint();					// Repaint legend component
-		}
-
-		setGTMTitle();			// Set title to display the current number of threads and objects
-	}
-
-	/** Validates this frame to ensure that all components are drawn at the proper places with the proper sizes.
-	  * This method will invoke the validate() methods of the GTM's subcomponents to ensure that they are repainted
-	  * internally as should.
-	  */
-	public void validate()
-	{
-		super.validate();															// Validate JFrame
-		
-		generalTimeLine.setBounds(X_ORIGIN,Y_ORIGIN,							// Set bounds for the timeline
-									generalTimeLine.getPreferredSize().width,
-									generalTimeLine.getPreferredSize().height);
-
-		int i,y;
-
-		y = Y_ORIGIN + generalTimeLine.getPreferredSize().height + Y_SPACE;
-
-		for (i=0;i<numThreads;++i)												// Set bounds for all the thread lines
-		{
-			myThreads[i].setBounds(X_ORIGIN,y,
-									myThreads[i].getPreferredSize().width,
-									myThreads[i].getPreferredSize().height);
-			y = y + myThreads[i].getPreferredSize().height + Y_SPACE;
-
-			myThreads[i].validate();		// Validate all thread lines
-		}
-
-		y = Y_ORIGIN;
-
-		for (i=0;i<numObjects;++i)												// Set bounds for all the object tables
-		{
-			myObjects[i].setBounds(X_OBJBEGIN,y,
-									myObjects[i].getPreferredSize().width,
-									myObjects[i].getPreferredSize().height);
-			y = y + Y_OBJHEIGHT+1;
-
-			myObjects[i].validate();		// Validate all object tables
-		}
-
-		legend.setBounds(X_ORIGIN,Y_LEGEND,legend.getPreferredSize().width,legend.getPreferredSize().height);
-	}
-
-	/** Returns a string representation of this GraphicalThreadManager. The string representation includes the number of
-	  * threads and objects currently monitored.
-	  */
-	public String toString()
-	{
-		return ("Graphical Thread Manager -  Threads: " + numThreads + " , Objects: " + numObjects);
-	}
-
-	/** Called internally by the constructors to initialize the GTM frame. Initialization includes creating the general
-	  * timeline and the legend components and the Swing Timer.
-	  */
-	protected void initialize()
-	{
-		autoReset = true;				// By default auto-reset is enabled
-		initTimeMillis = 0;				// '0' means 'not initialized' - will be initialized by the start() method
-
-		setGTMTitle();										// Set title
-		setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);		// Set default close operation
-
-		generalTimeLine = new TimeLine();					// Create the main timeline
-		getContentPane().add(generalTimeLine);
-
-		myThreads = new ThreadLine[MAX_THREADS];			// Allocate array for threads
-		numThreads = 0;
-
-		myObjects = new ObjectViewTable[MAX_OBJECTS];		// Allocate array for objects
-		numObjects = 0;
-
-		legend = new LegendPanel();							// Create the legend component
-		getContentPane().add(legend);
-
-		mainTimer = new javax.swing.Timer(50,this);			// Timer which will send events to this GTM
-
-		setVisible(true);
-		validate();				// Validate frame to ensure proper position of components
-	}
-
-	/** Sets the title of the GTM frame. The title includes the number of threads and objects currently monitored, and
-	  * therefore can change over time. This method is invoked by the initialize() and by actionPerformed() methods
-	  * of this class.
-	  */
-	protected void setGTMTitle()
-	{
-		setTitle ("Graphical Thread Manager [ Threads: " + numThreads + " ; Objects: " + numObjects + " ]");
-	}
-}
+package telhai.java.gthreads;
+
+import java.util.*;				// For vectors and exceptions
+import java.util.concurrent.*;	// For the queue of pending changes
+import java.util.concurrent.atomic.*;	// For the counters of threads and objects
+import java.awt.*;				// For graphical functions
+import java.awt.event.*;		// For event handler
+import java.awt.image.*;		// For the image of the lifelines
+import javax.swing.*;			// For Swing GUI
+import javax.swing.border.*;	// For Swing border functions
+import javax.swing.event.*;		// For the selection of messages
+import java.io.*;				// For the recording file
+
+/** This class provides a dynamic interface for monitoring threads and objects. The actual sampling of the threads is
+  * done by a ThreadRecorder, which runs its own sampler thread every 50ms and records the lifelines of the threads,
+  * independently of the display. Once started, the GraphicalThreadManager (GTM) utilizes a Swing timer to create timed
+  * events, on which it renders the recorded lifelines. A busy event dispatch thread or a slow repaint may delay the
+  * display, but doesn't affect the accuracy of the recording.
+  *
+  * The GTM contains a single subcomponent of class TimeLine, which shows the time as a horizontal advancing line. The
+  * time axis is measured in real time: it can be zoomed (using the mouse wheel) from one nanosecond up to 100 seconds
+  * per pixel, and panned (by dragging it, or using the scroll bar underneath it) over the whole recorded history. By
+  * default the view follows the recording, scrolling forward once the recording reaches the right edge.
+  *
+  * For each thread which is added to the GTM, a ThreadLine object is created, which shows the thread lifeline versus the
+  * time in a row of the LaneView component. Like the time line, the thread line also advances on each tick, but only
+  * if the thread is alive. Different colors are used to distinguish whether the thread is awake or sleeping. ThreadPlus
+  * objects report exactly when they sleep and wake up; any other thread is sampled, and is considered sleeping when the
+  * JVM reports it as waiting with a timeout on no lock. An awake thread is further distinguished by the state reported
+  * by the JVM: running, blocked on a monitor, waiting or waiting with a timeout, each with its own color. Threads can be
+  * added explicitly, or discovered automatically, in which case a ThreadLine is added whenever a matching thread is
+  * created, and removed once it dies.
+  *
+  * Each ThreadLine object also keeps the messages sent by the thread, which are shown in the message area underneath
+  * the thread lines when the thread is selected (by clicking its row). If the thread is a ThreadPlus object, it has a
+  * message channel, into which its print() and println() methods send messages without ever blocking the thread. A
+  * MessageDrain receives the messages from all the channels on its own thread, merges them in the order in which they
+  * were sent and formats them, and the GTM only appends the finished lines on the event dispatch thread. Each message
+  * is marked on the lifeline of its thread, at the time when it was sent, and the messages of all the threads are shown
+  * together while no thread is selected. Only the latest messages are kept in memory, in a log of fixed size for each
+  * thread (and one for all the threads), and the message list renders only the lines which are visible; to keep all
+  * the messages, a recording file can be set, into which they are written as they arrive. Note that any output
+  * generated by the thread which was not sent to its channel will not be displayed in the message area.
+  *
+  * The messages are also indexed as they arrive, by the MessageDrain, so they can be searched: typing words in the
+  * field above the message area shows the latest messages of the selected thread (or of all the threads) which contain
+  * all of them, and selecting a message in the list pans the timelines to the time when it was sent.
+  *
+  * For each object added to the GTM, an ObjectViewTable is created. This table monitors all the fields of this object.
+  * The recorder takes a snapshot of the fields on each sample, and on each tick, the tables which are visible compare
+  * it with the snapshot they show, and repaint only the cells which have changed (highlighting them for a moment). An
+  * object whose fields don't change doesn't cause any repaint. The tables also keep the history of the numeric fields,
+  * shown as sparklines; clicking the timeline sets a cursor at the clicked time, and the tables then show the values
+  * which the numeric fields had at that time, so they can be correlated with the activity of the threads.
+  *
+  * It is possible to add and remove thread and objects at run-time. The thread lines and the object tables are placed
+  * in scroll panes, and only the parts which are visible are painted on each timer tick, so the GTM can monitor
+  * thousands of threads. There is still a limit to the number of threads and objects which can be monitored at once,
+  * to limit the memory used by the recording.
+  *
+  * The lifelines of the visible rows are drawn into an image, which is kept from tick to tick. On each tick, only the
+  * columns which the recording has advanced into since the previous tick are drawn (the image is first shifted by whole
+  * pixels if the view follows the recording), and only those columns are repainted if the view is still. The cost of a
+  * tick therefore doesn't depend on the length of the recording, nor on the number of state changes within the view.
+  * The whole image is drawn again only when the view is zoomed, panned by the user or scrolled to other rows.
+  *
+  * Threads and objects can be added and removed from any thread, without locking. Adding returns a MonitorHandle,
+  * which removes the thread or object in constant time. The changes are queued, and applied to the display in batches
+  * on the event dispatch thread, so that registering thousands of short-lived threads doesn't stall the display.
+  *
+  * Once the recorder sees a thread end, its lifeline is archived: it stays on display, but no longer counts as a
+  * monitored thread, and only the latest archived lifelines are kept. The GTM never keeps the monitored threads and
+  * objects alive: the recorder holds them through weak references, and removes their tracks once they have been
+  * garbage-collected, from its own sampler thread. The table of a collected object is then removed with the next batch
+  * of changes, so monitoring a long-running application doesn't make it leak memory.
+  *
+  * @see GraphicalThreadManager.TimeLine
+  * @see GraphicalThreadManager.ThreadLine
+  * @see GraphicalThreadManager.LaneView
+  * @see MessageDrain
+  * @see MessageIndex
+  * @see MessageLog
+  * @see MonitorHandle
+  * @see ObjectViewTable
+  * @see ThreadPlus
+  * @see ThreadRecorder
+  * 
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class GraphicalThreadManager extends JFrame implements ActionListener
+{
+	/** Maximum number of threads which can be monitored at the same time */
+	public static final int MAX_THREADS = 10000;
+
+	/** Maximum number of lifelines of ended threads which are kept on display */
+	public static final int MAX_ARCHIVED = 100;
+
+	/** Maximum number of objects which can be monitored at the same time */
+	public static final int MAX_OBJECTS = 100;
+
+	/** The number of the latest messages of all the threads which are kept in memory */
+	public static final int MAX_MESSAGES = 10000;
+
+	/** The maximum number of messages which a search shows */
+	public static final int MAX_HITS = 1000;
+
+	/** Minimum number of pixels per Timer event (the speed at which the timeline advances) */
+	public static final int MIN_PPTICK = 1;
+
+	/** Maximum number of pixels per Timer event (the speed at which the timeline advances) */
+	public static final int MAX_PPTICK = 10;
+
+	/** Minimum scale of the time axis, in nanoseconds per pixel */
+	public static final long MIN_SCALE = 1L;
+
+	/** Maximum scale of the time axis, in nanoseconds per pixel (100 seconds per pixel) */
+	public static final long MAX_SCALE = 100L*TimeScale.SECONDS;
+
+	/** The base color for the text and timeline axis */
+	public static final Color BASE_COLOR = Color.BLACK;
+
+	/** The color for the components' borders */
+	public static final Color BORDER_COLOR = Color.BLACK;
+
+	/** The background color of the selected thread line */
+	public static final Color SELECTED_COLOR = new Color(225,230,255);
+
+	/** The color of the separator between two thread lines */
+	public static final Color SEPARATOR_COLOR = Color.LIGHT_GRAY;
+
+	/** The color of the cursor, which marks the time whose values are shown in the object tables */
+	public static final Color CURSOR_COLOR = Color.RED;
+
+	/** The color of the marks of the messages on the thread lines */
+	public static final Color MESSAGE_COLOR = Color.ORANGE.darker();
+
+	/** The color of the marks of the field writes below the thread lines */
+	public static final Color WRITE_COLOR = Color.GRAY;
+
+	/** Default color for the timeline */
+	public static final Color DEFAULT_TIMELINE_COLOR = Color.RED;
+
+	/** Default color for the active thread line */
+	public static final Color DEFAULT_THREADLINE_COLOR = Color.GREEN.darker();
+
+	/** Default color for the sleeping thread line */
+	public static final Color DEFAULT_THREADSLEEP_COLOR = Color.MAGENTA.darker();
+
+	/** Default color for the thread line of a thread which is blocked on a monitor */
+	public static final Color DEFAULT_THREADBLOCKED_COLOR = Color.RED.darker();
+
+	/** Default color for the thread line of a waiting thread */
+	public static final Color DEFAULT_THREADWAIT_COLOR = Color.BLUE;
+
+	/** Default color for the thread line of a thread which is waiting with a timeout */
+	public static final Color DEFAULT_THREADTIMEDWAIT_COLOR = Color.CYAN.darker();
+
+	/** Default width of the GTM window */
+	private static final int DEFAULT_X_SIZE = 1000;
+
+	/** Default height of the GTM window */
+	private static final int DEFAULT_Y_SIZE = 750;
+	
+	/** The left border of everything which is drawn in the window */
+	private static final int X_ORIGIN = 10;
+
+	/** The top border of everything which is drawn in the window */
+	private static final int Y_ORIGIN = 10;
+
+	/** The space between the scroll bar and the thread lines */
+	private static final int Y_SPACE = 20;
+
+	/** The height of the row of a single ThreadLine */
+	private static final int Y_LANEHEIGHT = 30;
+
+	/** The height of the message area underneath the thread lines */
+	private static final int Y_MESSAGEHEIGHT = 90;
+
+	/** The top border of the legend window */
+	private static final int Y_LEGEND = 600;
+
+	/** The X coordinate of the timeline starting point */
+	private static final int X_BEGIN = 10;
+
+	/** The X coordinate of the timeline ending point */
+	private static final int X_END = 510;
+	
+	/** The X coordinate of the ObjectViewTable left border */
+	private static final int X_OBJBEGIN = X_END+40;
+
+	/** The X coordinate of the ObjectViewTable right border */
+	private static final int X_OBJEND = DEFAULT_X_SIZE-10;
+
+	/** The height of the ObjectViewTable */
+	private static final int Y_OBJHEIGHT = (DEFAULT_Y_SIZE-50)/5;
+
+	/** The height of the scroll pane which holds the ObjectViewTable components (5 of them are visible at once) */
+	private static final int Y_OBJPANEHEIGHT = 5*(Y_OBJHEIGHT+1);
+
+	/** The height of the scroll bar underneath the timeline */
+	private static final int Y_SCROLLHEIGHT = 16;
+
+	/** The number of units of the scroll bar which span the whole recorded history */
+	private static final int SCROLL_RANGE = 100000;
+
+	/** The minimal distance in pixels between two grid lines of the time axis */
+	private static final int X_MINGRID = 50;
+	
+	/** Current timeline color. By default set to DEFAULT_TIMELINE_COLOR, but can be changed.
+	  * @see #setColors(Color,Color,Color)
+	  * @see #getTimelineColor()
+	  */
+	private Color timelineColor;
+
+	/** Current active thread color. By default set to DEFAULT_THREADLINE_COLOR, but can be changed.
+	  * @see #setColors(Color,Color,Color)
+	  * @see #getThreadlineColor()
+	  */
+	private Color threadlineColor;
+
+	/** Current timeline color. By default set to DEFAULT_THREADSLEEP_COLOR, but can be changed.
+	  * @see #setColors(Color,Color,Color)
+	  * @see #getThreadsleepColor()
+	  */
+	private Color threadsleepColor;
+
+	/** Current blocked thread color. By default set to DEFAULT_THREADBLOCKED_COLOR, but can be changed.
+	  * @see #setStateColors(Color,Color,Color)
+	  */
+	private Color threadblockedColor;
+
+	/** Current waiting thread color. By default set to DEFAULT_THREADWAIT_COLOR, but can be changed.
+	  * @see #setStateColors(Color,Color,Color)
+	  */
+	private Color threadwaitColor;
+
+	/** Current timed waiting thread color. By default set to DEFAULT_THREADTIMEDWAIT_COLOR, but can be changed.
+	  * @see #setStateColors(Color,Color,Color)
+	  */
+	private Color threadtimedwaitColor;
+
+	/** The recorder which samples the monitored threads. The recorder time determines the end point of the timeline
+	  * and threadline painting. The recorder keeps the whole history, which can be viewed by panning the time axis.
+	  * @see #setViewStart(long)
+	  */
+	private ThreadRecorder recorder = new ThreadRecorder();
+
+	/** The speed at which the timeline advances, as set by setPixelsPerTick(). Kept for compatibility - the actual
+	  * zoom level of the time axis is the scale field.
+	  * @see #setPixelsPerTick(int)
+	  * @see #scale
+	  */
+	private int pixelsPerTick;
+
+	/** The scale of the time axis, in nanoseconds of recording time per pixel.
+	  * @see #setScale(long)
+	  */
+	private long scale;
+
+	/** The recording time at the left edge of the timelines, in nanoseconds.
+	  * @see #setViewStart(long)
+	  */
+	private long viewStart;
+
+	/** A flag which determines whether the view should follow the recording, once it reaches the right edge.
+	  * @see #setAutoReset(boolean)
+	  */
+	private boolean autoReset;
+
+	/** Whether the view is currently following the recording. Cleared when the user pans back into the history, and
+	  * set again when the user pans to the end of the recording.
+	  */
+	private boolean following;
+
+	/** The recording time marked by the cursor, or -1 if there is no cursor */
+	private long cursorTime = -1;
+
+	/** The scroll bar which pans the time axis over the recorded history */
+	private JScrollBar scroller;
+
+	/** The number of nanoseconds represented by one unit of the scroll bar */
+	private long scrollUnit;
+
+	/** Set while the scroll bar is updated by the GTM, so that the update is not mistaken for a user action */
+	private boolean updatingScroller;
+
+	/** Handles the mouse and scroll bar actions which change the view of the time axis */
+	private ViewControl viewControl;
+
+	/** The Timer object which creates events for the GTM. Whenever a timer event is dispatched, the GTM repaints itself
+	  * from the recorded tracks.
+	  */
+	private javax.swing.Timer mainTimer;
+	
+	/** The component which draws the main timeline of the GTM.
+	  * @see GraphicalThreadManager.TimeLine
+	  */
+	private TimeLine generalTimeLine;
+	
+	/** An array of ThreadLine objects, in the order of their rows.
+	  * @see GraphicalThreadManager.ThreadLine
+	  */
+	private ThreadLine[] myThreads;
+
+	/** The component which paints the visible rows of the ThreadLine objects.
+	  * @see GraphicalThreadManager.LaneView
+	  */
+	private LaneView laneView;
+
+	/** The scroll pane which holds the lane view */
+	private JScrollPane lanePane;
+
+	/** The ThreadLine whose messages are shown in the message area, or null */
+	private ThreadLine selectedLine;
+
+	/** The list which shows the messages of the selected thread, or of all the threads */
+	private JList messageList;
+
+	/** The model of the message list */
+	private MessageListModel messageModel;
+
+	/** The latest messages of all the threads, in the order in which they were sent */
+	private MessageLog allMessages;
+
+	/** The scroll pane which holds the message area */
+	private JScrollPane messagePane;
+
+	/** The field in which words are typed to search the messages */
+	private JTextField searchField;
+
+	/** The messages found by the last search */
+	private MessageLog searchHits;
+	
+	/** An array of components which monitors objects and their fields.
+	  * @see ObjectViewTable
+	  */
+	private ObjectViewTable[] myObjects;
+
+	/** The handles of the objects, in the same order as myObjects */
+	private MonitorHandle[] objectHandles;
+
+	/** The panel which holds the ObjectViewTable components */
+	private JPanel objectPanel;
+
+	/** The scroll pane which holds the object panel */
+	private JScrollPane objectPane;
+	
+	/** The legend of the GTM. Displays the colors and their meanings and also the time elapsed since the recorder was
+	  * started.
+	  * @see LegendPanel
+	  */
+	private LegendPanel legend;
+	
+	/**
+	  * The number of threads currently displayed by the GTM. Used only by the event dispatch thread.
+	  * @see #addThread(Thread)
+	  * @see #removeThread(int)
+	  */
+	private int numThreads;
+	
+	/**
+	  * The number of objects currently displayed by the GTM. Used only by the event dispatch thread.
+	  * @see #addObject(Object)
+	  * @see #removeObject(int)
+	  */
+	private int numObjects;
+
+	/** The number of threads monitored by the GTM, including the threads which are not displayed yet */
+	private AtomicInteger threadCount = new AtomicInteger();
+
+	/** The number of objects monitored by the GTM, including the objects which are not displayed yet */
+	private AtomicInteger objectCount = new AtomicInteger();
+
+	/** The handles which were added or removed, and are waiting to be applied to the display. A handle appears here
+	  * once when it is added and once when it is removed; its state tells which change to apply.
+	  */
+	private ConcurrentLinkedQueue pendingHandles = new ConcurrentLinkedQueue();
+
+	/** Set while a batch of changes is scheduled on the event dispatch thread */
+	private AtomicBoolean batchScheduled = new AtomicBoolean();
+
+	/** Applies a batch of changes on the event dispatch thread */
+	private Runnable batchApplier = new Runnable()
+		{
+			public void run()
+			{
+				applyChanges();
+			}
+		};
+
+	/** The handles of the threads which were added by the discovery, by their tracks */
+	private ConcurrentHashMap discoveredHandles = new ConcurrentHashMap();
+
+	/** The handles of all the threads and objects which were added and not removed, by their tracks */
+	private ConcurrentHashMap handles = new ConcurrentHashMap();
+
+	/** The handles of the archived lifelines, the oldest first. Used only by the event dispatch thread. */
+	private LinkedList archive = new LinkedList();
+
+	/** Archives the lifelines of the threads which end, and removes the object tables of the objects which the recorder
+	  * reclaims once they have been collected. Notified on the sampler thread of the recorder.
+	  */
+	private TrackListener reclaimer = new TrackListener()
+		{
+			public void trackAdded (ThreadTrack track) {}
+
+			public void trackEnded (ThreadTrack track)
+			{
+				archive(track);
+			}
+
+			public void trackRemoved (ThreadTrack track)
+			{
+				archive(track);						// Collected before it was seen to end
+			}
+
+			/** Archives the lifeline of a thread which has ended, unless it was already archived or removed. */
+			private void archive (ThreadTrack track)
+			{
+				MonitorHandle handle = (MonitorHandle)handles.get(track);
+				if (handle!=null && handle.markArchived())
+				{
+					enqueue(handle);
+					threadCount.decrementAndGet();		// Make room for a live thread, once the lifeline is queued
+				}
+			}
+
+			public void objectTrackRemoved (ObjectTrack track)
+			{
+				MonitorHandle handle = (MonitorHandle)handles.get(track);
+				if (handle!=null)
+					remove(handle);
+			}
+		};
+
+	/** Receives the messages of the recorded threads on its own thread, and hands them over in batches */
+	private MessageDrain drain = new MessageDrain(recorder);
+
+	/** The index of the messages of all the threads, which the drain builds as they arrive */
+	private MessageIndex messageIndex = new MessageIndex();
+
+	/** Applies the batches of messages on the event dispatch thread */
+	private Runnable messageApplier = new Runnable()
+		{
+			public void run()
+			{
+				applyMessages();
+			}
+		};
+
+	/** The ThreadLine objects of the threads, by the ids of the threads. Used only by the event dispatch thread. */
+	private HashMap linesById = new HashMap();
+
+	/** This inner class represents the timeline of the GraphicalThreadManager. Each instance of the GTM has one
+	  * TimeLine object which draws the time axis of the current view, and the recorded time up to the current time of
+	  * the recorder. All active ThreadLine objects of the GTM use the same view and draw their time lines accordingly.
+	  * @see GraphicalThreadManager#recorder
+	  * @see GraphicalThreadManager#viewStart
+	  * @see GraphicalThreadManager#scale
+	  * @see GraphicalThreadManager.ThreadLine
+	  */
+	private class TimeLine extends JPanel		// Inner class to implement a timeline
+	{
+		/** The Y coordinate of the time axis */
+		private static final int Y_AXIS = 30;
+
+		/** The Y coordinate for the advancing timeline */
+		private static final int Y_TIMELINE = 45;
+
+		/** The Y coordinate for the timeline text */
+		private static final int Y_TEXT = 15;
+		
+		/** Constructs a time line component, sets it preferred size and border. */
+		public TimeLine()
+		{
+			super();
+			setPreferredSize(new Dimension(X_END+10,Y_TIMELINE+5));
+			setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
+		}
+
+		/** Paints the timeline. The painting involves several steps: first the component area is cleared. Then the axis
+		  * is painted, using the base color, with a grid line and a label at each round time within the view. Then the
+		  * timeline is painted, from the beginning of the recording to the current time of the recorder.
+		  */
+		public void paintComponent(Graphics g)
+		{
+			int x;
+
+			super.paintComponent(g);
+			
+			g.clearRect(0,0,getWidth(),getHeight());			// Clear component area
+	
+			g.setColor(BASE_COLOR);
+			g.fillRect(X_BEGIN,Y_AXIS-1,X_END-X_BEGIN,3);		// Draw horizontal axis
+			g.drawLine(X_BEGIN,Y_AXIS-10,X_BEGIN,Y_AXIS+10);	// Draw vertical start line
+			g.drawLine(X_END,Y_AXIS-10,X_END,Y_AXIS+10);		// Draw vertical end line
+
+			long step = TimeScale.niceStep(X_MINGRID*scale);	// Grid lines at round times
+			long t = (viewStart+step-1)/step*step;				// The first grid line within the view
+
+			for (;t<=getViewEnd();t+=step)
+			{
+				x = X_BEGIN+toPixels(t);
+				g.drawLine(x,Y_AXIS-5,x,Y_AXIS+5);				// Draw vertical lines along the axis
+				g.drawString(TimeScale.format(t,step),x+2,Y_TEXT);
+			}
+
+			g.setColor(timelineColor);
+			g.fillRect(X_BEGIN,Y_TIMELINE,toPixels(recorder.getTime()),2);		// Draw timeline
+
+			if (cursorTime>=viewStart && cursorTime<=getViewEnd())	// Draw the cursor and its time
+			{
+				x = X_BEGIN+toPixels(cursorTime);
+				g.setColor(CURSOR_COLOR);
+				g.drawLine(x,Y_AXIS-10,x,getHeight());
+				g.drawString(TimeScale.formatMillis(cursorTime),x+2,Y_TIMELINE-3);
+			}
+		}
+	}
+
+	/** This inner class holds a single thread which is monitored by the GTM: its recorded track, and the messages which
+	  * it has sent. A ThreadLine is not a component by itself - all the ThreadLine objects are painted as rows of a
+	  * single LaneView component, which paints only the rows that are visible. This way the GTM can monitor thousands
+	  * of threads, while the cost of each repaint is proportional to the number of rows on the screen. The lifeline is
+	  * drawn into the image of the LaneView, a range of columns at a time; the name is painted over it on each repaint.
+	  *
+	  * Like the timeline, the thread's lifeline draws the part of the recording which is within the view, up to the
+	  * current time of the recorder. However, there are a few differences: periods when the thread is active are
+	  * painted using one color, and periods when it is asleep are painted using another color. Periods before the
+	  * thread was started and after it had died are not painted at all.
+	  *
+	  * If the thread is a ThreadPlus object, each message received from the thread's message channel is kept in the log
+	  * of the ThreadLine with the time when it was sent, and is shown in the message area of the GTM while the
+	  * ThreadLine is selected. The time is the recording time, so each message is also marked on the lifeline, exactly
+	  * where it was sent. The log keeps only the latest messages. Messages which the channel has discarded are counted,
+	  * and the count is shown instead of them.
+	  *
+	  * If the FieldAgent is installed, each write which the thread has made to a field of a monitored object is marked
+	  * below the lifeline, where it was made, and its tool tip shows the field and the value which was written.
+	  *
+	  * @see ThreadPlus
+	  * @see ThreadTrack
+	  * @see GraphicalThreadManager.LaneView
+	  * @see ThreadRecorder#getInitTimeMillis()
+	  * @see GraphicalThreadManager#threadlineColor
+	  * @see GraphicalThreadManager#threadsleepColor
+	  */
+	private class ThreadLine		// Holds the lifeline and the messages of a single thread
+	{
+		/** The Y coordinate of the thread's name, within its row */
+		private static final int Y_THREADNAME = 13;
+
+		/** The Y coordinate of the thread's lifeline, within its row */
+		private static final int Y_THREADLINE = 19;
+
+		/** The thickness of the thread's lifeline */
+		private static final int Y_LINEHEIGHT = 3;
+
+		/** The length of the marks of the messages above and below the lifeline */
+		private static final int Y_MARKHEIGHT = 3;
+
+		/** The latest messages which were received from the thread's channel */
+		private MessageLog log;
+
+		/** The number in the log of the first message which is marked on the lifeline. Messages which were sent before
+		  * the recording was reset are not marked.
+		  */
+		private long markFrom;
+
+		/** The recorded lifeline of the thread */
+		private ThreadTrack track;
+
+		/** The handle of the thread */
+		private MonitorHandle handle;
+
+		/** The name of the thread when its label was painted last */
+		private String labelName;
+
+		/** The number of entries in the timeline when the label was painted last */
+		private int labelSize = -1;
+
+		/** Constructs a ThreadLine which displays the track of the given handle.
+		  * @param h the handle of the thread to display.
+		  */
+		public ThreadLine (MonitorHandle h)
+		{
+			handle = h;
+			track = h.getTrack();
+			log = new MessageLog();
+		}
+
+		/** Paints the label of this ThreadLine: the thread's name, using the base color, and the lock it is waiting for,
+		  * if any.
+		  * @param g the graphics context of the LaneView.
+		  * @param y the Y coordinate of the top of the row.
+		  */
+		public void paintLabel (Graphics g, int y)
+		{
+			StateTimeline timeline = track.getTimeline();
+			int n = timeline.size();
+
+			labelName = track.getName();
+			labelSize = n;
+
+			g.setColor(BASE_COLOR);
+			if (n>0 && timeline.getDetail(n-1)!=null)	// Draw the thread's name, and the lock it is waiting for
+				g.drawString(labelName + " - " + StateTimeline.getStateName(timeline.getState(n-1)) + ": " +
+								timeline.getDetail(n-1),X_BEGIN,y+Y_THREADNAME);
+			else
+				g.drawString(labelName,X_BEGIN,y+Y_THREADNAME);
+		}
+
+		/** Returns true if the label may have changed since it was painted last: the thread was renamed, or its
+		  * timeline has a new entry which may have a lock.
+		  */
+		public boolean labelChanged()
+		{
+			return track.getName()!=labelName || track.getTimeline().size()!=labelSize;
+		}
+
+		/** Draws the part of the lifeline of this ThreadLine which is within a range of time, into the image of the
+		  * LaneView, whose X coordinates start at the beginning of the timelines. The lifeline starts at the entry of the
+		  * track's timeline which is in effect at the beginning of the range (found by binary search). Each entry is
+		  * drawn with the color of its state, until the time of the next entry. The line is drawn until the end entry if
+		  * the thread has ended, or until the current time of the recorder, if the thread has not yet ended. Finally, the
+		  * field writes made within the range are marked below the lifeline, and the messages sent within the range are
+		  * marked across it. Parts which fall outside the range are cut by the clip of the graphics context.
+		  * @param g the graphics context of the image, clipped to the columns of the range.
+		  * @param y the Y coordinate of the top of the row in the image.
+		  * @param from the recording time at the beginning of the range.
+		  * @param to the recording time at the end of the range.
+		  * @param now the current time of the recorder.
+		  * @see ThreadTrack
+		  * @see StateTimeline
+		  */
+		public void paintLifeline (Graphics g, int y, long from, long to, long now)
+		{
+			int i,n,x0,x1;
+
+			StateTimeline timeline = track.getTimeline();
+
+			n = timeline.size();						// Entries added while drawing are drawn on the next tick
+			i = timeline.indexAt(from,n);				// The first entry within the range
+			if (i<0)
+				i = 0;
+
+			for (;i<n;++i)								// Draw all the parts of the thread's lifeline within the range
+			{
+				byte state = timeline.getState(i);
+
+				if (state==StateTimeline.ENDED || timeline.getTime(i)>to)	// Nothing more to draw
+					break;
+
+				g.setColor(stateColor(state));
+				x0 = toPixels(timeline.getTime(i));
+				x1 = toPixels(i+1<n ? timeline.getTime(i+1) : now);
+				g.fillRect(x0,y+Y_THREADLINE,x1-x0,Y_LINEHEIGHT);
+			}
+
+			FieldWriteLog writes = track.getWrites();
+			g.setColor(WRITE_COLOR);
+			x1 = -1;
+			n = writes.size();
+			for (i=writes.indexAt(from);i<n && writes.getTime(i)<=to;++i)	// Mark the writes within the range
+			{
+				x0 = toPixels(writes.getTime(i));
+				if (x0==x1)								// Already marked
+					continue;
+				g.fillRect(x0,y+Y_THREADLINE+Y_LINEHEIGHT,1,Y_MARKHEIGHT);
+				x1 = x0;
+			}
+
+			g.setColor(MESSAGE_COLOR);
+			x1 = -1;
+			n = log.size();
+			for (i=markAt(from);i<n && log.getTime(i)<=to;++i)	// Mark the messages within the range
+			{
+				x0 = toPixels(log.getTime(i));
+				if (x0==x1)								// Already marked
+					continue;
+				g.fillRect(x0,y+Y_THREADLINE-Y_MARKHEIGHT,1,Y_LINEHEIGHT+2*Y_MARKHEIGHT);
+				x1 = x0;
+			}
+		}
+
+		/** Finds the first marked message in the log which was sent at the given time or after it.
+		  * @param time the recording time.
+		  * @return the index of the message, or the size of the log if all the messages were sent before the given time.
+		  */
+		private int markAt (long time)
+		{
+			int i = log.indexAt(time);
+			long from = markFrom-log.getFirst();		// Skip the messages of the previous recording
+			return (i<from) ? (int)from : i;
+		}
+
+		/** Keeps a message which was received from the thread's channel in the log, and marks it on the lifeline. Once
+		  * the log is full, the oldest message is dropped from it.
+		  * @param msg the message.
+		  * @param time the recording time when the message was sent.
+		  * @param line the formatted line of the message.
+		  */
+		public void addMessage (ThreadMessage msg, long time, String line)
+		{
+			log.add(msg,time,line);
+		}
+
+		/** Removes the marks of the messages from the lifeline. Called when the recording is reset. */
+		public void clearMarks()
+		{
+			markFrom = log.getTotal();
+		}
+
+		/** Returns the tool tip of the lifeline: the message or the field write marked at the given point, if any,
+		  * otherwise the state of the thread at the given point, and the lock it was waiting for, if any.
+		  * @param x the X coordinate within the LaneView.
+		  */
+		public String getToolTipText (int x)
+		{
+			long time = viewStart+(x-X_BEGIN)*scale;
+			int i = markAt(time-2*scale);				// Within two pixels of the point
+			if (i<log.size() && log.getTime(i)<=time+2*scale)
+				return track.getName() + " - " + log.getLine(i);
+
+			FieldWriteLog writes = track.getWrites();
+			i = writes.indexAt(time-2*scale);
+			if (i<writes.size() && writes.getTime(i)<=time+2*scale)
+			{
+				ObjectTrack written = writes.getTrack(i);
+				FieldAccessor a = written.getAccessors()[writes.getField(i)];
+				Object value = a.isPrimitive() ? a.box(writes.getBits(i)) : writes.getValue(i);
+				return track.getName() + " - " +
+						ObjectTreeModel.summarize(written.getObject(),ObjectTreeModel.SUMMARY_LENGTH) + "." +
+						a.getName() + " = " + ObjectTreeModel.summarize(value,ObjectTreeModel.SUMMARY_LENGTH);
+			}
+
+			StateTimeline timeline = track.getTimeline();
+			int n = timeline.size();
+			i = timeline.indexAt(time,n);
+
+			if (i<0)					// Before the thread has started
+				return track.getName();
+			if (timeline.getDetail(i)==null)
+				return track.getName() + " - " + StateTimeline.getStateName(timeline.getState(i));
+			return track.getName() + " - " + StateTimeline.getStateName(timeline.getState(i)) + ": " +
+					timeline.getDetail(i);
+		}
+
+		/** Clears the messages sent by the ThreadPlus object of this ThreadLine.
+		  * This method is called whenever the GraphicalThreadManager undergoes a "hard reset".
+		  * @see GraphicalThreadManager#resetHard()
+		  */
+		public void clearText()
+		{
+			log.clear();
+			markFrom = 0;
+		}
+	}
+
+	/** This inner class is the model of the message list. It shows the messages of a single MessageLog - the log of the
+	  * selected thread, or the log of all the threads. The list asks only for the lines which it displays, so the cost
+	  * of showing a log doesn't depend on its size. After messages were added to the log, refresh() tells the list
+	  * which lines were dropped from the beginning and which were added at the end.
+	  * @see MessageLog
+	  */
+	private class MessageListModel extends AbstractListModel		// Shows a message log in the message list
+	{
+		/** The log which is shown */
+		private MessageLog log;
+
+		/** The number of the first message of the log, as last shown */
+		private long first;
+
+		/** The total number of messages of the log, as last shown */
+		private long total;
+
+		/** Set while the list is told about changes, which move its selection without a user action */
+		private boolean updating;
+
+		/** Returns the number of lines in the list. */
+		public int getSize()
+		{
+			return (log==null) ? 0 : (int)(total-first);
+		}
+
+		/** Returns a line of the list.
+		  * @param index the index of the line.
+		  */
+		public Object getElementAt (int index)
+		{
+			return log.getLine(index);
+		}
+
+		/** Returns the recording time when the message of a line was sent.
+		  * @param index the index of the line.
+		  */
+		public long getTime (int index)
+		{
+			return log.getTime(index);
+		}
+
+		/** Shows another log.
+		  * @param newLog the log to show.
+		  */
+		public void setLog (MessageLog newLog)
+		{
+			int n = getSize();
+			log = null;
+			if (n>0)
+				linesRemoved(0,n-1);
+
+			log = newLog;
+			first = log.getFirst();
+			total = log.getTotal();
+			n = getSize();
+			if (n>0)
+				linesAdded(0,n-1);
+		}
+
+		/** Updates the list after messages were added to the log (or the log was cleared). The list keeps showing the
+		  * latest line if it was showing it before.
+		  */
+		public void refresh()
+		{
+			long newFirst = log.getFirst(), newTotal = log.getTotal();
+			if (newFirst==first && newTotal==total)		// Nothing has changed
+				return;
+
+			int n = getSize();
+			boolean atEnd = (messageList.getLastVisibleIndex()>=n-1);
+
+			if (newTotal<total)							// The log was cleared
+			{
+				setLog(log);
+				return;
+			}
+
+			int removed = (int)Math.min(newFirst-first,n);
+			if (removed>0)
+			{
+				first += removed;
+				linesRemoved(0,removed-1);
+			}
+			int added = (int)(newTotal-Math.max(total,newFirst));
+			first = newFirst;
+			total = newTotal;
+			n = getSize();
+			if (added>0)
+				linesAdded(n-added,n-1);
+
+			if (atEnd && n>0)
+				messageList.ensureIndexIsVisible(n-1);	// Follow the new messages
+		}
+
+		/** Returns true while the list is told about changes. */
+		public boolean isUpdating()
+		{
+			return updating;
+		}
+
+		/** Tells the list that lines were removed.
+		  * @param from the index of the first line.
+		  * @param to the index of the last line.
+		  */
+		private void linesRemoved (int from, int to)
+		{
+			updating = true;
+			try
+			{
+				fireIntervalRemoved(this,from,to);
+			}
+			finally
+			{
+				updating = false;
+			}
+		}
+
+		/** Tells the list that lines were added.
+		  * @param from the index of the first line.
+		  * @param to the index of the last line.
+		  */
+		private void linesAdded (int from, int to)
+		{
+			updating = true;
+			try
+			{
+				fireIntervalAdded(this,from,to);
+			}
+			finally
+			{
+				updating = false;
+			}
+		}
+	}
+
+	/** This inner class is the component which displays all the ThreadLine objects of the GTM, one row per thread, in
+	  * the order in which they were added. The component is placed inside a JScrollPane, and has the full height of all
+	  * the rows, but paints only the rows which intersect the area being repainted (normally the visible part of the
+	  * scroll pane). Turning the mouse wheel scrolls the rows; turning it with the Ctrl key pressed zooms the time axis,
+	  * and dragging pans it. Clicking a row selects its thread, whose messages are then shown in the message area.
+	  *
+	  * The lifelines of the visible rows are kept in an image, which is transparent except for the lifelines and their
+	  * marks, so the highlight of the selected row shows through it. On each tick, advance() draws into the image only
+	  * the columns which may have changed since the previous tick: from (a sampling period before) the time the image
+	  * was drawn up to, and from the earliest message which was marked since, up to the current time. If the view
+	  * follows the recording, the image is first shifted left by the number of pixels which the view has advanced. The
+	  * whole image is drawn again only when the scale, the rows or the visible part of the component change, or when
+	  * the view jumps. Painting the component copies the image and paints the labels, the separators and the cursor.
+	  * @see GraphicalThreadManager.ThreadLine
+	  * @see GraphicalThreadManager.ViewControl
+	  */
+	private class LaneView extends JPanel		// Draws the visible rows of all the thread lines
+	{
+		/** The lifelines of the rows which were visible when it was drawn, starting at the beginning of the timelines */
+		private BufferedImage lines;
+
+		/** The index of the first row in the image */
+		private int linesFirst;
+
+		/** The number of rows in the image */
+		private int linesRows;
+
+		/** The recording time at the left edge of the image */
+		private long linesStart;
+
+		/** The scale of the image, in nanoseconds per pixel */
+		private long linesScale;
+
+		/** The recording time up to which the image is drawn */
+		private long drawnTo;
+
+		/** The earliest time of a mark which was added since the image was drawn, or Long.MAX_VALUE if there is none */
+		private long dirtyFrom = Long.MAX_VALUE;
+
+		/** Set when the whole image must be drawn again */
+		private boolean redraw = true;
+
+		/** Constructs a lane view component, and registers the mouse listeners. */
+		public LaneView()
+		{
+			super();
+			setBackground(Color.WHITE);
+			setPreferredSize(new Dimension(X_END+10,0));
+
+			addMouseListener(viewControl);		// Allow zooming and panning over the lifelines
+			addMouseMotionListener(viewControl);
+			addMouseWheelListener(viewControl);
+			addMouseListener(new MouseAdapter()		// Select the thread which is clicked
+				{
+					public void mouseClicked (MouseEvent e)
+					{
+						int i = e.getY()/Y_LANEHEIGHT;
+						selectLine(i<numThreads ? myThreads[i] : null);
+					}
+				});
+			setToolTipText("");					// Enable the tool tip which shows the state under the mouse
+		}
+
+		/** Updates the preferred size of the component after threads were added or removed. */
+		public void updateSize()
+		{
+			setPreferredSize(new Dimension(X_END+10,numThreads*Y_LANEHEIGHT));
+			revalidate();
+			redrawAll();
+		}
+
+		/** Draws the whole image again on the next repaint, and repaints the component. Called when the rows, the
+		  * colors or the recording have changed.
+		  */
+		public void redrawAll()
+		{
+			redraw = true;
+			repaint();
+		}
+
+		/** Notes that a mark was added at the given time, so that its columns are drawn on the next tick.
+		  * @param time the recording time of the mark.
+		  */
+		public void markAdded (long time)
+		{
+			if (time<dirtyFrom)
+				dirtyFrom = time;
+		}
+
+		/** Returns true if the image no longer matches the visible rows, the scale of the view or the recording.
+		  * @param first the first visible row.
+		  * @param rows the number of visible rows.
+		  * @param now the current time of the recorder.
+		  */
+		private boolean isStale (int first, int rows, long now)
+		{
+			return lines==null || redraw || first!=linesFirst || rows!=linesRows || scale!=linesScale || now<drawnTo;
+		}
+
+		/** Draws the whole image of the visible rows.
+		  * @param first the first visible row.
+		  * @param rows the number of visible rows.
+		  * @param now the current time of the recorder.
+		  */
+		private void rebuild (int first, int rows, long now)
+		{
+			int height = Math.max(rows,1)*Y_LANEHEIGHT;
+			if (lines==null || lines.getHeight()<height)	// Grow the image (it is never shrunk)
+				lines = new BufferedImage(X_END-X_BEGIN+1,height,BufferedImage.TYPE_INT_ARGB);
+
+			linesFirst = first;
+			linesRows = rows;
+			linesStart = viewStart;
+			linesScale = scale;
+			drawColumns(0,X_END-X_BEGIN,now);
+
+			drawnTo = now;
+			dirtyFrom = Long.MAX_VALUE;
+			redraw = false;
+		}
+
+		/** Clears a range of columns of the image, and draws the lifelines of all its rows within it.
+		  * @param c0 the first column.
+		  * @param c1 the last column.
+		  * @param now the current time of the recorder.
+		  */
+		private void drawColumns (int c0, int c1, long now)
+		{
+			Graphics2D g = lines.createGraphics();
+			g.setClip(c0,0,c1-c0+1,lines.getHeight());
+
+			g.setComposite(AlphaComposite.Clear);		// Make the columns transparent
+			g.fillRect(c0,0,c1-c0+1,lines.getHeight());
+			g.setComposite(AlphaComposite.SrcOver);
+
+			long from = viewStart+c0*scale;
+			long to = viewStart+(c1+1)*scale-1;
+			for (int r=0;r<linesRows && linesFirst+r<numThreads;++r)
+				myThreads[linesFirst+r].paintLifeline(g,r*Y_LANEHEIGHT,from,to,now);
+
+			g.dispose();
+		}
+
+		/** Brings the image up to the current time of the recorder, after the recording time or the view has changed,
+		  * and repaints what has changed: the whole visible part if the view has moved, otherwise only the columns which
+		  * were drawn, and the labels which have changed. Called on each tick.
+		  */
+		public void advance()
+		{
+			Rectangle visible = getVisibleRect();
+			int first = visible.y/Y_LANEHEIGHT;
+			int rows = (visible.height>0) ? (visible.y+visible.height-1)/Y_LANEHEIGHT-first+1 : 0;
+			long now = recorder.getTime();
+			long shift = viewStart-linesStart;
+			int width = X_END-X_BEGIN+1;
+
+			if (isStale(first,rows,now) || shift<0 || shift%scale!=0 || shift/scale>=width)	// The view has jumped
+			{
+				rebuild(first,rows,now);
+				repaint();
+				return;
+			}
+
+			int dx = (int)(shift/scale);
+			if (dx>0)									// The view has advanced - shift the image
+			{
+				Graphics2D g = lines.createGraphics();
+				g.setComposite(AlphaComposite.Src);		// Copy the transparent pixels too
+				g.copyArea(dx,0,width-dx,rows*Y_LANEHEIGHT,-dx,0);
+				g.dispose();
+				linesStart = viewStart;
+			}
+
+			long from = Math.min(dirtyFrom,drawnTo-recorder.getPeriodNanos());	// Late samples and marks
+			int c0 = toPixels(from);
+			if (dx>0 && c0>width-dx)					// The columns which were shifted in are always drawn
+				c0 = width-dx;
+
+			if (now>=viewStart && (from<=getViewEnd() || dx>0))
+			{
+				int c1 = (dx>0) ? width-1 : toPixels(now);
+				drawColumns(c0,c1,now);
+				if (dx==0)
+					repaint(X_BEGIN+c0,first*Y_LANEHEIGHT,c1-c0+1,rows*Y_LANEHEIGHT);
+			}
+			drawnTo = now;
+			dirtyFrom = Long.MAX_VALUE;
+
+			if (dx>0)
+			{
+				repaint();
+				return;
+			}
+
+			for (int i=first;i<first+rows && i<numThreads;++i)	// Repaint the labels which have changed
+				if (myThreads[i].labelChanged())
+					repaint(0,i*Y_LANEHEIGHT,getWidth(),ThreadLine.Y_THREADLINE-ThreadLine.Y_MARKHEIGHT);
+		}
+
+		/** Paints the rows which intersect the clip area. The area is cleared, and the row of the selected thread is
+		  * highlighted. Then the image of the lifelines is copied (after it is drawn again, if it no longer matches the
+		  * visible rows), and the label of each row is painted over it, with a separator underneath.
+		  */
+		public void paintComponent (Graphics g)
+		{
+			super.paintComponent(g);
+
+			Rectangle clip = g.getClipBounds();
+			int first = clip.y/Y_LANEHEIGHT;
+			int last = (clip.y+clip.height-1)/Y_LANEHEIGHT;
+
+			if (last>=numThreads)
+				last = numThreads-1;
+
+			Rectangle visible = getVisibleRect();
+			int top = visible.y/Y_LANEHEIGHT;
+			int rows = (visible.height>0) ? (visible.y+visible.height-1)/Y_LANEHEIGHT-top+1 : 0;
+			if (isStale(top,rows,drawnTo) || viewStart!=linesStart)	// Scrolled to other rows, or changed
+				rebuild(top,rows,drawnTo);
+
+			for (int i=first;i<=last;++i)		// Highlight the selected row
+				if (myThreads[i]==selectedLine)
+				{
+					g.setColor(SELECTED_COLOR);
+					g.fillRect(0,i*Y_LANEHEIGHT,getWidth(),Y_LANEHEIGHT);
+				}
+
+			g.drawImage(lines,X_BEGIN,linesFirst*Y_LANEHEIGHT,null);		// The lifelines
+
+			for (int i=first;i<=last;++i)		// Paint only the visible rows
+			{
+				int y = i*Y_LANEHEIGHT;
+
+				myThreads[i].paintLabel(g,y);
+				g.setColor(SEPARATOR_COLOR);
+				g.drawLine(0,y+Y_LANEHEIGHT-1,getWidth(),y+Y_LANEHEIGHT-1);
+			}
+
+			if (cursorTime>=viewStart && cursorTime<=getViewEnd())	// Draw the cursor across the rows
+			{
+				int x = X_BEGIN+toPixels(cursorTime);
+				g.setColor(CURSOR_COLOR);
+				g.drawLine(x,clip.y,x,clip.y+clip.height);
+			}
+		}
+
+		/** Returns the tool tip of the row under the mouse pointer. */
+		public String getToolTipText (MouseEvent e)
+		{
+			int i = e.getY()/Y_LANEHEIGHT;
+			return (i<numThreads) ? myThreads[i].getToolTipText(e.getX()) : null;
+		}
+	}
+
+	/** This inner class controls the view of the time axis by the user. Turning the mouse wheel over the timeline (or
+	  * over the thread lines with the Ctrl key pressed) zooms the time axis in or out around the mouse pointer,
+	  * dragging it pans the view, and moving the
+	  * scroll bar pans the view over the whole recorded history. Panning back into the history stops the view from
+	  * following the recording, and panning to the end of the recording resumes it (if automatic reset is on). Clicking
+	  * the timeline sets the cursor.
+	  * @see GraphicalThreadManager#setScale(long)
+	  * @see GraphicalThreadManager#setViewStart(long)
+	  */
+	private class ViewControl extends MouseAdapter implements AdjustmentListener
+	{
+		/** The X coordinate where the mouse was pressed */
+		private int pressX;
+
+		/** The view start when the mouse was pressed */
+		private long pressStart;
+
+		/** Zooms in (wheel up) or out (wheel down) by a factor of 2 for each wheel notch. Over the thread lines, the
+		  * wheel scrolls the rows unless the Ctrl key is pressed.
+		  */
+		public void mouseWheelMoved (MouseWheelEvent e)
+		{
+			if (e.getComponent()==laneView && !e.isControlDown())	// Let the scroll pane scroll the rows
+			{
+				lanePane.dispatchEvent(SwingUtilities.convertMouseEvent(laneView,e,lanePane));
+				return;
+			}
+
+			long newScale = scale;
+			int n = e.getWheelRotation();
+
+			for (;n>0 && newScale<MAX_SCALE;--n)
+				newScale *= 2;
+			for (;n<0 && newScale>MIN_SCALE;++n)
+				newScale /= 2;
+
+			zoom(newScale,e.getX()-X_BEGIN);
+		}
+
+		/** Sets the cursor where the timeline is clicked, or removes it if the timeline is right-clicked. */
+		public void mouseClicked (MouseEvent e)
+		{
+			if (e.getComponent()!=generalTimeLine)
+				return;
+
+			if (SwingUtilities.isRightMouseButton(e))
+				setCursorTime(-1);
+			else if (e.getX()>=X_BEGIN && e.getX()<=X_END)
+				setCursorTime(viewStart+(e.getX()-X_BEGIN)*scale);
+		}
+
+		/** Remembers the starting point of a drag. */
+		public void mousePressed (MouseEvent e)
+		{
+			pressX = e.getX();
+			pressStart = viewStart;
+		}
+
+		/** Pans the view by the distance the mouse was dragged. */
+		public void mouseDragged (MouseEvent e)
+		{
+			setViewStart(pressStart-(e.getX()-pressX)*scale);
+		}
+
+		/** Pans the view when the scroll bar is moved by the user. */
+		public void adjustmentValueChanged (AdjustmentEvent e)
+		{
+			if (updatingScroller)		// Not a user action
+				return;
+
+			viewStart = scroller.getValue()*scrollUnit;
+			following = autoReset && scroller.getValue()+scroller.getVisibleAmount()>=scroller.getMaximum();
+			updateView();
+		}
+	}
+
+	/** This inner class represents the legend panel of the GraphicalThreadManager. The legend panel shows which colors
+	  * are used for the timeline, the active thread line and the sleeping thread line at any given moment, and also
+	  * counts the time elapsed since the GTM was started or since resetInitTime() was last invoked.
+	  * @see #setColors(Color,Color,Color)
+	  * @see #resetInitTime()
+	  */
+	private class LegendPanel extends JPanel
+	{
+		/** The width of this component */
+		private static final int X_LEGENDWIDTH = X_END;
+
+		/** The height of this component */
+		private static final int Y_LEGENDHEIGHT = 120;
+		
+		/** The X coordinate of the text starting point */
+		private static final int X_TEXTOFFSET = 10;
+
+		/** The X coordinate of the line starting point */
+		private static final int X_LINEOFFSET = 150;
+
+		/** The X coordinate of the text starting point of the second column */
+		private static final int X_TEXTOFFSET2 = 260;
+
+		/** The X coordinate of the line starting point of the second column */
+		private static final int X_LINEOFFSET2 = 400;
+
+		/** The length of the line */
+		private static final int X_LINELENGTH = 30;
+
+		/** The Y coordinate of the timeline */
+		private static final int Y_TLINE = 20;
+
+		/** The Y coordinate of the active thread line */
+		private static final int Y_TACTIVE = 40;
+
+		/** The Y coordinate of the sleeping thread line */
+		private static final int Y_TSLEEP = 60;
+
+		/** The Y coordinate of the "time elapsed" line */
+		private static final int Y_TTIME = 85;
+
+		/** The Y coordinate of the "scale" line */
+		private static final int Y_TSCALE = 105;
+
+		/** Constructs a legend panel, sets its preferred size and border. */
+		public LegendPanel()
+		{
+			super();
+			setPreferredSize(new Dimension(X_LEGENDWIDTH,Y_LEGENDHEIGHT));
+			setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
+		}
+
+		/** Paints the legend panel component. The legend panel includes explanations of the different colors used in
+		  * the GTM and their meanings. There are 6 colors which the user can change: the color of the timeline, the
+		  * color of the active thread, the color of the sleeping thread, and the colors of a thread which is blocked,
+		  * waiting or waiting with a timeout (in the second column). The legend panel also shows the elapsed time
+		  * (the difference between the current system time and the init time of the recorder) and the current scale of
+		  * the time axis.
+		  */
+		public void paintComponent (Graphics g)
+		{
+			super.paintComponent(g);
+			
+			g.clearRect(0,0,getWidth(),getHeight());
+
+			Color oldC = g.getColor();					// Save current color of the graphical context
+
+			long initTimeMillis = recorder.getInitTimeMillis();
+			long thisTime = (initTimeMillis==0) ? 0 : (System.currentTimeMillis()-initTimeMillis);
+
+			g.setColor(BASE_COLOR);
+			g.drawString("General Timeline:",X_TEXTOFFSET,Y_TLINE);
+			g.drawString("Active Thread:",X_TEXTOFFSET,Y_TACTIVE);
+			g.drawString("Sleeping Thread:",X_TEXTOFFSET,Y_TSLEEP);
+			g.setColor(timelineColor);
+			g.fillRect(X_LINEOFFSET,Y_TLINE-5,X_LINELENGTH,2);			// Draw timeline example
+			g.setColor(threadlineColor);
+			g.fillRect(X_LINEOFFSET,Y_TACTIVE-5,X_LINELENGTH,2);		// Draw active thread example
+			g.setColor(threadsleepColor);
+			g.fillRect(X_LINEOFFSET,Y_TSLEEP-5,X_LINELENGTH,2);			// Draw sleeping thread example
+			g.setColor(BASE_COLOR);
+			g.drawString("Blocked Thread:",X_TEXTOFFSET2,Y_TLINE);
+			g.drawString("Waiting Thread:",X_TEXTOFFSET2,Y_TACTIVE);
+			g.drawString("Timed Waiting Thread:",X_TEXTOFFSET2,Y_TSLEEP);
+			g.setColor(threadblockedColor);
+			g.fillRect(X_LINEOFFSET2,Y_TLINE-5,X_LINELENGTH,2);			// Draw blocked thread example
+			g.setColor(threadwaitColor);
+			g.fillRect(X_LINEOFFSET2,Y_TACTIVE-5,X_LINELENGTH,2);		// Draw waiting thread example
+			g.setColor(threadtimedwaitColor);
+			g.fillRect(X_LINEOFFSET2,Y_TSLEEP-5,X_LINELENGTH,2);		// Draw timed waiting thread example
+			g.setColor(BASE_COLOR);
+			g.drawString(("Elapsed time:        " + thisTime + " ms")
+						,X_TEXTOFFSET,Y_TTIME);							// Draw time elapsed
+			g.drawString(("Scale:                 " + TimeScale.formatDuration(scale) + " / pixel")
+						,X_TEXTOFFSET,Y_TSCALE);						// Draw scale
+			
+			g.setColor(oldC);							// Restore previous color of the graphical context
+		}
+	}
+
+	/** Creates a GTM with default drawing colors and default pixelsPerTick value (1). */
+	public GraphicalThreadManager ()
+	{
+		super();
+		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
+		setColors(DEFAULT_TIMELINE_COLOR,DEFAULT_THREADLINE_COLOR,DEFAULT_THREADSLEEP_COLOR);
+		setPixelsPerTick(1);
+
+		initialize();
+	}
+
+	/** Creates a GTM with default drawing colors and a given pixelsPerTickValue.
+	  * @param pixels 1-10 the number of pixels to add to the timelines on each timer event.
+	  */
+	public GraphicalThreadManager (int pixels)
+	{
+		super();
+		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
+		setColors(DEFAULT_TIMELINE_COLOR,DEFAULT_THREADLINE_COLOR,DEFAULT_THREADSLEEP_COLOR);
+		setPixelsPerTick(pixels);
+
+		initialize();
+	}
+	
+	/** Creates a GTM with given drawing colors and default pixelsPerTick value (1).
+	  * @param timeCol the color of the time line.
+	  * @param threadCol the color of the active thread line.
+	  * @param sleepCol the color of the sleeping thread line.
+	  */
+	public GraphicalThreadManager (Color timeCol, Color threadCol, Color sleepCol)
+	{
+		super();
+		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
+		setColors(timeCol,threadCol,sleepCol);
+		setPixelsPerTick(1);
+
+		initialize();
+	}
+
+	/** Creates a GTM with given drawing colors and given pixelsPerTick value.
+	  * @param timeCol the color of the time line.
+	  * @param threadCol the color of the active thread line.
+	  * @param sleepCol the color of the sleeping thread line.
+	  * @param pixels 1-10 the number of pixels to add to the timelines on each timer event.
+	  */
+	public GraphicalThreadManager (Color timeCol, Color threadCol, Color sleepCol, int pixels)
+	{
+		super();
+		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
+		setColors(timeCol,threadCol,sleepCol);
+		setPixelsPerTick(pixels);
+
+		initialize();
+	}
+
+	/** Creates a GTM with default colors and default pixelsPerTick value (1) and adds a thread to it.
+	  * @param initThread the thread which will be automatically added.
+	  */
+	public GraphicalThreadManager (ThreadPlus initThread)
+	{
+		super();
+		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
+		setColors(DEFAULT_TIMELINE_COLOR,DEFAULT_THREADLINE_COLOR,DEFAULT_THREADSLEEP_COLOR);
+		setPixelsPerTick(1);
+
+		initialize();
+		addThread(initThread);
+	}
+
+	/** Creates a GTM with given drawing colors and default pixelsPerTick value (1) and adds a thread to it.
+	  * @param timeCol the color of the time line.
+	  * @param threadCol the color of the active thread line.
+	  * @param sleepCol the color of the sleeping thread line.
+	  * @param initThread the thread which will be automatically added.	  
+	  */
+	public GraphicalThreadManager (Color timeCol, Color threadCol, Color sleepCol, ThreadPlus initThread)
+	{
+		super();
+		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
+		setColors(timeCol,threadCol,sleepCol);
+		setPixelsPerTick(1);
+
+		initialize();
+		addThread(initThread);
+	}
+
+	/** Creates a GTM with given drawing colors and given pixelsPerTick value and adds a thread to it.
+	  * @param timeCol the color of the time line.
+	  * @param threadCol the color of the active thread line.
+	  * @param sleepCol the color of the sleeping thread line.
+	  * @param pixels 1-10 the number of pixels to add to the timelines on each timer event.
+	  * @param initThread the thread which will be automatically added.
+	  */
+	public GraphicalThreadManager (Color timeCol, Color threadCol, Color sleepCol, int pixels, ThreadPlus initThread)
+	{
+		super();
+		setSize(DEFAULT_X_SIZE,DEFAULT_Y_SIZE);
+		setColors(timeCol,threadCol,sleepCol);
+		setPixelsPerTick(pixels);
+
+		initialize();
+		addThread(initThread);
+	}
+
+	/** Set the value of the pixelsPerTick field. This value must be between 1 and 10 and determines how many pixels
+	  * will be added to the time lines on each Timer event. This method sets the scale of the time axis accordingly.
+	  * @see #setScale(long)
+	  * @param pixels 1-10 the number of pixels to add to the timelines on each timer event. Values greater than 10 will
+	  * be set to 10, while values less than 1 will be set to 1.
+	  * @see #getPixelsPerTick()
+	  */
+	public void setPixelsPerTick (int pixels)
+	{
+		if (pixels<=MIN_PPTICK)
+			pixelsPerTick=MIN_PPTICK;
+		else if (pixels>=MAX_PPTICK)
+			pixelsPerTick=MAX_PPTICK;
+		else
+			pixelsPerTick=pixels;
+
+		setScale(recorder.getPeriodNanos()/pixelsPerTick);
+	}
+
+	/** Set the scale of the time axis (the zoom level). The time at the center of the view stays in place, unless the
+	  * view is following the recording.
+	  * @param nanosPerPixel the number of nanoseconds of recording time per pixel. Values are limited to the range
+	  * between MIN_SCALE and MAX_SCALE.
+	  * @see #getScale()
+	  */
+	public void setScale (long nanosPerPixel)
+	{
+		zoom(nanosPerPixel,(X_END-X_BEGIN)/2);
+	}
+
+	/** Return the current scale of the time axis, in nanoseconds per pixel.
+	  * @see #setScale(long)
+	  */
+	public long getScale()
+	{
+		return scale;
+	}
+
+	/** Set the recording time which is shown at the left edge of the timelines. This stops the view from following the
+	  * recording, until it is panned to the end of the recording again.
+	  * @param nanos the recording time, in nanoseconds (negative values are set to 0).
+	  * @see #getViewStart()
+	  */
+	public void setViewStart (long nanos)
+	{
+		viewStart = (nanos<0) ? 0 : nanos;
+		following = false;
+		updateView();
+	}
+
+	/** Return the recording time which is shown at the left edge of the timelines, in nanoseconds.
+	  * @see #setViewStart(long)
+	  */
+	public long getViewStart()
+	{
+		return viewStart;
+	}
+
+	/** Sets the cursor, which marks a recording time on the timelines. The object tables show the values which their
+	  * numeric fields had at that time. Clicking the timeline sets the cursor, and right-clicking it removes the cursor.
+	  * @param nanos the recording time, in nanoseconds, or -1 to remove the cursor.
+	  * @see ObjectViewTable#setCursorTime(long)
+	  */
+	public void setCursorTime (long nanos)
+	{
+		cursorTime = (nanos<0) ? -1 : nanos;
+		for (int i=0;i<numObjects;++i)
+			myObjects[i].setCursorTime(cursorTime);
+		generalTimeLine.repaint();
+		laneView.repaint();
+	}
+
+	/** Returns the recording time marked by the cursor, or -1 if there is no cursor.
+	  * @see #setCursorTime(long)
+	  */
+	public long getCursorTime()
+	{
+		return cursorTime;
+	}
+
+	/** Pans the view so that the given recording time is at its center.
+	  * @param nanos the recording time, in nanoseconds.
+	  */
+	public void showTime (long nanos)
+	{
+		setViewStart(nanos-(X_END-X_BEGIN)/2*scale);
+	}
+
+	/** Internal method to change the scale, while keeping the time under a given point of the timelines in place.
+	  * @param nanosPerPixel the new scale.
+	  * @param x the point which stays in place, in pixels from the beginning of the timelines.
+	  */
+	private void zoom (long nanosPerPixel, int x)
+	{
+		long t = viewStart+x*scale;			// The time under the anchor point
+
+		if (nanosPerPixel<=MIN_SCALE)
+			scale=MIN_SCALE;
+		else if (nanosPerPixel>=MAX_SCALE)
+			scale=MAX_SCALE;
+		else
+			scale=nanosPerPixel;
+
+		viewStart = t-x*scale;
+		if (viewStart<0)
+			viewStart = 0;
+		updateView();
+	}
+
+	/** Returns the recording time which is shown at the right edge of the timelines, in nanoseconds. */
+	private long getViewEnd()
+	{
+		return viewStart+(X_END-X_BEGIN)*scale;
+	}
+
+	/** Converts recording time to a number of pixels on the timelines, according to the current view. Times outside
+	  * the view are converted to the nearest edge.
+	  * @param nanos the recording time, in nanoseconds.
+	  * @return the distance in pixels from the beginning of the timelines.
+	  */
+	private int toPixels (long nanos)
+	{
+		if (nanos<=viewStart)
+			return 0;
+
+		long x = (nanos-viewStart)/scale;
+		return (x>X_END-X_BEGIN) ? X_END-X_BEGIN : (int)x;
+	}
+
+	/** Internal method to update the view after the recording time or the view has changed. If the view is following
+	  * the recording, it is panned so that the current time of the recorder is at the right edge. Then the scroll bar
+	  * is updated to show the position of the view within the recording, and the time lines are repainted.
+	  */
+	private void updateView()
+	{
+		long span = getViewEnd()-viewStart;
+		long now = recorder.getTime();
+
+		if (following && now>viewStart+span)
+			viewStart = (now-span+scale-1)/scale*scale;		// On a whole pixel, so the lifelines can be shifted
+
+		if (scroller==null)		// Not initialized yet
+			return;
+
+		long total = Math.max(now,viewStart+span);
+		scrollUnit = total/SCROLL_RANGE+1;
+
+		updatingScroller = true;
+		scroller.setValues((int)(viewStart/scrollUnit),(int)(span/scrollUnit),0,(int)(total/scrollUnit));
+		updatingScroller = false;
+
+		generalTimeLine.repaint();
+		laneView.advance();				// Only the columns which have changed are drawn
+	}
+
+	/** Return the current value of the pixelsPerTick field.
+	  * @see #setPixelsPerTick(int)
+	  */
+	public int getPixelsPerTick()
+	{
+		return pixelsPerTick;
+	}
+
+	/** Set the automatic reset flag. The recording is never thrown away: if automatic reset is on, the view follows the
+	  * recording, scrolling forward once the recording reaches the right edge of the timelines. If automatic reset is
+	  * off, the view stays in place while the recording continues, and the rest of the recording can be viewed by
+	  * panning the time axis.
+	  * @see #getAutoReset()
+	  */
+	public void setAutoReset (boolean auto)
+	{
+		autoReset = following = auto;
+	}
+
+	/** Return the current value of the automatic reset flag.
+	  * @see #setAutoReset(boolean)
+	  */
+	public boolean getAutoReset()
+	{
+		return autoReset;
+	}
+
+	/** Set the drawing colors for the time line, the active thread line and the sleeping thread line.
+	  * @param timeCol the color of the time line.
+	  * @param threadCol the color of the active thread line.
+	  * @param sleepCol the color of the sleeping thread line.
+	  * @see #getTimelineColor()
+	  * @see #getThreadlineColor()
+	  * @see #getThreadsleepColor()
+	  */
+	public void setColors (Color timeCol, Color threadCol, Color sleepCol)
+	{
+		timelineColor = timeCol;
+		threadlineColor = threadCol;
+		threadsleepColor = sleepCol;
+		if (laneView!=null)			// Draw the lifelines with the new colors
+			laneView.redrawAll();
+	}
+
+	/** Return the current time line color.
+	  * @see #setColors(Color,Color,Color)
+	  */
+	public Color getTimelineColor()
+	{
+		return timelineColor;
+	}
+
+	/** Return the current active thread line color.
+	  * @see #setColors(Color,Color,Color)
+	  */
+	public Color getThreadlineColor()
+	{
+		return threadlineColor;
+	}
+
+	/** Return the current sleeping thread line color.
+	  * @see #setColors(Color,Color,Color)
+	  */
+	public Color getThreadsleepColor()
+	{
+		return threadsleepColor;
+	}
+
+	/** Set the drawing colors for the thread line of a thread which is blocked on a monitor, waiting, or waiting with a
+	  * timeout (other than sleeping in ThreadPlus.sleep()).
+	  * @param blockedCol the color of the blocked thread line.
+	  * @param waitCol the color of the waiting thread line.
+	  * @param timedWaitCol the color of the timed waiting thread line.
+	  * @see #getThreadblockedColor()
+	  * @see #getThreadwaitColor()
+	  * @see #getThreadtimedwaitColor()
+	  */
+	public void setStateColors (Color blockedCol, Color waitCol, Color timedWaitCol)
+	{
+		threadblockedColor = blockedCol;
+		threadwaitColor = waitCol;
+		threadtimedwaitColor = timedWaitCol;
+		if (laneView!=null)			// Draw the lifelines with the new colors
+			laneView.redrawAll();
+	}
+
+	/** Return the current blocked thread line color.
+	  * @see #setStateColors(Color,Color,Color)
+	  */
+	public Color getThreadblockedColor()
+	{
+		return threadblockedColor;
+	}
+
+	/** Return the current waiting thread line color.
+	  * @see #setStateColors(Color,Color,Color)
+	  */
+	public Color getThreadwaitColor()
+	{
+		return threadwaitColor;
+	}
+
+	/** Return the current timed waiting thread line color.
+	  * @see #setStateColors(Color,Color,Color)
+	  */
+	public Color getThreadtimedwaitColor()
+	{
+		return threadtimedwaitColor;
+	}
+
+	/** Internal method to get the drawing color for a state of a thread.
+	  * @param state the state code.
+	  * @return the color of the thread line in this state.
+	  * @see StateTimeline
+	  */
+	private Color stateColor (byte state)
+	{
+		switch (state)
+		{
+			case StateTimeline.SLEEPING:		return threadsleepColor;
+			case StateTimeline.BLOCKED:			return threadblockedColor;
+			case StateTimeline.WAITING:			return threadwaitColor;
+			case StateTimeline.TIMED_WAITING:	return threadtimedwaitColor;
+			default:							return threadlineColor;
+		}
+	}
+
+	/** Return the number of threads currently monitored by this GTM instance, including the threads which were added
+	  * but are not displayed yet.
+	  */
+	public int getNumOfThreads()
+	{
+		return threadCount.get();
+	}
+
+	/** Return the number of objects currently monitored by this GTM instance, including the objects which were added
+	  * but are not displayed yet.
+	  */
+	public int getNumOfObjects()
+	{
+		return objectCount.get();
+	}
+		
+	/** Adds a thread to the threads monitored by this GTM instance.
+	  * Each new thread is added to the recorder, which will track its lifeline, and receives its own instance of
+	  * ThreadLine which will display the lifeline and, if it is a ThreadPlus object, any messages sent to the thread's
+	  * message channel. This method doesn't lock and may be called from any thread: the thread is recorded from
+	  * the next sample on, and its ThreadLine is added to the display with the next batch of changes.
+	  * @param newThread the thread to add.
+	  * @return the handle of the thread, which can be passed to remove(MonitorHandle).
+	  * @throws AddLimitReachedException when the GTM already monitors the maximum possible number of threads.
+	  * @see #remove(MonitorHandle)
+	  */
+	public MonitorHandle addThread (Thread newThread) throws AddLimitReachedException
+	{
+		if (!reserve(threadCount,MAX_THREADS))
+			throw new AddLimitReachedException("Cannot add thread " + newThread.getName());
+
+		ThreadTrack track = recorder.createTrack(newThread);
+		MonitorHandle handle = enqueue(newThreadHandle(track));	// Display it - the handle is known before it can end
+		recorder.addTrack(track);								// And record it
+		return handle;
+	}
+
+	/** Internal method to create the handle of a recorded thread, with the ThreadLine which will display it. The
+	  * ThreadLine is created at once, so that no message which the thread sends is lost.
+	  * @param track the track which records the thread.
+	  * @return the new handle.
+	  */
+	private MonitorHandle newThreadHandle (ThreadTrack track)
+	{
+		MonitorHandle handle = new MonitorHandle(track);
+		handle.view = new ThreadLine(handle);
+		handles.put(track,handle);
+		return handle;
+	}
+
+	/** Adds an object (instance of Object) to the objects monitored by this GTM instance.
+	  * Each new object will receive its own instance of ObjectViewTable which will display its fields and their values
+	  * at any given time. This method actually calls to addObject(newObj,false).
+	  * @param newObj the object to add.
+	  * @return the handle of the object, which can be passed to remove(MonitorHandle).
+	  */
+	public MonitorHandle addObject (Object newObj)
+	{
+		return addObject(newObj,false);
+	}
+
+	/** Adds an object (instance of Object) to the objects monitored by this GTM instance.
+	  * Each new object will receive its own instance of ObjectViewTable which will display its fields and their values
+	  * at any given time. This method doesn't lock and may be called from any thread: the ObjectViewTable is created
+	  * and added to the display with the next batch of changes.
+	  * @param newObj the object to add.
+	  * @param ancestors indicates whether the inherited fields of this object should also be displayed.
+	  * @return the handle of the object, which can be passed to remove(MonitorHandle).
+	  * @throws AddLimitReachedException when the GTM already monitors the maximum possible number of objects.
+	  * @see #remove(MonitorHandle)
+	  */
+	public MonitorHandle addObject (Object newObj, boolean ancestors) throws AddLimitReachedException
+	{
+		if (!reserve(objectCount,MAX_OBJECTS))
+			throw new AddLimitReachedException("Cannot add object " + newObj.toString());
+
+		ObjectTrack track = recorder.addObject(newObj,ancestors);	// Snapshot it on each sample
+		MonitorHandle handle = new MonitorHandle(track);
+		handles.put(track,handle);
+		return enqueue(handle);
+	}
+
+	/** Removes a thread or an object from the GTM, given its handle. Nothing is done if it has already been removed.
+	  * This method doesn't lock and may be called from any thread: a thread is not recorded from the next sample on,
+	  * and the thread or object is removed from the display with the next batch of changes. The archived lifeline of an
+	  * ended thread is removed in the same way.
+	  * @param handle the handle returned when the thread or the object was added.
+	  */
+	public void remove (MonitorHandle handle)
+	{
+		int was = handle.markRemoved();
+		if (was==MonitorHandle.REMOVED)		// Already removed
+			return;
+
+		if (handle.isThread())
+		{
+			recorder.removeTrack(handle.getTrack());	// Stop recording the thread
+			discoveredHandles.remove(handle.getTrack());
+			handles.remove(handle.getTrack());
+		}
+		else
+		{
+			recorder.removeObjectTrack(handle.getObjectTrack());	// Stop sampling the object
+			handles.remove(handle.getObjectTrack());
+		}
+
+		enqueue(handle);				// Before its place is freed, so that its row is emptied before another is added
+
+		if (!handle.isThread())
+			objectCount.decrementAndGet();
+		else if (was==MonitorHandle.LIVE)	// An archived thread is no longer counted
+			threadCount.decrementAndGet();
+	}
+
+	/** Internal method to reserve a place for a new thread or object, without locking.
+	  * @param count the number of threads or objects.
+	  * @param max the maximum number of threads or objects.
+	  * @return true if the count was incremented, false if it has already reached the maximum.
+	  */
+	private static boolean reserve (AtomicInteger count, int max)
+	{
+		for (;;)
+		{
+			int n = count.get();
+			if (n>=max)
+				return false;
+			if (count.compareAndSet(n,n+1))
+				return true;
+		}
+	}
+
+	/** Internal method to queue a handle which was added or removed. The first handle queued after a batch was applied
+	  * schedules the next batch on the event dispatch thread; the handles queued until it runs are applied with it.
+	  * @param handle the handle to queue.
+	  * @return the handle.
+	  */
+	private MonitorHandle enqueue (MonitorHandle handle)
+	{
+		pendingHandles.add(handle);
+		if (batchScheduled.compareAndSet(false,true))
+			SwingUtilities.invokeLater(batchApplier);
+		return handle;
+	}
+
+	/** Applies all the queued additions and removals to the display, on the event dispatch thread. A new thread or
+	  * object is added after the last one. A removed one leaves a hole, and all the holes are closed at the end of the
+	  * batch, keeping the order of the others, so the cost of a batch is proportional to the number of rows, no matter
+	  * how many threads were removed in it. The lane view and the object panel are updated once per batch. The lifeline
+	  * of an ended thread is put in the archive; once the archive is full, the oldest archived lifeline is removed.
+	  */
+	private void applyChanges()
+	{
+		MonitorHandle handle;
+		boolean threadsChanged = false, objectsChanged = false;
+
+		batchScheduled.set(false);		// Handles queued from now on will schedule another batch
+
+		while ((handle = (MonitorHandle)pendingHandles.poll())!=null)
+		{
+			if (handle.slot<0 && !handle.isRemoved())		// Added
+			{
+				if (handle.isThread())
+				{
+					if (numThreads==myThreads.length)		// Full of holes
+						compactThreads();
+					handle.slot = numThreads;
+					myThreads[numThreads++] = (ThreadLine)handle.view;
+					linesById.put(Long.valueOf(handle.getTrack().getThreadId()),handle.view);
+					threadsChanged = true;
+				}
+				else
+				{
+					if (numObjects==myObjects.length)
+						compactObjects();
+
+					int width = X_OBJEND-X_OBJBEGIN-objectPane.getVerticalScrollBar().getPreferredSize().width;
+					ObjectViewTable table = new ObjectViewTable(handle.getObjectTrack(),new Dimension(width,Y_OBJHEIGHT));
+					table.setCursorTime(cursorTime);
+					objectPanel.add(table);			// Create new ObjectViewTable and add it to the object panel
+					handle.view = table;
+					handle.slot = numObjects;
+					myObjects[numObjects] = table;
+					objectHandles[numObjects++] = handle;
+					objectsChanged = true;
+				}
+			}
+			else if (handle.slot>=0 && handle.isArchived() && !handle.inArchive)	// Ended - keep its lifeline
+			{
+				handle.inArchive = true;
+				archive.addLast(handle);
+				if (archive.size()>MAX_ARCHIVED)			// Evict the oldest, and empty its row at once
+				{
+					MonitorHandle oldest = (MonitorHandle)archive.getFirst();
+					remove(oldest);
+					dropLine(oldest);
+					threadsChanged = true;
+				}
+			}
+			else if (handle.slot>=0 && handle.isRemoved())	// Removed after it was displayed - leave a hole
+			{
+				if (handle.isThread())
+				{
+					dropLine(handle);
+					threadsChanged = true;
+				}
+				else
+				{
+					objectPanel.remove(myObjects[handle.slot]);	// Remove the ObjectViewTable from the object panel
+					myObjects[handle.slot] = null;
+					objectHandles[handle.slot] = null;
+					objectsChanged = true;
+					handle.slot = -1;
+				}
+			}
+		}
+
+		if (threadsChanged)
+		{
+			compactThreads();
+			laneView.updateSize();		// Update the rows of the lane view
+		}
+
+		if (objectsChanged)
+		{
+			compactObjects();
+			validate();					// Revalidate frame
+			objectPanel.repaint();
+		}
+	}
+
+	/** Internal method to empty the row of a removed thread, leaving a hole in the array of ThreadLine objects. The
+	  * handle is taken out of the archive, if it is there. Called on the event dispatch thread.
+	  * @param handle the handle of the thread, which is displayed.
+	  */
+	private void dropLine (MonitorHandle handle)
+	{
+		if (handle.inArchive)
+		{
+			archive.remove(handle);
+			handle.inArchive = false;
+		}
+		if (myThreads[handle.slot]==selectedLine)
+			selectLine(null);
+		linesById.remove(Long.valueOf(handle.getTrack().getThreadId()));
+		myThreads[handle.slot] = null;
+		handle.slot = -1;
+	}
+
+	/** Internal method to close the holes left in the array of ThreadLine objects by removed threads. */
+	private void compactThreads()
+	{
+		int i,j = 0;
+
+		for (i=0;i<numThreads;++i)
+			if (myThreads[i]!=null)
+			{
+				myThreads[j] = myThreads[i];
+				myThreads[j].handle.slot = j;
+				++j;
+			}
+
+		for (i=j;i<numThreads;++i)
+			myThreads[i] = null;
+		numThreads = j;
+	}
+
+	/** Internal method to close the holes left in the array of ObjectViewTable components by removed objects. */
+	private void compactObjects()
+	{
+		int i,j = 0;
+
+		for (i=0;i<numObjects;++i)
+			if (myObjects[i]!=null)
+			{
+				myObjects[j] = myObjects[i];
+				objectHandles[j] = objectHandles[i];
+				objectHandles[j].slot = j;
+				++j;
+			}
+
+		for (i=j;i<numObjects;++i)
+		{
+			myObjects[i] = null;
+			objectHandles[i] = null;
+		}
+		numObjects = j;
+	}
+
+	/** Applies the batches of messages which the drain has prepared, on the event dispatch thread. Each message is passed
+	  * to the ThreadLine of its thread, in the order in which the messages were sent, and the lines of each batch are
+	  * added to the messages of all the threads.
+	  * @see MessageDrain
+	  */
+	private void applyMessages()
+	{
+		MessageDrain.Batch b;
+
+		while ((b = drain.poll())!=null)
+		{
+			for (int i=0;i<b.size();++i)
+			{
+				ThreadMessage msg = b.getMessage(i);
+				ThreadLine line = (ThreadLine)linesById.get(Long.valueOf(msg.getThreadId()));
+				if (line!=null)
+				{
+					line.addMessage(msg,b.getTime(i),b.getLine(i));
+					laneView.markAdded(b.getTime(i));	// Draw its mark on the next tick
+				}
+			}
+
+			for (int i=0;i<b.size();++i)
+				allMessages.add(b.getMessage(i),b.getTime(i),b.getAllLine(i));
+
+			drain.recycle(b);
+		}
+
+		messageModel.refresh();					// Show the new messages, if they are in the shown log
+	}
+
+	/** Selects a ThreadLine, whose messages are then shown in the message area. While no ThreadLine is selected, the
+	  * messages of all the threads are shown.
+	  * @param line the ThreadLine to select, or null to clear the selection.
+	  */
+	private void selectLine (ThreadLine line)
+	{
+		selectedLine = line;
+
+		if (line==null)
+		{
+			messagePane.setBorder(new TitledBorder("Messages - all threads"));
+			messageModel.setLog(allMessages);
+		}
+		else
+		{
+			messagePane.setBorder(new TitledBorder("Messages - " + line.track.getName()));
+			messageModel.setLog(line.log);
+		}
+		laneView.repaint();
+	}
+
+	/** Searches the messages which were sent within the part of the recording shown on the timelines. This is the same
+	  * as search(query,from,to) with the times at the left and right edges of the timelines.
+	  * @param query the words to find, or an empty string to show the messages of the selected thread again.
+	  * @see #search(String,long,long)
+	  */
+	public void search (String query)
+	{
+		search(query,viewStart,getViewEnd());
+	}
+
+	/** Searches the messages of the selected thread (or of all the threads, if no thread is selected), and shows the
+	  * latest messages which contain all the given words, and which were sent within the given range of recording
+	  * time, in the message area. The words are matched whole, regardless of case. Selecting a thread shows its
+	  * messages again.
+	  * @param query the words to find, or an empty string to show the messages of the selected thread again.
+	  * @param from the beginning of the time range, in nanoseconds of recording time.
+	  * @param to the end of the time range (inclusive), in nanoseconds of recording time.
+	  * @see MessageIndex#search(String,long,long,long,MessageLog)
+	  */
+	public void search (String query, long from, long to)
+	{
+		if (query.trim().length()==0)
+		{
+			selectLine(selectedLine);
+			return;
+		}
+
+		long threadId = (selectedLine!=null) ? selectedLine.track.getThreadId() : -1;
+		searchHits.clear();
+		int n = messageIndex.search(query,threadId,from,to,searchHits);
+
+		String where = (selectedLine!=null) ? selectedLine.track.getName() : "all threads";
+		messagePane.setBorder(new TitledBorder("Messages - " + where + " - \"" + query.trim() + "\": " + n +
+												(n==MAX_HITS ? "+" : "") + " found"));
+		messageModel.setLog(searchHits);
+	}
+
+	/** Starts discovering threads automatically. From now on, the recorder enumerates the live threads of the given
+	  * group at regular intervals. Each new thread whose name matches the given pattern is added to the GTM, and is
+	  * removed from it once it dies. Discovered threads are not added while the GTM monitors the maximum possible number
+	  * of threads, but are added once there is room for them. Any previous discovery is replaced.
+	  * @param group the thread group to enumerate, or null for all the threads of the JVM.
+	  * @param namePattern a regular expression which the whole name of a thread must match, or null for all the threads.
+	  * @see ThreadDiscovery
+	  * @see #stopDiscovery()
+	  */
+	public void startDiscovery (ThreadGroup group, String namePattern)
+	{
+		ThreadDiscovery disc = new ThreadDiscovery(group,namePattern);
+
+		disc.addTrackListener(new TrackListener()		// Add and remove the lines with the next batch of changes
+			{
+				public void trackAdded (ThreadTrack track)
+				{
+					if (reserve(threadCount,MAX_THREADS))
+					{
+						MonitorHandle handle = newThreadHandle(track);
+						discoveredHandles.put(track,handle);
+						enqueue(handle);
+					}
+					else
+						recorder.removeTrack(track);	// No room - the discovery tries again later
+				}
+
+				public void trackEnded (ThreadTrack track) {}
+
+				public void trackRemoved (ThreadTrack track)
+				{
+					MonitorHandle handle = (MonitorHandle)discoveredHandles.remove(track);
+					if (handle!=null)
+						remove(handle);
+				}
+
+				public void objectTrackRemoved (ObjectTrack track) {}
+			});
+
+		recorder.setDiscovery(disc);
+	}
+
+	/** Stops discovering threads automatically. The threads which were already discovered remain in the GTM.
+	  * @see #startDiscovery(ThreadGroup,String)
+	  */
+	public void stopDiscovery()
+	{
+		recorder.setDiscovery(null);
+	}
+
+	/** Removes a thread from the GTM, given its index. The queued changes are applied first, so that the index refers
+	  * to all the threads added so far. This method should only be called from the event dispatch thread.
+	  * @param index the index of the thread to remove.
+	  * @throws IndexOutOfBoundsException when the index indicates a thread that doesn't exist.
+	  */
+	public void removeThread (int index) throws IndexOutOfBoundsException
+	{
+		applyChanges();
+
+		if (index>=numThreads)
+			throw new IndexOutOfBoundsException("Cannot remove - index " + index + " out of bounds");
+
+		remove(myThreads[index].handle);
+		applyChanges();
+	}
+
+	/** Removes a thread from the GTM, given a reference to it. The threads are searched one by one; use
+	  * remove(MonitorHandle) to remove a thread in constant time. This method should only be called from the event
+	  * dispatch thread.
+	  * @param thr the thread to remove.
+	  * @throws NoSuchElementException when the thread referenced by the parameter thr is not found in the GTM.
+	  */
+	public void removeThread (Thread thr) throws NoSuchElementException
+	{
+		int i;
+
+		applyChanges();
+
+		for (i=0;i<numThreads;++i)
+			if (myThreads[i].track.getThread()==thr)	// If thread found in the GTM
+			{
+				removeThread(i);				// Remove it by index
+				return;
+			}
+
+		throw new NoSuchElementException("Cannot remove - no such thread in manager: " + thr.toString());
+	}
+
+	/** Removes all threads from the GTM, in a single batch. This method should only be called from the event dispatch
+	  * thread.
+	  */
+	public void removeAllThreads()
+	{
+		applyChanges();
+
+		for (int i=0;i<numThreads;++i)
+			remove(myThreads[i].handle);
+		applyChanges();
+	}
+
+	/** Removes an object from the GTM, given its index. The queued changes are applied first, so that the index refers
+	  * to all the objects added so far. This method should only be called from the event dispatch thread.
+	  * @param index the index of the object to remove.
+	  * @throws IndexOutOfBoundsException when the index indicates an object that doesn't exist.
+	  */
+	public void removeObject (int index) throws IndexOutOfBoundsException
+	{
+		applyChanges();
+
+		if (index>=numObjects)
+			throw new IndexOutOfBoundsException("Cannot remove - index " + index + " out of bounds");
+
+		remove(objectHandles[index]);
+		applyChanges();
+	}
+
+	/** Removes an object from the GTM, given a reference to it. The objects are searched one by one; use
+	  * remove(MonitorHandle) to remove an object in constant time. This method should only be called from the event
+	  * dispatch thread.
+	  * @param obj the object to remove.
+	  * @throws NoSuchElementException when the object referenced by the parameter obj is not found in the GTM.
+	  */
+	public void removeObject (Object obj) throws NoSuchElementException
+	{
+		int i;
+
+		applyChanges();
+
+		for (i=0;i<numObjects;++i)
+			if (myObjects[i].getObject()==obj)			// If object found in the GTM
+			{
+				removeObject(i);					// Remove it
+				return;
+			}
+
+		throw new NoSuchElementException("Cannot remove - no such object in manager: " + obj.toString());
+	}
+
+	/** Removes all objects from the GTM, in a single batch. This method should only be called from the event dispatch
+	  * thread.
+	  */
+	public void removeAllObjects()
+	{
+		applyChanges();
+
+		for (int i=0;i<numObjects;++i)
+			remove(objectHandles[i]);
+		applyChanges();
+	}
+
+	/** Starts this GraphicalThreadManager. This function starts the recorder and the message drain, and invokes
+	  * mainTimer.start() to cause the Swing Timer to start generating events.
+	  * @see ThreadRecorder#start()
+	  * @see MessageDrain#start()
+	  */
+	public void start()
+	{
+		recorder.start();									// Start recording
+		drain.start();										// Start receiving the messages of the threads
+		mainTimer.start();									// Start timer
+	}
+
+	/** Stops this GraphicalThreadManager. This function stops the recorder and the message drain, and invokes
+	  * mainTimer.stop() to cause the Swing Timer to stop generating events.
+	  */
+	public void stop()
+	{
+		recorder.stop();
+		drain.stop();
+		mainTimer.stop();
+	}
+
+	/** Resets this GraphicalThreadManager. First stop() is called to stop the recorder and the timer. Then the recorder
+	  * is reset, causing its position and all the recorded tracks to be reset. The search index is cleared as well,
+	  * since the recording time starts over.
+	  * @see #stop()
+	  * @see #resetHard()
+	  */
+	public void reset()
+	{
+		stop();						// Stop recorder and timer
+		recorder.reset();			// Reset recorder position and tracks
+
+		for (int i=0;i<numThreads;++i)
+			myThreads[i].clearMarks();	// The marks belong to the old recording
+		messageIndex.clear();			// And so do the times of the indexed messages
+		searchHits.clear();
+		messageModel.refresh();
+		if (laneView!=null)
+			laneView.redrawAll();
+
+		viewStart = 0;				// Show the beginning of the new recording
+		following = autoReset;
+		updateView();
+		repaint();
+	}
+
+	/** Performs a hard reset of this GraphicalThreadManager. Hard reset includes, resetting the timelines and also
+	  * resetting the message boxes of all the ThreadLine objects and the init time. The function clears the init time
+	  * of the recorder, so that it will be re-initialized on the next call to start(). Then it calls reset(), then
+	  * ThreadLine.clearText() for all ThreadLine objects.
+	  * @see #reset()
+	  * @see GraphicalThreadManager.ThreadLine#clearText()
+	  * @see ThreadRecorder#clearInitTime()
+	  */
+	public void resetHard()
+	{
+		recorder.clearInitTime();
+		reset();
+
+		allMessages.clear();
+		for (int i=0;i<numThreads;++i)
+			myThreads[i].clearText();		// Clear text of threads
+		messageModel.refresh();
+	}
+
+	/** Restarts this GraphicalThreadManager. This function basically invokes reset(), then start().
+	  * @see #reset()
+	  * @see #start()
+	  */
+	public void restart()
+	{
+		reset();
+		start();
+	}
+
+	/** Performs a hard restart of this GraphicalThreadManager. The function basically invokes resetHard(), then start().
+	  * @see #resetHard()
+	  * @see #start()
+	  */
+	public void restartHard()
+	{
+		resetHard();
+		start();
+	}
+
+	/** Sets the file into which the messages of all the threads are written, from now on. The messages are written by
+	  * the message drain as they arrive, so the file keeps the messages which are no longer kept in memory. The file is
+	  * replaced if it exists.
+	  * @param file the recording file, or null to stop recording the messages.
+	  * @throws IOException if the file cannot be created.
+	  * @see MessageDrain#setRecordingFile(File)
+	  */
+	public void setRecordingFile (File file) throws IOException
+	{
+		drain.setRecordingFile(file);
+	}
+
+	/** Resets the initialization time of this GraphicalThreadManager. This function sets the init time of the recorder
+	  * to the current system time.
+	  */
+	public void resetInitTime()
+	{
+		recorder.resetInitTime();
+	}
+
+	/** Returns the recorder which samples the threads monitored by this GTM.
+	  */
+	public ThreadRecorder getRecorder()
+	{
+		return recorder;
+	}
+
+	/** Invoked whenever an action event is sent to the GTM. Normally only the Swing Timer sends those events, and any
+	  * events which are not from the timer will be ignored. Whenever an event from the timer is received, the GTM
+	  * renders all of its components from the recorder - the main
+	  * timeline and the visible thread lines are drawn up to the current recorder time (panning the view forward if it
+	  * follows the recording), and the visible tables displaying the objects fields are updated. All the components are
+	  * repainted and the window title is updated as well. If the
+	  * recorder has been stopped (for example, because a limit was set on it), the timer is stopped after this last
+	  * repaint.
+	  */
+	public void actionPerformed(ActionEvent e)
+	{
+		if (e.getSource()==mainTimer)						// Make sure that it's a timer event
+		{
+			if (!recorder.isRecording())		// If the recorder was stopped, this is the last repaint
+				mainTimer.stop();
+
+			int i;
+
+			updateView();						// Follow the recording and repaint the time lines
+
+			Rectangle visible = objectPanel.getVisibleRect();
+			for (i=0;i<numObjects;++i)
+			{
+				if (myObjects[i].getBounds().intersects(visible))
+					myObjects[i].update();		// Update the changed cells of the visible object tables
+			}
+
+			legend.repaint();					// Repaint legend component
+		}
+
+		setGTMTitle();			// Set title to display the current number of threads and objects
+	}
+
+	/** Validates this frame to ensure that all components are drawn at the proper places with the proper sizes.
+	  * This method will invoke the validate() methods of the GTM's subcomponents to ensure that they are repainted
+	  * internally as should.
+	  */
+	public void validate()
+	{
+		super.validate();															// Validate JFrame
+		
+		generalTimeLine.setBounds(X_ORIGIN,Y_ORIGIN,							// Set bounds for the timeline
+									generalTimeLine.getPreferredSize().width,
+									generalTimeLine.getPreferredSize().height);
+
+		int i,y;
+
+		y = Y_ORIGIN + generalTimeLine.getPreferredSize().height;
+
+		scroller.setBounds(X_ORIGIN,y,generalTimeLine.getPreferredSize().width,Y_SCROLLHEIGHT);	// Under the timeline
+
+		y = y + Y_SCROLLHEIGHT + Y_SPACE;
+
+		int messageY = Y_LEGEND - Y_SPACE/2 - Y_MESSAGEHEIGHT;
+
+		lanePane.setBounds(X_ORIGIN,y,											// Set bounds for the thread lines
+							laneView.getPreferredSize().width+lanePane.getVerticalScrollBar().getPreferredSize().width,
+							messageY-Y_SPACE/2-y);
+		lanePane.validate();
+
+		messagePane.setBounds(X_ORIGIN,messageY,lanePane.getWidth(),Y_MESSAGEHEIGHT);	// Under the thread lines
+		messagePane.validate();
+
+		y = 0;
+
+		for (i=0;i<numObjects;++i)												// Set bounds for all the object tables
+		{
+			myObjects[i].setBounds(0,y,
+									myObjects[i].getPreferredSize().width,
+									myObjects[i].getPreferredSize().height);
+			y = y + Y_OBJHEIGHT+1;
+
+			myObjects[i].validate();		// Validate all object tables
+		}
+
+		objectPanel.setPreferredSize(new Dimension(X_OBJEND-X_OBJBEGIN,y));
+		objectPane.setBounds(X_OBJBEGIN,Y_ORIGIN,X_OBJEND-X_OBJBEGIN,Y_OBJPANEHEIGHT);
+		objectPane.validate();
+
+		legend.setBounds(X_ORIGIN,Y_LEGEND,legend.getPreferredSize().width,legend.getPreferredSize().height);
+	}
+
+	/** Returns a string representation of this GraphicalThreadManager. The string representation includes the number of
+	  * threads and objects currently monitored.
+	  */
+	public String toString()
+	{
+		return ("Graphical Thread Manager -  Threads: " + numThreads + " , Objects: " + numObjects);
+	}
+
+	/** Called internally by the constructors to initialize the GTM frame. Initialization includes creating the general
+	  * timeline and the legend components and the Swing Timer.
+	  */
+	protected void initialize()
+	{
+		setAutoReset(true);				// By default auto-reset is enabled
+		setStateColors(DEFAULT_THREADBLOCKED_COLOR,DEFAULT_THREADWAIT_COLOR,DEFAULT_THREADTIMEDWAIT_COLOR);
+
+		setGTMTitle();										// Set title
+		setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);		// Set default close operation
+
+		viewControl = new ViewControl();					// Mouse and scroll bar control of the time axis
+
+		generalTimeLine = new TimeLine();					// Create the main timeline
+		generalTimeLine.addMouseListener(viewControl);
+		generalTimeLine.addMouseMotionListener(viewControl);
+		generalTimeLine.addMouseWheelListener(viewControl);
+		getContentPane().add(generalTimeLine);
+
+		scroller = new JScrollBar(JScrollBar.HORIZONTAL);	// Create the scroll bar to pan over the recording
+		scroller.addAdjustmentListener(viewControl);
+		getContentPane().add(scroller);
+
+		myThreads = new ThreadLine[MAX_THREADS+MAX_ARCHIVED];	// Allocate array for threads, and archived lifelines
+		numThreads = 0;
+
+		laneView = new LaneView();							// Create the component which paints the thread lines
+		lanePane = new JScrollPane(laneView,JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+		lanePane.getVerticalScrollBar().setUnitIncrement(Y_LANEHEIGHT);
+		getContentPane().add(lanePane);
+
+		recorder.addTrackListener(reclaimer);				// Archive the ended threads, drop the collected objects
+
+		allMessages = new MessageLog(MAX_MESSAGES);
+		drain.setNotifier(new Runnable()		// Apply the batches of messages as soon as they are ready
+			{
+				public void run()
+				{
+					SwingUtilities.invokeLater(messageApplier);
+				}
+			});
+		messageModel = new MessageListModel();				// Create the message list of the selected thread
+		messageList = new JList(messageModel);
+		messageList.setPrototypeCellValue("0");				// All the lines have the same height...
+		messageList.setFixedCellWidth(2*DEFAULT_X_SIZE);	// ...and width, so only the visible lines are measured
+		messageList.addListSelectionListener(new ListSelectionListener()	// Show when the selected message was sent
+			{
+				public void valueChanged (ListSelectionEvent e)
+				{
+					int i = messageList.getSelectedIndex();
+					if (!e.getValueIsAdjusting() && !messageModel.isUpdating() && i>=0 && i<messageModel.getSize())
+						showTime(messageModel.getTime(i));
+				}
+			});
+		messagePane = new JScrollPane(messageList);
+		getContentPane().add(messagePane);
+
+		searchHits = new MessageLog(MAX_HITS);
+		drain.setIndex(messageIndex);						// Index the messages as they arrive
+		searchField = new JTextField();						// Create the search field above the message list
+		searchField.setToolTipText("Words to find in the messages (Enter to search, empty to show all)");
+		searchField.addActionListener(new ActionListener()
+			{
+				public void actionPerformed (ActionEvent e)
+				{
+					search(searchField.getText());
+				}
+			});
+		messagePane.setColumnHeaderView(searchField);
+		selectLine(null);
+
+		myObjects = new ObjectViewTable[MAX_OBJECTS];		// Allocate array for objects
+		objectHandles = new MonitorHandle[MAX_OBJECTS];
+		numObjects = 0;
+
+		objectPanel = new JPanel(null);						// Create the panel which holds the object tables
+		objectPane = new JScrollPane(objectPanel,JScrollPane.VERTICAL_SCROLLBAR_ALWAYS,
+										JScrollPane.HORIZONTAL_SCROLLBAR_NEVER);
+		objectPane.getVerticalScrollBar().setUnitIncrement(Y_OBJHEIGHT+1);
+		getContentPane().add(objectPane);
+
+		legend = new LegendPanel();							// Create the legend component
+		getContentPane().add(legend);
+
+		mainTimer = new javax.swing.Timer(ThreadRecorder.DEFAULT_PERIOD,this);	// Timer which will repaint this GTM
+
+		setVisible(true);
+		validate();				// Validate frame to ensure proper position of components
+	}
+
+	/** Sets the title of the GTM frame. The title includes the number of threads and objects currently monitored, and
+	  * therefore can change over time. This method is invoked by the initialize() and by actionPerformed() methods
+	  * of this class.
+	  */
+	protected void setGTMTitle()
+	{
+		setTitle ("Graphical Thread Manager [ Threads: " + numThreads + " ; Objects: " + numObjects + " ]");
+	}
+}
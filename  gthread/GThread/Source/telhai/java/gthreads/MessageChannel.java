@@ -0,0 +1,322 @@
+package telhai.java.gthreads;
+
+import java.util.*;				// For iterators
+import java.util.concurrent.*;	// For the channels of plain threads
+import java.util.concurrent.atomic.*;	// For the sequence numbers and counters
+
+/** This class is a bounded channel of messages, which are sent by any number of threads and received by a single
+  * consumer (normally the GraphicalThreadManager). Each ThreadPlus object has a channel, into which print() and
+  * println() send their messages.
+  *
+  * Sending a message never blocks and never waits for the consumer: the channel is a fixed-size ring, in which each
+  * cell has a sequence number telling whether it is free or holds a message. A producer claims a free cell by advancing
+  * the tail with a single compare-and-set, writes the message, and then publishes the cell by advancing its sequence
+  * number. The consumer takes the messages in the same way from the head. No locks are used, and no memory is
+  * allocated apart from the message itself.
+  *
+  * When the ring is full, the message is handled according to the policy of the channel: with DROP the new message is
+  * discarded, and with OVERWRITE the oldest message is discarded to make room for it. Either way, the discarded message
+  * is counted, so the consumer can tell how many messages were lost.
+  *
+  * A plain thread (which is not a ThreadPlus object) has no channel of its own, but one can be attached to it, for
+  * example by a MessageDrain which receives its messages. The channels of plain threads are kept in a lock-free
+  * table, so finding the channel of a thread never locks. Since a plain thread can only send messages through a
+  * ThreadAwarePrintStream or a ThreadLogHandler, a MessageDrain attaches channels only while one of them is in use
+  * (see isCapturing()).
+  *
+  * @see ThreadMessage
+  * @see ThreadAwarePrintStream
+  * @see ThreadPlus#getMessageChannel()
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public final class MessageChannel
+{
+	/** Policy: when the channel is full, new messages are discarded */
+	public static final int DROP = 0;
+	/** Policy: when the channel is full, the oldest message is discarded to make room for the new one */
+	public static final int OVERWRITE = 1;
+
+	/** Default capacity of a channel (must be a power of 2) */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** The channels attached to plain threads, by their threads */
+	private static final ConcurrentHashMap attached = new ConcurrentHashMap();
+
+	/** The number of the installed streams and handlers which send the output of plain threads to their channels */
+	private static final AtomicInteger capturers = new AtomicInteger();
+
+	/** The messages */
+	private final ThreadMessage[] messages;
+	/** The sequence number of each cell. A cell whose sequence number equals a position of the tail is free for that
+	  * position; a cell whose sequence number is one more than a position of the head holds the message of that
+	  * position.
+	  */
+	private final AtomicLongArray sequences;
+	/** Mask to convert a position to an index in the arrays */
+	private final int mask;
+
+	/** The position of the next message to be sent */
+	private final AtomicLong tail = new AtomicLong();
+	/** The position of the next message to be received */
+	private final AtomicLong head = new AtomicLong();
+	/** The number of messages discarded because the channel was full */
+	private final AtomicLong lost = new AtomicLong();
+	/** The number of discarded messages which were already reported by takeLost(). Used only by the consumer. */
+	private long reportedLost;
+
+	/** The policy for a full channel */
+	private volatile int policy;
+
+	/** Constructs a channel with the default capacity, which drops new messages when it is full. */
+	public MessageChannel()
+	{
+		this(DEFAULT_CAPACITY,DROP);
+	}
+
+	/** Constructs a channel with the given capacity and policy.
+	  * @param capacity the capacity of the channel, rounded up to a power of 2.
+	  * @param policy DROP or OVERWRITE.
+	  */
+	public MessageChannel (int capacity, int policy)
+	{
+		int cap = 2;
+		while (cap<capacity)
+			cap <<= 1;
+
+		messages = new ThreadMessage[cap];
+		sequences = new AtomicLongArray(cap);
+		for (int i=0;i<cap;++i)
+			sequences.set(i,i);			// All the cells are free for the first round
+		mask = cap-1;
+
+		setPolicy(policy);
+	}
+
+	/** Returns the channel of a thread: the channel of a ThreadPlus object, or the channel attached to a plain thread.
+	  * This method never locks.
+	  * @param thr the thread.
+	  * @return the channel, or null if the thread is a plain thread with no channel attached.
+	  */
+	public static MessageChannel of (Thread thr)
+	{
+		if (thr instanceof ThreadPlus)
+			return ((ThreadPlus)thr).getMessageChannel();
+		return (MessageChannel)attached.get(thr);
+	}
+
+	/** Returns the channel of a thread, attaching a new channel (with the default capacity and policy) to a plain
+	  * thread which has none yet.
+	  * @param thr the thread.
+	  * @return the channel.
+	  */
+	public static MessageChannel attach (Thread thr)
+	{
+		MessageChannel ch = of(thr);
+		if (ch!=null)
+			return ch;
+
+		ch = new MessageChannel();
+		MessageChannel old = (MessageChannel)attached.putIfAbsent(thr,ch);
+		return (old!=null) ? old : ch;
+	}
+
+	/** Returns true if the output of plain threads is sent to their channels: a ThreadAwarePrintStream is installed, or a
+	  * ThreadLogHandler is open. Otherwise a plain thread has no way to send a message, and needs no channel.
+	  */
+	public static boolean isCapturing()
+	{
+		return capturers.get()>0;
+	}
+
+	/** Counts a stream or a handler which sends the output of plain threads to their channels, from now on. */
+	static void startCapture()
+	{
+		capturers.incrementAndGet();
+	}
+
+	/** Counts off a stream or a handler which was counted by startCapture(). */
+	static void stopCapture()
+	{
+		capturers.decrementAndGet();
+	}
+
+	/** Detaches the channels of the plain threads which have ended, so they can be collected. */
+	public static void detachEnded()
+	{
+		Iterator it = attached.keySet().iterator();
+		while (it.hasNext())
+			if (!((Thread)it.next()).isAlive())
+				it.remove();
+	}
+
+	/** Sends a message. This method never blocks, and may be called by any number of threads at the same time.
+	  * @param msg the message.
+	  * @return true if the message was sent, false if it was discarded because the channel is full.
+	  */
+	public boolean offer (ThreadMessage msg)
+	{
+		for (;;)
+		{
+			long pos = tail.get();
+			int i = (int)pos & mask;
+			long dif = sequences.get(i)-pos;
+
+			if (dif==0)						// The cell is free - try to claim it
+			{
+				if (tail.compareAndSet(pos,pos+1))
+				{
+					messages[i] = msg;
+					sequences.set(i,pos+1);		// Publish the message to the consumer
+					return true;
+				}
+			}
+			else if (dif<0)					// The channel is full
+			{
+				if (policy==DROP || !discardOldest())
+				{
+					lost.incrementAndGet();
+					return false;
+				}
+				lost.incrementAndGet();		// The oldest message was discarded - try again
+			}
+		}
+	}
+
+	/** Sends a batch of messages, in their order. The free cells for as many of the messages as possible are claimed
+	  * together, with a single compare-and-set, so sending a batch costs about as much as sending a single message. If
+	  * the channel becomes full, the rest of the messages are handled one by one according to the policy. This method
+	  * never blocks, and may be called by any number of threads at the same time.
+	  * @param buf the messages.
+	  * @param off the index in the buffer of the first message.
+	  * @param n the number of messages.
+	  * @return the number of messages which were sent.
+	  */
+	public int offer (ThreadMessage[] buf, int off, int n)
+	{
+		int sent = 0;
+
+		while (n>0)
+		{
+			long pos = tail.get();
+			int k = 0;
+			while (k<n && sequences.get((int)(pos+k) & mask)==pos+k)	// Count the free cells
+				++k;
+
+			if (k==0)							// Full - let the policy handle the next message
+			{
+				if (offer(buf[off]))
+					++sent;
+				++off;
+				--n;
+			}
+			else if (tail.compareAndSet(pos,pos+k))	// Claim all the free cells at once
+			{
+				for (int j=0;j<k;++j)
+				{
+					int i = (int)(pos+j) & mask;
+					messages[i] = buf[off+j];
+					sequences.set(i,pos+j+1);	// Publish the message to the consumer
+				}
+				sent += k;
+				off += k;
+				n -= k;
+			}
+		}
+		return sent;
+	}
+
+	/** Discards the oldest message, to make room for a new one.
+	  * @return true if a message was discarded, false if there was no message which could be discarded.
+	  */
+	private boolean discardOldest()
+	{
+		for (;;)
+		{
+			long pos = head.get();
+			int i = (int)pos & mask;
+			long dif = sequences.get(i)-(pos+1);
+
+			if (dif<0)						// No message, or the message is still being written
+				return false;
+			if (dif==0 && head.compareAndSet(pos,pos+1))
+			{
+				messages[i] = null;
+				sequences.set(i,pos+mask+1);	// Free the cell for the next round
+				return true;
+			}
+		}
+	}
+
+	/** Receives the waiting messages, oldest first. Only the consumer should call this method.
+	  * @param buf receives the messages.
+	  * @param off the index in the buffer of the first message.
+	  * @param max the maximum number of messages to receive (not more than the room in the buffer).
+	  * @return the number of messages received.
+	  */
+	public int drain (ThreadMessage[] buf, int off, int max)
+	{
+		int n = 0;
+
+		while (n<max)
+		{
+			long pos = head.get();
+			int i = (int)pos & mask;
+			long dif = sequences.get(i)-(pos+1);
+
+			if (dif<0)						// No more messages
+				break;
+			if (dif==0 && head.compareAndSet(pos,pos+1))	// May fail if a producer has just discarded it
+			{
+				buf[off+n++] = messages[i];
+				messages[i] = null;
+				sequences.set(i,pos+mask+1);	// Free the cell for the next round
+			}
+		}
+		return n;
+	}
+
+	/** Returns the number of messages waiting to be received. The value may be out of date by the time it is used. */
+	public int size()
+	{
+		long n = tail.get()-head.get();
+		return (n<0) ? 0 : (n>mask ? mask+1 : (int)n);
+	}
+
+	/** Returns the capacity of the channel. */
+	public int getCapacity()
+	{
+		return mask+1;
+	}
+
+	/** Sets the policy for a full channel.
+	  * @param policy DROP or OVERWRITE (any other value is taken as DROP).
+	  */
+	public void setPolicy (int policy)
+	{
+		this.policy = (policy==OVERWRITE) ? OVERWRITE : DROP;
+	}
+
+	/** Returns the policy for a full channel. */
+	public int getPolicy()
+	{
+		return policy;
+	}
+
+	/** Returns the number of messages discarded so far because the channel was full. */
+	public long getLost()
+	{
+		return lost.get();
+	}
+
+	/** Returns the number of messages discarded because the channel was full, since the last call to this method. Only
+	  * the consumer should call this method.
+	  */
+	public long takeLost()
+	{
+		long n = lost.get();
+		long d = n-reportedLost;
+		reportedLost = n;
+		return d;
+	}
+}
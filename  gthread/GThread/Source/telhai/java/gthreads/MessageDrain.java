@@ -0,0 +1,455 @@
+package telhai.java.gthreads;
+
+import java.util.*;				// For sorting and hash tables
+import java.io.*;				// For the recording file
+import java.util.concurrent.*;	// For the queues of batches
+import java.util.concurrent.atomic.*;	// For the notification flag
+
+/** This class receives the messages which the threads of a ThreadRecorder send to their channels, away from the display.
+  * Once started, the MessageDrain runs its own thread, which wakes up at regular intervals (50ms by default), drains the
+  * channels of all the recorded ThreadPlus objects in bulk, and prepares the messages for display: they are merged in
+  * the order in which they were sent, converted to recording time and formatted. The prepared messages are handed to
+  * the consumer as a Batch, through a lock-free queue, so the consumer (normally the event dispatch thread of the
+  * GraphicalThreadManager) only has to append finished lines, and never reads a channel itself.
+  *
+  * The drain thread reuses its buffers from one round to the next, and the consumer gives each batch back with
+  * recycle() once it has used it, so that a steady flow of messages doesn't allocate new buffers. If a channel has
+  * discarded messages since the last round, a note with their number is added to the messages of its thread. The
+  * messages which a ThreadPlus with group commit has left in its batch when it ended are sent on its behalf. While a
+  * ThreadAwarePrintStream or a ThreadLogHandler is in use, a channel is attached to each recorded plain thread, so
+  * that its output can be captured too (see MessageChannel#isCapturing()). Log records sent by a ThreadLogHandler are
+  * formatted here, on the drain thread.
+  *
+  * The consumer normally keeps only the latest messages in memory (see MessageLog). To keep all of them, a recording
+  * file can be set: the drain thread writes the lines of each batch to the file before handing it over, so the
+  * messages which the consumer has dropped remain available there, and the file is written away from the display.
+  * Likewise, an index can be set, to which the drain thread adds each batch, so the messages can be searched.
+  *
+  * @see MessageChannel
+  * @see ThreadMessage
+  * @see ThreadRecorder
+  * @see MessageLog
+  * @see MessageIndex
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class MessageDrain implements Runnable
+{
+	/** Default draining period in milliseconds */
+	public static final int DEFAULT_PERIOD = 50;
+
+	/** The number of rounds between two checks for channels of plain threads which have ended */
+	private static final int DETACH_ROUNDS = 20;
+
+	/** This class is a batch of messages prepared by the drain thread, in the order in which they were sent. Each
+	  * message comes with its recording time and with two formatted lines: one for the messages of its thread, and one
+	  * with the name of its thread, for the messages of all the threads. The lines don't end with a line terminator. A
+	  * batch belongs to the consumer from poll() until it is given back by recycle().
+	  *
+	  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+	  */
+	public static final class Batch
+	{
+		/** The messages */
+		private ThreadMessage[] messages = new ThreadMessage[64];
+		/** The recording times of the messages */
+		private long[] times = new long[64];
+		/** The formatted lines of the messages */
+		private String[] lines = new String[64];
+		/** The formatted lines of the messages, with the names of their threads */
+		private String[] allLines = new String[64];
+		/** The number of messages in the batch */
+		private int size;
+
+		/** Constructs an empty batch. Used only by the drain thread. */
+		private Batch() {}
+
+		/** Makes room for the given number of messages, and empties the batch.
+		  * @param n the number of messages.
+		  */
+		private void clear (int n)
+		{
+			for (int i=0;i<size;++i)		// Don't keep the old messages from being collected
+			{
+				messages[i] = null;
+				lines[i] = null;
+				allLines[i] = null;
+			}
+			if (messages.length<n)
+			{
+				messages = new ThreadMessage[n];
+				times = new long[n];
+				lines = new String[n];
+				allLines = new String[n];
+			}
+			size = 0;
+		}
+
+		/** Returns the number of messages in the batch. */
+		public int size()
+		{
+			return size;
+		}
+
+		/** Returns a message of the batch.
+		  * @param i the index of the message.
+		  */
+		public ThreadMessage getMessage (int i)
+		{
+			return messages[i];
+		}
+
+		/** Returns the recording time when a message of the batch was sent.
+		  * @param i the index of the message.
+		  */
+		public long getTime (int i)
+		{
+			return times[i];
+		}
+
+		/** Returns the formatted line of a message of the batch: its recording time followed by its text.
+		  * @param i the index of the message.
+		  */
+		public String getLine (int i)
+		{
+			return lines[i];
+		}
+
+		/** Returns the formatted line of a message of the batch, with the name of its thread after the time.
+		  * @param i the index of the message.
+		  */
+		public String getAllLine (int i)
+		{
+			return allLines[i];
+		}
+	}
+
+	/** Orders messages by their sequence numbers */
+	private static final Comparator BY_SEQUENCE = new Comparator()
+		{
+			public int compare (Object o1, Object o2)
+			{
+				long s1 = ((ThreadMessage)o1).getSequence(), s2 = ((ThreadMessage)o2).getSequence();
+				return (s1<s2) ? -1 : (s1==s2 ? 0 : 1);
+			}
+		};
+
+	/** This class is the drain thread, which can be told apart from the threads of the application.
+	  *
+	  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+	  */
+	private static final class Drainer extends Thread
+	{
+		/** Constructs a drain thread.
+		  * @param drain the drain which it runs.
+		  */
+		Drainer (MessageDrain drain)
+		{
+			super(drain,"GTM Message Drain");
+			setDaemon(true);		// The drain should never keep the application alive
+		}
+	}
+
+	/** The recorder whose threads are drained */
+	private ThreadRecorder recorder;
+
+	/** The draining period in milliseconds */
+	private int period;
+
+	/** The drain thread, or null if the drain is stopped */
+	private Thread drainer;
+
+	/** Receives the messages from the channels on each round. Grown whenever it turns out to be too small. */
+	private ThreadMessage[] drained;
+
+	/** The number of rounds since the drain was constructed */
+	private int rounds;
+
+	/** The threads which have sent the messages of the current round, by their ids */
+	private HashMap senders;
+
+	/** The batches which are ready for the consumer */
+	private ConcurrentLinkedQueue ready;
+
+	/** The batches which the consumer has given back */
+	private ConcurrentLinkedQueue free;
+
+	/** Invoked when a batch is ready and the consumer has not been notified since it last polled, or null */
+	private volatile Runnable notifier;
+
+	/** Set when the consumer has been notified, and cleared when it polls */
+	private AtomicBoolean notified;
+
+	/** The writer of the recording file, or null if the messages are not recorded. Used with the drain locked. */
+	private Writer recording;
+
+	/** The index to which the messages are added, or null */
+	private volatile MessageIndex index;
+
+	/** Constructs a drain of the threads of the given recorder, with the default period.
+	  * @param rec the recorder whose threads are drained.
+	  */
+	public MessageDrain (ThreadRecorder rec)
+	{
+		this(rec,DEFAULT_PERIOD);
+	}
+
+	/** Constructs a drain of the threads of the given recorder.
+	  * @param rec the recorder whose threads are drained.
+	  * @param period the draining period in milliseconds (values less than 1 will be set to 1).
+	  */
+	public MessageDrain (ThreadRecorder rec, int period)
+	{
+		recorder = rec;
+		this.period = (period<1) ? 1 : period;
+		drained = new ThreadMessage[256];
+		senders = new HashMap();
+		ready = new ConcurrentLinkedQueue();
+		free = new ConcurrentLinkedQueue();
+		notified = new AtomicBoolean();
+	}
+
+	/** Sets the action which notifies the consumer that batches are ready. The action is invoked on the drain thread,
+	  * once for all the batches prepared until the consumer polls, so a consumer on the event dispatch thread should
+	  * pass it on (for example, using SwingUtilities.invokeLater()).
+	  * @param r the action, or null to poll without notification.
+	  */
+	public void setNotifier (Runnable r)
+	{
+		notifier = r;
+	}
+
+	/** Sets the file into which the lines of all the messages are written, one per line, from now on. The file is
+	  * replaced if it exists. Any previous recording file is closed.
+	  * @param file the recording file, or null to stop recording the messages.
+	  * @throws IOException if the file cannot be created.
+	  */
+	public synchronized void setRecordingFile (File file) throws IOException
+	{
+		if (recording!=null)
+		{
+			try
+			{
+				recording.close();
+			}
+			catch (IOException e) {e.printStackTrace();}
+			recording = null;
+		}
+
+		if (file!=null)
+			recording = new BufferedWriter(new FileWriter(file));
+	}
+
+	/** Sets the index to which the messages are added, from now on. The messages are added on the drain thread, before
+	  * they are handed to the consumer.
+	  * @param idx the index, or null to stop indexing the messages.
+	  */
+	public void setIndex (MessageIndex idx)
+	{
+		index = idx;
+	}
+
+	/** Starts the drain thread. */
+	public synchronized void start()
+	{
+		if (drainer!=null)		// Already running
+			return;
+
+		drainer = new Drainer(this);
+		drainer.start();
+	}
+
+	/** Returns true if a thread is the drain thread of a MessageDrain.
+	  * @param t the thread.
+	  */
+	static boolean isDrainer (Thread t)
+	{
+		return t instanceof Drainer;
+	}
+
+	/** Stops the drain thread. The thread is interrupted and will exit after its current round. */
+	public synchronized void stop()
+	{
+		if (drainer==null)		// Not running
+			return;
+
+		drainer.interrupt();
+		drainer = null;
+	}
+
+	/** Returns true if the drain thread is currently running. */
+	public synchronized boolean isRunning()
+	{
+		return drainer!=null;
+	}
+
+	/** Takes the next batch which is ready, if any. Only the consumer should call this method.
+	  * @return the batch, or null if no batch is ready.
+	  */
+	public Batch poll()
+	{
+		notified.set(false);		// Batches which are ready from now on will notify again
+		return (Batch)ready.poll();
+	}
+
+	/** Gives a batch back to the drain, once the consumer has used it.
+	  * @param b the batch.
+	  */
+	public void recycle (Batch b)
+	{
+		free.add(b);
+	}
+
+	/** The main loop of the drain thread. Drains the channels once per period, until the drain is stopped. */
+	public void run()
+	{
+		Thread me = Thread.currentThread();
+
+		for (;;)
+		{
+			synchronized (this)
+			{
+				if (drainer!=me)		// Stopped (or restarted by a new drain thread)
+					return;
+			}
+
+			drain();
+
+			try {Thread.sleep(period);}
+			catch (InterruptedException e) {}		// Woken up by stop() - the loop condition will exit
+		}
+	}
+
+	/** Drains the channels of all the recorded ThreadPlus objects once, and hands the messages to the consumer as a
+	  * single batch. Called by the drain thread.
+	  */
+	private void drain()
+	{
+		int i,n = 0,k;
+
+		ThreadTrack[] tracks = recorder.getSampledTracks();	// Never waits for the sampler
+
+		for (i=0;i<tracks.length;++i)			// Receive the messages from all the channels
+		{
+			Thread thr = tracks[i].getThread();
+			if (thr==null)						// Collected - nothing more can be sent
+				continue;
+
+			if (thr instanceof ThreadPlus && !thr.isAlive())	// Send what is left of the batch of an ended thread
+				((ThreadPlus)thr).flush();
+
+			MessageChannel channel = MessageChannel.isCapturing() ? MessageChannel.attach(thr) : MessageChannel.of(thr);
+			if (channel==null)					// A plain thread with no way to send messages
+				continue;
+			int n0 = n;
+
+			long lost = channel.takeLost();
+			if (lost>0)							// Report the messages which were discarded
+			{
+				if (n==drained.length)
+					drained = grow(drained,n);
+				drained[n++] = new ThreadMessage(thr.getId(),"[" + lost + " messages lost]\n");
+			}
+
+			while ((k = channel.drain(drained,n,drained.length-n))>0)
+			{
+				n += k;
+				if (n==drained.length)			// There may be more
+					drained = grow(drained,n);
+			}
+
+			if (n>n0)
+				senders.put(Long.valueOf(thr.getId()),thr);
+		}
+
+		if (++rounds%DETACH_ROUNDS==0)
+			MessageChannel.detachEnded();		// Forget the channels of the plain threads which have ended
+
+		if (n==0)
+			return;
+
+		Arrays.sort(drained,0,n,BY_SEQUENCE);	// Merge the messages of all the threads in their true order
+
+		Batch b = (Batch)free.poll();
+		if (b==null)
+			b = new Batch();
+		b.clear(n);
+
+		long origin = recorder.getOriginNanos();	// Read once for the whole batch
+
+		for (i=0;i<n;++i)						// Prepare the messages for display
+		{
+			ThreadMessage msg = drained[i];
+			drained[i] = null;					// Don't keep the message from being collected
+
+			long time = msg.getTime()-origin;	// As ThreadRecorder.toRecordingTime(), without a call per message
+			if (time<0)
+				time = 0;
+			String stamp = TimeScale.formatMillis(time);
+			Thread thr = (Thread)senders.get(Long.valueOf(msg.getThreadId()));
+			String name = (thr!=null) ? thr.getName() : "thread " + msg.getThreadId();	// Sent through a shared channel
+
+			String text = msg.getText();
+			if (text.endsWith("\n"))				// Each message is a line of its own
+				text = text.substring(0,text.length()-1);
+
+			b.messages[i] = msg;
+			b.times[i] = time;
+			b.lines[i] = stamp + ": " + text;
+			b.allLines[i] = stamp + " [" + name + "]: " + text;
+		}
+		b.size = n;
+		senders.clear();						// Don't keep the threads from being collected
+
+		record(b);
+		MessageIndex idx = index;
+		if (idx!=null)
+			idx.add(b);
+
+		ready.add(b);
+		Runnable r = notifier;
+		if (r!=null && notified.compareAndSet(false,true))
+			r.run();
+	}
+
+	/** Writes the lines of a batch to the recording file, if there is one. If the file cannot be written, it is closed
+	  * and the messages are no longer recorded.
+	  * @param b the batch.
+	  */
+	private synchronized void record (Batch b)
+	{
+		if (recording==null)
+			return;
+
+		try
+		{
+			for (int i=0;i<b.size;++i)
+			{
+				recording.write(b.allLines[i]);
+				recording.write('\n');
+			}
+			recording.flush();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			try
+			{
+				recording.close();
+			}
+			catch (IOException e2) {}
+			recording = null;
+		}
+	}
+
+	/** Returns a copy of the given buffer, twice as large.
+	  * @param buf the buffer.
+	  * @param n the number of messages in the buffer.
+	  */
+	private static ThreadMessage[] grow (ThreadMessage[] buf, int n)
+	{
+		ThreadMessage[] bigger = new ThreadMessage[buf.length*2];
+		System.arraycopy(buf,0,bigger,0,n);
+		return bigger;
+	}
+}
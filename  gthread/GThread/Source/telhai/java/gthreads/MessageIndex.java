@@ -0,0 +1,391 @@
+package telhai.java.gthreads;
+
+import java.util.*;				// For hash tables and iterators
+
+/** This class is an inverted index of the messages of all the threads, which finds the messages containing given terms,
+  * sent by a given thread within a given range of recording time. The index is built incrementally: a MessageDrain
+  * adds each batch of messages to it on the drain thread, as the messages arrive, so the display never pays for the
+  * indexing. A batch is added a few hundred messages at a time, so a search never waits for a whole batch, and a search
+  * locks the index only for as long as it takes to intersect a few lists, so it returns within milliseconds even over
+  * hundreds of thousands of messages.
+  *
+  * The terms of a message are the words of its text (maximal runs of letters and digits), in lower case. For each
+  * term, the index keeps the list of the messages which contain it, in the order in which they were added; it keeps
+  * such a list for each thread as well. A search walks the shortest of the lists which it needs backwards, from the
+  * end of the time range, and looks up each message in the other lists by binary search, so it finds the latest
+  * matches first and stops once it has enough of them.
+  *
+  * The messages are kept in the order of their recording times, which a search looks up by binary search. The index
+  * should therefore be cleared whenever the recording time starts over; a message which is added with an earlier time
+  * than the last message is kept at the time of the last message.
+  *
+  * The index keeps a fixed number of messages. Once it is full, the oldest half of the messages is dropped at once,
+  * so that the lists are trimmed only once in a while. The index is thread safe.
+  *
+  * @see MessageDrain#setIndex(MessageIndex)
+  * @see MessageLog
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class MessageIndex
+{
+	/** Default capacity of an index */
+	public static final int DEFAULT_CAPACITY = 200000;
+
+	/** The number of messages of a batch which are added at a time, without letting a search in */
+	private static final int CHUNK = 256;
+
+	/** This class is a list of the numbers of the messages which contain a term (or which were sent by a thread), in
+	  * ascending order.
+	  *
+	  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+	  */
+	private static final class Postings
+	{
+		/** The numbers of the messages */
+		int[] items = new int[4];
+		/** The number of items in the list */
+		int size;
+
+		/** Adds a message to the list, unless it is already the last one.
+		  * @param n the number of the message.
+		  */
+		void add (int n)
+		{
+			if (size>0 && items[size-1]==n)		// The term appears twice in the same message
+				return;
+			if (size==items.length)
+			{
+				int[] bigger = new int[size*2];
+				System.arraycopy(items,0,bigger,0,size);
+				items = bigger;
+			}
+			items[size++] = n;
+		}
+
+		/** Drops the messages below the given number, and renumbers the rest from 0.
+		  * @param cut the number of the first message which is kept.
+		  */
+		void drop (int cut)
+		{
+			int i = lowerBound(cut,size);
+			int k = size-i;
+			for (int j=0;j<k;++j)
+				items[j] = items[i+j]-cut;
+			size = k;
+		}
+
+		/** Finds the first message whose number is the given number or above it, among the first items of the list.
+		  * @param n the number of the message.
+		  * @param hi the number of items to look at.
+		  * @return the index of the item, or hi if all the items are below the given number.
+		  */
+		int lowerBound (int n, int hi)
+		{
+			int lo = 0;
+			while (lo<hi)
+			{
+				int mid = (lo+hi) >>> 1;
+				if (items[mid]<n)
+					lo = mid+1;
+				else
+					hi = mid;
+			}
+			return lo;
+		}
+	}
+
+	/** The maximum number of messages in the index */
+	private int capacity;
+
+	/** The messages, by their numbers */
+	private ThreadMessage[] messages;
+	/** The recording times of the messages */
+	private long[] times;
+	/** The formatted lines of the messages */
+	private String[] lines;
+
+	/** The number of messages in the index */
+	private int size;
+
+	/** The lists of the messages which contain each term, by their terms */
+	private HashMap terms;
+
+	/** The lists of the messages sent by each thread, by the ids of the threads */
+	private HashMap threads;
+
+	/** Constructs an index with the default capacity. */
+	public MessageIndex()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Constructs an index with the given capacity.
+	  * @param capacity the maximum number of messages in the index (values less than 2 will be set to 2).
+	  */
+	public MessageIndex (int capacity)
+	{
+		this.capacity = (capacity<2) ? 2 : capacity;
+
+		int n = Math.min(1024,this.capacity);
+		messages = new ThreadMessage[n];
+		times = new long[n];
+		lines = new String[n];
+		terms = new HashMap();
+		threads = new HashMap();
+	}
+
+	/** Adds the messages of a batch to the index. The index is locked for a chunk of the messages at a time, so that a
+	  * search doesn't wait for the whole batch.
+	  * @param b the batch.
+	  */
+	public void add (MessageDrain.Batch b)
+	{
+		int n = b.size();
+		for (int i=0;i<n;)
+		{
+			int end = Math.min(i+CHUNK,n);
+			synchronized (this)
+			{
+				for (;i<end;++i)
+					add(b.getMessage(i),b.getTime(i),b.getAllLine(i));
+			}
+		}
+	}
+
+	/** Adds a message to the index. Messages should be added in the order in which they were sent.
+	  * @param msg the message.
+	  * @param time the recording time when the message was sent (an earlier time than that of the last message is
+	  *		replaced with it, to keep the times in order).
+	  * @param line the formatted line of the message, as a search returns it.
+	  */
+	public synchronized void add (ThreadMessage msg, long time, String line)
+	{
+		if (size==capacity)					// Make room by dropping the oldest half
+			dropOldest(size/2);
+		if (size==messages.length)			// Grow the arrays, up to the capacity
+		{
+			int n = Math.min(size*2,capacity);
+			messages = (ThreadMessage[])copyOf(messages,new ThreadMessage[n],size);
+			lines = (String[])copyOf(lines,new String[n],size);
+			long[] newTimes = new long[n];
+			System.arraycopy(times,0,newTimes,0,size);
+			times = newTimes;
+		}
+
+		int n = size++;
+		messages[n] = msg;
+		times[n] = (n>0 && time<times[n-1]) ? times[n-1] : time;	// Keep the times sorted
+		lines[n] = line;
+
+		postings(threads,Long.valueOf(msg.getThreadId())).add(n);
+
+		String text = msg.getText();
+		int len = text.length();
+		for (int i=0;i<len;)				// Add the message to the list of each of its words
+		{
+			while (i<len && !Character.isLetterOrDigit(text.charAt(i)))
+				++i;
+			int start = i;
+			while (i<len && Character.isLetterOrDigit(text.charAt(i)))
+				++i;
+			if (i>start)
+				postings(terms,text.substring(start,i).toLowerCase()).add(n);
+		}
+	}
+
+	/** Removes all the messages from the index. */
+	public synchronized void clear()
+	{
+		for (int i=0;i<size;++i)
+		{
+			messages[i] = null;
+			lines[i] = null;
+		}
+		size = 0;
+		terms.clear();
+		threads.clear();
+	}
+
+	/** Returns the number of messages in the index. */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/** Returns the maximum number of messages in the index. */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/** Finds the latest messages which contain all the words of a query, sent by a given thread within a given range of
+	  * recording time, and adds them to a log in the order in which they were sent. The search stops once it has found
+	  * as many messages as the log can hold. The words are matched whole, regardless of case.
+	  * @param query the words to find (separated by anything which is not a letter or a digit), or an empty string to
+	  *		find all the messages of the thread within the range.
+	  * @param threadId the id of the thread, or -1 for the messages of all the threads.
+	  * @param from the beginning of the time range, in nanoseconds of recording time.
+	  * @param to the end of the time range (inclusive), in nanoseconds of recording time.
+	  * @param hits the log which receives the messages which were found, with their recording times and their lines.
+	  * @return the number of messages which were found.
+	  */
+	public synchronized int search (String query, long threadId, long from, long to, MessageLog hits)
+	{
+		Vector lists = new Vector();
+
+		if (threadId>=0)
+			lists.add(threads.get(Long.valueOf(threadId)));
+
+		String q = query.toLowerCase();
+		int len = q.length();
+		for (int i=0;i<len;)				// Find the list of each word of the query
+		{
+			while (i<len && !Character.isLetterOrDigit(q.charAt(i)))
+				++i;
+			int start = i;
+			while (i<len && Character.isLetterOrDigit(q.charAt(i)))
+				++i;
+			if (i>start)
+				lists.add(terms.get(q.substring(start,i)));
+		}
+
+		int lo = indexAt(from), hi = indexAt(to+1);		// The messages within the time range
+		if (lists.contains(null) || lo>=hi)				// A word which no message contains
+			return 0;
+
+		int max = hits.getCapacity();
+		int[] found = new int[Math.min(max,hi-lo)];
+		int numFound = 0;
+
+		if (lists.isEmpty())				// No words and no thread - the latest messages of the range
+		{
+			for (int n=hi-1;n>=lo && numFound<found.length;--n)
+				found[numFound++] = n;
+		}
+		else
+		{
+			Collections.sort(lists,new Comparator()		// Walk the shortest list
+				{
+					public int compare (Object o1, Object o2)
+					{
+						return ((Postings)o1).size-((Postings)o2).size;
+					}
+				});
+
+			Postings first = (Postings)lists.get(0);
+			int k = lists.size();
+			int[] bounds = new int[k];		// The items of each list which may still match (they only get lower)
+			for (int j=1;j<k;++j)
+				bounds[j] = ((Postings)lists.get(j)).size;
+
+			for (int i=first.lowerBound(hi,first.size)-1;i>=0 && numFound<found.length;--i)
+			{
+				int n = first.items[i];
+				if (n<lo)
+					break;
+
+				int j;
+				for (j=1;j<k;++j)			// Look the message up in the other lists
+				{
+					Postings p = (Postings)lists.get(j);
+					int pos = p.lowerBound(n,bounds[j]);
+					bounds[j] = pos;
+					if (pos==p.size || p.items[pos]!=n)
+						break;
+				}
+				if (j==k)
+					found[numFound++] = n;
+			}
+		}
+
+		for (int i=numFound-1;i>=0;--i)		// In the order in which they were sent
+		{
+			int n = found[i];
+			hits.add(messages[n],times[n],lines[n]);
+		}
+		return numFound;
+	}
+
+	/** Finds the first message which was sent at the given time or after it (by binary search).
+	  * @param time the recording time.
+	  * @return the number of the message, or size if all the messages were sent before the given time.
+	  */
+	private int indexAt (long time)
+	{
+		int lo = 0, hi = size;
+
+		while (lo<hi)
+		{
+			int mid = (lo+hi) >>> 1;
+			if (times[mid]<time)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/** Drops the oldest messages, and renumbers the rest from 0.
+	  * @param cut the number of messages to drop.
+	  */
+	private void dropOldest (int cut)
+	{
+		int k = size-cut;
+		System.arraycopy(messages,cut,messages,0,k);
+		System.arraycopy(times,cut,times,0,k);
+		System.arraycopy(lines,cut,lines,0,k);
+		for (int i=k;i<size;++i)
+		{
+			messages[i] = null;
+			lines[i] = null;
+		}
+		size = k;
+
+		dropOldest(terms,cut);
+		dropOldest(threads,cut);
+	}
+
+	/** Drops the oldest messages from all the lists of a table, and removes the lists which become empty.
+	  * @param table the table of lists.
+	  * @param cut the number of messages to drop.
+	  */
+	private static void dropOldest (HashMap table, int cut)
+	{
+		Iterator it = table.values().iterator();
+		while (it.hasNext())
+		{
+			Postings p = (Postings)it.next();
+			p.drop(cut);
+			if (p.size==0)
+				it.remove();
+		}
+	}
+
+	/** Returns the list of a key in a table, creating it if needed.
+	  * @param table the table of lists.
+	  * @param key the key.
+	  */
+	private static Postings postings (HashMap table, Object key)
+	{
+		Postings p = (Postings)table.get(key);
+		if (p==null)
+		{
+			p = new Postings();
+			table.put(key,p);
+		}
+		return p;
+	}
+
+	/** Copies the first items of an array into a new array.
+	  * @param from the array.
+	  * @param to the new array.
+	  * @param n the number of items.
+	  * @return the new array.
+	  */
+	private static Object[] copyOf (Object[] from, Object[] to, int n)
+	{
+		System.arraycopy(from,0,to,0,n);
+		return to;
+	}
+}
@@ -0,0 +1,184 @@
+package telhai.java.gthreads;
+
+/** This class keeps the latest messages of a thread (or of all the threads), in a ring of fixed capacity. Once the ring
+  * is full, each new message replaces the oldest one, so the memory used by the log doesn't grow over long recordings.
+  * The storage of the ring is allocated gradually, as messages arrive, so a log which receives few messages stays
+  * small.
+  *
+  * Each message is kept with its recording time and with its formatted line. The messages are counted from the first
+  * one ever added: the oldest message still in the log has the number getFirst(), and the next message to be added will
+  * have the number getTotal(). Viewers use these numbers to tell which messages were added and which were replaced
+  * since they last looked. A log is not thread safe; the GraphicalThreadManager uses its logs only on the event
+  * dispatch thread.
+  *
+  * @see MessageDrain#setRecordingFile(java.io.File)
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class MessageLog
+{
+	/** Default capacity of a log */
+	public static final int DEFAULT_CAPACITY = 1000;
+
+	/** The maximum number of messages in the log */
+	private int capacity;
+
+	/** The messages */
+	private ThreadMessage[] messages;
+	/** The recording times of the messages */
+	private long[] times;
+	/** The formatted lines of the messages */
+	private String[] lines;
+
+	/** The index in the arrays of the oldest message */
+	private int head;
+
+	/** The number of messages in the log */
+	private int size;
+
+	/** The number of messages added since the log was constructed or cleared */
+	private long total;
+
+	/** Constructs a log with the default capacity. */
+	public MessageLog()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Constructs a log with the given capacity.
+	  * @param capacity the maximum number of messages in the log (values less than 1 will be set to 1).
+	  */
+	public MessageLog (int capacity)
+	{
+		this.capacity = (capacity<1) ? 1 : capacity;
+
+		int n = Math.min(16,this.capacity);
+		messages = new ThreadMessage[n];
+		times = new long[n];
+		lines = new String[n];
+	}
+
+	/** Adds a message to the log. If the log is full, the oldest message is replaced.
+	  * @param msg the message.
+	  * @param time the recording time when the message was sent.
+	  * @param line the formatted line of the message.
+	  */
+	public void add (ThreadMessage msg, long time, String line)
+	{
+		if (size==messages.length && size<capacity)		// Grow the ring, up to the capacity
+		{
+			int n = Math.min(size*2,capacity);
+			ThreadMessage[] newMessages = new ThreadMessage[n];
+			long[] newTimes = new long[n];
+			String[] newLines = new String[n];
+			for (int i=0;i<size;++i)
+			{
+				int j = (head+i)%size;
+				newMessages[i] = messages[j];
+				newTimes[i] = times[j];
+				newLines[i] = lines[j];
+			}
+			messages = newMessages;
+			times = newTimes;
+			lines = newLines;
+			head = 0;
+		}
+
+		int i;
+		if (size<messages.length)			// There is room
+			i = (head+size++)%messages.length;
+		else								// Replace the oldest message
+		{
+			i = head;
+			head = (head+1)%messages.length;
+		}
+
+		messages[i] = msg;
+		times[i] = time;
+		lines[i] = line;
+		++total;
+	}
+
+	/** Removes all the messages from the log, and restarts their numbering. */
+	public void clear()
+	{
+		for (int i=0;i<messages.length;++i)
+		{
+			messages[i] = null;
+			lines[i] = null;
+		}
+		head = 0;
+		size = 0;
+		total = 0;
+	}
+
+	/** Returns the number of messages in the log. */
+	public int size()
+	{
+		return size;
+	}
+
+	/** Returns the maximum number of messages in the log. */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/** Returns the number of the oldest message in the log. */
+	public long getFirst()
+	{
+		return total-size;
+	}
+
+	/** Returns the number of messages added since the log was constructed or cleared, which is also the number of the
+	  * next message to be added.
+	  */
+	public long getTotal()
+	{
+		return total;
+	}
+
+	/** Returns a message of the log.
+	  * @param i the index of the message, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public ThreadMessage getMessage (int i)
+	{
+		return messages[(head+i)%messages.length];
+	}
+
+	/** Returns the recording time of a message of the log.
+	  * @param i the index of the message, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public long getTime (int i)
+	{
+		return times[(head+i)%messages.length];
+	}
+
+	/** Returns the formatted line of a message of the log.
+	  * @param i the index of the message, from 0 (the oldest) to size()-1 (the latest).
+	  */
+	public String getLine (int i)
+	{
+		return lines[(head+i)%messages.length];
+	}
+
+	/** Finds the first message which was sent at the given time or after it (by binary search). The messages must have
+	  * been added in the order of their times, as the messages of a single thread are.
+	  * @param time the recording time.
+	  * @return the index of the message, or size() if all the messages were sent before the given time.
+	  */
+	public int indexAt (long time)
+	{
+		int lo = 0, hi = size;
+
+		while (lo<hi)
+		{
+			int mid = (lo+hi) >>> 1;
+			if (getTime(mid)<time)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+}
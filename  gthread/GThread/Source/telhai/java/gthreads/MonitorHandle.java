@@ -0,0 +1,119 @@
+package telhai.java.gthreads;
+
+import java.util.concurrent.atomic.*;	// For the state of the handle
+
+/** This class identifies a thread or an object which is monitored by a GraphicalThreadManager. A handle is returned
+  * when a thread or an object is added to the GTM, and can later be passed back to remove it, from any thread, in
+  * constant time and without locking.
+  *
+  * The GTM applies the additions and removals to its display in batches, on the event dispatch thread. Until then, the
+  * handle only records what was requested: the display state of the handle (its row in the GTM) is used only by the
+  * event dispatch thread.
+  *
+  * The handle doesn't keep its thread or object alive. Once an object has been garbage-collected, its handle is
+  * removed. Once a thread has ended, its handle is archived: the lifeline of the thread stays on display, but no longer
+  * counts as a monitored thread.
+  *
+  * @see GraphicalThreadManager#addThread(Thread)
+  * @see GraphicalThreadManager#addObject(Object,boolean)
+  * @see GraphicalThreadManager#remove(MonitorHandle)
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public final class MonitorHandle
+{
+	/** The track of the monitored thread, or null if this is the handle of an object */
+	private final ThreadTrack track;
+
+	/** The track of the monitored object, or null if this is the handle of a thread */
+	private final ObjectTrack objectTrack;
+
+	/** The component or the ThreadLine which displays the target. Used only by the event dispatch thread. */
+	Object view;
+
+	/** The row of the target in the GTM, or -1 if it is not displayed (yet). Used only by the event dispatch thread. */
+	int slot = -1;
+
+	/** State of a handle whose target is monitored */
+	static final int LIVE = 0;
+	/** State of a handle whose thread has ended, and whose lifeline is kept on display */
+	static final int ARCHIVED = 1;
+	/** State of a handle whose removal was requested */
+	static final int REMOVED = 2;
+
+	/** The state of the handle: LIVE, ARCHIVED or REMOVED */
+	private final AtomicInteger state = new AtomicInteger(LIVE);
+
+	/** Set while the lifeline is in the archive of the GTM. Used only by the event dispatch thread. */
+	boolean inArchive;
+
+	/** Constructs the handle of a thread.
+	  * @param track the track which records the thread.
+	  */
+	MonitorHandle (ThreadTrack track)
+	{
+		this.track = track;
+		this.objectTrack = null;
+	}
+
+	/** Constructs the handle of an object.
+	  * @param track the track which records the object.
+	  */
+	MonitorHandle (ObjectTrack track)
+	{
+		this.track = null;
+		this.objectTrack = track;
+	}
+
+	/** Returns the monitored thread or object, or null if it has been garbage-collected. */
+	public Object getTarget()
+	{
+		return (track!=null) ? (Object)track.getThread() : objectTrack.getObject();
+	}
+
+	/** Returns the track which records the monitored thread, or null if this is the handle of an object. */
+	public ThreadTrack getTrack()
+	{
+		return track;
+	}
+
+	/** Returns the track which records the monitored object, or null if this is the handle of a thread. */
+	public ObjectTrack getObjectTrack()
+	{
+		return objectTrack;
+	}
+
+	/** Returns true if this is the handle of a thread, false if it is the handle of an object. */
+	public boolean isThread()
+	{
+		return track!=null;
+	}
+
+	/** Returns true if the removal of the target has been requested. */
+	public boolean isRemoved()
+	{
+		return state.get()==REMOVED;
+	}
+
+	/** Returns true if the thread has ended and its lifeline archived, and the handle was not removed since. */
+	public boolean isArchived()
+	{
+		return state.get()==ARCHIVED;
+	}
+
+	/** Marks the handle as archived, unless it has already been archived or removed.
+	  * @return true if the handle was marked by this call.
+	  */
+	boolean markArchived()
+	{
+		return state.compareAndSet(LIVE,ARCHIVED);
+	}
+
+	/** Marks the handle as removed.
+	  * @return the previous state of the handle: LIVE, ARCHIVED, or REMOVED if it had already been removed.
+	  */
+	int markRemoved()
+	{
+		return state.getAndSet(REMOVED);
+	}
+}
@@ -0,0 +1,722 @@
+package telhai.java.gthreads;
+
+import java.lang.ref.*;			// For holding the object weakly
+import java.util.*;				// For clearing the buffers
+import telhai.java.gthreads.agent.*;	// For the writes reported by the agent
+
+/** This class holds the recorded state of a single monitored object: the latest snapshot of the values of its fields.
+  * An ObjectTrack is created by the ThreadRecorder for each object it monitors, and is updated only by the recorder's
+  * sampler thread (or, for a track which is not recorded, by whoever calls sample()). Viewers (such as the
+  * ObjectViewTable components of the GraphicalThreadManager) read the snapshot in order to display the fields, but
+  * never modify it.
+  *
+  * On each sample, the track reads all the fields of the object into buffers of its own, and compares them with the
+  * current snapshot: primitive values by their bits, and references by identity. Only if a field has changed is a new
+  * snapshot published, so a viewer can tell that nothing has changed by comparing a single reference, and an idle
+  * object costs the reads of its fields and nothing else - no allocation and no repaint. Note that a change inside an
+  * object referenced by a field (for example, an element added to a list) doesn't change the reference, and is
+  * therefore not a change of the field.
+  *
+  * The track also keeps the history of each numeric field in a FieldHistory: the value of the field at the first
+  * sample, and then each value it changed to, with the recording time of the sample which noticed the change. The
+  * history is recorded in primitive arrays, so it doesn't box the values either.
+  *
+  * The fields of an object are read one by one, so a plain read may catch an object in the middle of a change - with
+  * some of its fields changed and the rest not yet - and show a state which never existed as a whole. The snapshot
+  * policy of the track decides how the fields are read:
+  *	- NONE: the fields are read once, as they are.
+  *	- OPTIMISTIC: the fields are read twice, and the read is repeated until both reads agree (up to MAX_RETRIES
+  *	  times), so a snapshot is only torn if the object keeps changing all the time.
+  *	- LOCKED: the fields are read while holding the monitor of the object, so an object whose fields are changed only
+  *	  in synchronized methods (or blocks) is always seen between two changes. The monitor is taken by a helper thread,
+  *	  and never by the sampler: while the object is locked by another thread, the track simply keeps its last
+  *	  snapshot, and the helper holds the monitor only for as long as it takes to copy the fields. The helper is shared
+  *	  by all the tracks and serves their reads in turn; if it is kept waiting for a lock, a spare helper is started to
+  *	  serve the other tracks, so only the tracks of locked objects wait. A track never has more than one read pending.
+  *	- AUTO (the default): LOCKED if the class of the object (or one of its ancestors) has synchronized methods, and
+  *	  OPTIMISTIC otherwise.
+  *
+  * If the FieldAgent is installed, the recorder also watches the object for writes: each write to one of its fields
+  * is published into the recorder's WriteRing by the writing thread, and the recorder passes it back to the track on
+  * the next sample, with the time it was made. The histories then hold every value the field was written with, and
+  * not only the values which the samples happened to see. Writes which are not a change (the same value written again)
+  * are not recorded.
+  *
+  * The track never keeps the object from being garbage-collected: it holds the object through a weak reference, the
+  * snapshots hold the values of the reference fields weakly as well (a value is kept alive by the field, for as long as
+  * it is the value of the field), and the buffers into which the fields are read are cleared after each sample. Once
+  * the object has been collected, the track keeps its last snapshot and its histories, and the recorder removes it.
+  *
+  * @see ThreadRecorder#addObject(Object,boolean)
+  * @see FieldAccessor
+  * @see FieldHistory
+  * @see ObjectViewTable
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ObjectTrack implements FieldWriteListener
+{
+	/** Policy: the fields are read once, with no attempt at consistency */
+	public static final int NONE = 0;
+	/** Policy: the fields are read until two consecutive reads agree */
+	public static final int OPTIMISTIC = 1;
+	/** Policy: the fields are read while holding the monitor of the object, by a helper thread */
+	public static final int LOCKED = 2;
+	/** Policy: LOCKED for an object which has synchronized methods, OPTIMISTIC for any other object */
+	public static final int AUTO = 3;
+
+	/** The maximum number of times an optimistic read is repeated before its values are taken as they are */
+	public static final int MAX_RETRIES = 4;
+
+	/** The time after which an idle helper thread exits, in milliseconds */
+	private static final int HELPER_IDLE = 1000;
+
+	/** The time after which a locked read which hasn't completed is taken as waiting for the lock, in nanoseconds */
+	private static final long LOCK_PATIENCE = 100000000L;
+
+	/** State of a locked read: none requested */
+	private static final int IDLE = 0;
+	/** The tracks whose locked reads were requested, and not taken by a helper yet, in the order of the requests */
+	private static final LinkedList requests = new LinkedList();
+
+	/** The number of the helper threads which are not reading, or waiting for a lock (guarded by the requests) */
+	private static int idleHelpers;
+
+	/** This class is a helper thread, which takes the locked reads of all the tracks in turn. It exits once no read was
+	  * requested for HELPER_IDLE milliseconds.
+	  *
+	  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+	  */
+	private static final class Helper extends Thread
+	{
+		/** Constructs a helper thread. */
+		Helper()
+		{
+			super("GTM Snapshot");
+			setDaemon(true);			// Like the sampler, it should never keep the application alive
+		}
+
+		/** The main loop of the helper. */
+		public void run()
+		{
+			for (;;)
+			{
+				ObjectTrack track;
+				synchronized (requests)
+				{
+					if (requests.isEmpty())
+					{
+						try
+						{
+							requests.wait(HELPER_IDLE);
+						}
+						catch (InterruptedException e) {}
+						if (requests.isEmpty())		// Idle - a new helper will be started when needed
+						{
+							--idleHelpers;
+							return;
+						}
+					}
+					track = (ObjectTrack)requests.removeFirst();
+					--idleHelpers;
+				}
+
+				track.readLocked();			// May wait for as long as the object is locked
+
+				synchronized (requests)
+				{
+					++idleHelpers;
+				}
+			}
+		}
+	}
+
+	/** State of a locked read: requested, and not taken by the helper yet */
+	private static final int REQUESTED = 1;
+	/** State of a locked read: the helper is locking the object, or reading it */
+	private static final int READING = 2;
+	/** State of a locked read: done, and not taken by the sampler yet */
+	private static final int READY = 3;
+
+	/** This class is a snapshot of the values of the fields of an object. A snapshot is never modified once it is
+	  * published, so viewers can read it on any thread without locking.
+	  *
+	  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+	  */
+	public static final class Snapshot
+	{
+		/** The recording time when the snapshot was taken */
+		private final long time;
+		/** The raw bits of the values of the primitive fields (0 for the other fields) */
+		private final long[] bits;
+		/** Weak references to the values of the reference fields (null for the primitive fields, and for null values) */
+		private final WeakReference[] values;
+
+		/** Constructs a snapshot from copies of the given values.
+		  * @param time the recording time when the snapshot was taken.
+		  * @param bits the bits of the primitive values.
+		  * @param values the values of the reference fields.
+		  */
+		private Snapshot (long time, long[] bits, Object[] values)
+		{
+			this.time = time;
+			this.bits = bits.clone();
+			this.values = new WeakReference[values.length];
+			for (int i=0;i<values.length;++i)
+				if (values[i]!=null)
+					this.values[i] = new WeakReference(values[i]);
+		}
+
+		/** Returns the recording time when the snapshot was taken. */
+		public long getTime()
+		{
+			return time;
+		}
+
+		/** Returns the number of fields in the snapshot. */
+		public int size()
+		{
+			return bits.length;
+		}
+
+		/** Returns the raw bits of the value of a primitive field, as returned by FieldAccessor.getBits().
+		  * @param i the index of the field.
+		  */
+		public long getBits (int i)
+		{
+			return bits[i];
+		}
+
+		/** Returns the value of a reference field. The value is null if the field was null, or if the value is no longer
+		  * the value of the field and has been garbage-collected since.
+		  * @param i the index of the field.
+		  */
+		public Object getValue (int i)
+		{
+			return (values[i]==null) ? null : values[i].get();
+		}
+
+		/** Returns true if a field has the same value in both snapshots.
+		  * @param other a snapshot of the same object.
+		  * @param i the index of the field.
+		  */
+		public boolean sameAs (Snapshot other, int i)
+		{
+			return bits[i]==other.bits[i] && getValue(i)==other.getValue(i);
+		}
+	}
+
+	/** The object which is recorded by this track, held weakly */
+	private TrackReference objectRef;
+
+	/** The class of the object */
+	private Class type;
+
+	/** Indicates whether inherited fields are recorded too */
+	private boolean ancestors;
+
+	/** The accessors of the fields of the object */
+	private FieldAccessor[] accessors;
+
+	/** The bits of the primitive values, as last read */
+	private long[] bits;
+
+	/** The values of the reference fields, as last read (cleared after each sample) */
+	private Object[] values;
+
+	/** The bits of the primitive values, as read by the second read of an optimistic read */
+	private long[] checkBits;
+
+	/** The values of the reference fields, as read by the second read of an optimistic read */
+	private Object[] checkValues;
+
+	/** The snapshot policy */
+	private volatile int policy = AUTO;
+
+	/** Indicates whether the class of the object has synchronized methods */
+	private boolean guarded;
+
+	/** Guards the state of the locked read (never the monitor of the object itself) */
+	private final Object lockedLock = new Object();
+
+	/** The state of the locked read: IDLE, REQUESTED, READING or READY */
+	private int lockedState = IDLE;
+
+	/** The bits of the primitive values, as read by the helper thread */
+	private long[] lockedBits;
+
+	/** The values of the reference fields, as read by the helper thread */
+	private Object[] lockedValues;
+
+	/** The System.nanoTime() value when the pending locked read was requested */
+	private long requestedAt;
+
+	/** The latest snapshot */
+	private volatile Snapshot snapshot;
+
+	/** The history of each numeric field, or null for the other fields */
+	private FieldHistory[] histories;
+
+	/** The bits of the value which was last recorded in the history of each numeric field */
+	private long[] recorded;
+
+	/** The index of the field of each id which the agent has assigned (see FieldWrites), plus one, or -1 if the field
+	  * is not recorded by this track, or 0 if it has not been looked up yet. Replaced (never modified) when it grows,
+	  * since the writing threads look it up concurrently.
+	  */
+	private volatile int[] fieldIndices = new int[0];
+
+	/** The ring into which the writes to the fields of the object are published, or null if they are not watched. Set
+	  * by the recorder before it starts watching the object.
+	  */
+	WriteRing writes;
+
+	/** Indicates whether the track has been sampled since it was constructed or reset */
+	private boolean started;
+
+	/** The recording time of the last sample */
+	private volatile long time;
+
+	/** The index of this track in the array of object tracks of the recorder, or -1 if it is not in the array. Used
+	  * only by the recorder, with the recorder locked.
+	  */
+	int slot = -1;
+
+	/** Set when the track is removed from the recorder. A removed track is never added again. */
+	volatile boolean removed;
+
+	/** Constructs a track for the given object, with a first snapshot of its fields.
+	  * @param obj the object to record.
+	  * @param ancestors indicates whether inherited fields should be recorded too.
+	  */
+	ObjectTrack (Object obj, boolean ancestors)
+	{
+		this(obj,ancestors,null);
+	}
+
+	/** Constructs a track for the given object, with a first snapshot of its fields.
+	  * @param obj the object to record.
+	  * @param ancestors indicates whether inherited fields should be recorded too.
+	  * @param queue the queue into which the reference to the object is put once it has been collected, or null.
+	  */
+	ObjectTrack (Object obj, boolean ancestors, ReferenceQueue queue)
+	{
+		objectRef = new TrackReference(obj,this,queue);
+		type = obj.getClass();
+		this.ancestors = ancestors;
+		accessors = FieldAccessor.forClass(obj.getClass(),ancestors);
+		bits = new long[accessors.length];
+		values = new Object[accessors.length];
+		checkBits = new long[accessors.length];
+		checkValues = new Object[accessors.length];
+		guarded = isGuarded(obj.getClass());
+
+		histories = new FieldHistory[accessors.length];
+		recorded = new long[accessors.length];
+		for (int i=0;i<accessors.length;++i)
+			if (accessors[i].isNumeric())
+				histories[i] = new FieldHistory(accessors[i].isFloating(),FieldHistory.DEFAULT_CAPACITY);
+
+		readOptimistic(obj);				// Never lock here - the caller may be holding other locks
+		snapshot = new Snapshot(0,bits,values);
+		release();
+	}
+
+	/** Returns true if a class or one of its ancestors declares a synchronized method.
+	  * @param type the class.
+	  */
+	private static boolean isGuarded (Class type)
+	{
+		for (Class c=type;c!=null && c!=Object.class;c=c.getSuperclass())
+		{
+			java.lang.reflect.Method[] methods;
+			try
+			{
+				methods = c.getDeclaredMethods();
+			}
+			catch (SecurityException e) {return false;}
+			catch (LinkageError e) {return false;}		// A missing class in a signature
+
+			for (int i=0;i<methods.length;++i)
+				if (java.lang.reflect.Modifier.isSynchronized(methods[i].getModifiers()))
+					return true;
+		}
+		return false;
+	}
+
+	/** Reads the fields of the object according to the snapshot policy, and publishes a new snapshot if any of them has
+	  * changed since the last snapshot. This method is only called by the sampler thread of the ThreadRecorder (or by
+	  * the single viewer of a track which is not recorded), and never blocks: with the LOCKED policy, it takes the
+	  * values of the last locked read which has completed (if any), and requests the next one.
+	  * @param now the current recording time, in nanoseconds.
+	  */
+	void sample (long now)
+	{
+		Object obj = getObject();
+		if (obj==null)						// Collected - keep the last snapshot (the recorder removes the track)
+		{
+			time = now;
+			return;
+		}
+
+		switch (getMode())
+		{
+			case LOCKED:
+				if (!takeLocked())			// The object is still locked by someone else - keep the last snapshot
+				{
+					time = now;
+					return;
+				}
+				break;
+			case OPTIMISTIC:
+				readOptimistic(obj);
+				break;
+			default:
+				read(obj,bits,values);
+		}
+
+		Snapshot s = snapshot;
+		boolean changed = false;
+		for (int i=0;i<accessors.length;++i)
+			if (bits[i]!=s.bits[i] || values[i]!=s.getValue(i))
+			{
+				changed = true;
+				if (started && histories[i]!=null && bits[i]!=recorded[i])	// Not recorded by a write already
+					record(i,now,bits[i]);
+			}
+
+		if (!started)						// The first values of the histories
+		{
+			for (int i=0;i<accessors.length;++i)
+				if (histories[i]!=null)
+					record(i,now,bits[i]);
+			started = true;
+		}
+
+		if (changed)
+			snapshot = new Snapshot(now,bits,values);
+		release();
+		time = now;
+	}
+
+	/** Clears the references which were read into the buffers, so that they don't keep the values alive. */
+	private void release()
+	{
+		Arrays.fill(values,null);
+		Arrays.fill(checkValues,null);
+	}
+
+	/** Records a value of a numeric field in its history.
+	  * @param i the index of the field.
+	  * @param time the recording time of the value, in nanoseconds.
+	  * @param b the bits of the value.
+	  */
+	private void record (int i, long time, long b)
+	{
+		recorded[i] = b;
+		if (histories[i].isFloating())
+			histories[i].add(time,accessors[i].toDouble(b));
+		else
+			histories[i].add(time,b);
+	}
+
+	/** Called by the instrumented code (through FieldWrites) after a field of the object was written, on the writing
+	  * thread. The write is only published into the recorder's ring; it is recorded on the next sample.
+	  */
+	public void fieldWritten (Object obj, int field, long bits, Object value, Thread writer, long nanos)
+	{
+		WriteRing ring = writes;
+		if (ring==null || removed)
+			return;
+
+		int i = indexOf(field);
+		if (i>=0)
+			ring.publish(this,i,bits,value,writer.getId(),nanos);
+	}
+
+	/** Returns the index of the field which the agent has assigned an id, looking it up on the first write.
+	  * @param field the id of the field.
+	  * @return the index of the field, or -1 if it is not recorded by this track.
+	  */
+	private int indexOf (int field)
+	{
+		int[] known = fieldIndices;
+		if (field<known.length && known[field]!=0)
+			return known[field]-1;
+
+		int i = lookUp(FieldWrites.getOwner(field),FieldWrites.getName(field));
+		int[] grown = new int[Math.max(field+1,known.length)];	// Racing writers simply look the field up again
+		System.arraycopy(known,0,grown,0,known.length);
+		grown[field] = i+1;
+		fieldIndices = grown;
+		return i;
+	}
+
+	/** Finds a field by the class through which it is written and by its name. The class is the one the compiler has
+	  * chosen (the type of the written reference), so the field may be declared by one of its ancestors.
+	  * @param owner the name of the class.
+	  * @param name the name of the field.
+	  * @return the index of the field, or -1 if it is not recorded by this track.
+	  */
+	private int lookUp (String owner, String name)
+	{
+		Class c = type;
+		while (c!=null && !c.getName().equals(owner))
+			c = c.getSuperclass();
+
+		for (;c!=null;c=c.getSuperclass())			// The first declaration from the owner up hides the others
+			for (int i=0;i<accessors.length;++i)
+				if (!accessors[i].isStatic() && accessors[i].getName().equals(name) &&
+						accessors[i].getField().getDeclaringClass()==c)
+					return i;
+		return -1;
+	}
+
+	/** Records a write to a field of the object, which was reported by the agent. Called by the sampler thread of the
+	  * recorder, with recording times which never decrease. A write which is not a change is not recorded, and nothing
+	  * is recorded before the first sample.
+	  * @param i the index of the field.
+	  * @param time the recording time of the write, in nanoseconds.
+	  * @param b the new value of a primitive field, as raw bits.
+	  */
+	void written (int i, long time, long b)
+	{
+		if (started && histories[i]!=null && b!=recorded[i])
+			record(i,time,b);
+	}
+
+	/** Resets this track. The histories are cleared, and the values of the next sample are recorded as the first ones.
+	  */
+	void reset()
+	{
+		for (int i=0;i<histories.length;++i)
+			if (histories[i]!=null)
+				histories[i].clear();
+		started = false;
+		time = 0;
+	}
+
+	/** Reads the fields of the object into the given buffers.
+	  * @param obj the object.
+	  * @param b receives the bits of the primitive values.
+	  * @param v receives the values of the reference fields.
+	  */
+	private void read (Object obj, long[] b, Object[] v)
+	{
+		for (int i=0;i<accessors.length;++i)
+		{
+			FieldAccessor a = accessors[i];
+			if (a.isPrimitive())
+				b[i] = a.getBits(obj);
+			else
+				v[i] = a.get(obj);
+		}
+	}
+
+	/** Reads the fields of the object into the buffers, until two consecutive reads agree or MAX_RETRIES reads were
+	  * repeated. The values of the last read are kept either way.
+	  * @param obj the object.
+	  * @return true if the last two reads agreed.
+	  */
+	private boolean readOptimistic (Object obj)
+	{
+		read(obj,bits,values);
+		for (int k=0;k<MAX_RETRIES;++k)
+		{
+			read(obj,checkBits,checkValues);
+
+			boolean same = true;
+			for (int i=0;i<accessors.length && same;++i)
+				same = bits[i]==checkBits[i] && values[i]==checkValues[i];
+
+			long[] b = bits;				// The latest read becomes the current one
+			bits = checkBits;
+			checkBits = b;
+			Object[] v = values;
+			values = checkValues;
+			checkValues = v;
+
+			if (same)
+				return true;
+		}
+		return false;
+	}
+
+	/** Takes the values of the last locked read into the buffers, if it has completed, and requests the next locked read
+	  * (unless the track has been removed). Never blocks.
+	  * @return true if a locked read was taken.
+	  */
+	private boolean takeLocked()
+	{
+		boolean taken = false;
+		boolean request = false;
+		boolean stuck = false;
+		synchronized (lockedLock)
+		{
+			if (lockedState==READY)
+			{
+				System.arraycopy(lockedBits,0,bits,0,bits.length);
+				System.arraycopy(lockedValues,0,values,0,values.length);
+				Arrays.fill(lockedValues,null);
+				lockedState = IDLE;
+				taken = true;
+			}
+
+			if (lockedState==IDLE && !removed)
+			{
+				if (lockedBits==null)
+				{
+					lockedBits = new long[accessors.length];
+					lockedValues = new Object[accessors.length];
+				}
+				lockedState = REQUESTED;
+				requestedAt = System.nanoTime();
+				request = true;
+			}
+			else if (lockedState==REQUESTED && System.nanoTime()-requestedAt>LOCK_PATIENCE)
+				stuck = true;			// Not taken yet - the helpers may all be waiting for locks
+		}
+
+		if (request || stuck)
+			serve(request ? this : null);
+		return taken;
+	}
+
+	/** Queues a locked read for the helper threads, and starts a helper if none is free to take it. A helper is started
+	  * as well if the reads have been waiting for a while, since the helpers may all be waiting for the locks of other
+	  * objects.
+	  * @param track the track whose read was requested, or null if the reads have been waiting for a while.
+	  */
+	private static void serve (ObjectTrack track)
+	{
+		synchronized (requests)
+		{
+			if (track!=null)
+				requests.addLast(track);
+			if (idleHelpers>0)
+				requests.notify();
+			else if (!requests.isEmpty())
+			{
+				++idleHelpers;			// Until it takes a read
+				new Helper().start();
+			}
+		}
+	}
+
+	/** Takes a requested locked read: reads the fields of the object while holding its monitor, and leaves the values for
+	  * the sampler. Called by a helper thread. The read of a track which was removed after the request is dropped.
+	  */
+	private void readLocked()
+	{
+		synchronized (lockedLock)
+		{
+			if (lockedState!=REQUESTED)
+				return;
+			if (removed)
+			{
+				lockedState = IDLE;
+				return;
+			}
+			lockedState = READING;
+		}
+
+		Object obj = getObject();
+		if (obj!=null)
+		{
+			synchronized (obj)				// May wait for as long as the object is locked - only this helper waits
+			{
+				read(obj,lockedBits,lockedValues);
+			}
+		}
+
+		synchronized (lockedLock)
+		{
+			lockedState = READY;
+		}
+	}
+
+	/** Returns true if a thread is one of the helper threads which take the locked reads of the tracks.
+	  * @param t the thread.
+	  */
+	static boolean isHelper (Thread t)
+	{
+		return t instanceof Helper;
+	}
+
+	/** Sets the snapshot policy of this track. The policy is applied from the next sample on.
+	  * @param policy NONE, OPTIMISTIC, LOCKED or AUTO (any other value is taken as AUTO).
+	  */
+	public void setPolicy (int policy)
+	{
+		this.policy = (policy==NONE || policy==OPTIMISTIC || policy==LOCKED) ? policy : AUTO;
+	}
+
+	/** Returns the snapshot policy of this track. */
+	public int getPolicy()
+	{
+		return policy;
+	}
+
+	/** Returns the way in which the fields are actually read: NONE, OPTIMISTIC or LOCKED (AUTO is resolved according to
+	  * the class of the object).
+	  */
+	public int getMode()
+	{
+		int p = policy;
+		if (p==AUTO)
+			return guarded ? LOCKED : OPTIMISTIC;
+		return p;
+	}
+
+	/** Returns true if a locked read has been waiting for a while (LOCK_PATIENCE) and hasn't completed yet, which means
+	  * that the object is locked by another thread, and the snapshot is as of the last time it was not.
+	  */
+	public boolean isWaitingForLock()
+	{
+		synchronized (lockedLock)
+		{
+			return (lockedState==REQUESTED || lockedState==READING) && System.nanoTime()-requestedAt>LOCK_PATIENCE;
+		}
+	}
+
+	/** Returns the object recorded by this track, or null if it has been garbage-collected. */
+	public Object getObject()
+	{
+		return objectRef.get();
+	}
+
+	/** Returns whether inherited fields are recorded too. */
+	public boolean getAncestors()
+	{
+		return ancestors;
+	}
+
+	/** Returns the accessors of the recorded fields, in the same order as the values of the snapshots. The array must
+	  * not be modified.
+	  */
+	public FieldAccessor[] getAccessors()
+	{
+		return accessors;
+	}
+
+	/** Returns the history of a numeric field.
+	  * @param i the index of the field.
+	  * @return the history, or null if the field is not numeric.
+	  */
+	public FieldHistory getHistory (int i)
+	{
+		return histories[i];
+	}
+
+	/** Returns the recording time of the last sample. */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/** Returns the latest snapshot of the fields of the object. */
+	public Snapshot getSnapshot()
+	{
+		return snapshot;
+	}
+}
@@ -0,0 +1,498 @@
+package telhai.java.gthreads;
+
+import java.util.*;				// For vectors and collections
+import javax.swing.tree.*;		// For the tree model
+import javax.swing.event.*;		// For the tree model events
+
+/** This class is a TreeModel of the graph of objects which can be reached from a monitored object, for a JTree. The
+  * children of an object are the values of its fields; the children of an array, a list or any other collection are
+  * its elements; and the children of a map are its entries (each one shown as its key, with the children of its value).
+  *
+  * The model is lazy: the children of a node are read only when the JTree asks for them, that is, when the node is
+  * expanded, and they can be dropped again with unload() once it is collapsed. refresh() reads again only the nodes
+  * which are loaded, and tells the JTree only about the nodes which have changed - so the cost of watching a large
+  * object is proportional to what is shown, not to the size of the object.
+  *
+  * An array or a collection with more than PAGE_SIZE elements is paged: its children are ranges of indices, each of
+  * which holds up to PAGE_SIZE elements or smaller ranges, so no node ever has more than PAGE_SIZE children. The
+  * elements of a list which supports random access are read by index; the elements of any other collection are read
+  * by iterating it up to the end of the page. A node whose value is also the value of one of its ancestors is marked
+  * as a cycle, and has no children.
+  *
+  * A node is shown with a bounded summary of its value (see summarize()), instead of the value's toString(), which
+  * can be arbitrarily expensive - for example, the toString() of a list of a million elements.
+  *
+  * The model reads the objects without locking them, so it should only be used on the event dispatch thread, like any
+  * other Swing model. A collection which is changed while it is read simply shows fewer elements until the next
+  * refresh.
+  *
+  * @see ObjectTreeView
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ObjectTreeModel implements TreeModel
+{
+	/** The maximum number of children of a node */
+	public static final int PAGE_SIZE = 100;
+
+	/** The maximum length of the summary of a value, in characters */
+	public static final int SUMMARY_LENGTH = 80;
+
+	/** This class is a node of the tree: either a value (of a field, an element or an entry), or a range of the
+	  * elements of an array or a collection. The text of a node is computed when the node is read, and is returned by
+	  * toString(), which the JTree uses to show it.
+	  *
+	  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+	  */
+	private static final class Node
+	{
+		/** The parent of the node, or null for the root */
+		final Node parent;
+		/** The name of the node: a field name, an index, or a summary of a key */
+		final String name;
+		/** The value of the node (for a range, the array or collection whose elements it holds) */
+		Object value;
+		/** The first index of a range, or -1 for a value */
+		final int from;
+		/** The end of a range (exclusive) */
+		final int to;
+		/** Indicates whether the value is also the value of one of the ancestors */
+		final boolean cycle;
+		/** The text shown for the node */
+		String text;
+		/** The children of the node, or null if they were not read */
+		Vector children;
+
+		/** Constructs a value node.
+		  * @param parent the parent of the node.
+		  * @param name the name of the node.
+		  * @param value the value.
+		  */
+		Node (Node parent, String name, Object value)
+		{
+			this.parent = parent;
+			this.name = name;
+			this.value = value;
+			from = -1;
+			to = -1;
+			cycle = isCycle(parent,value);
+			text = name + " = " + summarize(value,SUMMARY_LENGTH) + (cycle ? " (cycle)" : "");
+		}
+
+		/** Constructs a range node.
+		  * @param parent the parent of the node.
+		  * @param container the array or collection whose elements the range holds.
+		  * @param from the first index of the range.
+		  * @param to the end of the range (exclusive).
+		  */
+		Node (Node parent, Object container, int from, int to)
+		{
+			this.parent = parent;
+			name = "[" + from + ".." + (to-1) + "]";
+			value = container;
+			this.from = from;
+			this.to = to;
+			cycle = false;
+			text = name;
+		}
+
+		/** Returns true if this node is a range. */
+		boolean isRange()
+		{
+			return from>=0;
+		}
+
+		/** Returns true if this node can take the value of another node at the same place, and be kept (with its
+		  * children) instead of it: if both have the same value, or if both values have no children.
+		  * @param other the other node.
+		  */
+		boolean canTake (Node other)
+		{
+			return from==other.from && to==other.to && name.equals(other.name) &&
+					(value==other.value || isAtom(value) && isAtom(other.value));
+		}
+
+		/** Returns the text of the node. */
+		public String toString()
+		{
+			return text;
+		}
+	}
+
+	/** The root of the tree */
+	private Node root;
+
+	/** The listeners of the model */
+	private Vector listeners;
+
+	/** Constructs a model of the graph of objects which can be reached from the given object.
+	  * @param name the name of the root.
+	  * @param obj the object at the root.
+	  */
+	public ObjectTreeModel (String name, Object obj)
+	{
+		root = new Node(null,name,obj);
+		listeners = new Vector();
+	}
+
+	/** Returns a bounded summary of a value, which is computed without calling toString() on anything but strings,
+	  * boxed primitives and a few other classes of the JDK whose strings are short:
+	  *	- null, a number of the JDK (such as a boxed primitive), a boolean, a character, a Class or an enum constant is
+	  *	  shown as usual.
+	  *	- A string (or any CharSequence) is shown quoted, and cut to the given length.
+	  *	- An array is shown with its type and length, for example int[1000].
+	  *	- A collection or a map is shown with its class and size, for example ArrayList (size 12).
+	  *	- Any other object is shown with its class and identity hash code, for example Account@1b6d3586.
+	  * @param value the value.
+	  * @param max the maximum length of the summary (a longer string is cut, and ends with "...").
+	  */
+	public static String summarize (Object value, int max)
+	{
+		String s;
+		if (value==null)
+			s = "null";
+		else if (value instanceof CharSequence)
+		{
+			CharSequence cs = (CharSequence)value;
+			try
+			{
+				int len = cs.length();
+				return "\"" + cs.subSequence(0,Math.min(len,max)) + (len>max ? "...\"" : "\"");
+			}
+			catch (RuntimeException e) {return nameOf(value.getClass());}	// A buffer which is being changed
+		}
+		else if (isAtom(value))
+			s = (value instanceof Enum) ? ((Enum)value).name() : value.toString();
+		else if (value.getClass().isArray())
+		{
+			String type = value.getClass().getComponentType().getSimpleName();
+			int bracket = type.indexOf('[');		// The length goes in the first pair of brackets
+			if (bracket<0)
+				bracket = type.length();
+			int len = java.lang.reflect.Array.getLength(value);
+			s = type.substring(0,bracket) + "[" + len + "]" + type.substring(bracket);
+		}
+		else if (value instanceof Collection)
+			s = nameOf(value.getClass()) + " (size " + ((Collection)value).size() + ")";
+		else if (value instanceof Map)
+			s = nameOf(value.getClass()) + " (size " + ((Map)value).size() + ")";
+		else
+			s = nameOf(value.getClass()) + "@" + Integer.toHexString(System.identityHashCode(value));
+
+		return (s.length()>max) ? s.substring(0,max) + "..." : s;
+	}
+
+	/** Returns the short name of a class, or its full name if it has no short name (an anonymous class).
+	  * @param type the class.
+	  */
+	private static String nameOf (Class type)
+	{
+		String name = type.getSimpleName();
+		return (name.length()>0) ? name : type.getName();
+	}
+
+	/** Returns true if a value has no children: null, a string, a number of the JDK (such as a boxed primitive), a
+	  * boolean, a character, a Class or an enum constant.
+	  * @param value the value.
+	  */
+	private static boolean isAtom (Object value)
+	{
+		return value==null || value instanceof CharSequence || value instanceof Boolean || value instanceof Character ||
+				value instanceof Class || value instanceof Enum ||
+				value instanceof Number && value.getClass().getName().startsWith("java.");
+	}
+
+	/** Returns true if a value is also the value of one of the given node or its ancestors.
+	  * @param parent the node.
+	  * @param value the value.
+	  */
+	private static boolean isCycle (Node parent, Object value)
+	{
+		if (isAtom(value))
+			return false;
+		for (Node n=parent;n!=null;n=n.parent)
+			if (n.value==value && !n.isRange())
+				return true;
+		return false;
+	}
+
+	/** Returns the number of elements of an array or a collection, or -1 for any other value.
+	  * @param value the value.
+	  */
+	private static int lengthOf (Object value)
+	{
+		if (value.getClass().isArray())
+			return java.lang.reflect.Array.getLength(value);
+		if (value instanceof Collection)
+			return ((Collection)value).size();
+		if (value instanceof Map)
+			return ((Map)value).size();
+		return -1;
+	}
+
+	/** Reads the children of a node.
+	  * @param node the node.
+	  * @return the children.
+	  */
+	private static Vector read (Node node)
+	{
+		Vector result = new Vector();
+		Object v = node.value;
+		if (node.cycle || isAtom(v))
+			return result;
+
+		if (node.isRange())
+		{
+			readRange(node,node.from,node.to,result);
+			return result;
+		}
+
+		int n = lengthOf(v);
+		if (n>=0)
+		{
+			readRange(node,0,n,result);
+			return result;
+		}
+
+		FieldAccessor[] acc = FieldAccessor.forClass(v.getClass(),true);
+		for (int i=0;i<acc.length;++i)
+			if (!acc[i].isStatic())
+				result.add(new Node(node,acc[i].getName(),acc[i].get(v)));
+		return result;
+	}
+
+	/** Reads the children of a range of the elements of an array or a collection: the elements themselves, if there
+	  * are at most PAGE_SIZE of them, or else up to PAGE_SIZE smaller ranges.
+	  * @param node the node whose children are read.
+	  * @param from the first index of the range.
+	  * @param to the end of the range (exclusive).
+	  * @param result receives the children.
+	  */
+	private static void readRange (Node node, int from, int to, Vector result)
+	{
+		if (to-from>PAGE_SIZE)					// Split into ranges of PAGE_SIZE, PAGE_SIZE^2, ... elements
+		{
+			long step = PAGE_SIZE;
+			while (step*PAGE_SIZE<to-from)
+				step *= PAGE_SIZE;
+			for (long i=from;i<to;i+=step)
+				result.add(new Node(node,node.value,(int)i,(int)Math.min(i+step,to)));
+			return;
+		}
+
+		Object v = node.value;
+		try
+		{
+			if (v.getClass().isArray())
+			{
+				for (int i=from;i<to;++i)
+					result.add(new Node(node,"[" + i + "]",java.lang.reflect.Array.get(v,i)));
+			}
+			else if (v instanceof List && v instanceof RandomAccess)
+			{
+				List list = (List)v;
+				for (int i=from;i<to;++i)
+					result.add(new Node(node,"[" + i + "]",list.get(i)));
+			}
+			else								// Iterate up to the end of the range
+			{
+				Iterator it = (v instanceof Map) ? ((Map)v).entrySet().iterator() : ((Collection)v).iterator();
+				for (int i=0;i<to && it.hasNext();++i)
+				{
+					Object e = it.next();
+					if (i<from)
+						continue;
+					if (v instanceof Map)
+					{
+						Map.Entry entry = (Map.Entry)e;
+						result.add(new Node(node,summarize(entry.getKey(),SUMMARY_LENGTH),entry.getValue()));
+					}
+					else
+						result.add(new Node(node,"[" + i + "]",e));
+				}
+			}
+		}
+		catch (RuntimeException e) {}			// Changed while it was read - the rest is read on the next refresh
+	}
+
+	/** Returns the children of a node, reading them if they were not read yet.
+	  * @param node the node.
+	  */
+	private static Vector childrenOf (Node node)
+	{
+		if (node.children==null)
+			node.children = read(node);
+		return node.children;
+	}
+
+	/** Returns the root of the tree. */
+	public Object getRoot()
+	{
+		return root;
+	}
+
+	/** Returns a child of a node.
+	  * @param parent the node.
+	  * @param index the index of the child.
+	  */
+	public Object getChild (Object parent, int index)
+	{
+		Vector children = childrenOf((Node)parent);
+		return (index<children.size()) ? children.get(index) : null;
+	}
+
+	/** Returns the number of children of a node. The children are read if they were not read yet.
+	  * @param parent the node.
+	  */
+	public int getChildCount (Object parent)
+	{
+		return childrenOf((Node)parent).size();
+	}
+
+	/** Returns true if a node has no children, without reading them.
+	  * @param node the node.
+	  */
+	public boolean isLeaf (Object node)
+	{
+		Node n = (Node)node;
+		if (n.children!=null)
+			return n.children.isEmpty();
+		return n.cycle || isAtom(n.value) || lengthOf(n.value)==0;
+	}
+
+	/** Returns the index of a child of a node, or -1 if it is not a child of the node.
+	  * @param parent the node.
+	  * @param child the child.
+	  */
+	public int getIndexOfChild (Object parent, Object child)
+	{
+		Node p = (Node)parent;
+		return (p==null || child==null || p.children==null) ? -1 : p.children.indexOf(child);
+	}
+
+	/** Does nothing, since the model is not editable.
+	  * @param path the path of the node.
+	  * @param newValue the new value.
+	  */
+	public void valueForPathChanged (TreePath path, Object newValue) {}
+
+	/** Adds a listener to the model.
+	  * @param l the listener.
+	  */
+	public void addTreeModelListener (TreeModelListener l)
+	{
+		listeners.add(l);
+	}
+
+	/** Removes a listener from the model.
+	  * @param l the listener.
+	  */
+	public void removeTreeModelListener (TreeModelListener l)
+	{
+		listeners.remove(l);
+	}
+
+	/** Drops the children of a node (and all their descendants), so that they are no longer read by refresh(). They are
+	  * read again when they are needed. This should be called when a node is collapsed.
+	  * @param path the path of the node.
+	  */
+	public void unload (TreePath path)
+	{
+		Node node = (Node)path.getLastPathComponent();
+		if (node.children==null)
+			return;
+		node.children = null;
+		fire(3,new TreeModelEvent(this,path));
+	}
+
+	/** Reads again all the nodes which are loaded, and notifies the listeners of the changes. A node which still has the
+	  * same value keeps its children (and the JTree keeps it expanded); a node whose value has been replaced is replaced
+	  * with a new node, whose children are not read until it is expanded again.
+	  */
+	public void refresh()
+	{
+		refresh(root,new TreePath(root));
+	}
+
+	/** Reads again the children of a node and of its loaded descendants, and notifies the listeners of the changes.
+	  * @param node the node.
+	  * @param path the path of the node.
+	  */
+	private void refresh (Node node, TreePath path)
+	{
+		Vector old = node.children;
+		if (old==null)
+			return;
+		Vector fresh = read(node);
+
+		int n = Math.min(old.size(),fresh.size());
+		for (int i=0;i<n;++i)
+		{
+			Node o = (Node)old.get(i), f = (Node)fresh.get(i);
+			if (o.canTake(f))					// Keep the very node the JTree knows, and look inside it
+			{
+				if (!o.text.equals(f.text))
+				{
+					o.value = f.value;
+					o.text = f.text;
+					fire(0,new TreeModelEvent(this,path,new int[] {i},new Object[] {o}));
+				}
+				refresh(o,path.pathByAddingChild(o));
+			}
+			else								// Replaced - the JTree forgets the old node and its expansion
+			{
+				old.set(i,f);
+				fire(2,new TreeModelEvent(this,path,new int[] {i},new Object[] {o}));
+				fire(1,new TreeModelEvent(this,path,new int[] {i},new Object[] {f}));
+			}
+		}
+
+		if (fresh.size()>n)						// Added at the end
+		{
+			int[] indices = new int[fresh.size()-n];
+			Object[] added = new Object[indices.length];
+			for (int i=0;i<indices.length;++i)
+			{
+				indices[i] = n+i;
+				added[i] = fresh.get(n+i);
+				old.add(added[i]);
+			}
+			fire(1,new TreeModelEvent(this,path,indices,added));
+		}
+		else if (old.size()>n)					// Removed from the end
+		{
+			int[] indices = new int[old.size()-n];
+			Object[] removed = new Object[indices.length];
+			for (int i=0;i<indices.length;++i)
+			{
+				indices[i] = n+i;
+				removed[i] = old.get(n+i);
+			}
+			old.setSize(n);
+			fire(2,new TreeModelEvent(this,path,indices,removed));
+		}
+	}
+
+	/** Notifies the listeners of a change.
+	  * @param type 0 for changed nodes, 1 for inserted nodes, 2 for removed nodes, 3 for a changed structure.
+	  * @param e the event.
+	  */
+	private void fire (int type, TreeModelEvent e)
+	{
+		for (int i=listeners.size()-1;i>=0;--i)
+		{
+			TreeModelListener l = (TreeModelListener)listeners.get(i);
+			switch (type)
+			{
+				case 0: l.treeNodesChanged(e);
+						break;
+				case 1: l.treeNodesInserted(e);
+						break;
+				case 2: l.treeNodesRemoved(e);
+						break;
+				case 3: l.treeStructureChanged(e);
+						break;
+			}
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package telhai.java.gthreads;
+
+import java.awt.*;				// For basic graphical functions
+import java.awt.event.*;		// For the window and timer events
+import javax.swing.*;			// For advanced graphical functions
+import javax.swing.event.*;		// For the expansion events
+
+/** This class is a component which explores the graph of objects which can be reached from a monitored object, as a
+  * tree which is expanded lazily: only the nodes which are expanded are read (see ObjectTreeModel), and the children of
+  * a node are dropped again when it is collapsed. On each call to update(), the expanded nodes are read again, and
+  * only the nodes which have changed are repainted.
+  *
+  * An ObjectViewTable opens an explorer in a window of its own when a row of a reference field is double-clicked.
+  *
+  * @see ObjectTreeModel
+  * @see ObjectViewTable
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ObjectTreeView extends JPanel
+{
+	/** Default interval between two updates of an explorer window, in milliseconds */
+	public static final int DEFAULT_INTERVAL = 500;
+
+	/** The model of the tree */
+	protected ObjectTreeModel model;
+	/** The tree */
+	protected JTree tree;
+
+	/** Constructs an explorer of the graph of objects which can be reached from the given object.
+	  * @param name the name of the object, shown at the root of the tree.
+	  * @param obj the object.
+	  */
+	public ObjectTreeView (String name, Object obj)
+	{
+		super(new BorderLayout());
+
+		model = new ObjectTreeModel(name,obj);
+		tree = new JTree(model);
+		tree.setLargeModel(true);					// Don't keep the sizes of the nodes which are not shown
+		tree.setShowsRootHandles(true);
+		tree.addTreeExpansionListener(new TreeExpansionListener()
+			{
+				public void treeExpanded (TreeExpansionEvent e) {}
+				public void treeCollapsed (TreeExpansionEvent e)
+				{
+					model.unload(e.getPath());		// Stop reading what is no longer shown
+				}
+			});
+
+		add(new JScrollPane(tree),BorderLayout.CENTER);
+	}
+
+	/** Reads the expanded nodes of the tree again, and repaints the ones which have changed. This method should be called
+	  * on the event dispatch thread, at regular intervals.
+	  */
+	public void update()
+	{
+		model.refresh();
+	}
+
+	/** Returns the model of the tree. */
+	public ObjectTreeModel getModel()
+	{
+		return model;
+	}
+
+	/** Opens an explorer of the given object in a window of its own, which is updated every DEFAULT_INTERVAL
+	  * milliseconds for as long as it is open. This method should be called on the event dispatch thread.
+	  * @param name the name of the object, shown as the title of the window and at the root of the tree.
+	  * @param obj the object.
+	  * @return the explorer.
+	  */
+	public static ObjectTreeView showWindow (String name, Object obj)
+	{
+		final ObjectTreeView view = new ObjectTreeView(name,obj);
+		final JFrame frame = new JFrame(name);
+		final javax.swing.Timer timer = new javax.swing.Timer(DEFAULT_INTERVAL,new ActionListener()
+			{
+				public void actionPerformed (ActionEvent e)
+				{
+					view.update();
+				}
+			});
+
+		frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+		frame.addWindowListener(new WindowAdapter()
+			{
+				public void windowClosed (WindowEvent e)
+				{
+					timer.stop();				// Nothing is read once the window is closed
+				}
+			});
+		frame.getContentPane().add(view);
+		frame.setSize(400,500);
+		frame.setVisible(true);
+		timer.start();
+		return view;
+	}
+}
@@ -1,228 +1,677 @@
-package telhai.java.gthreads;
-
-import java.util.*;				// For vectors
-import java.awt.*;				// For basic graphical functions
-import javax.swing.*;			// For advanced graphical functions
-import javax.swing.table.*;		// For table functions
-import javax.swing.border.*;	// For border functions
-import java.lang.reflect.*;		// For reflection
-
-/** This class provides the ability to view all fields of a given object. The component includes two sub-components:
-  * a JLabel which displays the name of the object, and a JTable which displays the fields of the object, their names,
-  * types and values. The table is placesd inside a JScrollPane for automatic scrolling.
-  *
-  * A single instance of ObjectViewTable monitors a single Object. The object is received upon construction and cannot
-  * be changed. However, the values of the fields are retrieved every time the component is repainted, so it can be used
-  * to track changes of the object at run-time.
-  *
-  * By default, an ObjectViewTable only monitors the declared fields of the object, not the fields which it has inherited
-  * from its ancestors. However, it is possible to specify upon construction that the component should also monitor
-  * inherited fields.
-  * 
-  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
-  */
-public class ObjectViewTable extends JPanel
-{
-	/** The object which is monitored by this ObjectViewTable */
-	protected Object myObject;
-	/** The label which displays the name of the object */
-	protected JLabel title;
-	/** The table which displays the fields of the object */
-	protected JTable fieldtable;
-	/** The scroll pane which holds the table */
-	protected JScrollPane spane;
-	/** Holds the fields of the object */
-	protected Field[] fields;
-	/** A flag which indicates whether inherited fields should be monitored */
-	protected boolean viewAncestors;
-
-	/** Default width of the component */
-	protected final int DEFAULT_WIDTH = 400;
-	/** Default height of the component */
-	protected final int DEFAULT_HEIGHT = 150;
-	/** The height of the label */
-	protected final int LABEL_HEIGHT = 20;
-	/** The distance from the border */
-	protected final int BORDER_OFFSET = 5;
-	/** The color of the border */
-	protected final Color BORDER_COLOR = Color.BLACK;
-	/** The names of the columns of the table */
-	protected final String[] COLUMN_NAMES = {"Name","Type","Value"};
-
-	/** Constructs an ObjectViewTable with no object to monitor. This constructor exists for compatibility only, as there
-	  * is no use to an ObjectViewTable without an object.
-	  */
-	public ObjectViewTable ()
-	{
-		myObject = null;
-		
-		setPreferredSize(new Dimension(DEFAULT_WIDTH,LABEL_HEIGHT));
-		setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
-	}
-
-	/** Constructs an ObjectViewTable which monitors the given object.
-	  * @param obj the object to monitor.
-	  */
-	public ObjectViewTable (Object obj)
-	{
-		myObject = obj;
-
-		setPreferredSize(new Dimension(DEFAULT_WIDTH,DEFAULT_HEIGHT));
-		setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
-
-		viewAncestors = false;		// By default doesn't show inherited fields
-	
-		initializeTable();			// Internal function to initialize the component
-	}
-
-	/** Constructs an ObjectViewTable which monitors the given object.
-	  * @param obj the object to monitor.
-	  * @param ancestors indicates whether inherited fields should be viewed or not.
-	  */
-	public ObjectViewTable (Object obj, boolean ancestors)
-	{
-		myObject = obj;
-
-		setPreferredSize(new Dimension(DEFAULT_WIDTH,DEFAULT_HEIGHT));
-		setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
-	
-		viewAncestors = ancestors;
-		
-		initializeTable();			// Internal function to initialize the component
-	}
-
-	/** Constructs an ObjectViewTable with a given dimension, which monitors the given object.
-	  * @param obj the object to monitor.
-	  * @param dim the desired dimension of the component.
-	  * @param ancestors indicates whether inherited fields should be viewed or not.
-	  */
-	public ObjectViewTable (Object obj, Dimension dim, boolean ancestors)
-	{
-		myObject = obj;
-
-		if (dim.height<LABEL_HEIGHT)	// Doesn't allow height smaller than the label height
-			setPreferredSize(new Dimension(dim.width,LABEL_HEIGHT));
-		else
-			setPreferredSize(dim);
-
-		setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
-
-		viewAncestors = ancestors;
-		
-		initializeTable();			// Internal function to initialize the component
-	}
-		
-	/** Initializes the component, by adding the label and tabel components and retrieving the fields of the object,
-	  * which needs to be monitored.
-	  */
-	protected void initializeTable()
-	{
-		if (myObject==null)		// If the object is NULL, only add the label to display "NO OBJECT"
-		{
-			title = new JLabel ("NO OBJECT",SwingConstants.CENTER);
-			title.setSize(DEFAULT_WIDTH,LABEL_HEIGHT);
-			add(title,BorderLayout.NORTH);
-			return;
-		}
-	
-		title = new JLabel (myObject.toString(),SwingConstants.CENTER);	// Display the string representation of the object
-		
-		fields = getMyFields();							// Internal function to retrieve the fields of the object
-		AccessibleObject.setAccessible(fields,true);	// Allow viewing private and protected fields
-
-		TableModel tmodel = new AbstractTableModel()		// Create a table model to display the table
-		{
-			public String getColumnName (int col) {return COLUMN_NAMES[col];}	// Return the column names
-			public int getRowCount() {return fields.length;}					// Return the number of rows
-			public int getColumnCount() {return COLUMN_NAMES.length;}			// Return the number of columns
-			public Object getValueAt (int row, int col)							// Return the value of a given cell
-			{
-				Object val = null;
-				switch (col)
-				{
-					case 0: val = fields[row].getName();			// Column 0 - names of fields
-							break;
-					case 1: val = fields[row].getType().getName();	// Column 1 - types of fields
-							break;
-					case 2: try {val = fields[row].get(myObject);}	// Column 2 - values of fields
-							catch (IllegalAccessException e) {}		// This exception will never occur here
-							break;									// But the compiler demands trying to catch it
-				}
-				return val;
-			}
-			public boolean isCellEditable(int row, int col) {return false;}		// The table is not editable
-			public void setValueAt (Object value, int row, int col) {}			// No implementation for setValueAt()
-		};
-
-		fieldtable = new JTable(fields.length,COLUMN_NAMES.length);		// Create a table of the proper size
-		fieldtable.setModel(tmodel);									// Apply the table model
-		
-		spane = new JScrollPane(fieldtable);		// Add table to a scrollpane and set the needed size
-		spane.setPreferredSize(new Dimension(getPreferredSize().width-2*BORDER_OFFSET,
-														getPreferredSize().height-2*LABEL_HEIGHT));
-		
-		add(title);		// Add label to component
-		add(spane);		// Add scrollpane with table to component
-
-		validate();		// Validate component - set the bounds of the sub-components to the appropriate values
-	}
-
-	/** Returns an array of all the fields of the object which need to be monitored. If viewAncestors is false (default),
-	  * only the declared fields are returned. Otherwise, all the declared fields of the object's class and all its 
-	  * superclasses are returned.
-	  */
-	protected Field[] getMyFields()
-	{
-		Field[] currentFields;				// The fields of the current class
-		Class currentClass;					// The current class
-		Vector fieldVector = new Vector();	// Temporary vector to hold the fields
-		int i;
-		
-		currentClass = myObject.getClass();					// The class of this object
-		currentFields = currentClass.getDeclaredFields();	// All the declared fields of this class
-
-		if (viewAncestors)							// If inherited fields are to be monitored
-		{
-			for (i=0;i<currentFields.length;++i)
-				fieldVector.add(currentFields[i]);	// Add all fields to vector
-
-			while ((currentClass=currentClass.getSuperclass())!=null)	// Go up the inheritance tree until class Object
-			{
-				currentFields = currentClass.getDeclaredFields();	// Get the fields of this ancestor class
-				for (i=0;i<currentFields.length;++i)
-					fieldVector.add(currentFields[i]);				// Add the fields to the vector
-			}
-		
-			currentFields = new Field[fieldVector.size()];
-
-			for (i=0;i<fieldVector.size();++i)
-				currentFields[i] = (Field)(fieldVector.elementAt(i));	// Convert the vector back to an array
-		}
-
-		return currentFields;
-	}
-
-	/** Validates this component by ensuring that both of its subcomponents (the JLabel and JScrollpane) are placed and
-	  * sized as necessary. The label is places at the top of the component, and the scrollpane which contains the table
-	  * is placed underneath it.
-	  */
-	public void validate()
-	{
-		super.validate();
-
-		title.setBounds(BORDER_OFFSET,0,getPreferredSize().width-BORDER_OFFSET,LABEL_HEIGHT);
-		
-		if (spane!=null)
-			spane.setBounds(BORDER_OFFSET,LABEL_HEIGHT,spane.getPreferredSize().width,spane.getPreferredSize().height);
-	}
-
-	/** Returns a string representation of this ObjectViewTable. The string representation includes the string
-	  * representation of the object monitored and the name of its class.
-	  */
-	public String toString()
-	{
-		if (myObject==null)
-			return ("Object View Table [ NULL ]");
-		return ("Object View Table [ Object: "+myObject.toString()+" ; Class: "+myObject.getClass().getName()+" ]");
-	}
+package telhai.java.gthreads;
+
+import java.util.*;				// For vectors
+import java.awt.*;				// For basic graphical functions
+import java.awt.event.*;		// For mouse events
+import javax.swing.*;			// For advanced graphical functions
+import javax.swing.table.*;		// For table functions
+import javax.swing.border.*;	// For border functions
+import java.lang.reflect.*;		// For reflection
+
+/** This class provides the ability to view all fields of a given object. The component includes two sub-components:
+  * a JLabel which displays the name of the object, and a JTable which displays the fields of the object, their names,
+  * types and values. The table is placesd inside a JScrollPane for automatic scrolling.
+  *
+  * A single instance of ObjectViewTable monitors a single Object. The object is received upon construction and cannot
+  * be changed. However, the values of the fields are sampled into snapshots, and the table is updated whenever they
+  * change, so it can be used to track changes of the object at run-time.
+  *
+  * By default, an ObjectViewTable only monitors the declared fields of the object, not the fields which it has inherited
+  * from its ancestors. However, it is possible to specify upon construction that the component should also monitor
+  * inherited fields.
+  *
+  * The fields are read through FieldAccessor objects, which are built once per class and shared by all the tables, and
+  * which read the fields without reflection. The value of a primitive field is read without boxing, and the values and
+  * statistics are formatted into a reused buffer of characters and drawn from it, so that monitoring an object produces
+  * no garbage once it is shown: the names and types of the fields are kept by the accessors, and the model returns
+  * the accessor of a field for its value and statistics cells, which the renderer fills in from the snapshot.
+  *
+  * The snapshots are held by an ObjectTrack: in a GraphicalThreadManager, the ThreadRecorder takes them on its own
+  * thread; a table which was constructed with an object takes them itself. On each call to update(), the table compares
+  * the latest snapshot with the one it shows, and tells the JTable only about the cells which have changed. A changed
+  * cell is highlighted, and the highlight fades away within a second. While the object doesn't change, update() does
+  * nothing, and the table is not repainted at all.
+  *
+  * All the fields of a snapshot are read at one consistent point, according to the snapshot policy of the track (see
+  * ObjectTrack.setPolicy()), so the table never shows a state which the object never had as a whole. While the track
+  * is waiting for another thread to unlock the object, the title is grayed out, and the table keeps showing the last
+  * consistent snapshot.
+  *
+  * The value of a reference field is shown as a bounded summary (see ObjectTreeModel.summarize()), rather than as its
+  * toString(), which may walk a whole collection on each repaint. Double-clicking the row of a reference field opens an
+  * ObjectTreeView of its value, where the objects it refers to can be explored.
+  *
+  * For each numeric field, the table also shows a sparkline of its history over the last HISTORY_NANOS of recording
+  * time, and the minimum, maximum and mean (weighted by time) of its values over the same window. The history column
+  * is refreshed when the field changes, and once a second while the window still holds a change. A cursor time can be
+  * set (the GraphicalThreadManager sets it when its timeline is clicked), in which case the numeric fields show their
+  * values at that time, and the sparklines mark it.
+  *
+  * @see FieldAccessor
+  * @see ObjectTrack
+  * @see FieldHistory
+  * @see ObjectTreeView
+  * 
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ObjectViewTable extends JPanel
+{
+	/** The object which is monitored by this ObjectViewTable */
+	protected Object myObject;
+	/** The label which displays the name of the object */
+	protected JLabel title;
+	/** The table which displays the fields of the object */
+	protected JTable fieldtable;
+	/** The scroll pane which holds the table */
+	protected JScrollPane spane;
+	/** Holds the fields of the object */
+	protected Field[] fields;
+	/** The accessors of the fields of the object, in the same order as the fields */
+	protected FieldAccessor[] accessors;
+	/** The summary of the value of each reference field, or the exact text of the value of each floating-point field,
+	  * or null
+	  */
+	private String[] summaries;
+	/** The bits of the value of each floating-point field whose text is in summaries */
+	private long[] formattedBits;
+	/** The snapshot from which the summary of each reference field was made */
+	private ObjectTrack.Snapshot[] summarized;
+	/** A flag which indicates whether inherited fields should be monitored */
+	protected boolean viewAncestors;
+	/** The track which holds the snapshots of the object */
+	protected ObjectTrack track;
+	/** Indicates whether the track belongs to this table, which then samples it on each update */
+	private boolean ownTrack;
+	/** The snapshot which the table shows */
+	private ObjectTrack.Snapshot shown;
+	/** The System.nanoTime() value when each field was last seen changing, or 0 if it is not highlighted */
+	private long[] changedAt;
+	/** The number of fields which are highlighted */
+	private int numHighlighted;
+	/** The model of the table */
+	private AbstractTableModel tmodel;
+	/** The recording time whose values are shown, or -1 to show the latest values */
+	private long cursorTime = -1;
+	/** The System.nanoTime() value when the history column was last refreshed */
+	private long historyRefreshed;
+	/** The System.nanoTime() value when the table started taking its own snapshots */
+	private long ownOrigin;
+	/** Receives the minimum, maximum and mean of a field */
+	private double[] summary = new double[3];
+	/** Indicates whether the title shows that the track is waiting for the lock of the object */
+	private boolean waiting;
+
+	/** Default width of the component */
+	protected final int DEFAULT_WIDTH = 400;
+	/** Default height of the component */
+	protected final int DEFAULT_HEIGHT = 150;
+	/** The height of the label */
+	protected final int LABEL_HEIGHT = 20;
+	/** The distance from the border */
+	protected final int BORDER_OFFSET = 5;
+	/** The color of the border */
+	protected final Color BORDER_COLOR = Color.BLACK;
+	/** The names of the columns of the table */
+	protected final String[] COLUMN_NAMES = {"Name","Type","Value","History","Min / Max / Mean"};
+	/** The color of a value which has just changed */
+	protected final Color CHANGE_COLOR = new Color(255,220,100);
+	/** The time it takes the highlight of a changed value to fade away, in nanoseconds */
+	protected final long HIGHLIGHT_NANOS = 1000000000L;
+	/** The window of recording time shown in the history column, in nanoseconds */
+	protected final long HISTORY_NANOS = 10000000000L;
+	/** The interval between refreshes of the history column while nothing changes, in nanoseconds */
+	protected final long HISTORY_REFRESH_NANOS = 1000000000L;
+	/** The color of the sparklines */
+	protected final Color SPARKLINE_COLOR = new Color(0,90,200);
+	/** The color of the cursor on the sparklines */
+	protected final Color CURSOR_COLOR = Color.RED;
+	/** The color of the title while the track is waiting for the lock of the object */
+	protected final Color WAITING_COLOR = Color.GRAY;
+
+	/** This inner class renders the values of the fields and their statistics, straight from the shown snapshot and
+	  * the histories: the text is formatted into a reused TextBuffer and drawn as characters, so painting a cell
+	  * allocates nothing. The background of a value which has just changed is blended towards CHANGE_COLOR, according
+	  * to the time since it changed, in FADE_STEPS steps whose colors are made once.
+	  */
+	private class TextRenderer extends JComponent implements TableCellRenderer
+	{
+		/** The number of colors of a fading highlight */
+		private static final int FADE_STEPS = 16;
+
+		/** The text of the cell */
+		private TextBuffer text = new TextBuffer();
+		/** The colors of a fading highlight, from the background of the table to CHANGE_COLOR */
+		private Color[] fade = new Color[FADE_STEPS+1];
+		/** The font of the table */
+		private Font font;
+
+		/** Returns the component which renders a cell, with its text formatted.
+		  * @param table the table.
+		  * @param value the accessor of the field (ignored).
+		  * @param isSelected indicates whether the cell is selected.
+		  * @param hasFocus indicates whether the cell has the focus.
+		  * @param row the row of the cell.
+		  * @param col the column of the cell.
+		  */
+		public Component getTableCellRendererComponent (JTable table, Object value, boolean isSelected, boolean hasFocus,
+														int row, int col)
+		{
+			text.clear();
+			if (col==2)
+				appendFieldValue(row,text);
+			else
+				appendSummary(row,text);
+
+			font = table.getFont();
+			if (isSelected)
+			{
+				setBackground(table.getSelectionBackground());
+				setForeground(table.getSelectionForeground());
+				return this;
+			}
+
+			Color bg = table.getBackground();
+			long t = changedAt[row];
+			if (col==2 && t!=0)
+			{
+				int step = (int)(FADE_STEPS-(System.nanoTime()-t)*FADE_STEPS/HIGHLIGHT_NANOS);	// FADE_STEPS down to 0
+				if (step>0)
+				{
+					if (fade[0]!=bg)			// Make the colors for this background
+					{
+						for (int i=0;i<=FADE_STEPS;++i)
+						{
+							float f = (float)i/FADE_STEPS;
+							fade[i] = new Color((int)(bg.getRed()+(CHANGE_COLOR.getRed()-bg.getRed())*f),
+												(int)(bg.getGreen()+(CHANGE_COLOR.getGreen()-bg.getGreen())*f),
+												(int)(bg.getBlue()+(CHANGE_COLOR.getBlue()-bg.getBlue())*f));
+						}
+						fade[0] = bg;
+					}
+					bg = fade[Math.min(step,FADE_STEPS)];
+				}
+			}
+			setBackground(bg);
+			setForeground(table.getForeground());
+			return this;
+		}
+
+		/** Draws the background and the text of the cell. The cell has no border and no children, so it is drawn
+		  * directly, without the work (and the copies of the graphics context) of JComponent.paint().
+		  * @param g the graphics context.
+		  */
+		public void paint (Graphics g)
+		{
+			g.setColor(getBackground());
+			g.fillRect(0,0,getWidth(),getHeight());
+
+			g.setFont(font);
+			FontMetrics fm = g.getFontMetrics();
+			g.setColor(getForeground());
+			text.draw(g,2,(getHeight()-fm.getHeight())/2+fm.getAscent());
+		}
+	}
+
+	/** This inner class renders the history of a numeric field as a sparkline: the values which the field had during the
+	  * window, scaled to the height of the cell, one point per pixel.
+	  */
+	private class SparklineRenderer extends JComponent implements TableCellRenderer
+	{
+		/** The history to draw, or null */
+		private FieldHistory history;
+		/** The values at the points of the sparkline, reused from one cell to the next */
+		private double[] points = new double[0];
+
+		/** Returns the component which renders a history.
+		  * @param table the table.
+		  * @param value the history, or null for a field which is not numeric.
+		  * @param isSelected indicates whether the cell is selected.
+		  * @param hasFocus indicates whether the cell has the focus.
+		  * @param row the row of the cell.
+		  * @param col the column of the cell.
+		  */
+		public Component getTableCellRendererComponent (JTable table, Object value, boolean isSelected, boolean hasFocus,
+														int row, int col)
+		{
+			history = (FieldHistory)value;
+			return this;
+		}
+
+		/** Draws the sparkline, and the cursor if it is within the window. Like the text cells, the cell is drawn
+		  * directly, without the work of JComponent.paint().
+		  * @param g the graphics context.
+		  */
+		public void paint (Graphics g)
+		{
+			int w = getWidth()-2, h = getHeight()-3;
+			if (history==null || w<2 || h<1)
+				return;
+
+			long to = track.getTime(), from = to-HISTORY_NANOS;
+			if (points.length!=w)
+				points = new double[w];
+			history.sample(from,to,points);
+
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+			for (int x=0;x<w;++x)
+				if (!Double.isNaN(points[x]))
+				{
+					min = Math.min(min,points[x]);
+					max = Math.max(max,points[x]);
+				}
+			if (min>max)			// No values within the window
+				return;
+
+			double range = (max>min) ? max-min : 1;
+			int lastX = -1, lastY = 0;
+			g.setColor(SPARKLINE_COLOR);
+			for (int x=0;x<w;++x)
+			{
+				if (Double.isNaN(points[x]))
+					continue;
+				int y = 1+h-(int)((points[x]-min)/range*h+0.5);
+				if (max==min)		// A constant value is drawn in the middle
+					y = 1+h/2;
+				if (lastX>=0)
+					g.drawLine(1+lastX,lastY,1+x,y);
+				lastX = x;
+				lastY = y;
+			}
+
+			if (cursorTime>=from && cursorTime<=to)
+			{
+				int x = 1+(int)((cursorTime-from)*(w-1)/HISTORY_NANOS);
+				g.setColor(CURSOR_COLOR);
+				g.drawLine(x,0,x,getHeight());
+			}
+		}
+	}
+
+	/** Constructs an ObjectViewTable with no object to monitor. This constructor exists for compatibility only, as there
+	  * is no use to an ObjectViewTable without an object.
+	  */
+	public ObjectViewTable ()
+	{
+		myObject = null;
+		
+		setPreferredSize(new Dimension(DEFAULT_WIDTH,LABEL_HEIGHT));
+		setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
+	}
+
+	/** Constructs an ObjectViewTable which monitors the given object.
+	  * @param obj the object to monitor.
+	  */
+	public ObjectViewTable (Object obj)
+	{
+		myObject = obj;
+
+		setPreferredSize(new Dimension(DEFAULT_WIDTH,DEFAULT_HEIGHT));
+		setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
+
+		viewAncestors = false;		// By default doesn't show inherited fields
+	
+		initializeTable();			// Internal function to initialize the component
+	}
+
+	/** Constructs an ObjectViewTable which monitors the given object.
+	  * @param obj the object to monitor.
+	  * @param ancestors indicates whether inherited fields should be viewed or not.
+	  */
+	public ObjectViewTable (Object obj, boolean ancestors)
+	{
+		myObject = obj;
+
+		setPreferredSize(new Dimension(DEFAULT_WIDTH,DEFAULT_HEIGHT));
+		setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
+	
+		viewAncestors = ancestors;
+		
+		initializeTable();			// Internal function to initialize the component
+	}
+
+	/** Constructs an ObjectViewTable with a given dimension, which monitors the given object.
+	  * @param obj the object to monitor.
+	  * @param dim the desired dimension of the component.
+	  * @param ancestors indicates whether inherited fields should be viewed or not.
+	  */
+	public ObjectViewTable (Object obj, Dimension dim, boolean ancestors)
+	{
+		myObject = obj;
+
+		if (dim.height<LABEL_HEIGHT)	// Doesn't allow height smaller than the label height
+			setPreferredSize(new Dimension(dim.width,LABEL_HEIGHT));
+		else
+			setPreferredSize(dim);
+
+		setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
+
+		viewAncestors = ancestors;
+		
+		initializeTable();			// Internal function to initialize the component
+	}
+
+	/** Constructs an ObjectViewTable with a given dimension, which shows the snapshots of the given track. The table
+	  * doesn't sample the object itself: the track is normally sampled by a ThreadRecorder.
+	  * @param track the track of the object to monitor.
+	  * @param dim the desired dimension of the component.
+	  * @see ThreadRecorder#addObject(Object,boolean)
+	  */
+	public ObjectViewTable (ObjectTrack track, Dimension dim)
+	{
+		myObject = track.getObject();
+		this.track = track;
+
+		if (dim.height<LABEL_HEIGHT)	// Doesn't allow height smaller than the label height
+			setPreferredSize(new Dimension(dim.width,LABEL_HEIGHT));
+		else
+			setPreferredSize(dim);
+
+		setBorder(new MatteBorder(1,1,1,1,BORDER_COLOR));
+
+		viewAncestors = track.getAncestors();
+
+		initializeTable();			// Internal function to initialize the component
+		myObject = null;			// Don't keep the object alive - the track holds it weakly
+	}
+
+	/** Returns the object monitored by this table, or null if it has been garbage-collected (or there is none). */
+	public Object getObject()
+	{
+		return (track!=null) ? track.getObject() : myObject;
+	}
+		
+	/** Initializes the component, by adding the label and tabel components and retrieving the fields of the object,
+	  * which needs to be monitored.
+	  */
+	protected void initializeTable()
+	{
+		if (myObject==null)		// If the object is NULL, only add the label to display "NO OBJECT"
+		{
+			title = new JLabel ("NO OBJECT",SwingConstants.CENTER);
+			title.setSize(DEFAULT_WIDTH,LABEL_HEIGHT);
+			add(title,BorderLayout.NORTH);
+			return;
+		}
+	
+		title = new JLabel (myObject.toString(),SwingConstants.CENTER);	// Display the string representation of the object
+		
+		if (track==null)								// Take the snapshots of the object ourselves
+		{
+			track = new ObjectTrack(myObject,viewAncestors);
+			ownTrack = true;
+		}
+		accessors = track.getAccessors();				// Shared by the whole class
+		fields = getMyFields();							// Internal function to retrieve the fields of the object
+		summaries = new String[fields.length];
+		formattedBits = new long[fields.length];
+		summarized = new ObjectTrack.Snapshot[fields.length];
+		changedAt = new long[fields.length];
+		shown = track.getSnapshot();
+
+		tmodel = new AbstractTableModel()				// Create a table model to display the table
+		{
+			public String getColumnName (int col) {return COLUMN_NAMES[col];}	// Return the column names
+			public int getRowCount() {return fields.length;}					// Return the number of rows
+			public int getColumnCount() {return COLUMN_NAMES.length;}			// Return the number of columns
+			public Object getValueAt (int row, int col)							// Return the value of a given cell
+			{
+				Object val = null;
+				switch (col)
+				{
+					case 0: val = accessors[row].getName();			// Column 0 - names of fields
+							break;
+					case 1: val = accessors[row].getTypeName();		// Column 1 - types of fields
+							break;
+					case 2: val = accessors[row];					// Column 2 - values of fields (rendered)
+							break;
+					case 3: val = track.getHistory(row);			// Column 3 - histories of numeric fields
+							break;
+					case 4: val = accessors[row];					// Column 4 - statistics (rendered)
+							break;
+				}
+				return val;
+			}
+			public boolean isCellEditable(int row, int col) {return false;}		// The table is not editable
+			public void setValueAt (Object value, int row, int col) {}			// No implementation for setValueAt()
+		};
+
+		fieldtable = new JTable(fields.length,COLUMN_NAMES.length);		// Create a table of the proper size
+		fieldtable.setModel(tmodel);									// Apply the table model
+		TextRenderer textRenderer = new TextRenderer();					// Formats the values without allocating
+		fieldtable.getColumnModel().getColumn(2).setCellRenderer(textRenderer);
+		fieldtable.getColumnModel().getColumn(3).setCellRenderer(new SparklineRenderer());
+		fieldtable.getColumnModel().getColumn(4).setCellRenderer(textRenderer);
+		fieldtable.addMouseListener(new MouseAdapter()					// Explore a reference field when double-clicked
+			{
+				public void mouseClicked (MouseEvent e)
+				{
+					int row = fieldtable.rowAtPoint(e.getPoint());
+					if (e.getClickCount()==2 && row>=0 && !accessors[row].isPrimitive())
+						ObjectTreeView.showWindow(title.getText() + "." + accessors[row].getName(),shown.getValue(row));
+				}
+			});
+		
+		spane = new JScrollPane(fieldtable);		// Add table to a scrollpane and set the needed size
+		spane.setPreferredSize(new Dimension(getPreferredSize().width-2*BORDER_OFFSET,
+														getPreferredSize().height-2*LABEL_HEIGHT));
+		
+		add(title);		// Add label to component
+		add(spane);		// Add scrollpane with table to component
+
+		validate();		// Validate component - set the bounds of the sub-components to the appropriate values
+	}
+
+	/** Updates the table with the latest snapshot of the object. Only the cells whose values have changed since the
+	  * shown snapshot are updated (and highlighted), and the cells whose highlight is still fading are repainted. If
+	  * the table takes its own snapshots, a snapshot is taken first. This method should be called on the event dispatch
+	  * thread, at regular intervals (the GraphicalThreadManager calls it on each tick, for the visible tables).
+	  */
+	public void update()
+	{
+		if (tmodel==null)		// No object
+			return;
+
+		long now = System.nanoTime();
+		if (ownTrack)
+		{
+			if (ownOrigin==0)
+				ownOrigin = now;
+			track.sample(now-ownOrigin);
+		}
+
+		if (track.isWaitingForLock()!=waiting)			// Gray the title out while the object is locked
+		{
+			waiting = !waiting;
+			title.setForeground(waiting ? WAITING_COLOR : UIManager.getColor("Label.foreground"));
+			title.setToolTipText(waiting ? "Waiting for the object to be unlocked" : null);
+		}
+
+		ObjectTrack.Snapshot s = track.getSnapshot();
+		boolean refresh = (now-historyRefreshed>=HISTORY_REFRESH_NANOS &&		// Let the sparklines move on
+							s.getTime()>=track.getTime()-HISTORY_NANOS);
+		if (s==shown && numHighlighted==0 && !refresh)		// Nothing has changed, nothing is fading or moving
+			return;
+
+		for (int i=0;i<changedAt.length;++i)
+		{
+			if (s!=shown && !s.sameAs(shown,i))		// Changed - highlight it
+			{
+				if (changedAt[i]==0)
+					++numHighlighted;
+				changedAt[i] = now;
+				if (track.getHistory(i)!=null && !refresh)
+				{
+					tmodel.fireTableCellUpdated(i,3);
+					tmodel.fireTableCellUpdated(i,4);
+				}
+			}
+			else if (changedAt[i]==0)
+				continue;
+			else if (now-changedAt[i]>=HIGHLIGHT_NANOS)	// Faded away - repaint it once more without the highlight
+			{
+				changedAt[i] = 0;
+				--numHighlighted;
+			}
+			tmodel.fireTableCellUpdated(i,2);
+		}
+		shown = s;
+
+		if (refresh)
+		{
+			historyRefreshed = now;
+			for (int i=0;i<changedAt.length;++i)
+				if (track.getHistory(i)!=null)
+				{
+					tmodel.fireTableCellUpdated(i,3);
+					tmodel.fireTableCellUpdated(i,4);
+				}
+		}
+	}
+
+	/** Sets the recording time whose values are shown. While a cursor time is set, each numeric field shows the value it
+	  * had at that time (as recorded in its history), and the sparklines mark the time.
+	  * @param nanos the recording time, in nanoseconds, or -1 to show the latest values.
+	  */
+	public void setCursorTime (long nanos)
+	{
+		cursorTime = (nanos<0) ? -1 : nanos;
+		if (tmodel==null)		// No object
+			return;
+
+		String header = (cursorTime<0) ? COLUMN_NAMES[2] : COLUMN_NAMES[2] + " at " + TimeScale.formatMillis(cursorTime);
+		fieldtable.getColumnModel().getColumn(2).setHeaderValue(header);
+		fieldtable.getTableHeader().repaint();
+		if (fields.length>0)
+			tmodel.fireTableRowsUpdated(0,fields.length-1);
+	}
+
+	/** Returns the recording time whose values are shown, or -1 if the latest values are shown. */
+	public long getCursorTime()
+	{
+		return cursorTime;
+	}
+
+	/** Appends the minimum, maximum and mean of a numeric field over the window of the history column to a buffer.
+	  * Nothing is appended for a field which is not numeric, or which has no values within the window.
+	  * @param row the index of the field.
+	  * @param text the buffer.
+	  */
+	private void appendSummary (int row, TextBuffer text)
+	{
+		FieldHistory h = track.getHistory(row);
+		if (h==null)
+			return;
+
+		long to = track.getTime();
+		if (h.summarize(to-HISTORY_NANOS,to,summary)==0)
+			return;
+		boolean fp = h.isFloating();
+		appendNumber(summary[0],fp,text);
+		text.append(" / ");
+		appendNumber(summary[1],fp,text);
+		text.append(" / ");
+		appendNumber(summary[2],true,text);
+	}
+
+	/** Appends a number of the statistics column to a buffer: as an integer if it has no fraction, and otherwise with
+	  * four significant digits.
+	  * @param v the number.
+	  * @param floating indicates whether the number may have a fraction.
+	  * @param text the buffer.
+	  */
+	private static void appendNumber (double v, boolean floating, TextBuffer text)
+	{
+		if (!floating || (v==Math.rint(v) && Math.abs(v)<1e15))
+			text.append((long)v);
+		else
+			text.append(v,4);
+	}
+
+	/** Appends the value of a field of the object, as of the shown snapshot (or at the cursor time), to a buffer. An
+	  * integral value is formatted from its bits, without boxing it. A floating-point value is appended exactly as
+	  * Double.toString() or Float.toString() shows it, from a string which is made again only after the value has
+	  * changed. A reference is appended as a bounded summary, which is made again only after the snapshot has changed.
+	  * @param row the index of the field.
+	  * @param text the buffer.
+	  */
+	private void appendFieldValue (int row, TextBuffer text)
+	{
+		FieldAccessor a = accessors[row];
+		if (!a.isPrimitive())
+		{
+			if (summarized[row]!=shown)
+			{
+				Object v = shown.getValue(row);
+				summaries[row] = (v==FieldAccessor.INACCESSIBLE) ? (String)v :
+										ObjectTreeModel.summarize(v,ObjectTreeModel.SUMMARY_LENGTH);
+				summarized[row] = shown;
+			}
+			text.append(summaries[row]);
+			return;
+		}
+
+		long bits = shown.getBits(row);
+		FieldHistory h = track.getHistory(row);
+		if (cursorTime>=0 && h!=null)			// The value at the cursor
+		{
+			int i = h.indexAt(cursorTime);
+			if (i<0)
+				return;							// Not recorded yet at that time
+			bits = h.isFloating() ? a.fromDouble(h.getValue(i)) : h.getLong(i);
+		}
+
+		char kind = a.getKind();
+		if (kind=='F' || kind=='D')				// Every digit of the value, not a rounding of it
+		{
+			if (summaries[row]==null || formattedBits[row]!=bits)
+			{
+				summaries[row] = (kind=='F') ? Float.toString(Float.intBitsToFloat((int)bits)) :
+												Double.toString(Double.longBitsToDouble(bits));
+				formattedBits[row] = bits;
+			}
+			text.append(summaries[row]);
+			return;
+		}
+		text.append(a,bits);
+	}
+
+	/** Returns an array of all the fields of the object which need to be monitored. If viewAncestors is false (default),
+	  * only the declared fields are returned. Otherwise, all the declared fields of the object's class and all its 
+	  * superclasses are returned. The fields are taken from the accessors of the class, which are built only once.
+	  */
+	protected Field[] getMyFields()
+	{
+		FieldAccessor[] acc = FieldAccessor.forClass(myObject.getClass(),viewAncestors);
+		Field[] currentFields = new Field[acc.length];
+
+		for (int i=0;i<acc.length;++i)
+			currentFields[i] = acc[i].getField();
+
+		return currentFields;
+	}
+
+	/** Validates this component by ensuring that both of its subcomponents (the JLabel and JScrollpane) are placed and
+	  * sized as necessary. The label is places at the top of the component, and the scrollpane which contains the table
+	  * is placed underneath it.
+	  */
+	public void validate()
+	{
+		super.validate();
+
+		title.setBounds(BORDER_OFFSET,0,getPreferredSize().width-BORDER_OFFSET,LABEL_HEIGHT);
+		
+		if (spane!=null)
+			spane.setBounds(BORDER_OFFSET,LABEL_HEIGHT,spane.getPreferredSize().width,spane.getPreferredSize().height);
+	}
+
+	/** Returns a string representation of this ObjectViewTable. The string representation includes the string
+	  * representation of the object monitored and the name of its class.
+	  */
+	public String toString()
+	{
+		Object obj = getObject();
+		if (obj==null)
+			return ("Object View Table [ NULL ]");
+		return ("Object View Table [ Object: "+obj.toString()+" ; Class: "+obj.getClass().getName()+" ]");
+	}
 }
\ No newline at end of file
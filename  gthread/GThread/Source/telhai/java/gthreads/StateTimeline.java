@@ -0,0 +1,166 @@
+package telhai.java.gthreads;
+
+/** This class stores the state history of a single thread as a compact timeline. Each entry holds a time stamp (in
+  * nanoseconds of recording time) and a state code, meaning that the thread has been in this state from the time of
+  * this entry until the time of the next entry. The entries are kept in two growable primitive arrays, so appending an
+  * entry takes constant amortized time and creates no garbage, and looking up the state at a given time is a binary
+  * search. Entries of a blocked or waiting thread also hold a detail string, describing the lock the thread is waiting
+  * for and its owner. The detail is created once per entry (not per sample), and is null for other states.
+  *
+  * A timeline has a single writer (the sampler thread of the ThreadRecorder) and any number of readers. The size is
+  * published only after the entry has been written, so a reader which reads the size first always sees complete
+  * entries, without locking.
+  *
+  * @see ThreadTrack
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public final class StateTimeline
+{
+	/** State code: the thread is active (awake) */
+	public static final byte ACTIVE = 1;
+	/** State code: the thread is sleeping */
+	public static final byte SLEEPING = 2;
+	/** State code: the thread has ended. This is always the last entry of a timeline. */
+	public static final byte ENDED = 3;
+	/** State code: the thread is blocked, waiting to enter a monitor */
+	public static final byte BLOCKED = 4;
+	/** State code: the thread is waiting indefinitely (for example in Object.wait()) */
+	public static final byte WAITING = 5;
+	/** State code: the thread is waiting with a timeout, other than sleeping in ThreadPlus.sleep() */
+	public static final byte TIMED_WAITING = 6;
+
+	/** The names of the states, indexed by state code */
+	private static final String[] STATE_NAMES = {"NONE","ACTIVE","SLEEPING","ENDED","BLOCKED","WAITING","TIMED_WAITING"};
+
+	/** The initial capacity of the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The time stamps of the entries, in nanoseconds of recording time */
+	private long[] times;
+	/** The state codes of the entries */
+	private byte[] states;
+	/** The details of the entries (the lock and its owner), or null */
+	private String[] details;
+	/** The number of entries. Written after the entry itself, to publish it to the readers. */
+	private volatile int size;
+
+	/** Constructs an empty timeline. */
+	public StateTimeline()
+	{
+		times = new long[INITIAL_CAPACITY];
+		states = new byte[INITIAL_CAPACITY];
+		details = new String[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/** Appends an entry to the timeline. Called only by the writer. The time must not be before the time of the last
+	  * entry.
+	  * @param time the time stamp, in nanoseconds of recording time.
+	  * @param state the state code.
+	  * @param detail the lock which the thread is waiting for and its owner, or null.
+	  */
+	void append (long time, byte state, String detail)
+	{
+		int n = size;
+
+		if (n==times.length)		// Grow the arrays - new arrays are published before the new size
+		{
+			long[] newTimes = new long[n*2];
+			byte[] newStates = new byte[n*2];
+			String[] newDetails = new String[n*2];
+			System.arraycopy(times,0,newTimes,0,n);
+			System.arraycopy(states,0,newStates,0,n);
+			System.arraycopy(details,0,newDetails,0,n);
+			times = newTimes;
+			states = newStates;
+			details = newDetails;
+		}
+
+		times[n] = time;
+		states[n] = state;
+		details[n] = detail;
+		size = n+1;
+	}
+
+	/** Removes all the entries. Called only by the writer. The arrays are kept, so a reader which is in the middle of
+	  * reading the old entries may see new entries in their place, but never reads outside the arrays.
+	  */
+	void clear()
+	{
+		size = 0;
+	}
+
+	/** Returns the number of entries in the timeline. Readers should read the size once, and then read only entries
+	  * below it.
+	  */
+	public int size()
+	{
+		return size;
+	}
+
+	/** Returns the time stamp of an entry.
+	  * @param i the index of the entry.
+	  * @return the time stamp, in nanoseconds of recording time.
+	  */
+	public long getTime (int i)
+	{
+		return times[i];
+	}
+
+	/** Returns the state code of an entry.
+	  * @param i the index of the entry.
+	  * @return the state code.
+	  */
+	public byte getState (int i)
+	{
+		return states[i];
+	}
+
+	/** Returns the detail of an entry.
+	  * @param i the index of the entry.
+	  * @return the lock which the thread is waiting for and its owner, or null.
+	  */
+	public String getDetail (int i)
+	{
+		return details[i];
+	}
+
+	/** Returns the name of a state.
+	  * @param state the state code.
+	  * @return the name of the state.
+	  */
+	public static String getStateName (byte state)
+	{
+		return (state>0 && state<STATE_NAMES.length) ? STATE_NAMES[state] : STATE_NAMES[0];
+	}
+
+	/** Returns the state code of the last entry, or 0 if the timeline is empty. */
+	public byte getLastState()
+	{
+		int n = size;
+		return (n==0) ? 0 : states[n-1];
+	}
+
+	/** Finds the entry which is in effect at a given time, using binary search.
+	  * @param time the time, in nanoseconds of recording time.
+	  * @param n the number of entries to search (normally the value returned by size()).
+	  * @return the index of the last entry whose time stamp is not after the given time, or -1 if the given time is
+	  * before the first entry.
+	  */
+	public int indexAt (long time, int n)
+	{
+		long[] t = times;
+		int lo = 0, hi = n-1;
+
+		while (lo<=hi)
+		{
+			int mid = (lo+hi)>>>1;
+			if (t[mid]<=time)
+				lo = mid+1;
+			else
+				hi = mid-1;
+		}
+		return hi;
+	}
+}
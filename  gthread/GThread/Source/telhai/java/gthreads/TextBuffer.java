@@ -0,0 +1,222 @@
+package telhai.java.gthreads;
+
+import java.awt.*;				// For drawing the text
+
+/** This class is a reusable buffer of characters, into which values are formatted without allocating anything, for
+  * renderers which are called on every repaint (such as those of ObjectViewTable). Numbers are formatted digit by
+  * digit into the buffer, and the buffer is drawn directly with Graphics.drawChars(), so no String is built for them.
+  *
+  * A floating-point number can be formatted in the notation of Double.toString() (decimal from 10^-3 to 10^7, and
+  * scientific otherwise), but rounded to a given number of significant digits, trailing zeros removed, which suits
+  * approximate figures such as statistics. The rounding may be off by one in the last digit, so the value of a field,
+  * which must be shown exactly, is appended as the string made by Double.toString() or Float.toString().
+  *
+  * @see ObjectViewTable
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+final class TextBuffer
+{
+	/** The characters */
+	private char[] chars = new char[64];
+
+	/** The number of characters in the buffer */
+	private int length;
+
+	/** The significant digits of the number being formatted */
+	private char[] digits = new char[20];
+
+	/** Removes all the characters from the buffer. */
+	void clear()
+	{
+		length = 0;
+	}
+
+	/** Returns the number of characters in the buffer. */
+	int length()
+	{
+		return length;
+	}
+
+	/** Appends a character.
+	  * @param c the character.
+	  */
+	void append (char c)
+	{
+		if (length==chars.length)			// Only grows, so a buffer in use stops allocating
+		{
+			char[] bigger = new char[length*2];
+			System.arraycopy(chars,0,bigger,0,length);
+			chars = bigger;
+		}
+		chars[length++] = c;
+	}
+
+	/** Appends a string.
+	  * @param s the string.
+	  */
+	void append (String s)
+	{
+		for (int i=0;i<s.length();++i)
+			append(s.charAt(i));
+	}
+
+	/** Appends an integer, in decimal.
+	  * @param v the integer.
+	  */
+	void append (long v)
+	{
+		if (v<0)
+			append('-');
+		else
+			v = -v;							// Work with negative numbers, so that Long.MIN_VALUE fits
+
+		int n = 0;
+		do
+		{
+			digits[n++] = (char)('0'-v%10);
+			v /= 10;
+		}
+		while (v!=0);
+
+		while (n>0)
+			append(digits[--n]);
+	}
+
+	/** Appends a floating-point number, with the given number of significant digits at most.
+	  * @param v the number.
+	  * @param precision the number of significant digits (1 to 17).
+	  */
+	void append (double v, int precision)
+	{
+		if (Double.isNaN(v))
+		{
+			append("NaN");
+			return;
+		}
+		if (v<0 || v==0 && 1/v<0)			// Including -0.0
+		{
+			append('-');
+			v = -v;
+		}
+		if (Double.isInfinite(v))
+		{
+			append("Infinity");
+			return;
+		}
+		if (v==0)
+		{
+			append("0.0");
+			return;
+		}
+
+		int exp = (int)Math.floor(Math.log10(v));
+		long m = Math.round(scale(v,exp-precision+1));			// The significant digits, as an integer
+		if (m>=(long)Math.pow(10,precision))					// Rounded up to the next power of 10
+		{
+			m /= 10;
+			++exp;
+		}
+		else if (m<(long)Math.pow(10,precision-1))				// log10() was off by one
+		{
+			m = Math.round(scale(v,exp-precision));
+			--exp;
+		}
+
+		int n = 0;
+		for (int i=0;i<precision;++i)		// The digits, from the last one, without trailing zeros
+		{
+			char d = (char)('0'+m%10);
+			m /= 10;
+			if (n>0 || d!='0' || i==precision-1)
+				digits[n++] = d;
+		}
+
+		if (exp>=-3 && exp<7)				// Decimal notation
+		{
+			if (exp<0)
+			{
+				append("0.");
+				for (int i=-1;i>exp;--i)
+					append('0');
+				while (n>0)
+					append(digits[--n]);
+				return;
+			}
+			for (int i=0;i<=exp;++i)		// The integer part, padded with zeros
+				append(n>0 ? digits[--n] : '0');
+			append('.');
+			if (n==0)
+				append('0');
+			while (n>0)
+				append(digits[--n]);
+			return;
+		}
+
+		append(digits[--n]);				// Scientific notation
+		append('.');
+		if (n==0)
+			append('0');
+		while (n>0)
+			append(digits[--n]);
+		append('E');
+		append(exp);
+	}
+
+	/** Divides a number by a power of 10. Only exact powers of 10 are used (up to 10^22), so that the digits of the
+	  * result are as close as possible to those of the number.
+	  * @param v the number.
+	  * @param s the exponent of the power of 10 (negative to multiply).
+	  */
+	private static double scale (double v, int s)
+	{
+		while (s>22)
+		{
+			v /= 1e22;
+			s -= 22;
+		}
+		while (s<-22)
+		{
+			v *= 1e22;
+			s += 22;
+		}
+		return (s>=0) ? v/Math.pow(10,s) : v*Math.pow(10,-s);
+	}
+
+	/** Appends the value of a primitive field, given as raw bits (see FieldAccessor.getBits()). Floating-point values
+	  * are appended exactly, through a string; callers which format them often should keep that string.
+	  * @param a the accessor of the field.
+	  * @param bits the bits of the value.
+	  */
+	void append (FieldAccessor a, long bits)
+	{
+		switch (a.getKind())
+		{
+			case 'Z':	append(bits!=0 ? "true" : "false");
+						break;
+			case 'C':	append((char)bits);
+						break;
+			case 'F':	append(Float.toString(Float.intBitsToFloat((int)bits)));	// Exact, so not allocation-free
+						break;
+			case 'D':	append(Double.toString(Double.longBitsToDouble(bits)));
+						break;
+			default:	append(bits);		// The integral types are kept sign-extended
+		}
+	}
+
+	/** Draws the characters.
+	  * @param g the graphics context.
+	  * @param x the x coordinate of the first character.
+	  * @param y the y coordinate of the baseline.
+	  */
+	void draw (Graphics g, int x, int y)
+	{
+		g.drawChars(chars,0,length,x,y);
+	}
+
+	/** Returns the characters as a string. */
+	public String toString()
+	{
+		return new String(chars,0,length);
+	}
+}
@@ -0,0 +1,365 @@
+package telhai.java.gthreads;
+
+import java.io.*;				// For the streams
+import java.nio.charset.*;		// For decoding written bytes
+import java.util.*;				// For locales
+
+/** This class is a PrintStream which sends what each thread prints to the message channel of that thread, so that code
+  * which only uses System.out and System.err is visible to the GraphicalThreadManager without any change. Once it is
+  * installed, each line printed by a ThreadPlus object becomes a message in its channel (honoring its group commit),
+  * and so does each line printed by a plain thread which has a channel attached - normally because it is recorded by a
+  * GTM. Lines printed by other threads go to the original stream.
+  *
+  * Each thread assembles its lines in a buffer of its own, found through a ThreadLocal, so printing from many threads
+  * doesn't contend on the lock of the original stream. A line is sent when it is terminated, or when the stream is
+  * flushed. Optionally, everything which is captured is also written to the original stream as it is printed (tee),
+  * in which case the original stream is locked as usual.
+  *
+  * @see MessageChannel#of(Thread)
+  * @see ThreadPlus#print(String)
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ThreadAwarePrintStream extends PrintStream
+{
+	/** The prefix of the lines printed to System.err */
+	public static final String ERR_PREFIX = "[err] ";
+
+	/** The original System.out, or null if no stream is installed */
+	private static PrintStream originalOut;
+
+	/** The original System.err, or null if no stream is installed */
+	private static PrintStream originalErr;
+
+	/** This class holds the output of a single thread, which was printed but not sent yet. */
+	private static class Pending
+	{
+		/** The thread */
+		Thread thread;
+
+		/** The channel of the thread, or null if it has none (yet) */
+		MessageChannel channel;
+
+		/** The text of the current line */
+		StringBuffer text = new StringBuffer();
+
+		/** The bytes written since the text was last updated, which may end in the middle of a character */
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	}
+
+	/** The stream which this stream replaces */
+	private PrintStream original;
+
+	/** Indicates whether the captured output is also written to the original stream */
+	private boolean tee;
+
+	/** The prefix of each captured line */
+	private String prefix;
+
+	/** The pending output of each thread */
+	private ThreadLocal pending = new ThreadLocal()
+		{
+			protected Object initialValue()
+			{
+				Pending p = new Pending();
+				p.thread = Thread.currentThread();
+				return p;
+			}
+		};
+
+	/** Constructs a stream which captures the output of the threads, instead of writing it to the given stream.
+	  * @param original the stream to replace.
+	  * @param prefix the prefix of each captured line (for example, to tell the error stream apart).
+	  * @param tee indicates whether the captured output should also be written to the original stream.
+	  */
+	public ThreadAwarePrintStream (PrintStream original, String prefix, boolean tee)
+	{
+		super(original);
+		this.original = original;
+		this.prefix = prefix;
+		this.tee = tee;
+	}
+
+	/** Replaces System.out and System.err with streams which capture the output of the threads. Does nothing if they
+	  * were already replaced.
+	  * @param tee indicates whether the captured output should also be written to the console.
+	  */
+	public static synchronized void install (boolean tee)
+	{
+		if (originalOut!=null)
+			return;
+
+		originalOut = System.out;
+		originalErr = System.err;
+		System.setOut(new ThreadAwarePrintStream(originalOut,"",tee));
+		System.setErr(new ThreadAwarePrintStream(originalErr,ERR_PREFIX,tee));
+		MessageChannel.startCapture();		// Recorded plain threads need channels from now on
+	}
+
+	/** Restores the original System.out and System.err, after flushing the output of the calling thread. */
+	public static synchronized void uninstall()
+	{
+		if (originalOut==null)
+			return;
+
+		System.out.flush();
+		System.err.flush();
+		System.setOut(originalOut);
+		System.setErr(originalErr);
+		originalOut = null;
+		originalErr = null;
+		MessageChannel.stopCapture();
+	}
+
+	/** Returns the pending output of the calling thread, if it has a channel.
+	  * @return the pending output, or null if the output of the calling thread should go to the original stream.
+	  */
+	private Pending capture()
+	{
+		Pending p = (Pending)pending.get();
+		if (p.channel==null)
+			p.channel = MessageChannel.of(p.thread);	// May have been attached since
+		return (p.channel!=null) ? p : null;
+	}
+
+	/** Adds text to the current line of the calling thread, and sends each line which it completes.
+	  * @param p the pending output of the thread.
+	  * @param s the text.
+	  */
+	private void append (Pending p, String s)
+	{
+		decode(p,false);
+		p.text.append(s);
+		if (s.indexOf('\n')>=0)
+			sendLines(p,false);
+	}
+
+	/** Decodes the bytes which the calling thread has written into its current line.
+	  * @param p the pending output of the thread.
+	  * @param all indicates whether all the bytes should be decoded, or only up to the last line terminator.
+	  */
+	private void decode (Pending p, boolean all)
+	{
+		int n = p.bytes.size();
+		if (n==0)
+			return;
+
+		byte[] b = p.bytes.toByteArray();
+		if (!all)
+			while (n>0 && b[n-1]!='\n')			// Keep a partial character for the next write
+				--n;
+		if (n==0)
+			return;
+
+		p.text.append(new String(b,0,n,Charset.defaultCharset()));
+		p.bytes.reset();
+		p.bytes.write(b,n,b.length-n);
+	}
+
+	/** Sends the complete lines of the calling thread to its channel.
+	  * @param p the pending output of the thread.
+	  * @param all indicates whether an incomplete last line should be sent too.
+	  */
+	private void sendLines (Pending p, boolean all)
+	{
+		int start = 0, end;
+		StringBuffer t = p.text;
+
+		while ((end = t.indexOf("\n",start))>=0)
+		{
+			int cut = (end>start && t.charAt(end-1)=='\r') ? end-1 : end;	// Written with a Windows line separator
+			send(p,prefix + t.substring(start,cut) + "\n");
+			start = end+1;
+		}
+		if (all && start<t.length())
+		{
+			send(p,prefix + t.substring(start) + "\n");
+			start = t.length();
+		}
+		t.delete(0,start);
+	}
+
+	/** Sends a line to the channel of the calling thread.
+	  * @param p the pending output of the thread.
+	  * @param line the line.
+	  */
+	private void send (Pending p, String line)
+	{
+		if (p.thread instanceof ThreadPlus)
+			((ThreadPlus)p.thread).print(line);			// Use the batch of the thread, if it has one
+		else
+			p.channel.offer(new ThreadMessage(p.thread.getId(),line));
+	}
+
+	/** Prints a string.
+	  * @param s the string.
+	  */
+	public void print (String s)
+	{
+		if (s==null)
+			s = "null";
+
+		Pending p = capture();
+		if (p==null || tee)
+			original.print(s);
+		if (p!=null)
+			append(p,s);
+	}
+
+	/** Prints a string and terminates the line. The original stream terminates it with the line separator of the
+	  * platform, and the channel with a newline.
+	  * @param s the string.
+	  */
+	private void printLine (String s)
+	{
+		Pending p = capture();
+		if (p==null || tee)
+			original.println(s);
+		if (p!=null)
+			append(p,s + "\n");
+	}
+
+	/** Terminates the current line.
+	  */
+	public void println()
+	{
+		printLine("");
+	}
+
+	/** Writes a byte. The bytes are decoded once a line is terminated.
+	  * @param b the byte.
+	  */
+	public void write (int b)
+	{
+		Pending p = capture();
+		if (p==null || tee)
+			original.write(b);
+		if (p!=null)
+		{
+			p.bytes.write(b);
+			if (b=='\n')
+			{
+				decode(p,false);
+				sendLines(p,false);
+			}
+		}
+	}
+
+	/** Writes bytes. The bytes are decoded once a line is terminated.
+	  * @param buf the bytes.
+	  * @param off the index of the first byte.
+	  * @param len the number of bytes.
+	  */
+	public void write (byte[] buf, int off, int len)
+	{
+		Pending p = capture();
+		if (p==null || tee)
+			original.write(buf,off,len);
+		if (p!=null)
+		{
+			p.bytes.write(buf,off,len);
+			for (int i=off;i<off+len;++i)
+				if (buf[i]=='\n')
+				{
+					decode(p,false);
+					sendLines(p,false);
+					break;
+				}
+		}
+	}
+
+	/** Writes bytes.
+	  * @param buf the bytes.
+	  */
+	public void write (byte[] buf)
+	{
+		write(buf,0,buf.length);
+	}
+
+	/** Sends the incomplete line of the calling thread, if any, and flushes the original stream.
+	  */
+	public void flush()
+	{
+		Pending p = capture();
+		if (p!=null)
+		{
+			decode(p,true);
+			sendLines(p,true);
+			if (p.thread instanceof ThreadPlus)
+				((ThreadPlus)p.thread).flush();
+		}
+		original.flush();
+	}
+
+	/** Flushes this stream. The original stream is not closed, since it may still be in use.
+	  */
+	public void close()
+	{
+		flush();
+	}
+
+	/** Returns true if the original stream has encountered an error. */
+	public boolean checkError()
+	{
+		return original.checkError();
+	}
+
+	/** Prints a formatted string.
+	  * @param format the format string.
+	  * @param args the arguments.
+	  * @return this stream.
+	  */
+	public PrintStream format (String format, Object... args)
+	{
+		print(String.format(format,args));
+		return this;
+	}
+
+	/** Prints a formatted string.
+	  * @param l the locale.
+	  * @param format the format string.
+	  * @param args the arguments.
+	  * @return this stream.
+	  */
+	public PrintStream format (Locale l, String format, Object... args)
+	{
+		print(String.format(l,format,args));
+		return this;
+	}
+
+	/** Prints a boolean value. */
+	public void print (boolean b)	{print(String.valueOf(b));}
+	/** Prints a character. */
+	public void print (char c)		{print(String.valueOf(c));}
+	/** Prints an integer. */
+	public void print (int i)		{print(String.valueOf(i));}
+	/** Prints a long integer. */
+	public void print (long l)		{print(String.valueOf(l));}
+	/** Prints a floating-point number. */
+	public void print (float f)		{print(String.valueOf(f));}
+	/** Prints a double-precision floating-point number. */
+	public void print (double d)	{print(String.valueOf(d));}
+	/** Prints an array of characters. */
+	public void print (char[] s)	{print(new String(s));}
+	/** Prints an object. */
+	public void print (Object obj)	{print(String.valueOf(obj));}
+
+	/** Prints a boolean value and terminates the line. */
+	public void println (boolean x)	{printLine(String.valueOf(x));}
+	/** Prints a character and terminates the line. */
+	public void println (char x)	{printLine(String.valueOf(x));}
+	/** Prints an integer and terminates the line. */
+	public void println (int x)		{printLine(String.valueOf(x));}
+	/** Prints a long integer and terminates the line. */
+	public void println (long x)	{printLine(String.valueOf(x));}
+	/** Prints a floating-point number and terminates the line. */
+	public void println (float x)	{printLine(String.valueOf(x));}
+	/** Prints a double-precision floating-point number and terminates the line. */
+	public void println (double x)	{printLine(String.valueOf(x));}
+	/** Prints an array of characters and terminates the line. */
+	public void println (char[] x)	{printLine(new String(x));}
+	/** Prints a string and terminates the line. */
+	public void println (String x)	{printLine(String.valueOf(x));}
+	/** Prints an object and terminates the line. */
+	public void println (Object x)	{printLine(String.valueOf(x));}
+}
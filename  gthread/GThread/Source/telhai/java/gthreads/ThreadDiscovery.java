@@ -0,0 +1,207 @@
+package telhai.java.gthreads;
+
+import java.util.*;				// For vectors and hash tables
+import java.util.regex.*;		// For the thread name pattern
+
+/** This class finds the threads which should be recorded by a ThreadRecorder, so that threads which were not created by
+  * the application (for example the workers of an executor or of a connection pool) can be monitored without changing
+  * their code. Once it is set on a recorder, the discovery enumerates the live threads of a thread group (or of the
+  * whole JVM) at regular intervals, adds every new thread whose name matches a pattern to the recorder, and removes the
+  * threads which it has added once they have died. Threads which were added to the recorder by other means are never
+  * added again nor removed. A discovered thread which is removed from the recorder by someone else is not added again
+  * for as long as it is alive, unless it was removed by a listener as soon as it was added (for example, because there
+  * was no room for it), in which case it is added again by a later enumeration.
+  *
+  * The threads of the monitor itself are never discovered: the sampler thread of the recorder, the drain thread of a
+  * MessageDrain, the helper threads which take the snapshots of the objects, and the event dispatch thread and the
+  * Swing timer thread (which runs the timer of the display). Neither are the threads of the JVM itself (such as the
+  * Reference Handler and the Finalizer), which belong to the system thread group, or to one of its subgroups other
+  * than the main group. The discovery refers to the threads by their ids, so it never keeps a thread from being
+  * collected.
+  *
+  * The discovery runs on the sampler thread of the recorder, and notifies its listeners of each thread which was added
+  * or removed.
+  *
+  * @see ThreadRecorder#setDiscovery(ThreadDiscovery)
+  * @see TrackListener
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ThreadDiscovery
+{
+	/** Default interval between two enumerations of the threads, in milliseconds */
+	public static final int DEFAULT_INTERVAL = 200;
+
+	/** The group whose threads (including the threads of its subgroups) are discovered */
+	private ThreadGroup group;
+
+	/** The system thread group, whose own threads belong to the JVM */
+	private ThreadGroup system;
+
+	/** The pattern which the names of the discovered threads must match, or null to discover all the threads */
+	private Pattern namePattern;
+
+	/** The interval between two enumerations of the threads, in nanoseconds */
+	private long intervalNanos;
+
+	/** The recording time of the next enumeration */
+	private long nextTime;
+
+	/** Receives the live threads of the group. Grown whenever it turns out to be too small. */
+	private Thread[] buffer;
+
+	/** The tracks of the threads added by this discovery, by the ids of the threads. A track stays here until its thread
+	  * dies, even if it was removed from the recorder, so that the thread is not added again.
+	  */
+	private HashMap discovered;
+
+	/** The ids of the threads recorded by the recorder, collected on each enumeration */
+	private HashSet known;
+
+	/** The listeners which are notified when a thread is added or removed */
+	private Vector listeners;
+
+	/** Constructs a discovery of all the threads of the JVM whose names match the given pattern.
+	  * @param namePattern a regular expression which the whole name of a thread must match, or null for all the threads.
+	  * @throws PatternSyntaxException if the pattern is not a valid regular expression.
+	  */
+	public ThreadDiscovery (String namePattern)
+	{
+		this(null,namePattern);
+	}
+
+	/** Constructs a discovery of the threads of the given group whose names match the given pattern.
+	  * @param group the thread group to enumerate, or null for all the threads of the JVM.
+	  * @param namePattern a regular expression which the whole name of a thread must match, or null for all the threads.
+	  * @throws PatternSyntaxException if the pattern is not a valid regular expression.
+	  */
+	public ThreadDiscovery (ThreadGroup group, String namePattern)
+	{
+		system = Thread.currentThread().getThreadGroup();
+		while (system.getParent()!=null)		// Find the root group
+			system = system.getParent();
+
+		this.group = (group==null) ? system : group;
+		this.namePattern = (namePattern==null) ? null : Pattern.compile(namePattern);
+
+		intervalNanos = DEFAULT_INTERVAL*1000000L;
+		buffer = new Thread[16];
+		discovered = new HashMap();
+		known = new HashSet();
+		listeners = new Vector();
+	}
+
+	/** Sets the interval between two enumerations of the threads. Threads which are created and die within a single
+	  * interval are not discovered.
+	  * @param millis the interval in milliseconds (values less than 1 will be set to 1).
+	  */
+	public void setInterval (int millis)
+	{
+		intervalNanos = (millis<1 ? 1 : millis)*1000000L;
+	}
+
+	/** Returns the interval between two enumerations of the threads, in milliseconds. */
+	public int getInterval()
+	{
+		return (int)(intervalNanos/1000000L);
+	}
+
+	/** Returns the thread group whose threads are discovered. */
+	public ThreadGroup getGroup()
+	{
+		return group;
+	}
+
+	/** Adds a listener which will be notified whenever a thread is added to the recorder or removed from it.
+	  * @param l the listener to add.
+	  */
+	public void addTrackListener (TrackListener l)
+	{
+		listeners.add(l);
+	}
+
+	/** Removes a listener which was added by addTrackListener().
+	  * @param l the listener to remove.
+	  */
+	public void removeTrackListener (TrackListener l)
+	{
+		listeners.remove(l);
+	}
+
+	/** Enumerates the threads, if the interval has passed since the last enumeration. First the tracks of the
+	  * discovered threads which have died are removed from the recorder. Then each live thread which is not recorded yet
+	  * and whose name matches the pattern is added, unless it is excluded (see isExcluded()). Called by the sampler
+	  * thread of the recorder, with the recorder locked.
+	  * @param rec the recorder to update.
+	  * @param now the current recording time, in nanoseconds.
+	  */
+	void discover (ThreadRecorder rec, long now)
+	{
+		if (now<nextTime && now+intervalNanos>=nextTime)	// Not yet (unless the recorder was reset since)
+			return;
+		nextTime = now+intervalNanos;
+
+		int i,n;
+
+		Iterator it = discovered.values().iterator();
+		while (it.hasNext())						// Remove the threads which have died
+		{
+			ThreadTrack track = (ThreadTrack)it.next();
+			Thread thr = track.getThread();
+			if (thr==null || thr.getState()==Thread.State.TERMINATED)
+			{
+				it.remove();
+				rec.removeTrack(track);
+				for (i=0;i<listeners.size();++i)
+					((TrackListener)listeners.get(i)).trackRemoved(track);
+			}
+		}
+
+		ThreadTrack[] tracks = rec.getTracks();
+		known.clear();
+		for (i=0;i<tracks.length;++i)				// Collect the threads which are already recorded
+			known.add(Long.valueOf(tracks[i].getThreadId()));
+
+		while ((n = group.enumerate(buffer,true))==buffer.length)	// The buffer may have been too small
+			buffer = new Thread[buffer.length*2];
+
+		for (i=0;i<n;++i)							// Add the new threads
+		{
+			Thread thr = buffer[i];
+			buffer[i] = null;						// Don't keep the thread from being collected
+
+			Long id = Long.valueOf(thr.getId());
+			if (known.contains(id) || discovered.containsKey(id) || isExcluded(thr))	// Recorded, or removed
+				continue;
+			if (namePattern!=null && !namePattern.matcher(thr.getName()).matches())
+				continue;
+
+			ThreadTrack track = rec.addThread(thr);
+			discovered.put(id,track);
+			for (int j=0;j<listeners.size();++j)
+				((TrackListener)listeners.get(j)).trackAdded(track);
+			if (track.removed)						// Rejected by a listener - try again next time
+				discovered.remove(id);
+		}
+
+		known.clear();
+	}
+
+	/** Returns true if a thread is never discovered: the current (sampler) thread, a thread of the monitor, or a thread
+	  * of the JVM itself.
+	  * @param thr the thread.
+	  */
+	private boolean isExcluded (Thread thr)
+	{
+		if (thr==Thread.currentThread() || MessageDrain.isDrainer(thr) || ObjectTrack.isHelper(thr))
+			return true;
+		ThreadGroup g = thr.getThreadGroup();
+		if (g==system)								// Reference Handler, Finalizer, Signal Dispatcher...
+			return true;
+		if (g!=null && g.getParent()==system && !g.getName().equals("main"))	// Common-Cleaner...
+			return true;
+		if (thr.getClass().getName().equals("java.awt.EventDispatchThread"))	// The class of the event threads
+			return true;
+		return thr.isDaemon() && thr.getName().equals("TimerQueue");	// The thread of the Swing timers
+	}
+}
@@ -0,0 +1,124 @@
+package telhai.java.gthreads;
+
+/** This class is a fixed-size ring buffer of timestamped state transition events of a single ThreadPlus object. The
+  * thread publishes an event whenever it is started, goes to sleep, wakes up or finishes its run() method, and the
+  * ThreadRecorder drains the events on each sample. This way the recorder sees every transition at the exact time it
+  * happened, even if the thread has slept for less than a single sampling period.
+  *
+  * The ring has a single producer (the thread itself, or the thread which starts it) and a single consumer (the
+  * sampler thread of the recorder), so it needs no locking: the producer only writes the tail and the consumer only
+  * writes the head. Publishing doesn't allocate any memory. If the ring is full, the event is dropped and counted, and
+  * the consumer is expected to resynchronize with the current state of the thread.
+  *
+  * @see ThreadPlus
+  * @see ThreadRecorder
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public final class ThreadEventRing
+{
+	/** Event code: the thread was started */
+	public static final byte STARTED = 1;
+	/** Event code: the thread went to sleep (or yielded) */
+	public static final byte SLEEPING = 2;
+	/** Event code: the thread woke up */
+	public static final byte AWAKE = 3;
+	/** Event code: the thread has finished its run() method */
+	public static final byte ENDED = 4;
+
+	/** Default capacity of the ring (must be a power of 2) */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/** The System.nanoTime() values of the events */
+	private final long[] times;
+	/** The codes of the events */
+	private final byte[] events;
+	/** Mask to convert a sequence number to an index in the arrays */
+	private final int mask;
+
+	/** The sequence number of the next event to be written. Written only by the producer. */
+	private volatile long tail;
+	/** The sequence number of the next event to be read. Written only by the consumer. */
+	private volatile long head;
+	/** The number of events dropped because the ring was full. Written only by the producer. */
+	private volatile int lost;
+
+	/** Constructs a ring with the default capacity. */
+	public ThreadEventRing()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Constructs a ring with the given capacity.
+	  * @param capacity the capacity of the ring, rounded up to a power of 2.
+	  */
+	public ThreadEventRing (int capacity)
+	{
+		int cap = 1;
+		while (cap<capacity)
+			cap <<= 1;
+
+		times = new long[cap];
+		events = new byte[cap];
+		mask = cap-1;
+	}
+
+	/** Publishes an event. Called only by the producer.
+	  * @param event the event code.
+	  * @param time the System.nanoTime() value of the event.
+	  * @return true if the event was published, false if it was dropped because the ring is full.
+	  */
+	public boolean publish (byte event, long time)
+	{
+		long t = tail;
+
+		if (t-head>mask)		// Ring is full - the consumer didn't keep up
+		{
+			++lost;
+			return false;
+		}
+
+		int i = (int)t & mask;
+		times[i] = time;
+		events[i] = event;
+		tail = t+1;				// Make the event visible to the consumer
+
+		return true;
+	}
+
+	/** Returns the number of events waiting to be read. Called only by the consumer. */
+	public int size()
+	{
+		return (int)(tail-head);
+	}
+
+	/** Returns the code of a waiting event. Called only by the consumer.
+	  * @param i the index of the event, relative to the oldest waiting event (must be less than size()).
+	  */
+	public byte getEvent (int i)
+	{
+		return events[(int)(head+i) & mask];
+	}
+
+	/** Returns the System.nanoTime() value of a waiting event. Called only by the consumer.
+	  * @param i the index of the event, relative to the oldest waiting event (must be less than size()).
+	  */
+	public long getTime (int i)
+	{
+		return times[(int)(head+i) & mask];
+	}
+
+	/** Removes events from the ring after they have been read. Called only by the consumer.
+	  * @param n the number of events to remove (must not be more than size()).
+	  */
+	public void advance (int n)
+	{
+		head += n;
+	}
+
+	/** Returns the number of events dropped so far because the ring was full. */
+	public int getLost()
+	{
+		return lost;
+	}
+}
@@ -0,0 +1,109 @@
+package telhai.java.gthreads;
+
+import java.util.logging.*;		// For the handler
+
+/** This class is a java.util.logging Handler which sends the log records of each thread to the message channel of
+  * that thread, so that code which logs instead of printing is visible on the lifelines of the GraphicalThreadManager.
+  * Each record is sent as a message stamped on the logging thread, when the record is published, so it is placed on
+  * the lifeline at the moment it was logged. A record logged by a ThreadPlus object honors its group commit; a record
+  * logged by a plain thread is sent to the channel attached to it (normally because it is recorded by a GTM), and a
+  * record logged by a thread which has no channel is ignored.
+  *
+  * Publishing a record never blocks and never formats it: the level and the filter of the handler are checked first,
+  * so a record which is filtered out costs nothing more, and the record is formatted by the MessageDrain, away from
+  * the logging thread. The formatter of the handler is used; by default, a record is formatted as a single line with
+  * its level, its logger and its message (followed by its exception, if any). Since the record is formatted later,
+  * its parameters should not be changed once they are logged.
+  *
+  * To log to the GTM, add the handler to a logger, for example:
+  *		Logger.getLogger("").addHandler(new ThreadLogHandler());
+  *
+  * @see ThreadMessage#ThreadMessage(long,LogRecord,Formatter)
+  * @see MessageChannel#of(Thread)
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ThreadLogHandler extends Handler
+{
+	/** The default formatter: a single line with the level, the logger and the message */
+	private static class LineFormatter extends Formatter
+	{
+		/** Formats a record.
+		  * @param r the record.
+		  * @return the formatted line, with a line terminator.
+		  */
+		public String format (LogRecord r)
+		{
+			StringBuffer sb = new StringBuffer();
+			sb.append(r.getLevel().getName());
+			if (r.getLoggerName()!=null && r.getLoggerName().length()>0)
+				sb.append(" ").append(r.getLoggerName());
+			sb.append(": ").append(formatMessage(r));
+			if (r.getThrown()!=null)
+				sb.append(" - ").append(r.getThrown());
+			return sb.append("\n").toString();
+		}
+	}
+
+	/** Constructs a handler of all the levels, with the default formatter. */
+	public ThreadLogHandler()
+	{
+		this(Level.ALL);
+	}
+
+	/** Indicates whether the handler has been closed */
+	private boolean closed;
+
+	/** Constructs a handler with the default formatter. Until it is closed, the recorded plain threads get channels.
+	  * @param level the lowest level of the records which are sent.
+	  */
+	public ThreadLogHandler (Level level)
+	{
+		setLevel(level);
+		setFormatter(new LineFormatter());
+		MessageChannel.startCapture();
+	}
+
+	/** Sends a record to the channel of the calling thread, if it passes the level and the filter of the handler. The
+	  * record is not formatted here. This method never blocks.
+	  * @param r the record.
+	  */
+	public void publish (LogRecord r)
+	{
+		if (!isLoggable(r))					// Level and filter first - the cheapest way out
+			return;
+
+		Thread thr = Thread.currentThread();
+		if (thr instanceof ThreadPlus)
+		{
+			ThreadPlus tp = (ThreadPlus)thr;
+			tp.send(new ThreadMessage(tp.getId(),r,getFormatter()));
+			return;
+		}
+
+		MessageChannel channel = MessageChannel.of(thr);
+		if (channel!=null)					// Otherwise the thread is not recorded, and nobody would see the record
+			channel.offer(new ThreadMessage(thr.getId(),r,getFormatter()));
+	}
+
+	/** Sends the batched messages of the calling thread, if it is a ThreadPlus object with group commit. */
+	public void flush()
+	{
+		Thread thr = Thread.currentThread();
+		if (thr instanceof ThreadPlus)
+			((ThreadPlus)thr).flush();
+	}
+
+	/** Flushes the handler, and stops sending records. */
+	public void close()
+	{
+		flush();
+		setLevel(Level.OFF);
+		synchronized (this)
+		{
+			if (!closed)
+				MessageChannel.stopCapture();
+			closed = true;
+		}
+	}
+}
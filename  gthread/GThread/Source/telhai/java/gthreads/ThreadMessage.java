@@ -0,0 +1,120 @@
+package telhai.java.gthreads;
+
+import java.util.concurrent.atomic.*;	// For the global sequence number
+import java.util.logging.*;		// For log records
+
+/** This class is a single message sent by a thread, for example by ThreadPlus.print(). The message is stamped when it
+  * is created, on the sending thread: with the System.nanoTime() value, so that it can be placed exactly on the
+  * lifeline of the thread, and with a sequence number which is global to the JVM, so that the messages of all the
+  * threads can be merged in the order in which they were sent. Messages are immutable.
+  *
+  * A message may also carry a log record instead of a text (see ThreadLogHandler). Such a message is stamped in the
+  * same way, but its record is formatted only when its text is first asked for - normally by the MessageDrain - so
+  * the logging thread doesn't pay for the formatting.
+  *
+  * @see MessageChannel
+  * @see ThreadPlus#print(String)
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public final class ThreadMessage
+{
+	/** The sequence number of the next message */
+	private static final AtomicLong nextSequence = new AtomicLong();
+
+	/** The System.nanoTime() value when the message was sent */
+	private final long time;
+
+	/** The id of the thread which sent the message */
+	private final long threadId;
+
+	/** The global sequence number of the message */
+	private final long sequence;
+
+	/** The text of the message, or null if the log record was not formatted yet */
+	private volatile String text;
+
+	/** The log record of the message, or null if the message was sent with a text */
+	private final LogRecord record;
+
+	/** The formatter of the log record */
+	private final Formatter formatter;
+
+	/** Constructs a message, stamped with the current time and the next sequence number.
+	  * @param threadId the id of the thread which sends the message.
+	  * @param text the text of the message.
+	  */
+	public ThreadMessage (long threadId, String text)
+	{
+		this.time = System.nanoTime();
+		this.sequence = nextSequence.getAndIncrement();
+		this.threadId = threadId;
+		this.text = text;
+		this.record = null;
+		this.formatter = null;
+	}
+
+	/** Constructs a message which carries a log record, stamped with the current time and the next sequence number.
+	  * The record is formatted when the text of the message is first asked for.
+	  * @param threadId the id of the thread which sends the message.
+	  * @param record the log record.
+	  * @param formatter the formatter of the record.
+	  */
+	public ThreadMessage (long threadId, LogRecord record, Formatter formatter)
+	{
+		this.time = System.nanoTime();
+		this.sequence = nextSequence.getAndIncrement();
+		this.threadId = threadId;
+		this.record = record;
+		this.formatter = formatter;
+	}
+
+	/** Returns the System.nanoTime() value when the message was sent. */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/** Returns the id of the thread which sent the message. */
+	public long getThreadId()
+	{
+		return threadId;
+	}
+
+	/** Returns the global sequence number of the message. A message with a smaller number was sent earlier. */
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	/** Returns the text of the message. The log record of the message, if any, is formatted on the first call. */
+	public String getText()
+	{
+		String t = text;
+		if (t==null)					// Formatting twice by racing threads is harmless - the text is the same
+		{
+			try
+			{
+				t = formatter.format(record);
+			}
+			catch (RuntimeException e)	// A broken formatter should not stop the drain
+			{
+				t = record.getLevel() + ": " + record.getMessage() + "\n";
+			}
+			text = t;
+		}
+		return t;
+	}
+
+	/** Returns the log record of the message, or null if the message was sent with a text. */
+	public LogRecord getRecord()
+	{
+		return record;
+	}
+
+	/** Returns the text of the message. */
+	public String toString()
+	{
+		return getText();
+	}
+}
@@ -1,209 +1,343 @@
-package telhai.java.gthreads;
-
-import java.io.*;
-
-/** This class extends the basic Thread class to provide additional functionality for Java threads.
-  * First and foremost, there is a method to check whether a thread is currently awake or sleeping. Also, each ThreadPlus
-  * object comes with a designated pipe for output (PipedOutputStream). It is done so that all the output which a thread
-  * produces can be channeled into one stream, which can be monitored by anyone who desires it.
-  * 
-  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
-  */
-public class ThreadPlus extends Thread
-{
-	/** Indicates whether the thread is currently awake */
-	protected boolean awake;
-	/** The designated output pipe of this thread */
-	protected PipedOutputStream outStream;
-	/** Wraps the output pipe to allow more convenient writing */
-	protected PrintWriter out;
-	
-	/** Allocates a new ThreadPlus object and initializes its output stream. */
-	public ThreadPlus()
-	{
-		super();
-		awake=false;
-		initOutStream();
-	}
-
-	/** Allocates a new ThreadPlus object to run a given Runnable object.
-	  * @param target the object whose run() method is called
-	  */
-	public ThreadPlus (Runnable target)
-	{
-		super(target);
-		awake=false;
-		initOutStream();
-	}
-
-	/** Allocates a new ThreadPlus object with the given target and name and initializes its output stream.
-	  * @param target the object whose run() method is called.
-	  * @param name the name of this ThreadPlus.
-	  */
-	public ThreadPlus (Runnable target, String name)
-	{
-		super(target,name);
-		awake=false;
-		initOutStream();
-	}
-
-	/** Allocates a new ThreadPlus object with the given name and initializes its output stream.
-	  * @param name the name of this ThreadPlus.
-	  */
-	public ThreadPlus (String name)
-	{
-		super(name);
-		awake=false;
-		initOutStream();
-	}
-
-	/** Allocates a new ThreadPlus object with a given Runnable object and associates it to a given thread group.
-	  * @param target the object whose run() method is called.
-	  * @param group the thread group.
-	  */
-	public ThreadPlus (ThreadGroup group, Runnable target)
-	{
-		super(group,target);
-		awake=false;
-		initOutStream();
-	}
-
-	/** Allocates a new ThreadPlus object with a given name and associates it to a given thread group.
-	  * @param name the name of this ThreadPlus.
-	  * @param group the thread group.
-	  */
-	public ThreadPlus (ThreadGroup group, String name)
-	{
-		super(group,name);
-		awake=false;
-		initOutStream();
-	}
-
-	/** Allocates a new ThreadPlus object with a given name, target and group, and initializes its output stream.
-	  * @param name the name of this ThreadPlus.
-	  * @param target the object whose run() method is called.
-	  * @param group the thread group.
-	  */
-	public ThreadPlus (ThreadGroup group, Runnable target, String name)
-	{
-		super(group,target,name);
-		awake=false;
-		initOutStream();
-	}
-
-	/** Checks whether the thread is awake. A thread is considered awake if it has been started and has not been
-	  * suspended by a call to sleep() or yield().
-	  * @return true if the thread is awake, false otherwise.
-	  */
-	public boolean isAwake()
-	{
-		return awake;
-	}
-
-	/** Starts this ThreadPlus object. This method sets the awake flag to true and calls the start() method of the
-	  * Thread class.
-	  */
-	public void start()
-	{
-		awake=true;
-		super.start();
-	}
-
-	/** Causes the currently executing thread to sleep (cease execution) for the specified number of milliseconds
-	  * plus the specified number of nanoseconds. The thread does not lose ownership of any monitors. This method sets
-	  * the awake flag to false before calling to Thread.sleep() and sets it back to true when Thread.sleep() returns.
-	  * @param millis the length of time to sleep in milliseconds.
-	  * @throws InterruptedException if another thread has interrupted the current thread.
-	  * The interrupted status of the current thread is cleared when this exception is thrown.
-	  */
-	public static void sleep (long millis) throws InterruptedException
-	{
-		((ThreadPlus)currentThread()).awake=false;
-		Thread.sleep(millis);
-		((ThreadPlus)currentThread()).awake=true;
-	}
-
-	/** Causes the currently executing thread to sleep (cease execution) for the specified number of milliseconds
-	  * plus the specified number of nanoseconds. The thread does not lose ownership of any monitors. This method sets
-	  * the awake flag to false before calling to Thread.sleep() and sets it back to true when Thread.sleep() returns.
-	  * @param millis the length of time to sleep in milliseconds.
-	  * @param nanos 0-999999 additional nanoseconds to sleep.
-	  * @throws InterruptedException if another thread has interrupted the current thread.
-	  * The interrupted status of the current thread is cleared when this exception is thrown.
-	  * @throws IllegalArgumentException if the value of millis is negative or the value of nanos is not in the range
-	  * 0-999999.
-	  */
-	public static void sleep (long millis, int nanos) throws InterruptedException
-	{
-		((ThreadPlus)currentThread()).awake=false;
-		Thread.sleep(millis,nanos);
-		((ThreadPlus)currentThread()).awake=true;
-	}
-
-	/** Causes the currently executing thread object to temporarily pause and allow other threads to execute. This method
-	  * sets the awake flag to false before calling to Thread.yield() and sets it back to true when Thread.yield()
-	  * returns.
-	  */
-	public static void yield()
-	{
-		((ThreadPlus)currentThread()).awake=false;
-		Thread.yield();
-		((ThreadPlus)currentThread()).awake=true;
-	}
-
-	/** Returns a string representation of this ThreadPlus object, including its name, priority, and thread group.
-	  */
-	public String toString()
-	{
-		return "ThreadPlus["+getName()+","+getPriority()+","+getThreadGroup().getName()+"]";
-	}
-
-	/** Returns the output stream of this thread. Later, a piped input stream can be connected to this output stream,
-	  * to allow the output of the thread be received elsewhere.
-	  * @return the PipedOutputStream object associated with this ThreadPlus.
-	  */
-	public PipedOutputStream getOutputStream()
-	{
-		return outStream;
-	}
-
-	/** Prints a string to the designated pipe of this thread. The output buffer will be automatically flushed.
-	  */
-	public void print (String s)
-	{
-		out.print(s);
-		out.flush();
-	}
-
-	/** Prints a string to the designated pipe of this thread and places a line terminator after it. The output buffer
-	  * will be automatically flushed.
-	  */
-	public void println (String s)
-	{
-		out.println(s);
-		out.flush();
-	}
-
-	/** Initializes the designated pipe of this ThreadPlus object. First a new PipedOutputStream is created, and then
-	  * a PrintWriter is wrapped around it.
-	  */
-	protected void initOutStream()
-	{
-		outStream = new PipedOutputStream();
-		out = new PrintWriter(new OutputStreamWriter(outStream));
-	}
-
-	/** Closes the output stream initialized by this thread.
-	  */
-	protected void finalize() throws Throwable
-	{
-		try
-		{
-			if (outStream!=null)
-				outStream.close();
-			if (out!=null)
-				out.close();
-		}
-		finally {super.finalize();}
-	}
+package telhai.java.gthreads;
+
+/** This class extends the basic Thread class to provide additional functionality for Java threads.
+  * First and foremost, there is a method to check whether a thread is currently awake or sleeping. Also, each ThreadPlus
+  * object comes with a designated channel for output (MessageChannel). It is done so that all the output which a thread
+  * produces can be channeled into one place, which can be monitored by anyone who desires it. Printing to the channel
+  * never blocks the thread, even if nobody reads the messages; when the channel is full, messages are discarded (and
+  * counted) according to the policy of the channel.
+  *
+  * A thread which prints a lot can use group commit (see setGroupCommit()): the messages it prints are then kept in a
+  * buffer of its own, which costs a plain array store per message, and are sent to the channel together - when the
+  * buffer is full, when the oldest message in it has waited long enough, when the thread sleeps, yields or ends, or
+  * when flush() is called. The messages keep the times and the order in which they were printed.
+  *
+  * Each ThreadPlus object also publishes a timestamped event into its ThreadEventRing whenever it is started, goes to
+  * sleep, wakes up or finishes its run() method. This allows a ThreadRecorder to see every state transition exactly,
+  * without polling isAwake(). Note that a subclass which overrides run() without calling super.run() doesn't publish
+  * the end event - the recorder will notice that the thread has died on its next sample.
+  * 
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ThreadPlus extends Thread
+{
+	/** Indicates whether the thread is currently awake */
+	protected boolean awake;
+	/** The designated output channel of this thread */
+	protected MessageChannel channel;
+	/** The state transition events of this thread */
+	protected ThreadEventRing events = new ThreadEventRing();
+	/** The messages which were printed by this thread and not sent yet, or null if group commit is off */
+	protected ThreadMessage[] batch;
+	/** The number of messages in the batch */
+	protected int numBatched;
+	/** The maximum time that a message waits in the batch, in nanoseconds */
+	protected long batchDelayNanos;
+	
+	/** Allocates a new ThreadPlus object and initializes its message channel. */
+	public ThreadPlus()
+	{
+		super();
+		awake=false;
+		initChannel();
+	}
+
+	/** Allocates a new ThreadPlus object to run a given Runnable object.
+	  * @param target the object whose run() method is called
+	  */
+	public ThreadPlus (Runnable target)
+	{
+		super(target);
+		awake=false;
+		initChannel();
+	}
+
+	/** Allocates a new ThreadPlus object with the given target and name and initializes its message channel.
+	  * @param target the object whose run() method is called.
+	  * @param name the name of this ThreadPlus.
+	  */
+	public ThreadPlus (Runnable target, String name)
+	{
+		super(target,name);
+		awake=false;
+		initChannel();
+	}
+
+	/** Allocates a new ThreadPlus object with the given name and initializes its message channel.
+	  * @param name the name of this ThreadPlus.
+	  */
+	public ThreadPlus (String name)
+	{
+		super(name);
+		awake=false;
+		initChannel();
+	}
+
+	/** Allocates a new ThreadPlus object with a given Runnable object and associates it to a given thread group.
+	  * @param target the object whose run() method is called.
+	  * @param group the thread group.
+	  */
+	public ThreadPlus (ThreadGroup group, Runnable target)
+	{
+		super(group,target);
+		awake=false;
+		initChannel();
+	}
+
+	/** Allocates a new ThreadPlus object with a given name and associates it to a given thread group.
+	  * @param name the name of this ThreadPlus.
+	  * @param group the thread group.
+	  */
+	public ThreadPlus (ThreadGroup group, String name)
+	{
+		super(group,name);
+		awake=false;
+		initChannel();
+	}
+
+	/** Allocates a new ThreadPlus object with a given name, target and group, and initializes its message channel.
+	  * @param name the name of this ThreadPlus.
+	  * @param target the object whose run() method is called.
+	  * @param group the thread group.
+	  */
+	public ThreadPlus (ThreadGroup group, Runnable target, String name)
+	{
+		super(group,target,name);
+		awake=false;
+		initChannel();
+	}
+
+	/** Checks whether the thread is awake. A thread is considered awake if it has been started and has not been
+	  * suspended by a call to sleep() or yield().
+	  * @return true if the thread is awake, false otherwise.
+	  */
+	public boolean isAwake()
+	{
+		return awake;
+	}
+
+	/** Starts this ThreadPlus object. This method sets the awake flag to true, publishes the start event and calls the
+	  * start() method of the Thread class.
+	  */
+	public void start()
+	{
+		if (getState()==State.NEW)		// Don't publish a second start event if the thread was already started
+			events.publish(ThreadEventRing.STARTED,System.nanoTime());
+		awake=true;
+		super.start();
+	}
+
+	/** Runs this ThreadPlus object. This method calls the run() method of the Thread class, then sends the batched
+	  * messages and publishes the end event.
+	  */
+	public void run()
+	{
+		try
+		{
+			super.run();
+		}
+		finally
+		{
+			flush();
+			events.publish(ThreadEventRing.ENDED,System.nanoTime());
+		}
+	}
+
+	/** Causes the currently executing thread to sleep (cease execution) for the specified number of milliseconds
+	  * plus the specified number of nanoseconds. The thread does not lose ownership of any monitors. This method sets
+	  * the awake flag to false before calling to Thread.sleep() and sets it back to true when Thread.sleep() returns (or
+	  * throws), publishing a sleep event and an awake event respectively. The batched messages are sent first.
+	  * @param millis the length of time to sleep in milliseconds.
+	  * @throws InterruptedException if another thread has interrupted the current thread.
+	  * The interrupted status of the current thread is cleared when this exception is thrown.
+	  */
+	public static void sleep (long millis) throws InterruptedException
+	{
+		ThreadPlus me = (ThreadPlus)currentThread();
+
+		me.flush();
+		me.awake=false;
+		me.events.publish(ThreadEventRing.SLEEPING,System.nanoTime());
+		try
+		{
+			Thread.sleep(millis);
+		}
+		finally
+		{
+			me.awake=true;
+			me.events.publish(ThreadEventRing.AWAKE,System.nanoTime());
+		}
+	}
+
+	/** Causes the currently executing thread to sleep (cease execution) for the specified number of milliseconds
+	  * plus the specified number of nanoseconds. The thread does not lose ownership of any monitors. This method sets
+	  * the awake flag to false before calling to Thread.sleep() and sets it back to true when Thread.sleep() returns (or
+	  * throws), publishing a sleep event and an awake event respectively. The batched messages are sent first.
+	  * @param millis the length of time to sleep in milliseconds.
+	  * @param nanos 0-999999 additional nanoseconds to sleep.
+	  * @throws InterruptedException if another thread has interrupted the current thread.
+	  * The interrupted status of the current thread is cleared when this exception is thrown.
+	  * @throws IllegalArgumentException if the value of millis is negative or the value of nanos is not in the range
+	  * 0-999999.
+	  */
+	public static void sleep (long millis, int nanos) throws InterruptedException
+	{
+		ThreadPlus me = (ThreadPlus)currentThread();
+
+		me.flush();
+		me.awake=false;
+		me.events.publish(ThreadEventRing.SLEEPING,System.nanoTime());
+		try
+		{
+			Thread.sleep(millis,nanos);
+		}
+		finally
+		{
+			me.awake=true;
+			me.events.publish(ThreadEventRing.AWAKE,System.nanoTime());
+		}
+	}
+
+	/** Causes the currently executing thread object to temporarily pause and allow other threads to execute. This method
+	  * sets the awake flag to false before calling to Thread.yield() and sets it back to true when Thread.yield()
+	  * returns, publishing a sleep event and an awake event respectively. The batched messages are sent first.
+	  */
+	public static void yield()
+	{
+		ThreadPlus me = (ThreadPlus)currentThread();
+
+		me.flush();
+		me.awake=false;
+		me.events.publish(ThreadEventRing.SLEEPING,System.nanoTime());
+		Thread.yield();
+		me.awake=true;
+		me.events.publish(ThreadEventRing.AWAKE,System.nanoTime());
+	}
+
+	/** Returns a string representation of this ThreadPlus object, including its name, priority, and thread group.
+	  */
+	public String toString()
+	{
+		return "ThreadPlus["+getName()+","+getPriority()+","+getThreadGroup().getName()+"]";
+	}
+
+	/** Returns the ring of state transition events of this thread.
+	  * @return the ThreadEventRing object associated with this ThreadPlus.
+	  */
+	public ThreadEventRing getEventRing()
+	{
+		return events;
+	}
+
+	/** Returns the output channel of this thread. The messages sent to the channel can be received elsewhere, by a
+	  * single consumer.
+	  * @return the MessageChannel object associated with this ThreadPlus.
+	  */
+	public MessageChannel getMessageChannel()
+	{
+		return channel;
+	}
+
+	/** Replaces the output channel of this thread, for example with a channel of a different capacity. This should be
+	  * done before the thread is monitored, since a monitor keeps receiving from the channel it found.
+	  * @param ch the new channel.
+	  */
+	public void setMessageChannel (MessageChannel ch)
+	{
+		channel = ch;
+	}
+
+	/** Sends a string to the designated channel of this thread, as a message stamped with the current time. This method
+	  * never blocks. With group commit, the message is added to the batch instead, if this thread is the one printing.
+	  * @see ThreadMessage
+	  * @see #setGroupCommit(int,int)
+	  */
+	public void print (String s)
+	{
+		send(new ThreadMessage(getId(),s));
+	}
+
+	/** Sends a string to the designated channel of this thread and places a line terminator after it, as a message
+	  * stamped with the current time. This method never blocks. With group commit, the message is added to the batch
+	  * instead, if this thread is the one printing.
+	  * @see ThreadMessage
+	  * @see #setGroupCommit(int,int)
+	  */
+	public void println (String s)
+	{
+		send(new ThreadMessage(getId(),s + "\n"));
+	}
+
+	/** Sends a message to the channel, or adds it to the batch. The batch is sent once it is full or its oldest message
+	  * has waited for the maximum delay. Messages printed by other threads are sent directly, since the batch belongs to
+	  * this thread. Used also by ThreadLogHandler, so that log records honor the group commit.
+	  * @param msg the message.
+	  */
+	void send (ThreadMessage msg)
+	{
+		if (batch==null || currentThread()!=this)
+		{
+			channel.offer(msg);
+			return;
+		}
+
+		batch[numBatched++] = msg;
+		if (numBatched==batch.length || msg.getTime()-batch[0].getTime()>=batchDelayNanos)
+			flush();
+	}
+
+	/** Sends the batched messages to the channel. Only this thread may send its batch while it is alive; once it has
+	  * ended, any thread may send what is left of the batch (for example, if a subclass overrides run() without calling
+	  * super.run()). Otherwise, this method does nothing.
+	  */
+	public void flush()
+	{
+		if (currentThread()==this)
+			sendBatch();
+		else if (!isAlive())		// The batch is no longer changed by this thread
+		{
+			synchronized (this)
+			{
+				sendBatch();
+			}
+		}
+	}
+
+	/** Sends the batched messages to the channel, and empties the batch. */
+	private void sendBatch()
+	{
+		if (numBatched==0)
+			return;
+
+		channel.offer(batch,0,numBatched);
+		for (int i=0;i<numBatched;++i)
+			batch[i] = null;			// Don't keep the messages from being collected
+		numBatched = 0;
+	}
+
+	/** Turns group commit on or off. With group commit, the messages printed by this thread are kept in a batch, and are
+	  * sent to the channel together when the batch is full, when its oldest message has waited for the given delay
+	  * (checked whenever a message is printed), when the thread sleeps, yields or ends, or when flush() is called. A
+	  * thread which stops printing without doing any of those keeps its last messages until it does. This method should
+	  * be called before the thread is started, or by the thread itself.
+	  * @param maxMessages the maximum number of messages in a batch, or a value less than 2 to turn group commit off.
+	  * @param maxDelayMillis the maximum time that a message waits in the batch, in milliseconds.
+	  */
+	public void setGroupCommit (int maxMessages, int maxDelayMillis)
+	{
+		flush();
+		if (maxMessages<2)
+			batch = null;
+		else
+			batch = new ThreadMessage[maxMessages];
+		numBatched = 0;
+		batchDelayNanos = (maxDelayMillis<0 ? 0 : maxDelayMillis)*1000000L;
+	}
+
+	/** Initializes the designated channel of this ThreadPlus object, with the default capacity and policy.
+	  */
+	protected void initChannel()
+	{
+		channel = new MessageChannel();
+	}
 }
\ No newline at end of file
@@ -0,0 +1,824 @@
+package telhai.java.gthreads;
+
+import java.lang.management.*;	// For thread information
+import java.lang.ref.*;			// For the threads and objects which were collected
+import java.util.*;				// For the listeners
+import java.util.concurrent.*;	// For the queue of pending changes
+import telhai.java.gthreads.agent.*;	// For the writes reported by the agent
+
+/** This class records the lifelines of threads, independently of any graphical display. Once started, the
+  * ThreadRecorder runs its own sampler thread, which wakes up at regular intervals (50ms by default), samples the
+  * state of all the monitored threads and writes it into their ThreadTrack objects.
+  *
+  * The position of the recorder is derived from the time elapsed since it was started, and not from the number of
+  * samples taken so far. Therefore a late sample (because of a busy system) doesn't shift the rest of the recording.
+  * The time during which the recorder is stopped is not counted. On each sample, the recorder drains the state
+  * transition events which the threads have published since the previous sample, so transitions are recorded at the
+  * time they happened rather than at the time they were noticed. Then it asks the JVM for the state of all the running
+  * threads in a single call to ThreadMXBean.getThreadInfo(), so that threads which are blocked on a monitor or waiting
+  * are not mistaken for running threads.
+  *
+  * Any thread can be recorded, but only ThreadPlus objects publish their transitions; other threads are recorded by
+  * sampling alone. Threads can be added explicitly, or found automatically by a ThreadDiscovery, which adds the threads
+  * of a thread group (or those whose names match a pattern) as they are created, and removes them when they die.
+  *
+  * Threads can be added and removed from any thread without locking: the new or removed track is put in a lock-free
+  * queue, and the sampler applies all the queued changes at once at the beginning of the next sample. Each track knows
+  * its index in the array of tracks, so removing it takes constant time (the last track is moved into its place).
+  *
+  * The recorder can also monitor objects. On each sample, after the threads, it reads the fields of each monitored
+  * object into its ObjectTrack, which publishes a new snapshot only if a field has changed. Objects are added and
+  * removed in the same way as threads, through a queue of their own.
+  *
+  * If the FieldAgent is installed (see telhai.java.gthreads.agent.FieldAgent), the recorder also watches each
+  * monitored object for writes to its fields. The writing threads publish their writes into a single WriteRing, and on
+  * each sample the recorder takes them all, records each one in the history of the field, with the time it was made,
+  * and in the log of the writing thread, if the thread is recorded. This way no intermediate value is missed, and the
+  * cost is paid only when fields are actually written.
+  *
+  * The recorder never keeps a recorded thread or a monitored object alive: the tracks hold them through weak
+  * references, which are put in a reference queue once they are collected. On each sample, the sampler thread polls
+  * the queue, removes the tracks of the collected threads and objects, and notifies its listeners, so that a viewer can
+  * let go of their lanes and tables as well. Nothing is left behind, however many short-lived threads and objects are
+  * monitored over a long session. The listeners are also notified as soon as a recorded thread is seen to end, whether
+  * or not it can be collected yet.
+  *
+  * The recorder doesn't require a display, so it can be used on its own (for example on a server), and its tracks can
+  * be read later. The GraphicalThreadManager uses a ThreadRecorder to do all of its sampling, and only renders the
+  * recorded tracks.
+  *
+  * @see ThreadTrack
+  * @see ObjectTrack
+  * @see ThreadDiscovery
+  * @see GraphicalThreadManager
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ThreadRecorder implements Runnable
+{
+	/** Default sampling period in milliseconds */
+	public static final int DEFAULT_PERIOD = 50;
+
+	/** The sampling period in nanoseconds */
+	private long periodNanos;
+
+	/** The maximum position of the recorder. When it is reached, the recorder either resets itself or stops, depending
+	  * on the autoReset flag. Zero means no limit.
+	  * @see #setLimit(int)
+	  */
+	private volatile int limit;
+
+	/** A flag which determines whether the recorder should reset itself when it reaches the limit.
+	  * @see #setAutoReset(boolean)
+	  */
+	private volatile boolean autoReset;
+
+	/** The current position of the recorder, in sampler ticks */
+	private volatile int position;
+
+	/** The current recording time, in nanoseconds. This is the time of the last sample. */
+	private volatile long time;
+
+	/** The System.nanoTime() value corresponding to position 0. Moved forward whenever the recorder is resumed, so that
+	  * stopped periods are not counted. Written with the recorder locked, and read without locking by other threads.
+	  */
+	private volatile long originNanos;
+
+	/** The number of nanoseconds recorded before the recorder was last stopped */
+	private long elapsedNanos;
+
+	/** Counts the number of milliseconds since the recorder was started or since resetInitTime() was last called.
+	  * @see #resetInitTime()
+	  */
+	private volatile long initTimeMillis;
+
+	/** The tracks of all the monitored threads, in no particular order. Used only with the recorder locked. */
+	private ThreadTrack[] working;
+
+	/** The number of tracks in the working array */
+	private int numTracks;
+
+	/** A copy of the tracks of all the monitored threads. The array is replaced (never modified) after each batch of
+	  * changes, so viewers can iterate over it without locking.
+	  */
+	private volatile ThreadTrack[] tracks;
+
+	/** The tracks which were added or removed, and are waiting to be applied to the working array. A track appears
+	  * here once when it is added and once when it is removed; its state tells which change to apply.
+	  */
+	private ConcurrentLinkedQueue pending;
+
+	/** The tracks of all the monitored objects, in no particular order. Used only with the recorder locked. */
+	private ObjectTrack[] workingObjects;
+
+	/** The number of tracks in the working array of objects */
+	private int numObjectTracks;
+
+	/** A copy of the tracks of all the monitored objects, replaced (never modified) after each batch of changes */
+	private volatile ObjectTrack[] objectTracks;
+
+	/** The object tracks which were added or removed, and are waiting to be applied to the working array */
+	private ConcurrentLinkedQueue pendingObjects;
+
+	/** The sampler thread, or null if the recorder is stopped */
+	private Thread sampler;
+
+	/** The JVM thread system, which provides the state of the threads. Null if it cannot be used. */
+	private ThreadMXBean threadBean;
+
+	/** The IDs of the running threads, passed to the thread system on each sample. Reallocated only when the number of
+	  * running threads changes.
+	  */
+	private long[] runningIds;
+
+	/** The tracks of the running threads, in the same order as runningIds */
+	private ThreadTrack[] runningTracks;
+
+	/** Finds new threads to record on each sample, or null if threads are only added explicitly */
+	private ThreadDiscovery discovery;
+
+	/** The writes to the fields of the monitored objects, or null if the FieldAgent is not installed */
+	private WriteRing writes;
+
+	/** The IDs of the recorded threads, in a hash table with open addressing (0 marks an empty slot). Used to find the
+	  * writer of each field write, and rebuilt whenever the tracks change. Null if the FieldAgent is not installed.
+	  */
+	private long[] writerIds;
+
+	/** The tracks of the recorded threads, in the same slots as their IDs in writerIds */
+	private ThreadTrack[] writerTracks;
+
+	/** The queue into which the references of the tracks are put once their threads or objects have been collected */
+	private ReferenceQueue collected;
+
+	/** The listeners which are notified when the track of a collected thread or object is removed */
+	private Vector listeners;
+
+	/** Constructs a recorder with the default sampling period. */
+	public ThreadRecorder()
+	{
+		this(DEFAULT_PERIOD);
+	}
+
+	/** Constructs a recorder with the given sampling period.
+	  * @param period the sampling period in milliseconds (values less than 1 will be set to 1).
+	  */
+	public ThreadRecorder (int period)
+	{
+		periodNanos = (period<1 ? 1 : period)*1000000L;
+		autoReset = true;				// By default auto-reset is enabled
+		working = new ThreadTrack[16];
+		tracks = new ThreadTrack[0];
+		pending = new ConcurrentLinkedQueue();
+		workingObjects = new ObjectTrack[16];
+		objectTracks = new ObjectTrack[0];
+		pendingObjects = new ConcurrentLinkedQueue();
+		runningIds = new long[0];
+		runningTracks = new ThreadTrack[0];
+		collected = new ReferenceQueue();
+		listeners = new Vector();
+
+		if (FieldWrites.isInstalled())	// Receive the writes to the fields of the objects
+		{
+			writes = new WriteRing();
+			writerIds = new long[32];
+			writerTracks = new ThreadTrack[32];
+		}
+
+		try
+		{
+			threadBean = ManagementFactory.getThreadMXBean();
+		}
+		catch (SecurityException e) {threadBean = null;}	// Only the events of the threads will be recorded
+	}
+
+	/** Adds a thread to the threads recorded by this recorder. If the thread is a ThreadPlus object, its transitions
+	  * are recorded from the events it publishes; otherwise it is recorded by sampling only. This method doesn't lock
+	  * the recorder and may be called from any thread; the thread is recorded from the next sample on. The track doesn't
+	  * keep the thread alive; once the thread has been collected, the track is removed.
+	  * @param thr the thread to add.
+	  * @return the track which will hold the recorded lifeline of the thread.
+	  */
+	public ThreadTrack addThread (Thread thr)
+	{
+		ThreadTrack track = createTrack(thr);
+		addTrack(track);
+		return track;
+	}
+
+	/** Creates a track for a thread, without recording it yet, so that the caller can prepare for its notifications
+	  * first. The track is recorded once it is passed to addTrack().
+	  * @param thr the thread.
+	  * @return the new track.
+	  */
+	ThreadTrack createTrack (Thread thr)
+	{
+		return new ThreadTrack(thr,collected);
+	}
+
+	/** Records a track which was created by createTrack(), from the next sample on. Doesn't lock the recorder.
+	  * @param track the track.
+	  */
+	void addTrack (ThreadTrack track)
+	{
+		pending.add(track);
+	}
+
+	/** Removes a track from this recorder. Nothing is done if the track has already been removed. This method doesn't
+	  * lock the recorder and may be called from any thread; the track is not sampled from the next sample on.
+	  * @param track the track to remove.
+	  */
+	public void removeTrack (ThreadTrack track)
+	{
+		if (track.removed)
+			return;
+
+		track.removed = true;
+		pending.add(track);
+	}
+
+	/** Returns the tracks of all the threads recorded by this recorder, in no particular order. The returned array must
+	  * not be modified.
+	  */
+	public ThreadTrack[] getTracks()
+	{
+		if (!pending.isEmpty())		// Include the changes which were not applied yet
+		{
+			synchronized (this)
+			{
+				applyPending();
+			}
+		}
+		return tracks;
+	}
+
+	/** Returns the tracks of the recorded threads as of the last sample, without applying the pending changes, and so
+	  * without ever waiting for the sampler. The returned array must not be modified.
+	  */
+	ThreadTrack[] getSampledTracks()
+	{
+		return tracks;
+	}
+
+	/** Applies all the pending changes to the working array of tracks, and publishes a new copy of the array if it has
+	  * changed. A new track is appended at the end of the array; a removed track is replaced by the last track. Called
+	  * with the recorder locked.
+	  */
+	private void applyPending()
+	{
+		ThreadTrack track;
+		boolean changed = false;
+
+		while ((track = (ThreadTrack)pending.poll())!=null)
+		{
+			if (track.slot<0 && !track.removed)				// Added
+			{
+				if (numTracks==working.length)
+				{
+					ThreadTrack[] newWorking = new ThreadTrack[numTracks*2];
+					System.arraycopy(working,0,newWorking,0,numTracks);
+					working = newWorking;
+				}
+				track.slot = numTracks;
+				working[numTracks++] = track;
+				changed = true;
+			}
+			else if (track.slot>=0 && track.removed)		// Removed - move the last track into its place
+			{
+				ThreadTrack last = working[--numTracks];
+				working[track.slot] = last;
+				last.slot = track.slot;
+				working[numTracks] = null;
+				track.slot = -1;
+				changed = true;
+			}
+		}
+
+		if (changed)				// Publish a copy for the viewers
+		{
+			ThreadTrack[] newTracks = new ThreadTrack[numTracks];
+			System.arraycopy(working,0,newTracks,0,numTracks);
+			tracks = newTracks;
+
+			if (writerIds!=null)
+				indexWriters();
+		}
+	}
+
+	/** Rebuilds the hash table of the writers from the working array of tracks. The table is kept at most half full.
+	  * Called with the recorder locked.
+	  */
+	private void indexWriters()
+	{
+		int cap = writerIds.length;
+		while (cap<numTracks*2)
+			cap <<= 1;
+
+		if (cap!=writerIds.length)
+		{
+			writerIds = new long[cap];
+			writerTracks = new ThreadTrack[cap];
+		}
+		else
+		{
+			Arrays.fill(writerIds,0);
+			Arrays.fill(writerTracks,null);
+		}
+
+		for (int i=0;i<numTracks;++i)
+		{
+			long id = working[i].getThreadId();
+			int j = slotOf(id);
+			while (writerIds[j]!=0)					// Linear probing
+				j = (j+1)&(cap-1);
+			writerIds[j] = id;
+			writerTracks[j] = working[i];
+		}
+	}
+
+	/** Returns the first slot to probe for a thread ID in the hash table of the writers. */
+	private int slotOf (long id)
+	{
+		long h = id*0x9E3779B97F4A7C15L;
+		return (int)(h>>>32) & (writerIds.length-1);
+	}
+
+	/** Finds the track of a recorded thread in the hash table of the writers. Called with the recorder locked.
+	  * @param id the ID of the thread.
+	  * @return the track of the thread, or null if it is not recorded.
+	  */
+	private ThreadTrack findWriter (long id)
+	{
+		int mask = writerIds.length-1;
+		for (int j=slotOf(id);writerIds[j]!=0;j=(j+1)&mask)
+			if (writerIds[j]==id)
+				return writerTracks[j];
+		return null;
+	}
+
+	/** Adds an object to the objects monitored by this recorder. This method doesn't lock the recorder and may be called
+	  * from any thread; the object is sampled from the next sample on. Until then, its track holds a snapshot of its
+	  * fields as they were when it was added. The track doesn't keep the object alive; once the object has been
+	  * collected, the track is removed.
+	  * @param obj the object to add.
+	  * @param ancestors indicates whether the inherited fields of the object should be recorded too.
+	  * @return the track which will hold the latest snapshot of the fields of the object.
+	  */
+	public ObjectTrack addObject (Object obj, boolean ancestors)
+	{
+		ObjectTrack track = new ObjectTrack(obj,ancestors,collected);
+		pendingObjects.add(track);
+		if (writes!=null)
+		{
+			track.writes = writes;
+			FieldWrites.watch(obj,track);
+		}
+		return track;
+	}
+
+	/** Removes an object track from this recorder. Nothing is done if the track has already been removed. This method
+	  * doesn't lock the recorder and may be called from any thread; the object is not sampled from the next sample on.
+	  * @param track the track to remove.
+	  */
+	public void removeObjectTrack (ObjectTrack track)
+	{
+		if (track.removed)
+			return;
+
+		track.removed = true;
+		pendingObjects.add(track);
+		if (writes!=null)
+			FieldWrites.unwatch(track);
+	}
+
+	/** Returns the tracks of all the objects monitored by this recorder, in no particular order. The returned array must
+	  * not be modified.
+	  */
+	public ObjectTrack[] getObjectTracks()
+	{
+		if (!pendingObjects.isEmpty())		// Include the changes which were not applied yet
+		{
+			synchronized (this)
+			{
+				applyPendingObjects();
+			}
+		}
+		return objectTracks;
+	}
+
+	/** Applies all the pending changes to the working array of object tracks, in the same way as applyPending(). Called
+	  * with the recorder locked.
+	  */
+	private void applyPendingObjects()
+	{
+		ObjectTrack track;
+		boolean changed = false;
+
+		while ((track = (ObjectTrack)pendingObjects.poll())!=null)
+		{
+			if (track.slot<0 && !track.removed)				// Added
+			{
+				if (numObjectTracks==workingObjects.length)
+				{
+					ObjectTrack[] newWorking = new ObjectTrack[numObjectTracks*2];
+					System.arraycopy(workingObjects,0,newWorking,0,numObjectTracks);
+					workingObjects = newWorking;
+				}
+				track.slot = numObjectTracks;
+				workingObjects[numObjectTracks++] = track;
+				changed = true;
+			}
+			else if (track.slot>=0 && track.removed)		// Removed - move the last track into its place
+			{
+				ObjectTrack last = workingObjects[--numObjectTracks];
+				workingObjects[track.slot] = last;
+				last.slot = track.slot;
+				workingObjects[numObjectTracks] = null;
+				track.slot = -1;
+				changed = true;
+			}
+		}
+
+		if (changed)				// Publish a copy for the viewers
+		{
+			ObjectTrack[] newTracks = new ObjectTrack[numObjectTracks];
+			System.arraycopy(workingObjects,0,newTracks,0,numObjectTracks);
+			objectTracks = newTracks;
+		}
+	}
+
+	/** Adds a listener which will be notified whenever a recorded thread ends, and whenever the track of a collected
+	  * thread or object is removed.
+	  * @param l the listener to add.
+	  */
+	public void addTrackListener (TrackListener l)
+	{
+		listeners.add(l);
+	}
+
+	/** Removes a listener which was added by addTrackListener().
+	  * @param l the listener to remove.
+	  */
+	public void removeTrackListener (TrackListener l)
+	{
+		listeners.remove(l);
+	}
+
+	/** Removes the tracks whose threads or objects have been collected since the last sample, and notifies the
+	  * listeners. The end of a collected thread is recorded first, if it wasn't seen to end. Called by the sampler
+	  * thread with the recorder locked, before the changes are applied.
+	  * @param now the current recording time, in nanoseconds.
+	  */
+	private void reclaim (long now)
+	{
+		Reference ref;
+
+		while ((ref = collected.poll())!=null)
+		{
+			Object track = ((TrackReference)ref).track;
+			int i;
+
+			if (track instanceof ThreadTrack)
+			{
+				ThreadTrack t = (ThreadTrack)track;
+				if (t.removed)				// Removed before it was collected
+					continue;
+				t.sample(this,now);
+				removeTrack(t);
+				for (i=0;i<listeners.size();++i)
+					((TrackListener)listeners.get(i)).trackRemoved(t);
+			}
+			else
+			{
+				ObjectTrack o = (ObjectTrack)track;
+				if (o.removed)
+					continue;
+				removeObjectTrack(o);
+				for (i=0;i<listeners.size();++i)
+					((TrackListener)listeners.get(i)).objectTrackRemoved(o);
+			}
+		}
+	}
+
+	/** Sets the discovery which finds new threads to record. The discovery runs on each sample, before the threads are
+	  * sampled. Threads which were added by a previous discovery are kept.
+	  * @param disc the discovery, or null to stop discovering threads.
+	  * @see #getDiscovery()
+	  */
+	public synchronized void setDiscovery (ThreadDiscovery disc)
+	{
+		discovery = disc;
+	}
+
+	/** Returns the discovery which finds new threads to record, or null if there is none.
+	  * @see #setDiscovery(ThreadDiscovery)
+	  */
+	public synchronized ThreadDiscovery getDiscovery()
+	{
+		return discovery;
+	}
+
+	/** Starts this recorder. The sampler thread is started, and the position continues from where it was when the
+	  * recorder was last stopped. If the initTimeMillis field has not been initialized yet, it is initialized with the
+	  * current system time.
+	  */
+	public synchronized void start()
+	{
+		if (sampler!=null)		// Already running
+			return;
+
+		if (initTimeMillis==0)
+			initTimeMillis = System.currentTimeMillis();	// Initialize initTime if needed
+
+		originNanos = System.nanoTime()-elapsedNanos;
+
+		sampler = new Thread(this,"GTM Recorder");
+		sampler.setDaemon(true);		// The recorder should never keep the application alive
+		sampler.start();
+	}
+
+	/** Stops this recorder. The sampler thread is interrupted and will exit after its current sample. */
+	public synchronized void stop()
+	{
+		if (sampler==null)		// Not running
+			return;
+
+		elapsedNanos = System.nanoTime()-originNanos;
+		sampler.interrupt();
+		sampler = null;
+	}
+
+	/** Returns true if the recorder is currently running. */
+	public synchronized boolean isRecording()
+	{
+		return sampler!=null;
+	}
+
+	/** Resets this recorder. The position is reset to 0 and all the tracks are cleared, along with the histories of the
+	  * objects. If the recorder is running, it keeps running from position 0.
+	  */
+	public synchronized void reset()
+	{
+		elapsedNanos = 0;
+		originNanos = System.nanoTime();
+		position = 0;
+		time = 0;
+
+		applyPending();
+		for (int i=0;i<numTracks;++i)
+			working[i].reset();
+
+		applyPendingObjects();
+		for (int i=0;i<numObjectTracks;++i)
+			workingObjects[i].reset();
+	}
+
+	/** Resets the initialization time of this recorder. This function sets initTimeMillis to the current system time.
+	  */
+	public void resetInitTime()
+	{
+		initTimeMillis = System.currentTimeMillis();
+	}
+
+	/** Clears the initialization time of this recorder, so that it will be re-initialized on the next call to start().
+	  */
+	public void clearInitTime()
+	{
+		initTimeMillis = 0;
+	}
+
+	/** Returns the system time when the recorder was started or since resetInitTime() was last called, or 0 if it
+	  * hasn't been started yet.
+	  */
+	public long getInitTimeMillis()
+	{
+		return initTimeMillis;
+	}
+
+	/** Returns the current position of the recorder, in sampler ticks. */
+	public int getPosition()
+	{
+		return position;
+	}
+
+	/** Returns the current recording time, in nanoseconds. This is the time of the last sample, measured from the time
+	  * the recorder was started or reset, not counting the time during which it was stopped. The times recorded in the
+	  * tracks are measured the same way.
+	  */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/** Returns the sampling period, in nanoseconds. */
+	public long getPeriodNanos()
+	{
+		return periodNanos;
+	}
+
+	/** Sets the maximum position of the recorder.
+	  * @param ticks the maximum position, in sampler ticks (0 means no limit).
+	  * @see #setAutoReset(boolean)
+	  */
+	public void setLimit (int ticks)
+	{
+		limit = (ticks<0) ? 0 : ticks;
+	}
+
+	/** Returns the maximum position of the recorder.
+	  * @see #setLimit(int)
+	  */
+	public int getLimit()
+	{
+		return limit;
+	}
+
+	/** Set the automatic reset flag. If automatic reset is on, the recorder will be reset when it reaches the limit,
+	  * causing the tracks to be recorded from scratch. If automatic reset is off, the recorder will stop when it
+	  * reaches the limit.
+	  * @see #getAutoReset()
+	  */
+	public void setAutoReset (boolean auto)
+	{
+		autoReset = auto;
+	}
+
+	/** Return the current value of the autoReset field.
+	  * @see #setAutoReset(boolean)
+	  */
+	public boolean getAutoReset()
+	{
+		return autoReset;
+	}
+
+	/** The main loop of the sampler thread. Samples all the tracks, then sleeps until the next sampling period. The
+	  * loop exits when the recorder is stopped.
+	  */
+	public void run()
+	{
+		Thread me = Thread.currentThread();
+
+		for (;;)
+		{
+			synchronized (this)
+			{
+				if (sampler!=me)		// Stopped (or restarted by a new sampler thread)
+					return;
+				sample();
+			}
+
+			try {Thread.sleep(periodNanos/1000000L,(int)(periodNanos%1000000L));}
+			catch (InterruptedException e) {}		// Woken up by stop() - the loop condition will exit
+		}
+	}
+
+	/** Takes a single sample of all the tracks, of the threads and then of the objects. The position is calculated from
+	  * the elapsed time. If the limit is reached, the recorder is either reset or stopped. Called by the sampler thread
+	  * with the recorder locked.
+	  */
+	private void sample()
+	{
+		long now = System.nanoTime()-originNanos;
+		int pos = (int)(now/periodNanos);
+
+		if (limit>0 && pos>limit)	// If the maximum is reached
+		{
+			if (autoReset)			// If auto-reset is on, restart the recording
+			{
+				reset();
+				now = 0;
+				pos = 0;
+			}
+			else					// Else stop the recorder
+			{
+				stop();
+				return;
+			}
+		}
+
+		reclaim(now);					// Remove the tracks of the collected threads and objects
+		applyPending();					// Add and remove the tracks which have changed since the last sample
+
+		if (discovery!=null)			// Add new threads and remove the ones which have died
+		{
+			discovery.discover(this,now);
+			applyPending();
+		}
+
+		ThreadTrack[] t = working;
+		int i,n = 0;
+
+		for (i=0;i<numTracks;++i)
+		{
+			boolean ended = t[i].hasEnded();
+			t[i].sample(this,now);		// Record the events of the thread
+			if (t[i].isRunning())
+				++n;
+			else if (!ended && t[i].hasEnded())
+			{
+				for (int j=0;j<listeners.size();++j)
+					((TrackListener)listeners.get(j)).trackEnded(t[i]);
+			}
+		}
+
+		if (threadBean!=null && n>0)	// Record the states of all the running threads with a single call
+		{
+			if (runningIds.length!=n)
+			{
+				runningIds = new long[n];
+				runningTracks = new ThreadTrack[n];
+			}
+
+			n = 0;
+			for (i=0;i<numTracks && n<runningIds.length;++i)
+				if (t[i].isRunning())
+				{
+					runningIds[n] = t[i].getThreadId();
+					runningTracks[n++] = t[i];
+				}
+
+			ThreadInfo[] info = threadBean.getThreadInfo(runningIds,0);		// No stack traces
+			for (i=0;i<n;++i)
+				runningTracks[i].sample(info[i],now);
+		}
+
+		applyPendingObjects();			// Snapshot the monitored objects
+		if (writes!=null)
+			takeWrites(now);
+		for (i=0;i<numObjectTracks;++i)
+			workingObjects[i].sample(now);
+
+		time = now;
+		position = pos;
+	}
+
+	/** Records the field writes which were published since the last sample, in the histories of the objects and in the
+	  * logs of the writing threads. The time of each write is kept between the time of the last sample and the current
+	  * time, and never before the time of the previous write. At most a ring-full of writes is taken, so writers which
+	  * never stop can't hold up the sampler. Called by the sampler thread with the recorder locked.
+	  * @param now the current recording time, in nanoseconds.
+	  */
+	private void takeWrites (long now)
+	{
+		long floor = time;
+
+		for (int n=writes.getCapacity();n>0 && writes.take();--n)
+		{
+			long t = timeOf(writes.getTakenTime());
+			if (t<floor)
+				t = floor;
+			else if (t>now)
+				t = now;
+			floor = t;
+
+			ObjectTrack track = writes.getTakenTrack();
+			if (!track.removed)
+			{
+				int field = writes.getTakenField();
+				track.written(field,t,writes.getTakenBits());
+
+				ThreadTrack writer = findWriter(writes.getTakenWriter());
+				if (writer!=null)
+					writer.getWrites().add(t,track,field,writes.getTakenBits(),writes.getTakenValue());
+			}
+			writes.release();
+		}
+	}
+
+	/** Returns the number of field writes dropped so far because the recorder didn't keep up with the writers, or 0 if
+	  * the FieldAgent is not installed.
+	  */
+	public int getLostWrites()
+	{
+		return (writes==null) ? 0 : writes.getLost();
+	}
+
+	/** Converts a System.nanoTime() value to recording time, for example the time when a message was sent. Times
+	  * before the recorder was started or reset are converted to 0. This method doesn't lock the recorder.
+	  * @param nanos the System.nanoTime() value.
+	  * @return the corresponding recording time, in nanoseconds.
+	  */
+	public long toRecordingTime (long nanos)
+	{
+		return timeOf(nanos);
+	}
+
+	/** Returns the System.nanoTime() value which corresponds to recording time 0, so that many times can be converted
+	  * with a single read (see toRecordingTime()). The value changes when the recorder is reset or resumed.
+	  */
+	long getOriginNanos()
+	{
+		return originNanos;
+	}
+
+	/** Converts a System.nanoTime() value to recording time. Times before the recorder was started or reset are
+	  * converted to 0.
+	  * @param nanos the System.nanoTime() value.
+	  * @return the corresponding recording time, in nanoseconds.
+	  */
+	long timeOf (long nanos)
+	{
+		long d = nanos-originNanos;
+		return (d<0) ? 0 : d;
+	}
+}
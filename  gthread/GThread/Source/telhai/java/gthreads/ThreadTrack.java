@@ -0,0 +1,324 @@
+package telhai.java.gthreads;
+
+import java.lang.management.*;	// For thread information
+import java.lang.ref.*;			// For the queue of collected threads
+
+/** This class holds the recorded lifeline of a single thread. A ThreadTrack is created by the ThreadRecorder
+  * for each thread it monitors, and is updated only by the recorder's sampler thread. Viewers (such as the ThreadLine
+  * components of the GraphicalThreadManager) read the track in order to draw the lifeline, but never modify it.
+  *
+  * The lifeline is kept in a StateTimeline: the first entry is the time at which the thread was started (with its
+  * initial state), each following entry is a change from active to sleeping or vice-versa, and an ENDED entry is
+  * appended when the thread ends. All times are measured in nanoseconds of recording time. For a ThreadPlus object, the
+  * transitions are taken from the events which the thread publishes into its ThreadEventRing, so each one is recorded
+  * at the exact time it happened, even if it happened between two samples. Polling the thread is only used as a
+  * fallback, for a thread which was already running when the track was reset, for a thread which doesn't publish its
+  * end event, and after events were lost.
+  *
+  * Any other thread (for example a worker of an executor, which cannot be made a ThreadPlus) is recorded by polling
+  * only: the track notices that the thread has started or ended on the first sample after it happened, and takes the
+  * rest of its states from the JVM. Such a thread which is waiting with a timeout on no lock is considered sleeping,
+  * since this is what Thread.sleep() looks like to the JVM.
+  *
+  * While the thread is awake, the recorder also passes the track the ThreadInfo of the thread on each sample, which
+  * tells whether the thread is actually running, or is blocked on a monitor or waiting. These states are recorded along
+  * with the lock the thread is waiting for and the owner of the lock.
+  *
+  * If the FieldAgent is installed, the track also keeps a log of the writes which the thread has made to the fields of
+  * the monitored objects, each one with the time it was made.
+  *
+  * The track holds its thread through a weak reference, so recording a thread never keeps it from being collected once
+  * it has ended and the application has dropped it. The name and the ID of the thread are kept by the track, so the
+  * recorded lifeline can still be shown after the thread itself is gone.
+  *
+  * @see ThreadRecorder
+  * @see StateTimeline
+  * @see ThreadPlus
+  * @see FieldWriteLog
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public class ThreadTrack
+{
+	/** The thread which is recorded by this track, held weakly */
+	private TrackReference threadRef;
+
+	/** Indicates whether the thread is a ThreadPlus object, which publishes its events */
+	private boolean plus;
+
+	/** The ID of the thread */
+	private final long threadId;
+
+	/** The name of the thread, as of the last sample */
+	private volatile String name;
+
+	/** Holds the states of the thread and the times when they began */
+	private StateTimeline timeline;
+
+	/** The time of the last recorded entry. Entries are never recorded before it. */
+	private long lastTime;
+
+	/** The number of lost events of the thread's event ring, as of the last sample */
+	private int lastLost;
+
+	/** The name of the lock of the last entry, or null */
+	private String lastLock;
+
+	/** The ID of the owner of the lock of the last entry, or -1 */
+	private long lastOwner;
+
+	/** The writes which the thread has made to the fields of the monitored objects */
+	private FieldWriteLog writes;
+
+	/** The index of this track in the array of tracks of the recorder, or -1 if it is not in the array. Used only by
+	  * the recorder, with the recorder locked.
+	  */
+	int slot = -1;
+
+	/** Set when the track is removed from the recorder. A removed track is never added again. */
+	volatile boolean removed;
+
+	/** Constructs a track for the given thread. The track is empty until the recorder samples the thread.
+	  * @param thr the thread to record.
+	  * @param queue the queue into which the reference to the thread is put once it has been collected, or null.
+	  */
+	ThreadTrack (Thread thr, ReferenceQueue queue)
+	{
+		threadRef = new TrackReference(thr,this,queue);
+		plus = thr instanceof ThreadPlus;
+		threadId = thr.getId();
+		name = thr.getName();
+		timeline = new StateTimeline();
+		writes = new FieldWriteLog();
+	}
+
+	/** Samples the state of the thread at the given time. If the thread is a ThreadPlus object, this method first reads
+	  * all the events the thread has published since the last call to sample(), and records each transition at its time
+	  * stamp. Then it checks whether
+	  * the thread has started or ended without publishing the corresponding events. If events were lost, the awake
+	  * state is resynchronized with the current state of the thread. A thread which has ended before any sample saw it
+	  * running (it had ended when it was added, or it ran for less than a sample period) is recorded as having started
+	  * and ended at once. This method is only called by the sampler thread of the ThreadRecorder.
+	  * @param rec the recorder, used to convert event time stamps to recording time.
+	  * @param now the current recording time, in nanoseconds.
+	  */
+	void sample (ThreadRecorder rec, long now)
+	{
+		Thread thr = getThread();
+		if (thr==null)					// Collected, so it has ended (the recorder removes the track)
+		{
+			if (!hasStarted())
+				endAtOnce(now);
+			else
+				changeState(now,StateTimeline.ENDED);
+			return;
+		}
+		name = thr.getName();
+
+		ThreadPlus plusThread = plus ? (ThreadPlus)thr : null;
+		if (plusThread==null)			// Not a ThreadPlus - there are no events, only poll the thread
+		{
+			if (!hasStarted())
+			{
+				if (thr.isAlive())
+					record(now,StateTimeline.ACTIVE,null);
+				else if (thr.getState()==Thread.State.TERMINATED)	// Ended before it was seen running
+					endAtOnce(now);
+			}
+			else if (thr.getState()==Thread.State.TERMINATED)
+				changeState(now,StateTimeline.ENDED);
+			return;
+		}
+
+		ThreadEventRing ring = plusThread.getEventRing();
+		int i,n = ring.size();
+
+		for (i=0;i<n;++i)				// Record all the events published since the last sample
+		{
+			long t = rec.timeOf(ring.getTime(i));
+
+			if (t<lastTime)				// Never record an entry before the previous one
+				t = lastTime;
+			else if (t>now)
+				t = now;
+
+			switch (ring.getEvent(i))
+			{
+				case ThreadEventRing.STARTED:	if (!hasStarted())
+													record(t,StateTimeline.ACTIVE,null);
+												break;
+				case ThreadEventRing.SLEEPING:	changeState(t,StateTimeline.SLEEPING);
+												break;
+				case ThreadEventRing.AWAKE:		changeState(t,StateTimeline.ACTIVE);
+												break;
+				case ThreadEventRing.ENDED:		changeState(t,StateTimeline.ENDED);
+												break;
+			}
+		}
+		ring.advance(n);
+
+		if (!hasStarted())				// The thread may have been running before the track was reset
+		{
+			if (plusThread.isAlive())
+				record(now,plusThread.isAwake() ? StateTimeline.ACTIVE : StateTimeline.SLEEPING,null);
+			else if (plusThread.getState()==Thread.State.TERMINATED)	// Its events were lost, or cleared by a reset
+				endAtOnce(now);
+		}
+		else if (plusThread.getState()==Thread.State.TERMINATED)	// Died without publishing the end event
+			changeState(now,StateTimeline.ENDED);		// (not isAlive(), which is also false just before the start)
+		else if (ring.getLost()!=lastLost)				// Events were lost - resynchronize with the thread
+			changeState(now,plusThread.isAwake() ? StateTimeline.ACTIVE : StateTimeline.SLEEPING);
+
+		lastLost = ring.getLost();
+	}
+
+	/** Records the state of the thread as reported by the JVM. Called by the sampler thread of the ThreadRecorder after
+	  * sample(), if the thread is running. A change is recorded if the thread state is different from the state of the
+	  * last entry, or if the thread is now waiting for another lock. The state reported by the JVM is ignored while the
+	  * thread sleeps in ThreadPlus.sleep(), because the sleep events are more precise. A thread which is not a
+	  * ThreadPlus object and waits with a timeout on no lock is recorded as sleeping.
+	  * @param info the information about the thread, or null if the thread is no longer alive.
+	  * @param now the current recording time, in nanoseconds.
+	  */
+	void sample (ThreadInfo info, long now)
+	{
+		byte last = timeline.getLastState();
+		byte state;
+
+		if (info==null || !isRunning())		// The thread has ended since sample() was called
+			return;
+
+		switch (info.getThreadState())
+		{
+			case BLOCKED:		state = StateTimeline.BLOCKED;
+								break;
+			case WAITING:		state = StateTimeline.WAITING;
+								break;
+			case TIMED_WAITING:	if (!plus && info.getLockName()==null)		// Sleeping in Thread.sleep()
+									state = StateTimeline.SLEEPING;
+								else if (!plus)
+									state = StateTimeline.TIMED_WAITING;
+								else if (last==StateTimeline.SLEEPING)	// Sleeping in ThreadPlus.sleep()
+									return;
+								else
+									state = StateTimeline.TIMED_WAITING;
+								break;
+			default:			if (last==StateTimeline.SLEEPING && plus)	// The awake event comes next
+									return;
+								state = StateTimeline.ACTIVE;
+								break;
+		}
+
+		String lock = (state==StateTimeline.ACTIVE || state==StateTimeline.SLEEPING) ? null : info.getLockName();
+		long owner = (lock==null) ? -1 : info.getLockOwnerId();
+
+		if (state==last && owner==lastOwner && (lock==null ? lastLock==null : lock.equals(lastLock)))
+			return;						// No change
+
+		String detail = null;
+		if (lock!=null)					// Describe the lock (once per entry, not once per sample)
+			detail = (owner<0) ? lock : (lock + " owned by " + info.getLockOwnerName());
+
+		record(now,state,detail);
+		lastLock = lock;
+		lastOwner = owner;
+	}
+
+	/** Records a change of state, if the thread is running and not already in the given state.
+	  * @param time the time of the change.
+	  * @param state the new state.
+	  */
+	private void changeState (long time, byte state)
+	{
+		byte last = timeline.getLastState();
+
+		if (last!=0 && last!=StateTimeline.ENDED && last!=state)
+			record(time,state,null);
+	}
+
+	/** Records a thread which has ended without ever being seen running, as having started and ended at the given time,
+	  * so that it is known to have ended.
+	  * @param time the time.
+	  */
+	private void endAtOnce (long time)
+	{
+		record(time,StateTimeline.ACTIVE,null);
+		record(time,StateTimeline.ENDED,null);
+	}
+
+	/** Appends an entry to the timeline.
+	  * @param time the time of the entry.
+	  * @param state the state which begins at this time.
+	  * @param detail the lock which the thread is waiting for and its owner, or null.
+	  */
+	private void record (long time, byte state, String detail)
+	{
+		lastTime = time;
+		lastLock = null;
+		lastOwner = -1;
+		timeline.append(time,state,detail);
+	}
+
+	/** Resets this track. The reset method clears the timeline, so that the thread is considered as not started, and
+	  * the log of its writes.
+	  */
+	void reset()
+	{
+		lastTime = 0;
+		timeline.clear();
+		writes.clear();
+	}
+
+	/** Returns the thread recorded by this track, or null if it has been garbage-collected. */
+	public Thread getThread()
+	{
+		return (Thread)threadRef.get();
+	}
+
+	/** Returns the ID of the thread recorded by this track. */
+	public long getThreadId()
+	{
+		return threadId;
+	}
+
+	/** Returns the name of the thread recorded by this track, as of the last sample (or the last name it had, if it
+	  * has been garbage-collected).
+	  */
+	public String getName()
+	{
+		return name;
+	}
+
+	/** Returns the timeline holding the recorded states of the thread. */
+	public StateTimeline getTimeline()
+	{
+		return timeline;
+	}
+
+	/** Returns the log of the writes which the thread has made to the fields of the monitored objects. The log stays
+	  * empty unless the FieldAgent is installed.
+	  */
+	public FieldWriteLog getWrites()
+	{
+		return writes;
+	}
+
+	/** Returns whether the thread has been seen alive since the track was last reset. */
+	public boolean hasStarted()
+	{
+		return timeline.size()>0;
+	}
+
+	/** Returns whether the thread has started and has not ended yet. */
+	public boolean isRunning()
+	{
+		byte last = timeline.getLastState();
+		return last!=0 && last!=StateTimeline.ENDED;
+	}
+
+	/** Returns whether the thread has ended after it was started. */
+	public boolean hasEnded()
+	{
+		return timeline.getLastState()==StateTimeline.ENDED;
+	}
+}
@@ -0,0 +1,113 @@
+package telhai.java.gthreads;
+
+/** This class contains the helper functions for drawing a time axis: choosing a round grid step for a given zoom level,
+  * and formatting times in a readable unit, from nanoseconds up to hours.
+  *
+  * @see GraphicalThreadManager
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+final class TimeScale
+{
+	/** Nanoseconds in a microsecond */
+	static final long MICROS = 1000L;
+	/** Nanoseconds in a millisecond */
+	static final long MILLIS = 1000L*MICROS;
+	/** Nanoseconds in a second */
+	static final long SECONDS = 1000L*MILLIS;
+	/** Nanoseconds in a minute */
+	static final long MINUTES = 60L*SECONDS;
+	/** Nanoseconds in an hour */
+	static final long HOURS = 60L*MINUTES;
+
+	/** The units used for formatting, in nanoseconds, from the largest to the smallest */
+	private static final long[] UNITS = {HOURS,MINUTES,SECONDS,MILLIS,MICROS,1L};
+
+	/** The names of the units */
+	private static final String[] UNIT_NAMES = {"h","min","s","ms","\u00b5s","ns"};
+
+	/** The possible grid steps, in nanoseconds, in ascending order */
+	private static final long[] STEPS;
+
+	static
+	{
+		long[] steps = new long[64];
+		int n = 0;
+
+		for (long p=1;p<SECONDS;p*=10)			// 1, 2, 5 times a power of 10, below a second
+		{
+			steps[n++] = p;
+			steps[n++] = 2*p;
+			steps[n++] = 5*p;
+		}
+
+		long[] big = {SECONDS,2*SECONDS,5*SECONDS,10*SECONDS,15*SECONDS,30*SECONDS,
+						MINUTES,2*MINUTES,5*MINUTES,10*MINUTES,15*MINUTES,30*MINUTES,
+						HOURS,2*HOURS,3*HOURS,6*HOURS,12*HOURS,24*HOURS};
+		for (int i=0;i<big.length;++i)			// Round numbers of seconds, minutes and hours
+			steps[n++] = big[i];
+
+		STEPS = new long[n];
+		System.arraycopy(steps,0,STEPS,0,n);
+	}
+
+	/** No instances - static functions only */
+	private TimeScale() {}
+
+	/** Returns the smallest round grid step which is not shorter than the given time.
+	  * @param minNanos the minimal step, in nanoseconds.
+	  * @return the grid step, in nanoseconds.
+	  */
+	static long niceStep (long minNanos)
+	{
+		for (int i=0;i<STEPS.length;++i)
+			if (STEPS[i]>=minNanos)
+				return STEPS[i];
+		return STEPS[STEPS.length-1];
+	}
+
+	/** Formats a time on a grid. The time is written in the largest unit which divides the grid step, so all the
+	  * labels of a grid use the same unit.
+	  * @param nanos the time to format, in nanoseconds.
+	  * @param step the grid step, in nanoseconds.
+	  * @return the formatted time.
+	  */
+	static String format (long nanos, long step)
+	{
+		int i;
+
+		for (i=0;i<UNITS.length-1;++i)
+			if (step%UNITS[i]==0)
+				break;
+
+		return (nanos/UNITS[i]) + " " + UNIT_NAMES[i];
+	}
+
+	/** Formats a time in milliseconds, with three decimal digits (microsecond resolution).
+	  * @param nanos the time to format, in nanoseconds.
+	  * @return the formatted time.
+	  */
+	static String formatMillis (long nanos)
+	{
+		long micros = nanos/MICROS%1000;
+		return (nanos/MILLIS) + (micros<10 ? ".00" : (micros<100 ? ".0" : ".")) + micros + " ms";
+	}
+
+	/** Formats a duration in the largest unit which it reaches, with up to one decimal digit.
+	  * @param nanos the duration, in nanoseconds.
+	  * @return the formatted duration.
+	  */
+	static String formatDuration (long nanos)
+	{
+		int i;
+
+		for (i=0;i<UNITS.length-1;++i)
+			if (nanos>=UNITS[i])
+				break;
+
+		long tenths = nanos*10/UNITS[i];
+		if (tenths%10==0)
+			return (tenths/10) + " " + UNIT_NAMES[i];
+		return (tenths/10) + "." + (tenths%10) + " " + UNIT_NAMES[i];
+	}
+}
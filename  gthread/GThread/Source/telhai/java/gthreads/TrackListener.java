@@ -0,0 +1,37 @@
+package telhai.java.gthreads;
+
+/** The listener interface for receiving notifications about threads which are attached to a ThreadRecorder or detached
+  * from it automatically, by a ThreadDiscovery, about recorded threads which end, and about threads and objects whose
+  * tracks the recorder removes once they have been garbage-collected. The notifications are sent from the sampler
+  * thread of the recorder, so a listener which updates a graphical display should pass them to the event dispatch
+  * thread (for example, using SwingUtilities.invokeLater()).
+  *
+  * @see ThreadDiscovery
+  * @see ThreadRecorder#setDiscovery(ThreadDiscovery)
+  * @see ThreadRecorder#addTrackListener(TrackListener)
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public interface TrackListener
+{
+	/** Invoked after a discovered thread was added to the recorder.
+	  * @param track the track which records the new thread.
+	  */
+	public void trackAdded (ThreadTrack track);
+
+	/** Invoked after the recorder has recorded the end of a thread. Sent by the recorder only.
+	  * @param track the track of the thread which has ended.
+	  */
+	public void trackEnded (ThreadTrack track);
+
+	/** Invoked after the track of a discovered thread which has died, or of a thread which was collected, was removed
+	  * from the recorder.
+	  * @param track the track which was removed.
+	  */
+	public void trackRemoved (ThreadTrack track);
+
+	/** Invoked after the track of a monitored object which was collected was removed from the recorder.
+	  * @param track the track which was removed.
+	  */
+	public void objectTrackRemoved (ObjectTrack track);
+}
@@ -0,0 +1,29 @@
+package telhai.java.gthreads;
+
+import java.lang.ref.*;			// For the weak reference
+
+/** This class is the weak reference through which a ThreadTrack holds its thread, and an ObjectTrack holds its object,
+  * so that recording a thread or an object never keeps it from being garbage-collected. The reference knows its track:
+  * once the thread or the object has been collected, the reference is put in the queue of the ThreadRecorder, which
+  * then removes the track.
+  *
+  * @see ThreadRecorder
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+final class TrackReference extends WeakReference
+{
+	/** The ThreadTrack or ObjectTrack which holds this reference */
+	final Object track;
+
+	/** Constructs a reference.
+	  * @param referent the thread or the object.
+	  * @param track the track which holds the reference.
+	  * @param queue the queue into which the reference is put once the referent has been collected, or null.
+	  */
+	TrackReference (Object referent, Object track, ReferenceQueue queue)
+	{
+		super(referent,queue);
+		this.track = track;
+	}
+}
@@ -0,0 +1,207 @@
+package telhai.java.gthreads;
+
+import java.util.concurrent.atomic.*;	// For claiming the slots
+
+/** This class is a fixed-size ring buffer of the field writes which are reported by the FieldAgent, on their way from
+  * the writing threads to the ThreadRecorder. Unlike a ThreadEventRing, the ring has many producers - any thread may
+  * write a field of a monitored object - so each producer claims a slot by advancing the tail atomically, and each slot
+  * has a sequence number which tells whether it is free, or holds a write which is ready to be read. A producer never
+  * waits for another producer, and publishing doesn't allocate any memory. If the ring is full, the write is dropped
+  * and counted; the next sample of the object still shows its latest values.
+  *
+  * The single consumer is the sampler thread of the recorder, which takes the writes one by one on each sample.
+  *
+  * @see ThreadRecorder
+  * @see telhai.java.gthreads.agent.FieldWrites
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public final class WriteRing
+{
+	/** Default capacity of the ring (must be a power of 2) */
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	/** The sequence number of each slot: equal to the sequence number of the next write to be put in the slot while it
+	  * is free, and to that sequence number plus one once the write is ready.
+	  */
+	private final AtomicLongArray sequences;
+
+	/** The System.nanoTime() values of the writes */
+	private final long[] times;
+	/** The IDs of the threads which made the writes */
+	private final long[] writers;
+	/** The tracks of the written objects */
+	private final ObjectTrack[] tracks;
+	/** The indices of the written fields in their tracks */
+	private final int[] fields;
+	/** The new values of primitive fields, as raw bits */
+	private final long[] bits;
+	/** The new values of reference fields */
+	private final Object[] values;
+	/** Mask to convert a sequence number to an index in the arrays */
+	private final int mask;
+
+	/** The sequence number of the next write to be put in the ring */
+	private final AtomicLong tail = new AtomicLong();
+	/** The sequence number of the next write to be read. Used only by the consumer. */
+	private long head;
+	/** The number of writes dropped because the ring was full */
+	private final AtomicInteger lost = new AtomicInteger();
+
+	/** The System.nanoTime() value of the write which was taken last by the consumer */
+	private long takenTime;
+	/** The ID of the thread which made the write which was taken last */
+	private long takenWriter;
+	/** The track of the object of the write which was taken last */
+	private ObjectTrack takenTrack;
+	/** The index of the field of the write which was taken last */
+	private int takenField;
+	/** The new value of the write which was taken last, if the field is primitive */
+	private long takenBits;
+	/** The new value of the write which was taken last, if the field is a reference */
+	private Object takenValue;
+
+	/** Constructs a ring with the default capacity. */
+	public WriteRing()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/** Constructs a ring with the given capacity.
+	  * @param capacity the capacity of the ring, rounded up to a power of 2.
+	  */
+	public WriteRing (int capacity)
+	{
+		int cap = 2;
+		while (cap<capacity)
+			cap <<= 1;
+
+		sequences = new AtomicLongArray(cap);
+		for (int i=0;i<cap;++i)
+			sequences.set(i,i);
+		times = new long[cap];
+		writers = new long[cap];
+		tracks = new ObjectTrack[cap];
+		fields = new int[cap];
+		bits = new long[cap];
+		values = new Object[cap];
+		mask = cap-1;
+	}
+
+	/** Publishes a write. May be called by any thread.
+	  * @param track the track of the written object.
+	  * @param field the index of the field in the track.
+	  * @param b the new value of a primitive field, as raw bits, or 0.
+	  * @param value the new value of a reference field, or null.
+	  * @param writer the ID of the thread which wrote the field.
+	  * @param time the System.nanoTime() value of the write.
+	  * @return true if the write was published, false if it was dropped because the ring is full.
+	  */
+	public boolean publish (ObjectTrack track, int field, long b, Object value, long writer, long time)
+	{
+		long t;
+		int i;
+
+		for (;;)						// Claim a slot
+		{
+			t = tail.get();
+			i = (int)t & mask;
+			long seq = sequences.get(i);
+			if (seq<t)					// Ring is full - the consumer didn't keep up
+			{
+				lost.incrementAndGet();
+				return false;
+			}
+			if (seq==t && tail.compareAndSet(t,t+1))
+				break;
+		}
+
+		times[i] = time;
+		writers[i] = writer;
+		tracks[i] = track;
+		fields[i] = field;
+		bits[i] = b;
+		values[i] = value;
+		sequences.set(i,t+1);			// Make the write visible to the consumer
+		return true;
+	}
+
+	/** Takes the oldest write from the ring, if there is one ready, so that it can be read with the getTaken methods.
+	  * Called only by the consumer.
+	  * @return true if a write was taken, false if there is none ready.
+	  */
+	public boolean take()
+	{
+		int i = (int)head & mask;
+		if (sequences.get(i)!=head+1)	// Empty, or the producer which claimed the slot hasn't finished yet
+			return false;
+
+		takenTime = times[i];
+		takenWriter = writers[i];
+		takenTrack = tracks[i];
+		takenField = fields[i];
+		takenBits = bits[i];
+		takenValue = values[i];
+		tracks[i] = null;				// Don't keep anything alive
+		values[i] = null;
+
+		sequences.set(i,head+mask+1);	// Free the slot for the write which is one lap ahead
+		++head;
+		return true;
+	}
+
+	/** Returns the System.nanoTime() value of the write which was taken last. */
+	public long getTakenTime()
+	{
+		return takenTime;
+	}
+
+	/** Returns the ID of the thread which made the write which was taken last. */
+	public long getTakenWriter()
+	{
+		return takenWriter;
+	}
+
+	/** Returns the track of the object of the write which was taken last. */
+	public ObjectTrack getTakenTrack()
+	{
+		return takenTrack;
+	}
+
+	/** Returns the index in its track of the field of the write which was taken last. */
+	public int getTakenField()
+	{
+		return takenField;
+	}
+
+	/** Returns the new value of the write which was taken last, if the field is primitive, as raw bits. */
+	public long getTakenBits()
+	{
+		return takenBits;
+	}
+
+	/** Returns the new value of the write which was taken last, if the field is a reference. */
+	public Object getTakenValue()
+	{
+		return takenValue;
+	}
+
+	/** Releases the references of the write which was taken last, once it has been handled. */
+	public void release()
+	{
+		takenTrack = null;
+		takenValue = null;
+	}
+
+	/** Returns the capacity of the ring. */
+	public int getCapacity()
+	{
+		return mask+1;
+	}
+
+	/** Returns the number of writes dropped so far because the ring was full. */
+	public int getLost()
+	{
+		return lost.get();
+	}
+}
@@ -0,0 +1,452 @@
+package telhai.java.gthreads.agent;
+
+import java.io.*;				// For writing the class file
+import java.util.*;				// For vectors and hash tables
+
+/** This class rewrites a class file so that every write to a field of the class (or of a class of the same package)
+  * is reported to FieldWrites. Each putfield instruction is replaced with an invokestatic instruction of the same length,
+  * which calls a small synthetic method added to the class: the method writes the field, exactly as the putfield did,
+  * and then calls FieldWrites.write() with the object, the new value and the id of the field. Since the length of the
+  * code and the types on the operand stack are not changed, the offsets of the branches, the exception tables and the
+  * stack map frames of the class all remain valid, and the rewriting doesn't need to understand them - only to walk the
+  * instructions, and to append a few entries to the constant pool.
+  *
+  * The writes made by constructors are not rewritten, since the object under construction may not be passed to another
+  * method before its superclass constructor has been called. Writes to fields of classes of other packages are not
+  * rewritten either, since a protected field of such a class may only be written through a reference of the writing
+  * class. Interfaces are left as they are.
+  *
+  * @see FieldAgent
+  * @see FieldWrites
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+final class ClassRewriter
+{
+	/** The class which receives the writes */
+	private static final String WRITES = "telhai/java/gthreads/agent/FieldWrites";
+
+	/** The prefix of the names of the methods which are added to the class */
+	private static final String HELPER = "gtm$put$";
+
+	/** Access flags of a class: an interface, or a module */
+	private static final int ACC_INTERFACE = 0x0200, ACC_MODULE = 0x8000;
+
+	/** Access flags of the added methods: private, static and synthetic */
+	private static final int HELPER_ACCESS = 0x0002|0x0008|0x1000;
+
+	/** Opcodes which are used by the rewriting */
+	private static final int ALOAD_0 = 0x2A, PUTFIELD = 0xB5, INVOKESTATIC = 0xB8, LDC_W = 0x13, RETURN = 0xB1;
+
+	/** Lengths of the instructions, by their opcodes (0 for the instructions whose length varies) */
+	private static final byte[] LENGTHS = new byte[256];
+
+	static
+	{
+		Arrays.fill(LENGTHS,(byte)1);
+		LENGTHS[0x10] = 2;							// bipush
+		LENGTHS[0x11] = 3;							// sipush
+		LENGTHS[0x12] = 2;							// ldc
+		LENGTHS[0x13] = LENGTHS[0x14] = 3;			// ldc_w, ldc2_w
+		for (int op=0x15;op<=0x19;++op)				// loads with an index
+			LENGTHS[op] = 2;
+		for (int op=0x36;op<=0x3A;++op)				// stores with an index
+			LENGTHS[op] = 2;
+		LENGTHS[0x84] = 3;							// iinc
+		for (int op=0x99;op<=0xA8;++op)				// conditional branches, goto, jsr
+			LENGTHS[op] = 3;
+		LENGTHS[0xA9] = 2;							// ret
+		LENGTHS[0xAA] = LENGTHS[0xAB] = 0;			// tableswitch, lookupswitch
+		for (int op=0xB2;op<=0xB8;++op)				// field access, invokevirtual, invokespecial, invokestatic
+			LENGTHS[op] = 3;
+		LENGTHS[0xB9] = LENGTHS[0xBA] = 5;			// invokeinterface, invokedynamic
+		LENGTHS[0xBB] = 3;							// new
+		LENGTHS[0xBC] = 2;							// newarray
+		LENGTHS[0xBD] = 3;							// anewarray
+		LENGTHS[0xC0] = LENGTHS[0xC1] = 3;			// checkcast, instanceof
+		LENGTHS[0xC4] = 0;							// wide
+		LENGTHS[0xC5] = 4;							// multianewarray
+		LENGTHS[0xC6] = LENGTHS[0xC7] = 3;			// ifnull, ifnonnull
+		LENGTHS[0xC8] = LENGTHS[0xC9] = 5;			// goto_w, jsr_w
+	}
+
+	/** The class file */
+	private byte[] b;
+
+	/** The number of entries of the constant pool, plus one */
+	private int cpCount;
+
+	/** The offsets in the class file of the entries of the constant pool (just after their tags) */
+	private int[] cp;
+
+	/** The offset of the end of the constant pool */
+	private int cpEnd;
+
+	/** The index in the constant pool of the class itself */
+	private int thisClass;
+
+	/** The internal name of the class */
+	private String className;
+
+	/** The new entries of the constant pool */
+	private ByteArrayOutputStream newEntries = new ByteArrayOutputStream();
+
+	/** The number of new entries of the constant pool */
+	private int numNew;
+
+	/** The offsets in the class file of the putfield instructions which are rewritten */
+	private Vector patches = new Vector();
+
+	/** The index of the method which replaces each rewritten putfield, by the index of its field reference */
+	private HashMap helpers = new HashMap();
+
+	/** The code of the added methods */
+	private ByteArrayOutputStream helperMethods = new ByteArrayOutputStream();
+
+	/** The index of the reference to each FieldWrites.write() method in the constant pool, by the type of its value */
+	private HashMap writeMethods = new HashMap();
+
+	/** The index in the constant pool of the name "Code" */
+	private int codeName;
+
+	/** Constructs a rewriter of a class file.
+	  * @param classFile the class file.
+	  */
+	private ClassRewriter (byte[] classFile)
+	{
+		b = classFile;
+	}
+
+	/** Rewrites a class file, so that the writes to its fields are reported to FieldWrites.
+	  * @param classFile the class file.
+	  * @return the rewritten class file, or null if the class has nothing to rewrite.
+	  * @throws RuntimeException if the class file is malformed.
+	  */
+	static byte[] rewrite (byte[] classFile)
+	{
+		try
+		{
+			return new ClassRewriter(classFile).rewrite();
+		}
+		catch (IOException e) {return null;}		// Never thrown by a ByteArrayOutputStream
+	}
+
+	/** Rewrites the class file.
+	  * @return the rewritten class file, or null if the class has nothing to rewrite.
+	  */
+	private byte[] rewrite() throws IOException
+	{
+		cpCount = u2(8);
+		cp = new int[cpCount];
+		int pos = 10;
+		for (int i=1;i<cpCount;++i)					// Find the entries of the constant pool
+		{
+			int tag = b[pos]&0xFF;
+			cp[i] = pos+1;
+			switch (tag)
+			{
+				case 1:	pos += 3+u2(pos+1);			// Utf8
+						break;
+				case 3: case 4:						// Integer, Float
+				case 9: case 10: case 11: case 12:	// Field, method and interface method references, NameAndType
+				case 17: case 18:					// Dynamic, InvokeDynamic
+						pos += 5;
+						break;
+				case 5: case 6:						// Long, Double - take two entries
+						pos += 9;
+						++i;
+						break;
+				case 7: case 8: case 16:			// Class, String, MethodType
+				case 19: case 20:					// Module, Package
+						pos += 3;
+						break;
+				case 15:							// MethodHandle
+						pos += 4;
+						break;
+				default:
+						throw new IllegalArgumentException("Unknown constant pool tag " + tag);
+			}
+		}
+		cpEnd = pos;
+
+		int access = u2(pos);
+		if ((access&(ACC_INTERFACE|ACC_MODULE))!=0)
+			return null;
+		thisClass = u2(pos+2);
+		className = classNameAt(thisClass);
+
+		pos += 6;
+		pos += 2+2*u2(pos);							// Interfaces
+		int numFields = u2(pos);
+		pos += 2;
+		for (int i=0;i<numFields;++i)
+			pos = skipMember(pos);
+
+		int methodsCount = pos;
+		int numMethods = u2(pos);
+		pos += 2;
+		for (int i=0;i<numMethods;++i)				// Find the putfield instructions to rewrite
+		{
+			boolean constructor = utf8(u2(pos+2)).equals("<init>");
+			int numAttrs = u2(pos+6);
+			pos += 8;
+			for (int j=0;j<numAttrs;++j)
+			{
+				int len = u4(pos+2);
+				if (!constructor && utf8(u2(pos)).equals("Code"))
+					scanCode(pos+6);
+				pos += 6+len;
+			}
+		}
+		int methodsEnd = pos;
+
+		if (patches.isEmpty() || cpCount+numNew>0xFFFF)		// Nothing to do, or no room in the constant pool
+			return null;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(b.length+newEntries.size()+helperMethods.size());
+		out.write(b,0,8);
+		out.write((cpCount+numNew)>>8);
+		out.write(cpCount+numNew);
+		out.write(b,10,cpEnd-10);
+		newEntries.writeTo(out);
+
+		byte[] rest = new byte[methodsEnd-cpEnd];	// The class, with the putfield instructions replaced
+		System.arraycopy(b,cpEnd,rest,0,rest.length);
+		for (int i=0;i<patches.size();++i)
+		{
+			int at = ((Integer)patches.get(i)).intValue();
+			int method = ((Integer)helpers.get(Integer.valueOf(u2(at+1)))).intValue();
+			rest[at-cpEnd] = (byte)INVOKESTATIC;
+			rest[at-cpEnd+1] = (byte)(method>>8);
+			rest[at-cpEnd+2] = (byte)method;
+		}
+		int n = numMethods+helpers.size();
+		rest[methodsCount-cpEnd] = (byte)(n>>8);
+		rest[methodsCount-cpEnd+1] = (byte)n;
+		out.write(rest);
+
+		helperMethods.writeTo(out);
+		out.write(b,methodsEnd,b.length-methodsEnd);	// The attributes of the class
+		return out.toByteArray();
+	}
+
+	/** Walks the instructions of a Code attribute, and records the putfield instructions which should be rewritten.
+	  * @param pos the offset of the body of the attribute.
+	  */
+	private void scanCode (int pos) throws IOException
+	{
+		int length = u4(pos+4);
+		int start = pos+8;
+
+		for (int pc=0;pc<length;)
+		{
+			int op = b[start+pc]&0xFF;
+			int len = LENGTHS[op];
+			if (op==0xAA || op==0xAB)				// tableswitch, lookupswitch: padded to a multiple of 4
+			{
+				int p = start+pc+1+((4-(pc+1)%4)%4);
+				if (op==0xAA)
+					len = p+12+4*(u4(p+8)-u4(p+4)+1)-(start+pc);
+				else
+					len = p+8+8*u4(p+4)-(start+pc);
+			}
+			else if (op==0xC4)						// wide
+				len = ((b[start+pc+1]&0xFF)==0x84) ? 6 : 4;
+			else if (op==PUTFIELD && rewritable(u2(start+pc+1)))
+			{
+				helperOf(u2(start+pc+1));
+				patches.add(Integer.valueOf(start+pc));
+			}
+			pc += len;
+		}
+	}
+
+	/** Returns true if the writes to a field should be rewritten: if the field belongs to this class, or to a class of
+	  * the same package.
+	  * @param fieldRef the index of the reference to the field in the constant pool.
+	  */
+	private boolean rewritable (int fieldRef)
+	{
+		String owner = classNameAt(u2(cp[fieldRef]));
+		return owner.equals(className) || packageOf(owner).equals(packageOf(className));
+	}
+
+	/** Returns the index in the constant pool of the method which replaces the putfield instructions of a field, adding
+	  * the method (and the entries it needs) if it was not added yet.
+	  * @param fieldRef the index of the reference to the field in the constant pool.
+	  */
+	private int helperOf (int fieldRef) throws IOException
+	{
+		Integer known = (Integer)helpers.get(Integer.valueOf(fieldRef));
+		if (known!=null)
+			return known.intValue();
+
+		String owner = classNameAt(u2(cp[fieldRef]));
+		int nat = u2(cp[fieldRef]+2);
+		String name = utf8(u2(cp[nat]));
+		String desc = utf8(u2(cp[nat]+2));
+
+		char kind = desc.charAt(0);
+		if (kind=='Z' || kind=='B' || kind=='C' || kind=='S')
+			kind = 'I';
+		else if (kind=='[')
+			kind = 'L';
+		int size = (kind=='J' || kind=='D') ? 2 : 1;
+		int load = 0x1B + 4*"IJFDL".indexOf(kind);			// iload_1, lload_1, fload_1, dload_1 or aload_1
+
+		if (codeName==0)
+			codeName = addUtf8("Code");
+		int helperName = addUtf8(HELPER + helpers.size());
+		int helperDesc = addUtf8("(L" + owner + ";" + desc + ")V");
+		int helperRef = addRef(10,thisClass,addRef(12,helperName,helperDesc));
+		int id = addEntry(3,FieldWrites.register(owner,name,desc));
+		int write = writeMethodOf(kind);
+
+		DataOutputStream m = new DataOutputStream(helperMethods);
+		m.writeShort(HELPER_ACCESS);
+		m.writeShort(helperName);
+		m.writeShort(helperDesc);
+		m.writeShort(1);							// A single attribute - the code
+		m.writeShort(codeName);
+		m.writeInt(12+14);
+		m.writeShort(2+size);						// The object, the value and the id
+		m.writeShort(1+size);						// The object and the value
+		m.writeInt(14);
+		m.writeByte(ALOAD_0);						// Write the field, as the putfield did
+		m.writeByte(load);
+		m.writeByte(PUTFIELD);
+		m.writeShort(fieldRef);
+		m.writeByte(ALOAD_0);						// Report the write
+		m.writeByte(load);
+		m.writeByte(LDC_W);
+		m.writeShort(id);
+		m.writeByte(INVOKESTATIC);
+		m.writeShort(write);
+		m.writeByte(RETURN);
+		m.writeShort(0);							// No exception handlers
+		m.writeShort(0);							// No attributes
+
+		helpers.put(Integer.valueOf(fieldRef),Integer.valueOf(helperRef));
+		return helperRef;
+	}
+
+	/** Returns the index in the constant pool of the reference to the FieldWrites.write() method for a type of values,
+	  * adding it if it was not added yet.
+	  * @param kind 'I' (for int, and the smaller types), 'J', 'F', 'D' or 'L' (for references).
+	  */
+	private int writeMethodOf (char kind) throws IOException
+	{
+		Integer known = (Integer)writeMethods.get(Character.valueOf(kind));
+		if (known!=null)
+			return known.intValue();
+
+		String value = (kind=='L') ? "Ljava/lang/Object;" : String.valueOf(kind);
+		int owner = addEntry(7,addUtf8(WRITES));
+		int nat = addRef(12,addUtf8("write"),addUtf8("(Ljava/lang/Object;" + value + "I)V"));
+		int ref = addRef(10,owner,nat);
+		writeMethods.put(Character.valueOf(kind),Integer.valueOf(ref));
+		return ref;
+	}
+
+	/** Adds a Utf8 entry to the constant pool.
+	  * @param s the string.
+	  * @return the index of the entry.
+	  */
+	private int addUtf8 (String s) throws IOException
+	{
+		DataOutputStream d = new DataOutputStream(newEntries);
+		d.writeByte(1);
+		d.writeUTF(s);
+		return cpCount+numNew++;
+	}
+
+	/** Adds an entry which holds a single index (Class) or a 4-byte value (Integer) to the constant pool.
+	  * @param tag the tag of the entry (7 or 3).
+	  * @param value the index, or the value.
+	  * @return the index of the entry.
+	  */
+	private int addEntry (int tag, int value) throws IOException
+	{
+		DataOutputStream d = new DataOutputStream(newEntries);
+		d.writeByte(tag);
+		if (tag==3)
+			d.writeInt(value);
+		else
+			d.writeShort(value);
+		return cpCount+numNew++;
+	}
+
+	/** Adds an entry which holds two indices (a method reference, or a NameAndType) to the constant pool.
+	  * @param tag the tag of the entry (10 or 12).
+	  * @param first the first index.
+	  * @param second the second index.
+	  * @return the index of the entry.
+	  */
+	private int addRef (int tag, int first, int second) throws IOException
+	{
+		DataOutputStream d = new DataOutputStream(newEntries);
+		d.writeByte(tag);
+		d.writeShort(first);
+		d.writeShort(second);
+		return cpCount+numNew++;
+	}
+
+	/** Skips a field or a method of the class file.
+	  * @param pos the offset of the member.
+	  * @return the offset after the member.
+	  */
+	private int skipMember (int pos)
+	{
+		int numAttrs = u2(pos+6);
+		pos += 8;
+		for (int j=0;j<numAttrs;++j)
+			pos += 6+u4(pos+2);
+		return pos;
+	}
+
+	/** Returns the name of the class of a Class entry of the constant pool.
+	  * @param index the index of the entry.
+	  */
+	private String classNameAt (int index)
+	{
+		return utf8(u2(cp[index]));
+	}
+
+	/** Returns the string of a Utf8 entry of the constant pool.
+	  * @param index the index of the entry.
+	  */
+	private String utf8 (int index)
+	{
+		int pos = cp[index];
+		try
+		{
+			return new DataInputStream(new ByteArrayInputStream(b,pos,2+u2(pos))).readUTF();
+		}
+		catch (IOException e) {throw new IllegalArgumentException("Malformed constant pool entry " + index);}
+	}
+
+	/** Returns the package of an internal class name (everything up to the last slash).
+	  * @param name the name.
+	  */
+	private static String packageOf (String name)
+	{
+		int slash = name.lastIndexOf('/');
+		return (slash<0) ? "" : name.substring(0,slash);
+	}
+
+	/** Reads an unsigned 2-byte value from the class file.
+	  * @param pos the offset of the value.
+	  */
+	private int u2 (int pos)
+	{
+		return ((b[pos]&0xFF)<<8) | (b[pos+1]&0xFF);
+	}
+
+	/** Reads a 4-byte value from the class file.
+	  * @param pos the offset of the value.
+	  */
+	private int u4 (int pos)
+	{
+		return (u2(pos)<<16) | u2(pos+2);
+	}
+}
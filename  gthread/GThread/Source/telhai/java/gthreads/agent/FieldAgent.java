@@ -0,0 +1,58 @@
+package telhai.java.gthreads.agent;
+
+import java.lang.instrument.*;	// For the instrumentation
+
+/** This class is a Java agent which instruments the classes of a program, so that the writes to the fields of the
+  * monitored objects are recorded as they happen - by which thread, and when - instead of being sampled. Once the
+  * agent is installed, the ThreadRecorder watches every object added to it (see FieldWrites), and the
+  * GraphicalThreadManager marks each write on the lifeline of the thread which made it.
+  *
+  * The agent is packed in gtm-agent.jar by makeall.bat, and is installed with the -javaagent option of the JVM; its
+  * argument is a comma separated list of the prefixes of the classes to instrument (all the classes but those of the
+  * JDK if it is omitted), for example:
+  *
+  * <pre>
+  * java -javaagent:gtm-agent.jar=Demos. Demos.GTMDirtyRead
+  * </pre>
+  *
+  * Only the classes which are loaded after the agent is installed are instrumented, and only writes which are made
+  * outside of constructors (see ClassRewriter).
+  *
+  * @see FieldWrites
+  * @see PutFieldTransformer
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public final class FieldAgent
+{
+	/** Not constructed */
+	private FieldAgent() {}
+
+	/** Installs the agent before the main method of the program is called. Called by the JVM for -javaagent.
+	  * @param args the prefixes of the classes to instrument, separated by commas, or null.
+	  * @param inst the instrumentation of the JVM.
+	  */
+	public static void premain (String args, Instrumentation inst)
+	{
+		install(args,inst);
+	}
+
+	/** Installs the agent in a running JVM. Only the classes which are loaded from then on are instrumented.
+	  * @param args the prefixes of the classes to instrument, separated by commas, or null.
+	  * @param inst the instrumentation of the JVM.
+	  */
+	public static void agentmain (String args, Instrumentation inst)
+	{
+		install(args,inst);
+	}
+
+	/** Installs the agent.
+	  * @param args the prefixes of the classes to instrument, separated by commas, or null.
+	  * @param inst the instrumentation of the JVM.
+	  */
+	private static void install (String args, Instrumentation inst)
+	{
+		inst.addTransformer(new PutFieldTransformer(args));
+		FieldWrites.install();
+	}
+}
@@ -0,0 +1,22 @@
+package telhai.java.gthreads.agent;
+
+/** This interface receives the writes to the fields of a watched object, as they are made by instrumented code. The
+  * listener is called on the writing thread, right after the field was written, so it must return quickly and must
+  * never block: normally it only puts the write in a queue, and the write is handled later on another thread.
+  *
+  * @see FieldWrites#watch(Object,FieldWriteListener)
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public interface FieldWriteListener
+{
+	/** Called after a field of a watched object was written.
+	  * @param obj the object.
+	  * @param field the id of the field (see FieldWrites.getName()).
+	  * @param bits the new value of a primitive field, as raw bits (in the same form as FieldAccessor.getBits()), or 0.
+	  * @param value the new value of a reference field, or null.
+	  * @param writer the thread which wrote the field.
+	  * @param nanos the System.nanoTime() value of the write.
+	  */
+	public void fieldWritten (Object obj, int field, long bits, Object value, Thread writer, long nanos);
+}
@@ -0,0 +1,272 @@
+package telhai.java.gthreads.agent;
+
+import java.lang.ref.*;			// For holding the watched objects weakly
+import java.util.*;				// For vectors and hash tables
+
+/** This class receives the writes which are made by instrumented code, and passes the writes to the fields of the
+  * watched objects on to their listeners. Classes which are instrumented by the FieldAgent call one of the write()
+  * methods after each write to a field of their own; the fields are identified by small integer ids, which the agent
+  * assigns when it instruments a class.
+  *
+  * The watched objects are kept in a small open-addressing table, keyed by identity, which is replaced as a whole
+  * whenever an object is watched or unwatched (which is rare), so the writes never lock anything. While no object is
+  * watched, a write costs a single volatile read; otherwise it costs a lookup in the table, and the listener is called
+  * only for a watched object. The table holds the objects through weak references, so watching an object never keeps
+  * it from being collected; the entries of collected objects are dropped whenever the table is replaced.
+  *
+  * @see FieldAgent
+  * @see FieldWriteListener
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+public final class FieldWrites
+{
+	/** Indicates whether the agent is installed */
+	private static volatile boolean installed;
+
+	/** Weak references to the watched objects and their listeners, at even and odd indices, or null if no object is
+	  * watched
+	  */
+	private static volatile Object[] table;
+
+	/** The owners of the fields (internal class names), by the ids of the fields */
+	private static Vector owners = new Vector();
+	/** The names of the fields, by the ids of the fields */
+	private static Vector names = new Vector();
+	/** The ids of the fields, by their owners, names and descriptors (joined with spaces) */
+	private static HashMap ids = new HashMap();
+
+	/** Not constructed */
+	private FieldWrites() {}
+
+	/** Marks the agent as installed. Called by the FieldAgent when it starts. */
+	static void install()
+	{
+		installed = true;
+	}
+
+	/** Returns true if the FieldAgent is installed, so that writes to the fields of instrumented classes are reported.
+	  */
+	public static boolean isInstalled()
+	{
+		return installed;
+	}
+
+	/** Starts reporting the writes to the fields of an object to a listener. An object has a single listener; watching
+	  * an object which is already watched replaces its listener.
+	  * @param obj the object.
+	  * @param l the listener.
+	  */
+	public static synchronized void watch (Object obj, FieldWriteListener l)
+	{
+		Object[] t = table;
+		if (t!=null && find(t,obj)>=0)
+		{
+			t = t.clone();
+			t[find(t,obj)+1] = l;
+			table = t;
+			return;
+		}
+		rebuild(obj,l,null);
+	}
+
+	/** Stops reporting the writes to the fields of the object (or objects) which a listener watches. Nothing is done if
+	  * the listener watches no object (for example, if another listener has replaced it since). The object itself is
+	  * not needed, since it may have been collected already.
+	  * @param l the listener.
+	  */
+	public static synchronized void unwatch (FieldWriteListener l)
+	{
+		Object[] t = table;
+		if (t==null)
+			return;
+		for (int i=1;i<t.length;i+=2)
+			if (t[i]==l)
+			{
+				rebuild(null,null,l);
+				return;
+			}
+	}
+
+	/** Replaces the table with a new one, with an object added, or with the objects of a listener removed. The entries
+	  * of the objects which have been collected are dropped. Called with the class locked.
+	  * @param added the object to add, or null.
+	  * @param l the listener of the added object.
+	  * @param removed the listener whose objects should be removed, or null.
+	  */
+	private static void rebuild (Object added, FieldWriteListener l, FieldWriteListener removed)
+	{
+		Object[] old = table;
+		int n = (added!=null) ? 1 : 0;
+		if (old!=null)
+			for (int i=0;i<old.length;i+=2)
+				if (old[i]!=null && old[i+1]!=removed && ((Reference)old[i]).get()!=null)
+					++n;
+		if (n==0)
+		{
+			table = null;
+			return;
+		}
+
+		int cap = 8;
+		while (cap<n*2)							// At most half full, so the probes are short
+			cap <<= 1;
+		Object[] t = new Object[cap*2];
+		if (old!=null)
+			for (int i=0;i<old.length;i+=2)
+			{
+				Object obj = (old[i]==null) ? null : ((Reference)old[i]).get();
+				if (obj!=null && old[i+1]!=removed)
+					put(t,obj,(Reference)old[i],old[i+1]);
+			}
+		if (added!=null)
+			put(t,added,new WeakReference(added),l);
+
+		table = t;
+	}
+
+	/** Puts an object in a table which has room for it.
+	  * @param t the table.
+	  * @param obj the object.
+	  * @param ref a weak reference to the object.
+	  * @param l the listener of the object.
+	  */
+	private static void put (Object[] t, Object obj, Reference ref, Object l)
+	{
+		int mask = t.length/2-1;
+		int i = System.identityHashCode(obj) & mask;
+		while (t[2*i]!=null)
+			i = (i+1) & mask;
+		t[2*i] = ref;
+		t[2*i+1] = l;
+	}
+
+	/** Finds an object in a table.
+	  * @param t the table.
+	  * @param obj the object.
+	  * @return the index of the object in the table, or -1 if it is not there.
+	  */
+	private static int find (Object[] t, Object obj)
+	{
+		int mask = t.length/2-1;
+		int i = System.identityHashCode(obj) & mask;
+		for (;;)
+		{
+			Object o = t[2*i];
+			if (o==null)
+				return -1;
+			if (((Reference)o).get()==obj)	// A collected entry is never equal, but is probed past
+				return 2*i;
+			i = (i+1) & mask;
+		}
+	}
+
+	/** Returns the id of a field, assigning a new id to a field which has none. Called by the agent when it instruments
+	  * a class.
+	  * @param owner the internal name of the class of the field (for example "Demos/GTMDirtyRead").
+	  * @param name the name of the field.
+	  * @param descriptor the descriptor of the type of the field (for example "I" or "Ljava/lang/String;").
+	  */
+	static synchronized int register (String owner, String name, String descriptor)
+	{
+		String key = owner + " " + name + " " + descriptor;
+		Integer id = (Integer)ids.get(key);
+		if (id==null)
+		{
+			id = Integer.valueOf(names.size());
+			ids.put(key,id);
+			owners.add(owner);
+			names.add(name);
+		}
+		return id.intValue();
+	}
+
+	/** Returns the name of the class of a field, as a binary name (for example "Demos.GTMDirtyRead").
+	  * @param field the id of the field.
+	  */
+	public static String getOwner (int field)
+	{
+		return ((String)owners.get(field)).replace('/','.');
+	}
+
+	/** Returns the name of a field.
+	  * @param field the id of the field.
+	  */
+	public static String getName (int field)
+	{
+		return (String)names.get(field);
+	}
+
+	/** Finds the listener of an object. Inlined into the write() methods by the JIT.
+	  * @param obj the object whose field was written.
+	  * @return the listener of the object, or null if it is not watched.
+	  */
+	private static FieldWriteListener listenerOf (Object obj)
+	{
+		Object[] t = table;
+		if (t==null)							// Nothing is watched - the common case
+			return null;
+		int i = find(t,obj);
+		return (i<0) ? null : (FieldWriteListener)t[i+1];
+	}
+
+	/** Reports a write to a boolean, byte, char, short or int field. Called by instrumented code.
+	  * @param obj the object whose field was written.
+	  * @param value the new value.
+	  * @param field the id of the field.
+	  */
+	public static void write (Object obj, int value, int field)
+	{
+		FieldWriteListener l = listenerOf(obj);
+		if (l!=null)
+			l.fieldWritten(obj,field,value,null,Thread.currentThread(),System.nanoTime());
+	}
+
+	/** Reports a write to a long field. Called by instrumented code.
+	  * @param obj the object whose field was written.
+	  * @param value the new value.
+	  * @param field the id of the field.
+	  */
+	public static void write (Object obj, long value, int field)
+	{
+		FieldWriteListener l = listenerOf(obj);
+		if (l!=null)
+			l.fieldWritten(obj,field,value,null,Thread.currentThread(),System.nanoTime());
+	}
+
+	/** Reports a write to a float field. Called by instrumented code.
+	  * @param obj the object whose field was written.
+	  * @param value the new value.
+	  * @param field the id of the field.
+	  */
+	public static void write (Object obj, float value, int field)
+	{
+		FieldWriteListener l = listenerOf(obj);
+		if (l!=null)
+			l.fieldWritten(obj,field,Float.floatToRawIntBits(value),null,Thread.currentThread(),System.nanoTime());
+	}
+
+	/** Reports a write to a double field. Called by instrumented code.
+	  * @param obj the object whose field was written.
+	  * @param value the new value.
+	  * @param field the id of the field.
+	  */
+	public static void write (Object obj, double value, int field)
+	{
+		FieldWriteListener l = listenerOf(obj);
+		if (l!=null)
+			l.fieldWritten(obj,field,Double.doubleToRawLongBits(value),null,Thread.currentThread(),System.nanoTime());
+	}
+
+	/** Reports a write to a reference field. Called by instrumented code.
+	  * @param obj the object whose field was written.
+	  * @param value the new value.
+	  * @param field the id of the field.
+	  */
+	public static void write (Object obj, Object value, int field)
+	{
+		FieldWriteListener l = listenerOf(obj);
+		if (l!=null)
+			l.fieldWritten(obj,field,0,value,Thread.currentThread(),System.nanoTime());
+	}
+}
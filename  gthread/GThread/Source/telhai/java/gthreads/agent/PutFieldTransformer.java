@@ -0,0 +1,125 @@
+package telhai.java.gthreads.agent;
+
+import java.lang.instrument.*;	// For transforming the classes
+import java.security.*;			// For the protection domains
+import java.util.*;				// For the list of packages
+
+/** This class transforms the classes as they are loaded, so that the writes to their fields are reported to
+  * FieldWrites (see ClassRewriter). Only the classes whose names start with one of the given prefixes are transformed,
+  * or, if no prefix is given, all the classes except those of the JDK; the classes of GThread itself are never
+  * transformed. Neither are the classes which are loaded by the bootstrap or the platform class loader, or by any
+  * class loader which can't see FieldWrites, since the transformed classes call it.
+  *
+  * A class which can't be transformed (for example, because its class file is malformed) is loaded as it is.
+  *
+  * @see FieldAgent
+  * @see ClassRewriter
+  *
+  * @author Alex Frid alex.frid@gmail.com; Dima Ruinski
+  */
+final class PutFieldTransformer implements ClassFileTransformer
+{
+	/** The prefixes of the classes which are never transformed (as internal names) */
+	private static final String[] EXCLUDED = {"java/", "javax/", "jdk/", "sun/", "com/sun/"};
+
+	/** The package of GThread (whose examples may be transformed, but not the rest of its classes) */
+	private static final String GTHREADS = "telhai/java/gthreads/";
+
+	/** The prefixes of the classes which are transformed (as internal names), or an empty array for all the classes */
+	private String[] included;
+
+	/** Whether each class loader sees FieldWrites (Boolean), by the class loaders. Weak, so that loaders can be
+	  * collected.
+	  */
+	private WeakHashMap seesFieldWrites = new WeakHashMap();
+
+	/** Constructs a transformer.
+	  * @param prefixes the prefixes of the names of the classes to transform (for example "Demos.,com.example."),
+	  * separated by commas, or null or an empty string to transform all the classes except those of the JDK.
+	  */
+	PutFieldTransformer (String prefixes)
+	{
+		Vector v = new Vector();
+		if (prefixes!=null)
+		{
+			StringTokenizer st = new StringTokenizer(prefixes,",");
+			while (st.hasMoreTokens())
+			{
+				String prefix = st.nextToken().trim();
+				if (prefix.length()>0)
+					v.add(prefix.replace('.','/'));
+			}
+		}
+		included = (String[])v.toArray(new String[v.size()]);
+	}
+
+	/** Returns true if a class should be transformed.
+	  * @param className the internal name of the class (for example "Demos/GTMDirtyRead").
+	  */
+	boolean accepts (String className)
+	{
+		for (int i=0;i<EXCLUDED.length;++i)
+			if (className.startsWith(EXCLUDED[i]))
+				return false;
+		if (className.startsWith(GTHREADS) && !className.startsWith(GTHREADS + "examples/"))
+			return false;
+		if (included.length==0)
+			return true;
+		for (int i=0;i<included.length;++i)
+			if (className.startsWith(included[i]))
+				return true;
+		return false;
+	}
+
+	/** Returns true if the classes of a class loader may be transformed: the loader is not the platform class loader
+	  * (whose classes belong to the JDK, whatever their names), and it resolves FieldWrites to the class of the agent.
+	  * @param loader the class loader (not the bootstrap class loader).
+	  */
+	private boolean canTransform (ClassLoader loader)
+	{
+		if (loader==ClassLoader.getPlatformClassLoader())
+			return false;
+
+		Boolean sees;
+		synchronized (seesFieldWrites)
+		{
+			sees = (Boolean)seesFieldWrites.get(loader);
+		}
+		if (sees!=null)
+			return sees.booleanValue();
+
+		boolean b;
+		try			// Not locked - the loader may be loading a class on another thread, and wait for this transformer
+		{
+			b = Class.forName(FieldWrites.class.getName(),false,loader)==FieldWrites.class;
+		}
+		catch (Throwable e)				// ClassNotFoundException, or a LinkageError
+		{
+			b = false;
+		}
+		synchronized (seesFieldWrites)
+		{
+			seesFieldWrites.put(loader,Boolean.valueOf(b));
+		}
+		return b;
+	}
+
+	/** Transforms a class as it is loaded. Classes which are redefined are left as they are, since methods may not be
+	  * added to a class which is already loaded.
+	  * @return the transformed class file, or null to load the class as it is.
+	  */
+	public byte[] transform (ClassLoader loader, String className, Class redefined, ProtectionDomain domain,
+							 byte[] classFile)
+	{
+		if (loader==null || className==null || redefined!=null || !accepts(className) || !canTransform(loader))
+			return null;
+		try
+		{
+			return ClassRewriter.rewrite(classFile);
+		}
+		catch (Throwable e)							// Never prevent a class from loading
+		{
+			return null;
+		}
+	}
+}
@@ -1 +1,3 @@
-@javac -d . source\*.java source\examples\*.java source\demos\*.java
\ No newline at end of file
+@javac -d . source\*.java source\examples\*.java source\demos\*.java
+@javac -d . source\telhai\java\gthreads\agent\*.java
+@jar cfm gtm-agent.jar source\telhai\java\gthreads\agent\MANIFEST.MF telhai\java\gthreads\agent\*.class
\ No newline at end of file